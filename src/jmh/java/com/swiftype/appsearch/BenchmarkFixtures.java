@@ -0,0 +1,92 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic request and response payloads shared by the benchmarks.
+ */
+class BenchmarkFixtures {
+  static Map<String, Object> searchResponse(int resultCount) {
+    List<Map<String, Object>> results = new ArrayList<>();
+    for (int i = 0; i < resultCount; i++) {
+      Map<String, Object> result = new HashMap<>();
+      result.put("id", field(String.valueOf(i), null));
+      result.put("title", field("The Original Grumpy Cat " + i, "The Original Grumpy <em>Cat</em> " + i));
+      result.put("body", field(repeat("A wonderful video of a magnificent cat. ", 20), "A wonderful video of a magnificent <em>cat</em>."));
+      result.put("url", field("https://www.youtube.com/watch?v=" + i, null));
+      result.put("views", field(1000 + i, null));
+      result.put("rating", field(4.5, null));
+      result.put("_meta", Collections.singletonMap("score", 1.0 / (i + 1)));
+      results.add(result);
+    }
+
+    Map<String, Object> page = new HashMap<>();
+    page.put("current", 1);
+    page.put("size", resultCount);
+    page.put("total_pages", 10);
+    page.put("total_results", resultCount * 10);
+    Map<String, Object> meta = new HashMap<>();
+    meta.put("page", page);
+    meta.put("request_id", "feff7cf2359a6f6da84586969ef0ca89");
+
+    Map<String, Object> response = new HashMap<>();
+    response.put("meta", meta);
+    response.put("results", results);
+    return response;
+  }
+
+  /**
+   * A batch of documents shaped like a typical video catalog, with a long description and a few numeric fields.
+   */
+  static List<Map<String, Object>> documents(int count) {
+    List<Map<String, Object>> documents = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Map<String, Object> document = new HashMap<>();
+      document.put("id", "INscMGmhmX4-" + i);
+      document.put("url", "https://www.youtube.com/watch?v=INscMGmhmX4&index=" + i);
+      document.put("title", "The Original Grumpy Cat " + i);
+      document.put("body", repeat("A wonderful video of a magnificent cat, with \"quotes\" and unicode \u00e9. ", 25));
+      document.put("views", 1000 + i);
+      document.put("rating", 4.5);
+      document.put("tags", Arrays.asList("cats", "videos", "grumpy"));
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  /**
+   * @return the indexing response for documents created by {@link #documents(int)}
+   */
+  static List<Map<String, Object>> indexResponse(int count) {
+    List<Map<String, Object>> statuses = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Map<String, Object> status = new HashMap<>();
+      status.put("id", "INscMGmhmX4-" + i);
+      status.put("errors", new ArrayList<>());
+      statuses.add(status);
+    }
+    return statuses;
+  }
+
+  private static Map<String, Object> field(Object raw, String snippet) {
+    Map<String, Object> field = new HashMap<>();
+    field.put("raw", raw);
+    if (snippet != null) {
+      field.put("snippet", snippet);
+    }
+    return field;
+  }
+
+  private static String repeat(String value, int times) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(value);
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,68 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end calls through {@link Client}, including connection pooling, serialization and parsing, against an
+ * embedded stub server answering with canned responses on the loopback interface. Network time is negligible, so
+ * these mostly measure the client's own overhead per call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientRoundTripBenchmark {
+  private StubServer server;
+  private Client client;
+  private List<Map<String, Object>> documents;
+
+  @Setup
+  public void setUp() throws IOException {
+    String searchResponse = JsonTypes.GSON.toJson(BenchmarkFixtures.searchResponse(20));
+    String indexResponse = JsonTypes.GSON.toJson(BenchmarkFixtures.indexResponse(100));
+    server = new StubServer(request -> request.path.endsWith("/documents")
+      ? StubServer.Response.json(200, indexResponse)
+      : StubServer.Response.json(200, searchResponse));
+    client = new Client(null, "private-key", server.baseUrlFormat());
+    documents = BenchmarkFixtures.documents(100);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Map<String, Object> search() throws ClientException {
+    return client.search("engine", "cat", Collections.singletonMap("page", Collections.singletonMap("size", 20)));
+  }
+
+  @Benchmark
+  public SearchResponse searchTyped() throws ClientException {
+    return client.searchTyped("engine", "cat", Collections.singletonMap("page", Collections.singletonMap("size", 20)));
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> indexDocuments() throws ClientException {
+    return client.indexDocuments("engine", documents);
+  }
+}
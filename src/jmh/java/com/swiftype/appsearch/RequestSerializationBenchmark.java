@@ -0,0 +1,113 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of a full 100 document indexing batch, streamed by {@link JsonEntity} compared with building the
+ * JSON string first, and the cost of gzipping it on the way. The raw variants start from documents that are already
+ * encoded, parsing them into maps first as {@code indexDocuments} requires, or splicing their bytes as
+ * {@code indexRawDocuments} does. Run with {@code -prof gc} to compare allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestSerializationBenchmark {
+  private List<Map<String, Object>> documents;
+  private List<ByteBuffer> encodedDocuments;
+  private CountingOutputStream connection;
+
+  @Setup
+  public void setUp() {
+    documents = BenchmarkFixtures.documents(100);
+    encodedDocuments = new ArrayList<>();
+    for (Map<String, Object> document : documents) {
+      encodedDocuments.add(ByteBuffer.wrap(JsonTypes.GSON.toJson(document).getBytes(UTF_8)));
+    }
+    connection = new CountingOutputStream();
+  }
+
+  @Benchmark
+  public long jsonEntity() throws IOException {
+    new JsonEntity(documents).writeTo(connection);
+    return connection.count;
+  }
+
+  @Benchmark
+  public long jsonEntityGzipFastest() throws IOException {
+    new JsonEntity(documents, 1, -1).writeTo(connection);
+    return connection.count;
+  }
+
+  @Benchmark
+  public long jsonEntityGzipDefault() throws IOException {
+    new JsonEntity(documents, 6, -1).writeTo(connection);
+    return connection.count;
+  }
+
+  @Benchmark
+  public long jsonString() throws IOException {
+    connection.write(JsonTypes.GSON.toJson(documents).getBytes(UTF_8));
+    return connection.count;
+  }
+
+  @Benchmark
+  public long encodedParsedAndSerialized() throws IOException {
+    List<Map<String, Object>> parsed = new ArrayList<>();
+    for (ByteBuffer document : encodedDocuments) {
+      String json = new String(document.array(), document.arrayOffset() + document.position(), document.remaining(), UTF_8);
+      parsed.add(JsonTypes.GSON.fromJson(json, JsonTypes.OBJECT.getType()));
+    }
+    new JsonEntity(parsed).writeTo(connection);
+    return connection.count;
+  }
+
+  @Benchmark
+  public long encodedSpliced() throws IOException {
+    new JsonEntity(new RawJsonArray(encodedDocuments)).writeTo(connection);
+    return connection.count;
+  }
+
+  @Benchmark
+  public long serializedSize() {
+    return JsonTypes.serializedSize(documents);
+  }
+
+  /**
+   * Stands in for a connection, consuming bytes without keeping them.
+   */
+  private static class CountingOutputStream extends OutputStream {
+    long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
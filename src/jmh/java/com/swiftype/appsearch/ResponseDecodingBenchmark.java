@@ -0,0 +1,74 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decoding a page of search results into Maps with the lazily decoded {@link SearchResponse}. Run with
+ * {@code -prof gc} to compare allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseDecodingBenchmark {
+  private byte[] body;
+
+  @Setup
+  public void setUp() {
+    body = JsonTypes.GSON.toJson(BenchmarkFixtures.searchResponse(100)).getBytes(UTF_8);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Benchmark
+  public Object mapTotalPages() {
+    Map<String, Object> response = JsonTypes.GSON.fromJson(
+      new InputStreamReader(new ByteArrayInputStream(body), UTF_8), JsonTypes.OBJECT.getType());
+    Map<String, Object> meta = (Map<String, Object>) response.get("meta");
+    return ((Map<String, Object>) meta.get("page")).get("total_pages");
+  }
+
+  @Benchmark
+  public int typedTotalPages() {
+    return new SearchResponse(body).meta().page().totalPages();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Benchmark
+  public int mapAllTitles() {
+    Map<String, Object> response = JsonTypes.GSON.fromJson(
+      new InputStreamReader(new ByteArrayInputStream(body), UTF_8), JsonTypes.OBJECT.getType());
+    int length = 0;
+    for (Map<String, Object> result : (List<Map<String, Object>>) response.get("results")) {
+      length += ((String) ((Map<String, Object>) result.get("title")).get("raw")).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int typedAllTitles() {
+    int length = 0;
+    for (Result result : new SearchResponse(body).results()) {
+      length += result.rawString("title").length();
+    }
+    return length;
+  }
+}
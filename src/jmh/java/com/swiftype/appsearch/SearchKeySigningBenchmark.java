@@ -0,0 +1,74 @@
+package com.swiftype.appsearch;
+
+import java.security.InvalidKeyException;
+import java.security.SignatureException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares minting a signed search key with {@link Jwt#sign(String, Map)} and with a shared {@link SearchKeySigner},
+ * and measures {@link Jwt#verify(String, String)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchKeySigningBenchmark {
+  private static final String API_KEY = "api-mu75psc5egt9ppzuycnc2mc3";
+
+  private Map<String, Object> options;
+  private Map<String, Object> payload;
+  private SearchKeySigner signer;
+  private SearchKeySigner cachingSigner;
+  private String token;
+
+  @Setup
+  public void setUp() throws InvalidKeyException {
+    options = new HashMap<>();
+    options.put("query", "cat");
+    options.put("filters", Collections.singletonMap("owner", "user-1234"));
+    options.put("search_fields", Collections.singletonMap("title", new HashMap<>()));
+
+    payload = new HashMap<>(options);
+    payload.put("api_key_name", "my-token-name");
+
+    signer = new SearchKeySigner(API_KEY);
+    cachingSigner = new SearchKeySigner(API_KEY, 1000);
+    token = Jwt.sign(API_KEY, payload);
+  }
+
+  @Benchmark
+  public String jwtSign() throws InvalidKeyException {
+    return Jwt.sign(API_KEY, payload);
+  }
+
+  @Benchmark
+  public Map<String, Object> jwtVerify() throws InvalidKeyException, SignatureException {
+    return Jwt.verify(API_KEY, token);
+  }
+
+  @Benchmark
+  public String signer() {
+    return signer.sign("my-token-name", options);
+  }
+
+  @Benchmark
+  public String cachingSigner() {
+    return cachingSigner.sign("my-token-name", options);
+  }
+}
@@ -0,0 +1,211 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link QueryLog} through one {@link Client} and prints throughput and latency percentiles per operation.
+ * Either against App Search, or against an embedded stub server answering after an injected latency:
+ *
+ * <pre>
+ * --log=queries.ndjson             calls to replay, cycled through until the run ends (required)
+ * --host-identifier=host-2376rb    App Search host to target, together with --api-key; the stub server if absent
+ * --api-key=private-xxx
+ * --mode=closed                    closed: --concurrency threads send calls back to back
+ *                                  open: calls start at --rate per second, however long earlier ones take
+ * --rate=100                       calls per second in open mode
+ * --concurrency=16                 threads sending calls, and connections of the client
+ * --duration-seconds=30            length of the measured run
+ * --warmup-seconds=5               length of the unmeasured run before it
+ * --stub-latency-ms=10             how long the stub server takes per response
+ * --stub-jitter-ms=0               random extra latency of the stub server, up to this long
+ * </pre>
+ *
+ * <p>In open mode a call that waits for a free thread is charged for the wait, so the response times show what a
+ * caller issuing that rate would see instead of only the calls the client kept up with.
+ */
+public class LoadGenerator {
+  private final Client client;
+  private final QueryLog log;
+  private final int concurrency;
+  private final long warmupNanos;
+  private final long durationNanos;
+  private final LoadStats stats = new LoadStats();
+
+  LoadGenerator(Client client, QueryLog log, int concurrency, long warmup, long duration, TimeUnit unit) {
+    this.client = client;
+    this.log = log;
+    this.concurrency = concurrency;
+    this.warmupNanos = unit.toNanos(warmup);
+    this.durationNanos = unit.toNanos(duration);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> flags = flags(args);
+    if (!flags.containsKey("log")) {
+      System.err.println("usage: LoadGenerator --log=queries.ndjson [--host-identifier=... --api-key=...] "
+        + "[--mode=closed|open] [--rate=100] [--concurrency=16] [--duration-seconds=30] [--warmup-seconds=5] "
+        + "[--stub-latency-ms=10] [--stub-jitter-ms=0]");
+      System.exit(2);
+    }
+    QueryLog log = QueryLog.read(Paths.get(flags.get("log")));
+    String mode = flags.getOrDefault("mode", "closed");
+    int concurrency = Integer.parseInt(flags.getOrDefault("concurrency", "16"));
+    long warmupSeconds = Long.parseLong(flags.getOrDefault("warmup-seconds", "5"));
+    long durationSeconds = Long.parseLong(flags.getOrDefault("duration-seconds", "30"));
+    ClientOptions options = new ClientOptions()
+      .maxConnectionsTotal(concurrency)
+      .maxConnectionsPerRoute(concurrency);
+
+    StubServer server = null;
+    Client client;
+    String target;
+    if (flags.containsKey("host-identifier")) {
+      target = flags.get("host-identifier");
+      client = new Client(target, flags.get("api-key"), options);
+    } else {
+      server = stubServer(Long.parseLong(flags.getOrDefault("stub-latency-ms", "10")),
+        Long.parseLong(flags.getOrDefault("stub-jitter-ms", "0")));
+      target = "stub server";
+      client = new Client(null, "private-key", server.baseUrlFormat(), options);
+    }
+
+    try {
+      LoadGenerator generator = new LoadGenerator(client, log, concurrency, warmupSeconds, durationSeconds, TimeUnit.SECONDS);
+      System.out.printf("Replaying %d calls against %s, %s loop, %d threads, %ds warmup, %ds measured%n",
+        log.size(), target, mode, concurrency, warmupSeconds, durationSeconds);
+      String report;
+      switch (mode) {
+        case "closed":
+          report = generator.runClosedLoop();
+          break;
+        case "open":
+          report = generator.runOpenLoop(Double.parseDouble(flags.getOrDefault("rate", "100")));
+          break;
+        default:
+          throw new IllegalArgumentException("mode must be open or closed");
+      }
+      System.out.print(report);
+    } finally {
+      client.close();
+      if (server != null) {
+        server.close();
+      }
+    }
+  }
+
+  /**
+   * Sends calls back to back from every thread, so the rate is whatever the client and service sustain.
+   *
+   * @return the report of the measured interval
+   */
+  String runClosedLoop() throws InterruptedException {
+    long measureStart = System.nanoTime() + warmupNanos;
+    long end = measureStart + durationNanos;
+    ExecutorService executor = executor();
+    for (int i = 0; i < concurrency; i++) {
+      executor.execute(() -> {
+        long start;
+        while ((start = System.nanoTime()) - end < 0) {
+          replay(log.next(), start, start, measureStart);
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    return stats.report(System.nanoTime() - measureStart);
+  }
+
+  /**
+   * Starts calls at a fixed rate. Calls wait for a free thread when all are busy, and the wait counts towards their
+   * response time.
+   *
+   * @param ratePerSecond calls started per second
+   * @return the report of the measured interval
+   */
+  String runOpenLoop(double ratePerSecond) throws InterruptedException {
+    if (ratePerSecond <= 0) {
+      throw new IllegalArgumentException("rate must be positive");
+    }
+    long intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+    long start = System.nanoTime();
+    long measureStart = start + warmupNanos;
+    long end = measureStart + durationNanos;
+    ExecutorService executor = executor();
+    for (long i = 0; ; i++) {
+      long intended = start + i * intervalNanos;
+      if (intended - end >= 0) {
+        break;
+      }
+      long wait;
+      while ((wait = intended - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      QueryLog.Call call = log.next();
+      executor.execute(() -> replay(call, intended, System.nanoTime(), measureStart));
+    }
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    return stats.report(System.nanoTime() - measureStart);
+  }
+
+  private void replay(QueryLog.Call call, long intendedNanos, long startNanos, long measureStart) {
+    boolean failed = false;
+    try {
+      call.replay(client);
+    } catch (ClientException | RuntimeException e) {
+      failed = true;
+    }
+    if (intendedNanos - measureStart >= 0) {
+      stats.record(call.operation, intendedNanos, startNanos, System.nanoTime(), failed);
+    }
+  }
+
+  private ExecutorService executor() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(concurrency, runnable -> {
+      Thread thread = new Thread(runnable, "app-search-loadgen-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return a stub server answering every replayable operation with an empty response
+   */
+  static StubServer stubServer(long latencyMillis, long jitterMillis) throws IOException {
+    return new StubServer(request -> {
+      long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+      if (request.path.endsWith("/documents")) {
+        return StubServer.Response.json(200, "[{\"id\":\"1\",\"errors\":[]}]").delay(delay);
+      }
+      if (request.path.endsWith("/multi_search")) {
+        return StubServer.Response.json(200, "[{\"meta\":{},\"results\":[]}]").delay(delay);
+      }
+      if (request.path.endsWith("/query_suggestion")) {
+        return StubServer.Response.json(200, "{\"meta\":{},\"results\":{\"documents\":[]}}").delay(delay);
+      }
+      return StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}").delay(delay);
+    });
+  }
+
+  private static Map<String, String> flags(String[] args) {
+    Map<String, String> flags = new LinkedHashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("unexpected argument " + arg);
+      }
+      int equals = arg.indexOf('=');
+      flags.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2), equals > 0 ? arg.substring(equals + 1) : "true");
+    }
+    return flags;
+  }
+}
@@ -0,0 +1,85 @@
+package com.swiftype.appsearch;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and failures of replayed calls per operation. The response time of a call runs from when it was meant to
+ * start, so calls that queued behind slow ones are charged for the wait; the service time only runs from when it was
+ * actually sent. In closed loop mode the two are the same.
+ */
+class LoadStats {
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+  private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p99.9", "p99.99"};
+
+  private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+  LoadStats() {
+    for (Operation operation : Operation.values()) {
+      stats.put(operation, new Stats());
+    }
+  }
+
+  /**
+   * @param intendedNanos when the call was scheduled to start
+   * @param startNanos when the call was sent
+   * @param endNanos when the call returned
+   */
+  void record(Operation operation, long intendedNanos, long startNanos, long endNanos, boolean failed) {
+    Stats operationStats = stats.get(operation);
+    operationStats.responseTime.record(endNanos - intendedNanos);
+    operationStats.serviceTime.record(endNanos - startNanos);
+    if (failed) {
+      operationStats.failures.increment();
+    }
+  }
+
+  /**
+   * @param elapsedNanos length of the measured interval, to compute throughput
+   * @return a table of throughput and latency percentiles, in milliseconds, per replayed operation
+   */
+  String report(long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-18s %-8s %9s %8s %10s %9s", "operation", "latency", "calls", "failed", "calls/s", "mean"));
+    for (String label : PERCENTILE_LABELS) {
+      report.append(String.format(" %9s", label));
+    }
+    report.append(String.format(" %9s%n", "max"));
+
+    for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+      LatencyHistogram.Snapshot response = entry.getValue().responseTime.snapshot();
+      if (response.count() == 0) {
+        continue;
+      }
+      long failures = entry.getValue().failures.sum();
+      String name = entry.getKey().name().toLowerCase(Locale.ROOT);
+      row(report, name, "response", response, failures, seconds);
+      row(report, "", "service", entry.getValue().serviceTime.snapshot(), failures, seconds);
+    }
+    return report.toString();
+  }
+
+  private static void row(StringBuilder report, String name, String latency, LatencyHistogram.Snapshot snapshot,
+                          long failures, double seconds) {
+    report.append(String.format("%-18s %-8s %9d %8d %10.1f %9.2f", name, latency, snapshot.count(), failures,
+      snapshot.count() / seconds, millis(snapshot.mean())));
+    for (double percentile : PERCENTILES) {
+      report.append(String.format(" %9.2f", millis(snapshot.percentile(percentile))));
+    }
+    report.append(String.format(" %9.2f%n", millis(snapshot.max())));
+  }
+
+  private static double millis(double nanos) {
+    return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static class Stats {
+    final LatencyHistogram responseTime = new LatencyHistogram();
+    final LatencyHistogram serviceTime = new LatencyHistogram();
+    final LongAdder failures = new LongAdder();
+  }
+}
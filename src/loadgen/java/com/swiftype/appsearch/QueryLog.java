@@ -0,0 +1,145 @@
+package com.swiftype.appsearch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Recorded api calls to replay, read from a file with one JSON object per line. Blank lines and lines starting with #
+ * are skipped:
+ *
+ * <pre>
+ * {"operation": "search", "engine": "videos", "query": "cat", "options": {"page": {"size": 20}}}
+ * {"operation": "multi_search", "engine": "videos", "queries": [{"query": "cat"}, {"query": "dog"}]}
+ * {"operation": "query_suggestion", "engine": "videos", "query": "ca"}
+ * {"operation": "index_documents", "engine": "videos", "documents": [{"id": "1", "title": "Cat"}]}
+ * </pre>
+ *
+ * <p>Numbers are kept as written, so options such as page sizes are sent exactly as they were recorded.
+ */
+class QueryLog {
+  /**
+   * One recorded call.
+   */
+  static class Call {
+    final Operation operation;
+    private final String engineName;
+    private final Map<String, Object> entry;
+
+    Call(Operation operation, String engineName, Map<String, Object> entry) {
+      this.operation = operation;
+      this.engineName = engineName;
+      this.entry = entry;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void replay(Client client) throws ClientException {
+      switch (operation) {
+        case SEARCH:
+          client.search(engineName, (String) entry.get("query"), options());
+          break;
+        case MULTI_SEARCH:
+          client.multiSearch(engineName, (List<Map>) entry.get("queries"));
+          break;
+        case QUERY_SUGGESTION:
+          client.querySuggestion(engineName, (String) entry.get("query"), options());
+          break;
+        case INDEX_DOCUMENTS:
+          client.indexDocuments(engineName, (List<Map<String, Object>>) entry.get("documents"));
+          break;
+        default:
+          throw new IllegalStateException("Can not replay " + operation);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> options() {
+      Object options = entry.get("options");
+      return options != null ? (Map<String, Object>) options : Collections.emptyMap();
+    }
+  }
+
+  private final List<Call> calls;
+  private final AtomicLong next = new AtomicLong();
+
+  private QueryLog(List<Call> calls) {
+    this.calls = calls;
+  }
+
+  /**
+   * @throws IllegalArgumentException if a line is not a supported call, naming the line
+   */
+  static QueryLog read(Path path) throws IOException {
+    List<Call> calls = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+      for (int lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+          continue;
+        }
+        try {
+          calls.add(parse(trimmed));
+        } catch (JsonParseException | ClassCastException | IllegalArgumentException e) {
+          throw new IllegalArgumentException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+    }
+    if (calls.isEmpty()) {
+      throw new IllegalArgumentException(path + " has no calls");
+    }
+    return new QueryLog(calls);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Call parse(String line) {
+    Map<String, Object> entry = (Map<String, Object>) JsonTypes.decode(new JsonParser().parse(line));
+    String operationName = (String) entry.get("operation");
+    String engineName = (String) entry.get("engine");
+    if (operationName == null || engineName == null) {
+      throw new IllegalArgumentException("operation and engine are required");
+    }
+    Operation operation = Operation.valueOf(operationName.toUpperCase(Locale.ROOT));
+    String required;
+    switch (operation) {
+      case SEARCH:
+      case QUERY_SUGGESTION:
+        required = "query";
+        break;
+      case MULTI_SEARCH:
+        required = "queries";
+        break;
+      case INDEX_DOCUMENTS:
+        required = "documents";
+        break;
+      default:
+        throw new IllegalArgumentException("unsupported operation " + operationName);
+    }
+    if (entry.get(required) == null) {
+      throw new IllegalArgumentException(operationName + " needs " + required);
+    }
+    return new Call(operation, engineName, entry);
+  }
+
+  int size() {
+    return calls.size();
+  }
+
+  /**
+   * @return the next call, starting over at the first one after the last
+   */
+  Call next() {
+    return calls.get((int) (next.getAndIncrement() % calls.size()));
+  }
+}
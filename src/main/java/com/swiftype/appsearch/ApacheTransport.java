@@ -0,0 +1,150 @@
+package com.swiftype.appsearch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * The default {@link Transport}, over Apache HttpClient with a pool of HTTP/1.1 connections sized by
+ * {@link ClientOptions}. Times the request phases for request listeners, and gunzips responses itself.
+ */
+class ApacheTransport implements Transport {
+  private static final InputStream EMPTY = new ByteArrayInputStream(new byte[0]);
+
+  private final RequestConfig requestConfig;
+  private final CloseableHttpClient httpClient;
+
+  ApacheTransport(ClientOptions options) {
+    this.requestConfig = options.requestConfig();
+    PoolingHttpClientConnectionManager connectionManager =
+      new PoolingHttpClientConnectionManager(options.connectionTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(options.maxConnectionsTotal());
+    connectionManager.setDefaultMaxPerRoute(options.maxConnectionsPerRoute());
+
+    HttpClientBuilder builder = HttpClients.custom()
+      .setConnectionManager(connectionManager)
+      .setKeepAliveStrategy(options.keepAliveStrategy())
+      .setDefaultRequestConfig(requestConfig)
+      .setRequestExecutor(new TimingRequestExecutor())
+      .evictExpiredConnections()
+      .evictIdleConnections(options.idleConnectionTimeoutMillis(), TimeUnit.MILLISECONDS);
+    if (!options.responseCompression()) {
+      builder.disableContentCompression();
+    }
+    this.httpClient = builder.build();
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request) throws IOException {
+    HttpDynamicRequestWithBody httpRequest = new HttpDynamicRequestWithBody(request.method(), request.url());
+    for (Map.Entry<String, String> header : request.headers().entrySet()) {
+      httpRequest.setHeader(header.getKey(), header.getValue());
+    }
+    if (request.hasBody()) {
+      httpRequest.setEntity(new BodyEntity(request));
+    }
+    long timeoutMillis = request.timeoutMillis();
+    if (timeoutMillis > 0) {
+      // the request is aborted at the deadline anyway, shorter timeouts just let it fail where it waits
+      int timeout = (int) Math.min(timeoutMillis, Integer.MAX_VALUE);
+      httpRequest.setConfig(RequestConfig.copy(requestConfig)
+        .setConnectionRequestTimeout(shorter(requestConfig.getConnectionRequestTimeout(), timeout))
+        .setConnectTimeout(shorter(requestConfig.getConnectTimeout(), timeout))
+        .setSocketTimeout(shorter(requestConfig.getSocketTimeout(), timeout))
+        .build());
+    }
+    request.onCancel(httpRequest::abort);
+
+    HttpClientContext context = null;
+    if (request.timer() != null) {
+      context = HttpClientContext.create();
+      context.setAttribute(RequestTimer.CONTEXT_ATTRIBUTE, request.timer());
+    }
+
+    CloseableHttpResponse response = httpClient.execute(httpRequest, context);
+    try {
+      HttpEntity entity = response.getEntity();
+      // a gzipped entity has already been replaced by one that decodes it, and the Content-Encoding header removed
+      return new TransportResponse(response.getStatusLine().getStatusCode(), ApiRequest.headers(response),
+        entity != null ? entity.getContent() : EMPTY) {
+        @Override
+        public void close() throws IOException {
+          // closing the content first reads the rest of the body, so the connection can go back to the pool
+          try {
+            super.close();
+          } finally {
+            response.close();
+          }
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      response.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  /**
+   * @param configured configured timeout, 0 or less for none
+   */
+  private static int shorter(int configured, int timeout) {
+    return configured > 0 ? Math.min(configured, timeout) : timeout;
+  }
+
+  /**
+   * Entity that has the request write its body straight to the connection.
+   */
+  private static class BodyEntity extends AbstractHttpEntity {
+    private final TransportRequest request;
+
+    BodyEntity(TransportRequest request) {
+      this.request = request;
+      setChunked(request.contentLength() < 0);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public long getContentLength() {
+      return request.contentLength();
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      request.writeBody(buffer);
+      return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+      request.writeBody(outStream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+      return false;
+    }
+  }
+}
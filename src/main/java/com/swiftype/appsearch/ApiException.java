@@ -0,0 +1,63 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Thrown when App Search answers a request with an unsuccessful status code.
+ */
+public class ApiException extends ClientException {
+  private static final long serialVersionUID = 4470128416370355208L;
+
+  private final int statusCode;
+  private final Map<String, String> headers;
+  private final String responseBody;
+
+  ApiException(int statusCode, Map<String, String> headers, String responseBody) {
+    super(String.format("Error: %d %s", statusCode, responseBody));
+    this.statusCode = statusCode;
+    this.headers = headers;
+    this.responseBody = responseBody;
+  }
+
+  /**
+   * @return whether a failure is a sign of an unhealthy or overloaded service: a connection error, a throttled
+   *   response or a server error
+   */
+  static boolean signalsOverload(Throwable failure) {
+    if (failure instanceof ApiException) {
+      int statusCode = ((ApiException) failure).statusCode;
+      return statusCode == 429 || statusCode >= 500;
+    }
+    return failure instanceof ClientException && failure.getCause() instanceof IOException;
+  }
+
+  /**
+   * @return http status code of the response
+   */
+  public int statusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return response headers, keyed case insensitively, with the first value of each header
+   */
+  public Map<String, String> headers() {
+    return headers;
+  }
+
+  /**
+   * @param name header name, case insensitive
+   * @return first value of the response header, or null if it is absent
+   */
+  public String header(String name) {
+    return headers.get(name);
+  }
+
+  /**
+   * @return response body, usually a JSON object with an errors array
+   */
+  public String responseBody() {
+    return responseBody;
+  }
+}
@@ -0,0 +1,335 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.ParseException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Describes a single App Search api call. Shared by {@link Client} and {@link AsyncClient} so that both build
+ * identical requests and parse responses the same way.
+ */
+final class ApiRequest<T> {
+  final Operation operation;
+  final String method;
+  final String path;
+  final Object body;
+  final BodyReader<T> bodyReader;
+  /**
+   * Whether sending the request more than once has the same effect as sending it once, which makes it safe to retry.
+   */
+  final boolean idempotent;
+
+  ApiRequest(Operation operation, String path, Object body, TypeToken<T> resultType) {
+    this(operation, path, body, json(reader -> JsonTypes.GSON.fromJson(reader, resultType.getType())));
+  }
+
+  ApiRequest(Operation operation, String path, Object body, BodyReader<T> bodyReader) {
+    this(operation, path, body, bodyReader, "GET".equals(operation.method));
+  }
+
+  ApiRequest(Operation operation, String path, Object body, BodyReader<T> bodyReader, boolean idempotent) {
+    this.operation = operation;
+    this.method = operation.method;
+    this.path = path;
+    this.body = body;
+    this.bodyReader = bodyReader;
+    this.idempotent = idempotent;
+  }
+
+  /**
+   * @return the same request, marked as safe to retry
+   */
+  ApiRequest<T> idempotent() {
+    return new ApiRequest<>(operation, path, body, bodyReader, true);
+  }
+
+  static ApiRequest<Map<String, Object>> search(String engineName, String query, Map<String, Object> options) {
+    Map<String, Object> reqBody = new HashMap<>();
+    reqBody.putAll(options);
+    reqBody.put("query", query);
+
+    return new ApiRequest<>(Operation.SEARCH, String.format("engines/%s/search", engineName), reqBody, JsonTypes.OBJECT);
+  }
+
+  /**
+   * A search whose response is decoded incrementally, handing over each result as soon as it has been read. It is
+   * never retried, since the handler may already have seen part of the results.
+   */
+  static ApiRequest<Void> search(String engineName, String query, Map<String, Object> options, SearchResultHandler handler) {
+    ApiRequest<Map<String, Object>> search = search(engineName, query, options);
+
+    return new ApiRequest<>(search.operation, search.path, search.body, json(reader -> {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("meta".equals(name)) {
+          handler.onMeta(JsonTypes.GSON.fromJson(reader, JsonTypes.OBJECT.getType()));
+        } else if ("results".equals(name)) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            handler.onResult(JsonTypes.GSON.fromJson(reader, JsonTypes.OBJECT.getType()));
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return null;
+    }), false);
+  }
+
+  /**
+   * A search whose response is kept as bytes and only decoded as it is accessed.
+   */
+  static ApiRequest<SearchResponse> typedSearch(String engineName, String query, Map<String, Object> options) {
+    ApiRequest<Map<String, Object>> search = search(engineName, query, options);
+
+    return new ApiRequest<>(search.operation, search.path, search.body, (content, charset) -> new SearchResponse(bytes(content, charset)));
+  }
+
+  @SuppressWarnings("rawtypes")
+  static ApiRequest<List<Map<String, Object>>> multiSearch(String engineName, List<Map> queries) {
+    Map<String, Object> reqBody = new HashMap<>();
+    reqBody.put("queries", queries);
+
+    return new ApiRequest<>(Operation.MULTI_SEARCH, String.format("engines/%s/multi_search", engineName), reqBody, JsonTypes.ARRAY_OF_OBJECTS).idempotent();
+  }
+
+  static ApiRequest<Map<String, Object>> querySuggestion(String engineName, String query, Map<String, Object> options) {
+    Map<String, Object> reqBody = new HashMap<>();
+    reqBody.putAll(options);
+    reqBody.put("query", query);
+
+    return new ApiRequest<>(Operation.QUERY_SUGGESTION, String.format("engines/%s/query_suggestion", engineName), reqBody, JsonTypes.OBJECT).idempotent();
+  }
+
+  static ApiRequest<Map<String, Object>> listEngines(Integer current, Integer size) {
+    Map<String, Object> pageOptions = new HashMap<>();
+    pageOptions.put("current", current);
+    pageOptions.put("size", size);
+
+    Map<String, Object> reqBody = new HashMap<>();
+    reqBody.put("page", pageOptions);
+
+    return new ApiRequest<>(Operation.LIST_ENGINES, "engines", reqBody, JsonTypes.OBJECT);
+  }
+
+  static ApiRequest<Map<String, Object>> getEngine(String engineName) {
+    return new ApiRequest<>(Operation.GET_ENGINE, String.format("engines/%s", engineName), null, JsonTypes.OBJECT);
+  }
+
+  static ApiRequest<Map<String, Object>> createEngine(String engineName) {
+    Map<String, String> reqBody = new HashMap<>();
+    reqBody.put("name", engineName);
+
+    return new ApiRequest<>(Operation.CREATE_ENGINE, "engines", reqBody, JsonTypes.OBJECT);
+  }
+
+  static ApiRequest<Map<String, Boolean>> destroyEngine(String engineName) {
+    return new ApiRequest<>(Operation.DESTROY_ENGINE, String.format("engines/%s", engineName), null, JsonTypes.OBJECT_OF_BOOLEANS);
+  }
+
+  /**
+   * Indexing is idempotent only if every document has an id, otherwise each attempt would create new documents.
+   */
+  static ApiRequest<List<Map<String, Object>>> indexDocuments(String engineName, List<Map<String, Object>> documents) {
+    ApiRequest<List<Map<String, Object>>> index =
+      new ApiRequest<>(Operation.INDEX_DOCUMENTS, String.format("engines/%s/documents", engineName), documents, JsonTypes.ARRAY_OF_OBJECTS);
+    for (Map<String, Object> document : documents) {
+      if (document.get("id") == null) {
+        return index;
+      }
+    }
+    return index.idempotent();
+  }
+
+  /**
+   * Indexes documents that are already JSON encoded. Never idempotent, since whether every document has an id is not
+   * known without parsing them.
+   */
+  static ApiRequest<List<Map<String, Object>>> indexRawDocuments(String engineName, List<ByteBuffer> documents) {
+    return new ApiRequest<>(Operation.INDEX_DOCUMENTS, String.format("engines/%s/documents", engineName), new RawJsonArray(documents), JsonTypes.ARRAY_OF_OBJECTS);
+  }
+
+  static ApiRequest<List<DocumentStatus>> typedIndexDocuments(String engineName, List<Map<String, Object>> documents) {
+    ApiRequest<List<Map<String, Object>>> index = indexDocuments(engineName, documents);
+
+    return new ApiRequest<>(index.operation, index.path, index.body, (content, charset) -> DocumentStatus.parseAll(bytes(content, charset)), index.idempotent);
+  }
+
+  static ApiRequest<List<Map<String, Object>>> getDocuments(String engineName, List<String> ids) {
+    return new ApiRequest<>(Operation.GET_DOCUMENTS, String.format("engines/%s/documents", engineName), ids, JsonTypes.ARRAY_OF_OBJECTS);
+  }
+
+  static ApiRequest<List<Map<String, Object>>> destroyDocuments(String engineName, List<String> ids) {
+    return new ApiRequest<>(Operation.DESTROY_DOCUMENTS, String.format("engines/%s/documents", engineName), ids, JsonTypes.ARRAY_OF_OBJECTS).idempotent();
+  }
+
+  /**
+   * @return http method and path, identifying the endpoint for circuit breaking
+   */
+  String endpoint() {
+    return method + " " + path;
+  }
+
+  /**
+   * Builds the http request for the non-blocking client, including authentication and client identification headers.
+   */
+  HttpDynamicRequestWithBody toHttpRequest(String baseUrl, String apiKey, Compression compression) {
+    HttpDynamicRequestWithBody request = new HttpDynamicRequestWithBody(method, baseUrl + path);
+    for (Map.Entry<String, String> header : headers(apiKey, compression).entrySet()) {
+      request.setHeader(header.getKey(), header.getValue());
+    }
+
+    if (body != null) {
+      request.setEntity(compression.entity(body));
+    }
+    return request;
+  }
+
+  /**
+   * Builds the request handed to a {@link Transport}, including authentication and client identification headers.
+   *
+   * @param timer times the request, or null if there are no request listeners
+   * @param deadline deadline of the call, or null if it has none
+   */
+  TransportRequest toTransportRequest(String baseUrl, String apiKey, Compression compression, RequestTimer timer, Deadline deadline) {
+    Map<String, String> headers = headers(apiKey, compression);
+    JsonEntity entity = body != null ? compression.entity(body) : null;
+    if (entity != null && entity.isGzipped()) {
+      headers.put(HttpHeaders.CONTENT_ENCODING, "gzip");
+      if (timer != null) {
+        timer.requestCompressed(entity.uncompressedLength());
+      }
+    }
+    return new TransportRequest(method, baseUrl + path, headers, entity, timer, deadline);
+  }
+
+  private static Map<String, String> headers(String apiKey, Compression compression) {
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("X-Swiftype-Client", "swiftype-app-search-java");
+    headers.put("X-Swiftype-Client-Version", Client.VERSION);
+    headers.put(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", apiKey));
+    headers.put(HttpHeaders.CONTENT_TYPE, "application/json");
+    if (compression.acceptGzip()) {
+      headers.put(HttpHeaders.ACCEPT_ENCODING, "gzip");
+    }
+    return headers;
+  }
+
+  /**
+   * Parses a response to this request straight from the entity stream. The entity is fully consumed afterwards so
+   * the connection can go back to the pool.
+   *
+   * @throws ApiException if the response status is not successful
+   * @throws ClientException if the body can not be parsed
+   * @throws IOException if the body can not be read
+   */
+  T parseResponse(HttpResponse response) throws ClientException, IOException {
+    HttpEntity entity = response.getEntity();
+    try (InputStream content = entity.getContent()) {
+      T result = parseResponse(response.getStatusLine().getStatusCode(), headers(response), content);
+      EntityUtils.consume(entity);
+      return result;
+    }
+  }
+
+  /**
+   * Parses a response to this request from its body, which the caller closes.
+   *
+   * @param headers response headers, keyed case insensitively
+   * @param content the response body, no longer gzipped
+   * @throws ApiException if the response status is not successful
+   * @throws ClientException if the body can not be parsed
+   * @throws IOException if the body can not be read
+   */
+  T parseResponse(int statusCode, Map<String, String> headers, InputStream content) throws ClientException, IOException {
+    Charset charset = charset(headers.get(HttpHeaders.CONTENT_TYPE));
+    if (statusCode < 200 || statusCode > 299) {
+      throw new ApiException(statusCode, Collections.unmodifiableMap(headers), new String(bytes(content, charset), UTF_8));
+    }
+
+    try {
+      return bodyReader.read(content, charset);
+    } catch (JsonParseException | IllegalStateException e) {
+      if (e.getCause() instanceof IOException && !(e.getCause() instanceof MalformedJsonException)) {
+        // the body could not be read, such as when the request was aborted, which gson reports as a syntax error
+        throw (IOException) e.getCause();
+      }
+      throw new ClientException("Error parsing response", e);
+    }
+  }
+
+  /**
+   * @return response headers, keyed case insensitively, with the first value of each header
+   */
+  static Map<String, String> headers(HttpResponse response) {
+    Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Header header : response.getAllHeaders()) {
+      headers.putIfAbsent(header.getName(), header.getValue());
+    }
+    return headers;
+  }
+
+  private static Charset charset(String contentType) {
+    try {
+      Charset charset = contentType != null ? ContentType.parse(contentType).getCharset() : null;
+      return charset != null ? charset : UTF_8;
+    } catch (ParseException | UnsupportedCharsetException e) {
+      return UTF_8;
+    }
+  }
+
+  static <T> BodyReader<T> json(ResponseReader<T> responseReader) {
+    return (content, charset) -> responseReader.read(new JsonReader(new InputStreamReader(content, charset)));
+  }
+
+  /**
+   * @return the body as UTF-8 bytes, transcoding only if the server used another charset
+   */
+  private static byte[] bytes(InputStream content, Charset charset) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = content.read(chunk)) != -1) {
+      buffer.write(chunk, 0, read);
+    }
+    return UTF_8.equals(charset) ? buffer.toByteArray() : new String(buffer.toByteArray(), charset).getBytes(UTF_8);
+  }
+
+  @FunctionalInterface
+  interface BodyReader<T> {
+    T read(InputStream content, Charset charset) throws IOException;
+  }
+
+  @FunctionalInterface
+  interface ResponseReader<T> {
+    T read(JsonReader reader) throws IOException;
+  }
+}
@@ -0,0 +1,533 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+
+/**
+ * Non-blocking api client for Swiftype App Search.
+ *
+ * <p>Every call returns immediately with a {@link CompletableFuture} that completes once the response has been
+ * parsed, or completes exceptionally with a {@link ClientException}. A small number of I/O threads, configured with
+ * {@link ClientOptions#ioThreadCount(int)}, drive all in-flight requests, while responses are parsed and futures
+ * completed on the executor of {@link ClientOptions#responseExecutor(Executor)}.
+ *
+ * @see Client
+ */
+public class AsyncClient implements Closeable {
+  private static final long EXPIRED_CONNECTION_CHECK_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final String baseUrl;
+  private final String apiKey;
+  private final PoolingNHttpClientConnectionManager connectionManager;
+  private final CloseableHttpAsyncClient httpClient;
+  private final ScheduledExecutorService scheduler;
+  private final Executor responseExecutor;
+  private final ExecutorService ownedResponseExecutor;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final ConcurrencyLimiter readLimiter;
+  private final ConcurrencyLimiter writeLimiter;
+  private final List<RequestListener> requestListeners;
+  private final Compression compression;
+  private final int pagePrefetch;
+
+  /**
+   * @param hostIdentifier host identifier to use for base url
+   * @param apiKey api key to use for authentication
+   */
+  public AsyncClient(String hostIdentifier, String apiKey) {
+    this(hostIdentifier, apiKey, new ClientOptions());
+  }
+
+  /**
+   * @param hostIdentifier host identifier to use for base url
+   * @param apiKey api key to use for authentication
+   * @param options connection and tuning options
+   */
+  public AsyncClient(String hostIdentifier, String apiKey, ClientOptions options) {
+    this(hostIdentifier, apiKey, "https://%s.api.swiftype.com/api/as/v1/", options);
+  }
+
+  /**
+   * Dev only constructor for hitting dev/private endpoints.
+   *
+   * @param hostIdentifier host identifier to use for base url
+   * @param apiKey api key to use for authentication
+   * @param baseUrlFormatString format string to build a custom base url using host identifier
+   * @param options connection and tuning options
+   */
+  public AsyncClient(String hostIdentifier, String apiKey, String baseUrlFormatString, ClientOptions options) {
+    this.baseUrl = String.format(baseUrlFormatString, hostIdentifier);
+    this.apiKey = apiKey;
+    this.retryPolicy = options.retryPolicy();
+    this.circuitBreaker = options.createCircuitBreaker();
+    this.readLimiter = options.createReadLimiter();
+    this.writeLimiter = options.createWriteLimiter();
+    this.requestListeners = options.requestListeners();
+    this.compression = options.createCompression();
+    this.pagePrefetch = options.pagePrefetch();
+
+    IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+      .setIoThreadCount(options.ioThreadCount())
+      .build();
+    try {
+      this.connectionManager = new PoolingNHttpClientConnectionManager(
+        new DefaultConnectingIOReactor(ioReactorConfig),
+        null,
+        RegistryBuilder.<SchemeIOSessionStrategy>create()
+          .register("http", NoopIOSessionStrategy.INSTANCE)
+          .register("https", SSLIOSessionStrategy.getDefaultStrategy())
+          .build(),
+        null,
+        null,
+        options.connectionTimeToLiveMillis(),
+        TimeUnit.MILLISECONDS
+      );
+    } catch (IOReactorException e) {
+      throw new IllegalStateException("Unable to start I/O reactor", e);
+    }
+    connectionManager.setMaxTotal(options.maxConnectionsTotal());
+    connectionManager.setDefaultMaxPerRoute(options.maxConnectionsPerRoute());
+
+    this.httpClient = HttpAsyncClients.custom()
+      .setConnectionManager(connectionManager)
+      .setKeepAliveStrategy(options.keepAliveStrategy())
+      .setDefaultRequestConfig(options.requestConfig())
+      .build();
+    this.httpClient.start();
+
+    long idleTimeoutMillis = options.idleConnectionTimeoutMillis();
+    // like the blocking client, a timeout of 0 or less only evicts expired connections
+    long evictionPeriodMillis = idleTimeoutMillis > 0 ? idleTimeoutMillis : EXPIRED_CONNECTION_CHECK_MILLIS;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-async-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(() -> {
+      connectionManager.closeExpiredConnections();
+      if (idleTimeoutMillis > 0) {
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+      }
+    }, evictionPeriodMillis, evictionPeriodMillis, TimeUnit.MILLISECONDS);
+
+    if (options.responseExecutor() != null) {
+      this.ownedResponseExecutor = null;
+      this.responseExecutor = options.responseExecutor();
+    } else {
+      int threads = Runtime.getRuntime().availableProcessors();
+      AtomicInteger responseThreadCount = new AtomicInteger();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "app-search-async-response-" + responseThreadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      pool.allowCoreThreadTimeOut(true);
+      this.ownedResponseExecutor = pool;
+      this.responseExecutor = pool;
+    }
+  }
+
+  /**
+   * Search for documents.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @return future search results
+   * @see Client#search(String, String)
+   */
+  public CompletableFuture<Map<String, Object>> search(String engineName, String query) {
+    return search(engineName, query, Collections.emptyMap());
+  }
+
+  /**
+   * Search for documents.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @return future search results
+   * @see Client#search(String, String, Map)
+   */
+  public CompletableFuture<Map<String, Object>> search(String engineName, String query, Map<String, Object> options) {
+    return execute(ApiRequest.search(engineName, query, options));
+  }
+
+  /**
+   * Execute multiple searches for documents.
+   *
+   * @param engineName unique engine name
+   * @param queries List of queries. see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a>.
+   * @return future search result
+   * @see Client#multiSearch(String, List)
+   */
+  public CompletableFuture<List<Map<String, Object>>> multiSearch(String engineName, @SuppressWarnings("rawtypes") List<Map> queries) {
+    return execute(ApiRequest.multiSearch(engineName, queries));
+  }
+
+  /**
+   * Requests suggestions for search query
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @return future search results
+   * @see Client#querySuggestion(String, String)
+   */
+  public CompletableFuture<Map<String, Object>> querySuggestion(String engineName, String query) {
+    return querySuggestion(engineName, query, Collections.emptyMap());
+  }
+
+  /**
+   * Requests suggestions for search query
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @return future search results
+   * @see Client#querySuggestion(String, String, Map)
+   */
+  public CompletableFuture<Map<String, Object>> querySuggestion(String engineName, String query, Map<String, Object> options) {
+    return execute(ApiRequest.querySuggestion(engineName, query, options));
+  }
+
+  /**
+   * Walks every page of search results, with the next pages already in flight while the current one is consumed.
+   * Unlike the other methods, the stream blocks while it waits for a page, but prefetching takes no extra threads.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options, page.size sets the page size
+   * @return lazily fetched search results of all pages
+   * @see Client#searchAll(String, String, Map)
+   */
+  public Stream<Map<String, Object>> searchAll(String engineName, String query, Map<String, Object> options) {
+    return new PageIterator(page -> search(engineName, query, PageIterator.withPage(options, page)),
+      pagePrefetch, PageIterator.MAX_SEARCH_PAGES).stream();
+  }
+
+  /**
+   * Walks every engine that the api key has access to, 20 per page, with the next pages already in flight.
+   *
+   * @return lazily fetched engines
+   * @see Client#allEngines()
+   */
+  public Stream<Map<String, Object>> allEngines() {
+    return allEngines(20);
+  }
+
+  /**
+   * Walks every engine that the api key has access to, with the next pages already in flight.
+   *
+   * @param size number of engines per page
+   * @return lazily fetched engines
+   * @see Client#allEngines(int)
+   */
+  public Stream<Map<String, Object>> allEngines(int size) {
+    return new PageIterator(page -> listEngines(page, size), pagePrefetch, Integer.MAX_VALUE).stream();
+  }
+
+  /**
+   * Lists the first 20 engines that the api key has access to.
+   * @return future engines list
+   */
+  public CompletableFuture<Map<String, Object>> listEngines() {
+    return listEngines(1, 20);
+  }
+
+  /**
+   * Lists engines that the api key has access to.
+   * @param current current page number
+   * @param size number of engines per page
+   * @return future engines list
+   */
+  public CompletableFuture<Map<String, Object>> listEngines(Integer current, Integer size) {
+    return execute(ApiRequest.listEngines(current, size));
+  }
+
+  /**
+   * Retrieves an engine by name.
+   * @param engineName unique engine name
+   * @return future engine
+   */
+  public CompletableFuture<Map<String, Object>> getEngine(String engineName) {
+    return execute(ApiRequest.getEngine(engineName));
+  }
+
+  /**
+   * Creates an engine with the specified name.
+   * @param engineName unique engine name
+   * @return future engine name
+   */
+  public CompletableFuture<Map<String, Object>> createEngine(String engineName) {
+    return execute(ApiRequest.createEngine(engineName));
+  }
+
+  /**
+   * Destroys an engine by name.
+   * @param engineName unique engine name
+   * @return future engine destroy status
+   */
+  public CompletableFuture<Map<String, Boolean>> destroyEngine(String engineName) {
+    return execute(ApiRequest.destroyEngine(engineName));
+  }
+
+  /**
+   * Index a single document.
+   * @param engineName unique engine name
+   * @param document A single document to index
+   * @return future document creation status, completed with an {@link InvalidDocumentException} if there were errors
+   *   in processing the document
+   */
+  public CompletableFuture<Map<String, Object>> indexDocument(String engineName, Map<String, Object> document) {
+    return indexDocuments(engineName, Arrays.asList(document)).thenApply(response -> {
+      try {
+        return Client.documentIndexingStatus(response);
+      } catch (InvalidDocumentException e) {
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+  /**
+   * Index a batch of documents.
+   *
+   * @param engineName unique engine name
+   * @param documents collection of document objects to index
+   * @return future list of document creation statuses
+   */
+  public CompletableFuture<List<Map<String, Object>>> indexDocuments(String engineName, List<Map<String, Object>> documents) {
+    return execute(ApiRequest.indexDocuments(engineName, documents));
+  }
+
+  /**
+   * Index a batch of documents that are already JSON encoded, without parsing them.
+   *
+   * @param engineName unique engine name
+   * @param documents UTF-8 encoded JSON objects, read from their position to their limit, which are left untouched
+   * @return future list of document creation statuses
+   * @see Client#indexRawDocuments(String, List)
+   */
+  public CompletableFuture<List<Map<String, Object>>> indexRawDocuments(String engineName, List<ByteBuffer> documents) {
+    return execute(ApiRequest.indexRawDocuments(engineName, documents));
+  }
+
+  /**
+   * Retrieve a batch of documents.
+   *
+   * @param engineName unique engine name
+   * @param ids batch of document ids to retrieve
+   * @return future list of document details
+   */
+  public CompletableFuture<List<Map<String, Object>>> getDocuments(String engineName, List<String> ids) {
+    return execute(ApiRequest.getDocuments(engineName, ids));
+  }
+
+  /**
+   * Destroy a batch of documents.
+   *
+   * @param engineName unique engine name
+   * @param ids batch of document ids to destroy
+   * @return future list of document deletion statuses
+   */
+  public CompletableFuture<List<Map<String, Object>>> destroyDocuments(String engineName, List<String> ids) {
+    return execute(ApiRequest.destroyDocuments(engineName, ids));
+  }
+
+  /**
+   * @return current limit and queue depth of search requests, or null if it is not enabled in {@link ClientOptions}
+   */
+  public ConcurrencyLimitStats readConcurrencyStats() {
+    return readLimiter != null ? readLimiter.stats() : null;
+  }
+
+  /**
+   * @return current limit and queue depth of document writes, or null if it is not enabled in {@link ClientOptions}
+   */
+  public ConcurrencyLimitStats writeConcurrencyStats() {
+    return writeLimiter != null ? writeLimiter.stats() : null;
+  }
+
+  /**
+   * Shuts down the I/O reactor and connection pool. Pending requests are cancelled.
+   *
+   * @throws IOException if the client fails to shut down
+   */
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdownNow();
+    httpClient.close();
+    if (ownedResponseExecutor != null) {
+      ownedResponseExecutor.shutdownNow();
+    }
+  }
+
+  <T> CompletableFuture<T> execute(ApiRequest<T> apiRequest) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    execute(apiRequest, 1, result);
+    return result;
+  }
+
+  /**
+   * Sends one attempt of a request, scheduling the next attempt on failure as long as the retry policy allows.
+   */
+  private <T> void execute(ApiRequest<T> apiRequest, int attempt, CompletableFuture<T> result) {
+    if (result.isDone()) {
+      return;
+    }
+    ConcurrencyLimiter limiter = apiRequest.operation.isSearch() ? readLimiter : apiRequest.operation.isDocumentWrite() ? writeLimiter : null;
+    CompletableFuture<T> response = limiter == null
+      ? sendAttempt(apiRequest, attempt)
+      : limiter.acquireAsync(scheduler).thenCompose(permit -> {
+        return sendAttempt(apiRequest, attempt).whenComplete((value, failure) -> permit.release(unwrap(failure)));
+      });
+
+    response.whenComplete((value, failure) -> {
+      if (failure == null) {
+        result.complete(value);
+        return;
+      }
+      Throwable cause = unwrap(failure);
+      long delayMillis = retryPolicy != null && cause instanceof ClientException
+        ? retryPolicy.delayMillis(apiRequest, (ClientException) cause, attempt)
+        : -1;
+      if (delayMillis < 0) {
+        result.completeExceptionally(cause);
+        return;
+      }
+      try {
+        scheduler.schedule(() -> execute(apiRequest, attempt + 1, result), delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(cause);
+      }
+    });
+  }
+
+  private <T> CompletableFuture<T> sendAttempt(ApiRequest<T> apiRequest, int attempt) {
+    if (circuitBreaker == null) {
+      return send(apiRequest, attempt);
+    }
+    try {
+      circuitBreaker.acquire(apiRequest.endpoint());
+    } catch (CircuitOpenException e) {
+      CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    return send(apiRequest, attempt).whenComplete((value, failure) -> circuitBreaker.record(apiRequest.endpoint(), unwrap(failure)));
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+  }
+
+  /**
+   * Sends a request. Only the response parsing phase is timed separately, the I/O reactor does not expose the
+   * others. The response is buffered by the time it is received, so it is parsed on the response executor.
+   */
+  private <T> CompletableFuture<T> send(ApiRequest<T> apiRequest, int attempt) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    HttpDynamicRequestWithBody request = apiRequest.toHttpRequest(baseUrl, apiKey, compression);
+    RequestTimer timer = requestListeners.isEmpty() ? null : new RequestTimer(requestListeners, apiRequest, attempt);
+    JsonEntity entity = (JsonEntity) request.getEntity();
+    if (timer != null && entity != null) {
+      if (entity.isGzipped()) {
+        timer.requestCompressed(entity.uncompressedLength());
+      }
+      request.setEntity(new CountingEntity(entity, timer::addRequestBytes));
+    }
+
+    try {
+      httpClient.execute(request, callback(apiRequest, timer, result));
+    } catch (IllegalStateException e) {
+      // the I/O reactor refuses requests once the client is closed
+      result.completeExceptionally(RequestTimer.finish(timer, new ClientException("Client is closed", e)));
+    }
+    return result;
+  }
+
+  private <T> FutureCallback<HttpResponse> callback(ApiRequest<T> apiRequest, RequestTimer timer, CompletableFuture<T> result) {
+    return new FutureCallback<HttpResponse>() {
+      @Override
+      public void completed(HttpResponse response) {
+        if (timer != null) {
+          long responseBytes = response.getEntity() != null ? response.getEntity().getContentLength() : 0;
+          timer.responseReceived(response.getStatusLine().getStatusCode(), responseBytes);
+        }
+        offIoThread(() -> parse(response));
+      }
+
+      private void parse(HttpResponse response) {
+        // the async client leaves content encoding alone, the buffered body is inflated while it is parsed
+        if (Compression.decompress(response) && timer != null) {
+          timer.responseCompressed();
+          response.setEntity(new CountingEntity(response.getEntity(), timer::addUncompressedResponseBytes));
+        }
+        try {
+          T value = apiRequest.parseResponse(response);
+          if (timer != null) {
+            timer.finish(null);
+          }
+          result.complete(value);
+        } catch (ClientException e) {
+          result.completeExceptionally(RequestTimer.finish(timer, e));
+        } catch (IOException | RuntimeException e) {
+          result.completeExceptionally(RequestTimer.finish(timer, new ClientException("Error making http request", e)));
+        }
+      }
+
+      @Override
+      public void failed(Exception e) {
+        offIoThread(() -> result.completeExceptionally(
+          RequestTimer.finish(timer, new ClientException("Error making http request", e))));
+      }
+
+      @Override
+      public void cancelled() {
+        offIoThread(() -> result.cancel(false));
+      }
+    };
+  }
+
+  /**
+   * Runs what completes a future on the response executor, so that neither parsing nor the stages that depend on the
+   * future run on an I/O thread. Runs it on the calling thread once the executor is shut down.
+   */
+  private void offIoThread(Runnable completion) {
+    try {
+      responseExecutor.execute(completion);
+    } catch (RejectedExecutionException e) {
+      completion.run();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.swiftype.appsearch;
+
+/**
+ * Tuning options for {@link Client#getDocumentsBulk} and {@link Client#destroyDocumentsBulk}. All setters return
+ * this instance so options can be chained.
+ */
+public class BulkDocumentsOptions {
+  private int chunkSize = 100;
+  private int parallelism = 4;
+  private boolean ordered = true;
+
+  /**
+   * @param chunkSize maximum number of ids per request, App Search accepts at most 100
+   * @return these options
+   */
+  public BulkDocumentsOptions chunkSize(int chunkSize) {
+    if (chunkSize < 1 || chunkSize > 100) {
+      throw new IllegalArgumentException("chunkSize must be between 1 and 100");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * @param parallelism maximum number of requests in flight at a time
+   * @return these options
+   */
+  public BulkDocumentsOptions parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Hands results to the consumer in the order of the ids, the default. Otherwise chunks are handed over as soon as
+   * they complete, so one slow request does not hold back the others.
+   *
+   * @param ordered whether to keep results in the order of the ids
+   * @return these options
+   */
+  public BulkDocumentsOptions ordered(boolean ordered) {
+    this.ordered = ordered;
+    return this;
+  }
+
+  int chunkSize() {
+    return chunkSize;
+  }
+
+  int parallelism() {
+    return parallelism;
+  }
+
+  boolean ordered() {
+    return ordered;
+  }
+}
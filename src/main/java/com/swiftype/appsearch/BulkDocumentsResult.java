@@ -0,0 +1,63 @@
+package com.swiftype.appsearch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of {@link Client#getDocumentsBulk} or {@link Client#destroyDocumentsBulk}, aggregated over every chunk.
+ */
+public class BulkDocumentsResult {
+  private final long requests;
+  private final long succeeded;
+  private final List<String> missingIds;
+  private final Map<String, ClientException> failedIds;
+
+  BulkDocumentsResult(long requests, long succeeded, List<String> missingIds, Map<String, ClientException> failedIds) {
+    this.requests = requests;
+    this.succeeded = succeeded;
+    this.missingIds = Collections.unmodifiableList(missingIds);
+    this.failedIds = Collections.unmodifiableMap(failedIds);
+  }
+
+  /**
+   * @return number of requests sent, one per chunk
+   */
+  public long requests() {
+    return requests;
+  }
+
+  /**
+   * @return number of ids that were found, or destroyed
+   */
+  public long succeeded() {
+    return succeeded;
+  }
+
+  /**
+   * @return ids of documents that do not exist, in the order they were handed to the consumer
+   */
+  public List<String> missingIds() {
+    return missingIds;
+  }
+
+  /**
+   * @return ids whose request failed, with the reason, the consumer was not called for them
+   */
+  public Map<String, ClientException> failedIds() {
+    return failedIds;
+  }
+
+  /**
+   * @return true if the request for any chunk failed
+   */
+  public boolean hasFailures() {
+    return !failedIds.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("BulkDocumentsResult{requests=%d, succeeded=%d, missing=%d, failed=%d}",
+      requests, succeeded, missingIds.size(), failedIds.size());
+  }
+}
@@ -0,0 +1,195 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Indexes an arbitrary number of documents by packing them into batches that respect the App Search document count
+ * and payload size limits, and sending those batches concurrently.
+ *
+ * <pre>
+ * try (BulkIndexer indexer = new BulkIndexer(client, "favorite-videos", new BulkIndexerOptions(), listener)) {
+ *   for (Map&lt;String, Object&gt; document : documents) {
+ *     indexer.add(document);
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>At most {@link BulkIndexerOptions#maxInFlightBatches(int)} batches are queued or in flight at a time, once that
+ * limit is reached {@link #add(Map)} blocks until a batch completes.
+ */
+public class BulkIndexer implements Closeable {
+  /**
+   * Receives the outcome of every batch, on a worker thread.
+   */
+  public interface Listener {
+    /**
+     * @param documents the documents sent in the batch
+     * @param statuses the per-document statuses returned by App Search, in the same order, including any errors
+     */
+    void onBatchIndexed(List<Map<String, Object>> documents, List<Map<String, Object>> statuses);
+
+    /**
+     * @param documents the documents sent in the batch
+     * @param e the reason the request failed, or wrapping what {@link #onBatchIndexed} threw
+     */
+    void onBatchFailed(List<Map<String, Object>> documents, ClientException e);
+  }
+
+  private final Client client;
+  private final String engineName;
+  private final BulkIndexerOptions options;
+  private final Listener listener;
+  private final ExecutorService executor;
+  private final Semaphore inFlightBatches;
+
+  private List<Map<String, Object>> batch = new ArrayList<>();
+  private long batchBytes = 2;
+  private boolean closed;
+
+  /**
+   * @param client client used to send batches
+   * @param engineName unique engine name
+   * @param options batching and concurrency options
+   * @param listener receives per-batch results
+   */
+  public BulkIndexer(Client client, String engineName, BulkIndexerOptions options, Listener listener) {
+    this.client = client;
+    this.engineName = engineName;
+    this.options = options;
+    this.listener = listener;
+    this.inFlightBatches = new Semaphore(options.maxInFlightBatches());
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(options.workerThreads(), runnable -> {
+      Thread thread = new Thread(runnable, "app-search-bulk-indexer-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Adds a document to the current batch, first sending the batch if it is full or the document does not fit in it.
+   *
+   * @param document document to index
+   * @throws InterruptedException if interrupted while waiting for a batch to complete, the document is then not added
+   *   and the current batch is kept to be sent later
+   */
+  public synchronized void add(Map<String, Object> document) throws InterruptedException {
+    if (closed) {
+      throw new IllegalStateException("BulkIndexer is closed");
+    }
+
+    long documentBytes = JsonTypes.serializedSize(document) + 1;
+    if (!batch.isEmpty()
+      && (batch.size() >= options.maxBatchDocuments() || batchBytes + documentBytes > options.maxBatchBytes())) {
+      sendBatch();
+    }
+    batch.add(document);
+    batchBytes += documentBytes;
+  }
+
+  /**
+   * @param documents documents to index
+   * @throws InterruptedException if interrupted while waiting for a batch to complete
+   */
+  public void addAll(Iterator<Map<String, Object>> documents) throws InterruptedException {
+    while (documents.hasNext()) {
+      add(documents.next());
+    }
+  }
+
+  /**
+   * @param documents documents to index
+   * @throws InterruptedException if interrupted while waiting for a batch to complete
+   */
+  public void addAll(Stream<Map<String, Object>> documents) throws InterruptedException {
+    addAll(documents.iterator());
+  }
+
+  /**
+   * Sends the current partial batch and waits until every batch sent so far has completed.
+   *
+   * @throws InterruptedException if interrupted while waiting, a batch not sent yet is kept to be sent later
+   */
+  public synchronized void flush() throws InterruptedException {
+    if (!batch.isEmpty()) {
+      sendBatch();
+    }
+    inFlightBatches.acquire(options.maxInFlightBatches());
+    inFlightBatches.release(options.maxInFlightBatches());
+  }
+
+  /**
+   * Flushes outstanding documents and stops the worker threads.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closed = true;
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Waits until the worker threads have stopped after {@link #close()}.
+   *
+   * @param timeout maximum time to wait
+   * @param unit unit of timeout
+   * @return true if the workers stopped, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executor.awaitTermination(timeout, unit);
+  }
+
+  private void sendBatch() throws InterruptedException {
+    // the batch is only detached once it has a permit, an interrupted wait leaves it in place
+    inFlightBatches.acquire();
+    List<Map<String, Object>> documents = batch;
+    batch = new ArrayList<>();
+    batchBytes = 2;
+
+    try {
+      executor.execute(() -> {
+        try {
+          listener.onBatchIndexed(documents, client.indexDocuments(engineName, documents));
+        } catch (ClientException e) {
+          notifyFailed(documents, e);
+        } catch (RuntimeException e) {
+          // such as a failing listener, which would otherwise only end up with the uncaught exception handler
+          notifyFailed(documents, new ClientException("Error indexing batch", e));
+        } finally {
+          inFlightBatches.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      inFlightBatches.release();
+      throw e;
+    }
+  }
+
+  private void notifyFailed(List<Map<String, Object>> documents, ClientException e) {
+    try {
+      listener.onBatchFailed(documents, e);
+    } catch (RuntimeException listenerFailure) {
+      // nowhere left to report it, the worker moves on to the next batch
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.swiftype.appsearch;
+
+/**
+ * Tuning options for a {@link BulkIndexer}. All setters return this instance so options can be chained.
+ */
+public class BulkIndexerOptions {
+  private int maxBatchDocuments = 100;
+  private long maxBatchBytes = 10 * 1024 * 1024;
+  private int workerThreads = 2;
+  private int maxInFlightBatches = 4;
+
+  /**
+   * @param maxBatchDocuments maximum number of documents per request, App Search accepts at most 100
+   * @return these options
+   */
+  public BulkIndexerOptions maxBatchDocuments(int maxBatchDocuments) {
+    if (maxBatchDocuments < 1 || maxBatchDocuments > 100) {
+      throw new IllegalArgumentException("maxBatchDocuments must be between 1 and 100");
+    }
+    this.maxBatchDocuments = maxBatchDocuments;
+    return this;
+  }
+
+  /**
+   * @param maxBatchBytes maximum serialized size of a request body in bytes
+   * @return these options
+   */
+  public BulkIndexerOptions maxBatchBytes(long maxBatchBytes) {
+    if (maxBatchBytes < 1) {
+      throw new IllegalArgumentException("maxBatchBytes must be positive");
+    }
+    this.maxBatchBytes = maxBatchBytes;
+    return this;
+  }
+
+  /**
+   * @param workerThreads number of threads sending batches
+   * @return these options
+   */
+  public BulkIndexerOptions workerThreads(int workerThreads) {
+    if (workerThreads < 1) {
+      throw new IllegalArgumentException("workerThreads must be positive");
+    }
+    this.workerThreads = workerThreads;
+    return this;
+  }
+
+  /**
+   * @param maxInFlightBatches maximum number of batches queued or being sent, producers block beyond this
+   * @return these options
+   */
+  public BulkIndexerOptions maxInFlightBatches(int maxInFlightBatches) {
+    if (maxInFlightBatches < 1) {
+      throw new IllegalArgumentException("maxInFlightBatches must be positive");
+    }
+    this.maxInFlightBatches = maxInFlightBatches;
+    return this;
+  }
+
+  int maxBatchDocuments() {
+    return maxBatchDocuments;
+  }
+
+  long maxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  int workerThreads() {
+    return workerThreads;
+  }
+
+  int maxInFlightBatches() {
+    return maxInFlightBatches;
+  }
+}
@@ -0,0 +1,74 @@
+package com.swiftype.appsearch;
+
+/**
+ * Point in time counters of the client side search cache.
+ *
+ * @see Client#searchCacheStats()
+ */
+public class CacheStats {
+  private final long hits;
+  private final long staleHits;
+  private final long misses;
+  private final long evictions;
+  private final long entries;
+  private final long estimatedBytes;
+
+  CacheStats(long hits, long staleHits, long misses, long evictions, long entries, long estimatedBytes) {
+    this.hits = hits;
+    this.staleHits = staleHits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.entries = entries;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * @return number of lookups answered with a fresh entry
+   */
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * @return number of lookups answered with an expired entry while it was refreshed in the background
+   */
+  public long staleHits() {
+    return staleHits;
+  }
+
+  /**
+   * @return number of lookups that had to go to the api
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * @return number of entries removed to stay within the size bounds
+   */
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of entries currently cached
+   */
+  public long entries() {
+    return entries;
+  }
+
+  /**
+   * @return estimated size of the cached responses, based on their serialized JSON size
+   */
+  public long estimatedBytes() {
+    return estimatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "CacheStats{hits=%d, staleHits=%d, misses=%d, evictions=%d, entries=%d, estimatedBytes=%d}",
+      hits, staleHits, misses, evictions, entries, estimatedBytes
+    );
+  }
+}
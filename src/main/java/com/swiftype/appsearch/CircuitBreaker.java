@@ -0,0 +1,98 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per endpoint circuit breakers. After a number of consecutive failures an endpoint's circuit opens and calls fail
+ * with a {@link CircuitOpenException} without being sent. Once the open duration has passed a single trial call is
+ * let through: if it succeeds the circuit closes again, otherwise it stays open for another open duration.
+ *
+ * <p>Only signs of an unhealthy service count as failures: connection errors, throttling and server errors. Any other
+ * response, including client errors, counts as a success.
+ */
+class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openNanos;
+  private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+  CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = unit.toNanos(openDuration);
+  }
+
+  <T> T call(String endpoint, ClientCallable<T> call) throws ClientException {
+    acquire(endpoint);
+    T result;
+    try {
+      result = call.call();
+    } catch (ClientException | RuntimeException e) {
+      record(endpoint, e);
+      throw e;
+    }
+    record(endpoint, null);
+    return result;
+  }
+
+  /**
+   * Reserves a call to an endpoint, which must be followed by {@link #record(String, Throwable)} once it completes.
+   *
+   * @throws CircuitOpenException if the endpoint's circuit is open
+   */
+  void acquire(String endpoint) throws CircuitOpenException {
+    if (!circuits.computeIfAbsent(endpoint, key -> new Circuit()).tryAcquire(System.nanoTime())) {
+      throw new CircuitOpenException(endpoint);
+    }
+  }
+
+  /**
+   * @param failure why the call failed, or null if it succeeded
+   */
+  void record(String endpoint, Throwable failure) {
+    Circuit circuit = circuits.get(endpoint);
+    if (ApiException.signalsOverload(failure)) {
+      circuit.onFailure(System.nanoTime());
+    } else if (failure == null || failure instanceof ApiException) {
+      circuit.onSuccess();
+    } else {
+      circuit.onNeither();
+    }
+  }
+
+  private class Circuit {
+    private int consecutiveFailures;
+    private boolean open;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    synchronized boolean tryAcquire(long now) {
+      if (!open) {
+        return true;
+      }
+      if (now - openUntil < 0 || trialInFlight) {
+        return false;
+      }
+      trialInFlight = true;
+      return true;
+    }
+
+    synchronized void onSuccess() {
+      consecutiveFailures = 0;
+      open = false;
+      trialInFlight = false;
+    }
+
+    synchronized void onFailure(long now) {
+      trialInFlight = false;
+      if (open || ++consecutiveFailures >= failureThreshold) {
+        open = true;
+        openUntil = now + openNanos;
+      }
+    }
+
+    synchronized void onNeither() {
+      trialInFlight = false;
+    }
+  }
+}
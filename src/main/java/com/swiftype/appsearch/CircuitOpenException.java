@@ -0,0 +1,24 @@
+package com.swiftype.appsearch;
+
+/**
+ * Thrown without sending a request while the circuit breaker for its endpoint is open.
+ *
+ * @see ClientOptions#circuitBreaker(int, long, java.util.concurrent.TimeUnit)
+ */
+public class CircuitOpenException extends ClientException {
+  private static final long serialVersionUID = -6139281937446512409L;
+
+  private final String endpoint;
+
+  CircuitOpenException(String endpoint) {
+    super(String.format("Circuit breaker open for %s", endpoint));
+    this.endpoint = endpoint;
+  }
+
+  /**
+   * @return http method and path of the failing endpoint, such as "POST engines/my-engine/documents"
+   */
+  public String endpoint() {
+    return endpoint;
+  }
+}
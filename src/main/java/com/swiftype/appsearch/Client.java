@@ -1,44 +1,81 @@
 package com.swiftype.appsearch;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
-import org.apache.http.Consts;
 import org.apache.http.HttpHeaders;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 /**
  * Api client for Swiftype App Search.
  *
+ * <p>Each client owns a pool of keep-alive connections, so a single instance should be shared and
+ * {@link #close() closed} once it is no longer needed.
+ *
  * @see <a href="https://swiftype.com/documentation/app-search/">https://swiftype.com/documentation/app-search/</a>
  */
-public class Client {
+public class Client implements Closeable {
+  private static final long INTERRUPT_CHECK_MILLIS = 10;
+
   // Remember to also update version in build.gradle!
-  private final String VERSION = "0.4.1";
+  static final String VERSION = "0.4.1";
 
   private final String baseUrl;
   private final String apiKey;
+  private final Transport transport;
+  private final SearchCache searchCache;
+  private final TypeaheadCache typeaheadCache;
+  private final RequestCoalescer requestCoalescer;
+  private final SearchBatcher searchBatcher;
+  private final RetryPolicy retryPolicy;
+  private final CircuitBreaker circuitBreaker;
+  private final ConcurrencyLimiter readLimiter;
+  private final ConcurrencyLimiter writeLimiter;
+  private final List<RequestListener> requestListeners;
+  private final Compression compression;
+  private final int pagePrefetch;
+  private final ExecutorService workerExecutor;
+  private final Hedger hedger;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final Map<TransportRequest, Thread> inFlight = new ConcurrentHashMap<>();
+  private final Object interruptCheckLock = new Object();
+  private ScheduledFuture<?> interruptCheck;
+  private volatile boolean closed;
 
   /**
    * @param hostIdentifier host identifier to use for base url
    * @param apiKey api key to use for authentication
    */
   public Client(String hostIdentifier, String apiKey) {
-    this(hostIdentifier, apiKey, "https://%s.api.swiftype.com/api/as/v1/");
+    this(hostIdentifier, apiKey, new ClientOptions());
+  }
+
+  /**
+   * @param hostIdentifier host identifier to use for base url
+   * @param apiKey api key to use for authentication
+   * @param options connection and tuning options
+   */
+  public Client(String hostIdentifier, String apiKey, ClientOptions options) {
+    this(hostIdentifier, apiKey, "https://%s.api.swiftype.com/api/as/v1/", options);
   }
 
   /**
@@ -49,8 +86,45 @@ public class Client {
    * @param baseUrlFormatString format string to build a custom base url using host identifier
    */
   public Client(String hostIdentifier, String apiKey, String baseUrlFormatString) {
+    this(hostIdentifier, apiKey, baseUrlFormatString, new ClientOptions());
+  }
+
+  /**
+   * Dev only constructor for hitting dev/private endpoints.
+   *
+   * @param hostIdentifier host identifier to use for base url
+   * @param apiKey api key to use for authentication
+   * @param baseUrlFormatString format string to build a custom base url using host identifier
+   * @param options connection and tuning options
+   */
+  public Client(String hostIdentifier, String apiKey, String baseUrlFormatString, ClientOptions options) {
     this.baseUrl = String.format(baseUrlFormatString, hostIdentifier);
     this.apiKey = apiKey;
+    this.transport = options.createTransport();
+    this.searchCache = options.createSearchCache();
+    this.typeaheadCache = options.createTypeaheadCache();
+    this.requestCoalescer = options.createRequestCoalescer();
+    this.searchBatcher = options.createSearchBatcher(this);
+    this.retryPolicy = options.retryPolicy();
+    this.circuitBreaker = options.createCircuitBreaker();
+    this.readLimiter = options.createReadLimiter();
+    this.writeLimiter = options.createWriteLimiter();
+    this.requestListeners = options.requestListeners();
+    this.compression = options.createCompression();
+    this.pagePrefetch = options.pagePrefetch();
+    AtomicInteger workerThreadCount = new AtomicInteger();
+    this.workerExecutor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-worker-" + workerThreadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "app-search-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.setRemoveOnCancelPolicy(true);
+    this.hedger = options.createHedger(workerExecutor, scheduler);
   }
 
   /**
@@ -75,11 +149,59 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Object> search(String engineName, String query, Map<String, Object> options) throws ClientException {
-    Map<String, Object> reqBody = new HashMap<>();
-    reqBody.putAll(options);
-    reqBody.put("query", query);
+    ApiRequest<Map<String, Object>> apiRequest = ApiRequest.search(engineName, query, options);
+    if (searchBatcher != null) {
+      return readRequest(engineName, apiRequest, () -> searchBatcher.search(engineName, query, options));
+    }
+    return readRequest(engineName, apiRequest);
+  }
 
-    return makeJsonRequest("GET", String.format("engines/%s/search", engineName), reqBody, JsonTypes.OBJECT);
+  /**
+   * Search for documents, streaming each result to a handler as soon as it has been decoded instead of building the
+   * full response in memory first.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @param handler receives the response metadata and each result, on the calling thread
+   * @throws ClientException if the api request fails
+   */
+  public void search(String engineName, String query, Map<String, Object> options, SearchResultHandler handler) throws ClientException {
+    makeJsonRequest(ApiRequest.search(engineName, query, options, handler));
+  }
+
+  /**
+   * Search for documents, returning a typed response that decodes fields only as they are accessed.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @return search response
+   * @throws ClientException if the api request fails
+   */
+  public SearchResponse searchTyped(String engineName, String query, Map<String, Object> options) throws ClientException {
+    return makeJsonRequest(ApiRequest.typedSearch(engineName, query, options));
+  }
+
+  /**
+   * Search for documents, returning only the raw values of the given fields.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @param rawFields fields to include in each result, overriding any result_fields option
+   * @return search response
+   * @throws ClientException if the api request fails
+   */
+  public SearchResponse searchTyped(String engineName, String query, Map<String, Object> options, Collection<String> rawFields) throws ClientException {
+    Map<String, Object> resultFields = new HashMap<>();
+    for (String field : rawFields) {
+      resultFields.put(field, Collections.singletonMap("raw", new HashMap<>()));
+    }
+
+    Map<String, Object> projectedOptions = new HashMap<>(options);
+    projectedOptions.put("result_fields", resultFields);
+    return searchTyped(engineName, query, projectedOptions);
   }
 
   /**
@@ -91,10 +213,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public List<Map<String, Object>> multiSearch(String engineName, List<Map> queries) throws ClientException {
-    Map<String, Object> reqBody = new HashMap<>();
-    reqBody.put("queries", queries);
-
-    return makeJsonRequest("POST", String.format("engines/%s/multi_search", engineName), reqBody, JsonTypes.ARRAY_OF_OBJECTS);
+    return readRequest(engineName, ApiRequest.multiSearch(engineName, queries));
   }
 
   /**
@@ -119,11 +238,65 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Object> querySuggestion(String engineName, String query, Map<String, Object> options) throws ClientException {
-    Map<String, Object> reqBody = new HashMap<>();
-    reqBody.putAll(options);
-    reqBody.put("query", query);
+    ClientCallable<Map<String, Object>> send = () -> readRequest(engineName, ApiRequest.querySuggestion(engineName, query, options));
+    return typeaheadCache != null ? typeaheadCache.get(engineName, query, options, send) : send.call();
+  }
 
-    return makeJsonRequest("POST", String.format("engines/%s/query_suggestion", engineName), reqBody, JsonTypes.OBJECT);
+  /**
+   * Starts sending the query suggestions of a search box, where only the latest of the keystrokes made while a
+   * request is in flight is sent. Answered from the typeahead cache if it is enabled in {@link ClientOptions}.
+   *
+   * @param engineName unique engine name
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options.
+   * @return a session for one search box
+   */
+  public TypeaheadSession typeaheadSession(String engineName, Map<String, Object> options) {
+    return new TypeaheadSession(this, engineName, options, typeaheadCache, workerExecutor);
+  }
+
+  /**
+   * Walks every page of search results, fetching the next pages in the background while the current one is consumed
+   * (see {@link ClientOptions#pagePrefetch}). App Search serves at most 100 pages, so use a page size that covers
+   * the results needed. Close the stream when stopping early, to cancel pages still being fetched:
+   *
+   * <pre>
+   * try (Stream&lt;Map&lt;String, Object&gt;&gt; results = client.searchAll("engine", "cat", options)) {
+   *   results.forEach(result -&gt; ...);
+   * }
+   * </pre>
+   *
+   * Request failures are thrown from the stream as an {@link UncheckedClientException}.
+   *
+   * @param engineName unique engine name
+   * @param query search query string
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options, page.size sets the page size
+   * @return lazily fetched search results of all pages
+   */
+  public Stream<Map<String, Object>> searchAll(String engineName, String query, Map<String, Object> options) {
+    return new PageIterator(page -> workerExecutor.submit(() -> search(engineName, query, PageIterator.withPage(options, page))),
+      pagePrefetch, PageIterator.MAX_SEARCH_PAGES).stream();
+  }
+
+  /**
+   * Walks every engine that the api key has access to, 20 per page, fetching the next pages in the background.
+   *
+   * @return lazily fetched engines
+   * @see #searchAll(String, String, Map)
+   */
+  public Stream<Map<String, Object>> allEngines() {
+    return allEngines(20);
+  }
+
+  /**
+   * Walks every engine that the api key has access to, fetching the next pages in the background.
+   *
+   * @param size number of engines per page
+   * @return lazily fetched engines
+   * @see #searchAll(String, String, Map)
+   */
+  public Stream<Map<String, Object>> allEngines(int size) {
+    return new PageIterator(page -> workerExecutor.submit(() -> listEngines(page, size)), pagePrefetch, Integer.MAX_VALUE)
+      .stream();
   }
 
   /**
@@ -143,14 +316,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Object> listEngines(Integer current, Integer size) throws ClientException {
-    Map<String, Object> pageOptions = new HashMap<>();
-    pageOptions.put("current", current);
-    pageOptions.put("size", size);
-
-    Map<String, Object> reqBody = new HashMap<>();
-    reqBody.put("page", pageOptions);
-
-    return makeJsonRequest("GET", "engines", reqBody, JsonTypes.OBJECT);
+    return makeJsonRequest(ApiRequest.listEngines(current, size));
   }
 
   /**
@@ -160,7 +326,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Object> getEngine(String engineName) throws ClientException {
-    return makeJsonRequest("GET", String.format("engines/%s", engineName), null, JsonTypes.OBJECT);
+    return makeJsonRequest(ApiRequest.getEngine(engineName));
   }
 
   /**
@@ -170,10 +336,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Object> createEngine(String engineName) throws ClientException {
-    Map<String, String> reqBody = new HashMap<>();
-    reqBody.put("name", engineName);
-
-    return makeJsonRequest("POST", "engines", reqBody, JsonTypes.OBJECT);
+    return makeJsonRequest(ApiRequest.createEngine(engineName));
   }
 
   /**
@@ -183,12 +346,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public Map<String, Boolean> destroyEngine(String engineName) throws ClientException {
-    Map<String, Object> response = makeJsonRequest("DELETE", String.format("engines/%s", engineName), null, JsonTypes.OBJECT);
-    Map<String, Boolean> convertedResponse = new HashMap<>();
-    for (Map.Entry<String, Object> e : response.entrySet()) {
-      convertedResponse.put(e.getKey(), (Boolean) e.getValue());
-    }
-    return convertedResponse;
+    return writeRequest(engineName, ApiRequest.destroyEngine(engineName));
   }
 
   /**
@@ -200,18 +358,7 @@ public class Client {
    */
   public Map<String, Object> indexDocument(String engineName, Map<String, Object> document) throws ClientException {
     List<Map<String, Object>> documents = Arrays.asList(document);
-    List<Map<String, Object>> response = indexDocuments(engineName, documents);
-
-    Map<String, Object> documentIndexingStatus = response.get(0);
-
-    @SuppressWarnings("unchecked")
-    List<String> errors = (List<String>) documentIndexingStatus.remove("errors");
-    if (errors.size() > 0) {
-      String errorMessage = String.format("Invalid document: %s", String.join("; ", errors));
-      throw new InvalidDocumentException(errorMessage);
-    }
-
-    return documentIndexingStatus;
+    return documentIndexingStatus(indexDocuments(engineName, documents));
   }
 
   /**
@@ -223,7 +370,33 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public List<Map<String, Object>> indexDocuments(String engineName, List<Map<String, Object>> documents) throws ClientException {
-    return makeJsonRequest("POST", String.format("engines/%s/documents", engineName), documents, JsonTypes.ARRAY_OF_OBJECTS);
+    return writeRequest(engineName, ApiRequest.indexDocuments(engineName, documents));
+  }
+
+  /**
+   * Index a batch of documents that are already JSON encoded, without parsing them. The request is not retried by the
+   * {@link RetryPolicy}, since documents without an id would be created twice.
+   *
+   * @param engineName unique engine name
+   * @param documents UTF-8 encoded JSON objects, read from their position to their limit, which are left untouched
+   * @return list of document creation statuses
+   * @throws ClientException if the api request fails
+   * @see NdjsonImporter
+   */
+  public List<Map<String, Object>> indexRawDocuments(String engineName, List<ByteBuffer> documents) throws ClientException {
+    return writeRequest(engineName, ApiRequest.indexRawDocuments(engineName, documents));
+  }
+
+  /**
+   * Index a batch of documents, returning typed statuses.
+   *
+   * @param engineName unique engine name
+   * @param documents collection of document objects to index
+   * @return list of document creation statuses, in the order of documents
+   * @throws ClientException if the api request fails
+   */
+  public List<DocumentStatus> indexDocumentsTyped(String engineName, List<Map<String, Object>> documents) throws ClientException {
+    return writeRequest(engineName, ApiRequest.typedIndexDocuments(engineName, documents));
   }
 
   /**
@@ -235,7 +408,7 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public List<Map<String, Object>> getDocuments(String engineName, List<String> ids) throws ClientException {
-    return makeJsonRequest("GET", String.format("engines/%s/documents", engineName), ids, JsonTypes.ARRAY_OF_OBJECTS);
+    return makeJsonRequest(ApiRequest.getDocuments(engineName, ids));
   }
 
   /**
@@ -247,7 +420,42 @@ public class Client {
    * @throws ClientException if the api request fails
    */
   public List<Map<String, Object>> destroyDocuments(String engineName, List<String> ids) throws ClientException {
-    return makeJsonRequest("DELETE", String.format("engines/%s/documents", engineName), ids, JsonTypes.ARRAY_OF_OBJECTS);
+    return writeRequest(engineName, ApiRequest.destroyDocuments(engineName, ids));
+  }
+
+  /**
+   * Retrieves any number of documents, in chunks of at most 100 ids sent concurrently. The consumer receives every
+   * id with its document, or null if it does not exist, on the calling thread. Ids whose request failed are not
+   * handed to the consumer, but reported in the result.
+   *
+   * @param engineName unique engine name
+   * @param ids document ids to retrieve, read lazily
+   * @param options chunking and parallelism options
+   * @param consumer receives each id and its document, may be null
+   * @return counts, missing ids and failed ids
+   * @throws InterruptedException if interrupted while waiting, requests still in flight are cancelled
+   */
+  public BulkDocumentsResult getDocumentsBulk(String engineName, Iterable<String> ids, BulkDocumentsOptions options,
+                                              BiConsumer<String, Map<String, Object>> consumer) throws InterruptedException {
+    return new DocumentFanOut(workerExecutor, options, chunk -> () -> getDocuments(engineName, chunk), document -> false)
+      .run(ids, consumer);
+  }
+
+  /**
+   * Destroys any number of documents, in chunks of at most 100 ids sent concurrently. The consumer receives every id
+   * with its deletion status on the calling thread. Ids that did not exist are reported as missing in the result.
+   *
+   * @param engineName unique engine name
+   * @param ids document ids to destroy, read lazily
+   * @param options chunking and parallelism options
+   * @param consumer receives each id and its deletion status, may be null
+   * @return counts, missing ids and failed ids
+   * @throws InterruptedException if interrupted while waiting, requests still in flight are cancelled
+   */
+  public BulkDocumentsResult destroyDocumentsBulk(String engineName, Iterable<String> ids, BulkDocumentsOptions options,
+                                                  BiConsumer<String, Map<String, Object>> consumer) throws InterruptedException {
+    return new DocumentFanOut(workerExecutor, options, chunk -> () -> destroyDocuments(engineName, chunk),
+      status -> Boolean.FALSE.equals(status.get("deleted"))).run(ids, consumer);
   }
 
   /**
@@ -265,54 +473,276 @@ public class Client {
     return Jwt.sign(apiKey, payload);
   }
 
-  <T> T makeJsonRequest(String httpMethod, String path, Object body, TypeToken<T> resultType) throws ClientException {
+  /**
+   * @return counters of the search cache, or null if it is not enabled in {@link ClientOptions}
+   */
+  public CacheStats searchCacheStats() {
+    return searchCache != null ? searchCache.stats() : null;
+  }
+
+  /**
+   * Drops all cached search and query suggestion responses for an engine. Writes made through this client do so
+   * automatically.
+   *
+   * @param engineName unique engine name
+   */
+  public void invalidateSearchCache(String engineName) {
+    if (searchCache != null) {
+      searchCache.invalidate(engineName);
+    }
+    if (typeaheadCache != null) {
+      typeaheadCache.invalidate(engineName);
+    }
+  }
+
+  /**
+   * @return counters of the query suggestion cache, or null if it is not enabled in {@link ClientOptions}
+   */
+  public TypeaheadStats typeaheadStats() {
+    return typeaheadCache != null ? typeaheadCache.stats() : null;
+  }
+
+  /**
+   * @return counters of search request coalescing, or null if it is not enabled in {@link ClientOptions}
+   */
+  public CoalescingStats coalescingStats() {
+    return requestCoalescer != null ? requestCoalescer.stats() : null;
+  }
+
+  /**
+   * @return current limit and queue depth of search requests, or null if it is not enabled in {@link ClientOptions}
+   */
+  public ConcurrencyLimitStats readConcurrencyStats() {
+    return readLimiter != null ? readLimiter.stats() : null;
+  }
+
+  /**
+   * @return current limit and queue depth of document writes, or null if it is not enabled in {@link ClientOptions}
+   */
+  public ConcurrencyLimitStats writeConcurrencyStats() {
+    return writeLimiter != null ? writeLimiter.stats() : null;
+  }
+
+  /**
+   * @return counters of search request hedging, or null if it is not enabled in {@link ClientOptions}
+   */
+  public HedgingStats hedgingStats() {
+    return hedger != null ? hedger.stats() : null;
+  }
+
+  private <T> T readRequest(String engineName, ApiRequest<T> apiRequest) throws ClientException {
+    return readRequest(engineName, apiRequest, () -> makeJsonRequest(apiRequest));
+  }
+
+  private <T> T readRequest(String engineName, ApiRequest<T> apiRequest, ClientCallable<T> send) throws ClientException {
+    if (searchCache == null && requestCoalescer == null) {
+      return send.call();
+    }
+
+    String key = apiRequest.path + " " + JsonTypes.canonicalJson(apiRequest.body);
+    ClientCallable<T> call = send;
+    if (requestCoalescer != null) {
+      ClientCallable<T> request = call;
+      call = () -> requestCoalescer.execute(key, request);
+    }
+    return searchCache != null ? searchCache.get(engineName, key, call) : call.call();
+  }
+
+  private <T> T writeRequest(String engineName, ApiRequest<T> apiRequest) throws ClientException {
     try {
-      String reqBody = null;
-      if (body != null) {
-        reqBody = new Gson().toJson(body);
-      }
+      return makeJsonRequest(apiRequest);
+    } finally {
+      invalidateSearchCache(engineName);
+    }
+  }
 
-      try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-        HttpDynamicRequestWithBody request = new HttpDynamicRequestWithBody(httpMethod, baseUrl + path);
-        request.setHeader("X-Swiftype-Client", "swiftype-app-search-java");
-        request.setHeader("X-Swiftype-Client-Version", VERSION);
-        request.setHeader(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", apiKey));
-        request.setHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+  <T> T makeJsonRequest(ApiRequest<T> apiRequest) throws ClientException {
+    // hedged duplicates are sent from worker threads, so the deadline is handed over explicitly
+    Deadline deadline = Deadline.current();
+    // streamed searches are not idempotent, their handler must not see the results twice
+    if (hedger != null && apiRequest.operation.isSearch() && apiRequest.idempotent) {
+      return hedger.call(handle -> makeJsonRequest(apiRequest, deadline, handle));
+    }
+    return makeJsonRequest(apiRequest, deadline, null);
+  }
 
-        if (reqBody != null) {
-          request.setEntity(new StringEntity(reqBody, Consts.UTF_8));
+  /**
+   * @param deadline deadline of the call, or null if it has none
+   * @param handle aborts the request when a hedged duplicate answered first, null if the call is not hedged
+   */
+  private <T> T makeJsonRequest(ApiRequest<T> apiRequest, Deadline deadline, RequestHandle handle) throws ClientException {
+    ConcurrencyLimiter limiter = apiRequest.operation.isSearch() ? readLimiter : apiRequest.operation.isDocumentWrite() ? writeLimiter : null;
+
+    for (int attempt = 1; ; attempt++) {
+      int currentAttempt = attempt;
+      ClientCallable<T> send = circuitBreaker != null
+        ? () -> circuitBreaker.call(apiRequest.endpoint(), () -> send(apiRequest, currentAttempt, deadline, handle))
+        : () -> send(apiRequest, currentAttempt, deadline, handle);
+      try {
+        return limiter != null ? limiter.call(send, deadline) : send.call();
+      } catch (ClientException e) {
+        boolean cancelled = handle != null && handle.isCancelled();
+        long delayMillis = retryPolicy != null && !cancelled ? retryPolicy.delayMillis(apiRequest, e, attempt) : -1;
+        if (delayMillis < 0 || deadline != null && delayMillis >= deadline.remaining(TimeUnit.MILLISECONDS)) {
+          // a retry that could not complete before the deadline only adds load
+          throw e;
         }
-
-        try (CloseableHttpResponse response = httpClient.execute(request)) {
-          int statusCode = response.getStatusLine().getStatusCode();
-          if (statusCode < 200 || statusCode > 299) {
-            String respBody = EntityUtils.toString(response.getEntity());
-            throw new ClientException(String.format("Error: %d %s", statusCode, respBody));
-          }
-          String respBody = EntityUtils.toString(response.getEntity());
-          return new Gson().fromJson(respBody, resultType.getType());
+        try {
+          Thread.sleep(delayMillis);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          e.addSuppressed(interrupted);
+          throw e;
         }
       }
+    }
+  }
+
+  private <T> T send(ApiRequest<T> apiRequest, int attempt, Deadline deadline, RequestHandle handle) throws ClientException {
+    if (deadline != null && deadline.isExpired()) {
+      throw new DeadlineExceededException("Deadline exceeded before the request was sent");
+    }
+    RequestTimer timer = requestListeners.isEmpty() ? null : new RequestTimer(requestListeners, apiRequest, attempt);
+    TransportRequest request = apiRequest.toTransportRequest(baseUrl, apiKey, compression, timer, deadline);
+    if (handle != null) {
+      handle.attach(request);
+    }
+
+    ScheduledFuture<?> expiry = null;
+    inFlight.put(request, Thread.currentThread());
+    try {
+      startInterruptCheck();
+      if (deadline != null) {
+        expiry = scheduler.schedule(request::cancel, deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        request.cancel();
+      }
+      return receive(apiRequest, request, timer);
     } catch (IOException e) {
-      throw new ClientException("Error making http request", e);
+      if (handle != null && handle.isCancelled()) {
+        throw RequestTimer.finish(timer, new RequestCancelledException());
+      }
+      if (deadline != null && deadline.isExpired()) {
+        // no cause, an aborted request says nothing about the health of the service
+        DeadlineExceededException exceeded = new DeadlineExceededException("Deadline exceeded while waiting for the response");
+        exceeded.addSuppressed(e);
+        throw RequestTimer.finish(timer, exceeded);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        InterruptedException interrupted = new InterruptedException("Request aborted");
+        interrupted.initCause(e);
+        throw RequestTimer.finish(timer, new ClientException("Interrupted while waiting for response", interrupted));
+      }
+      throw RequestTimer.finish(timer, new ClientException("Error making http request", e));
+    } catch (ClientException e) {
+      throw RequestTimer.finish(timer, e);
+    } catch (RejectedExecutionException e) {
+      throw RequestTimer.finish(timer, new ClientException("Client is closed", e));
+    } finally {
+      if (expiry != null) {
+        expiry.cancel(false);
+      }
+      inFlight.remove(request);
     }
   }
 
-  String baseUrl() {
-    return this.baseUrl;
+  private <T> T receive(ApiRequest<T> apiRequest, TransportRequest request, RequestTimer timer) throws IOException, ClientException {
+    try (TransportResponse response = transport.execute(request)) {
+      InputStream content = response.body();
+      if (timer != null && !timer.isResponseReceived()) {
+        // the transport does not time the phases before the response, nor count the bytes it receives
+        timer.responseReceived(response.statusCode(), 0);
+        content = CountingEntity.count(content, timer::addResponseBytes);
+      }
+      if ("gzip".equalsIgnoreCase(response.header(HttpHeaders.CONTENT_ENCODING))) {
+        if (timer != null) {
+          timer.responseCompressed();
+        }
+        content = new GZIPInputStream(content);
+      }
+      if (timer != null && timer.isResponseCompressed()) {
+        content = CountingEntity.count(content, timer::addUncompressedResponseBytes);
+      }
+      T result = apiRequest.parseResponse(response.statusCode(), response.headers(), content);
+      if (timer != null) {
+        timer.finish(null);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Blocking socket reads do not notice interrupts, so the requests of interrupted threads are aborted by a check
+   * that runs while requests are in flight.
+   */
+  private void startInterruptCheck() {
+    synchronized (interruptCheckLock) {
+      if (interruptCheck == null) {
+        interruptCheck = scheduler.scheduleWithFixedDelay(this::abortInterruptedRequests,
+          INTERRUPT_CHECK_MILLIS, INTERRUPT_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    }
   }
 
-  private static class HttpDynamicRequestWithBody extends HttpEntityEnclosingRequestBase {
-    private final String method;
+  private void abortInterruptedRequests() {
+    inFlight.forEach((request, thread) -> {
+      if (thread.isInterrupted()) {
+        request.cancel();
+      }
+    });
+    synchronized (interruptCheckLock) {
+      // a request added after this emptiness check starts the check again
+      if (inFlight.isEmpty()) {
+        interruptCheck.cancel(false);
+        interruptCheck = null;
+      }
+    }
+  }
 
-    public HttpDynamicRequestWithBody(String method, String uri) {
-      this.method = method;
-      setURI(URI.create(uri));
+  static Map<String, Object> documentIndexingStatus(List<Map<String, Object>> response) throws InvalidDocumentException {
+    Map<String, Object> documentIndexingStatus = response.get(0);
+
+    @SuppressWarnings("unchecked")
+    List<String> errors = (List<String>) documentIndexingStatus.remove("errors");
+    if (errors.size() > 0) {
+      String errorMessage = String.format("Invalid document: %s", String.join("; ", errors));
+      throw new InvalidDocumentException(errorMessage);
     }
 
-    @Override
-    public String getMethod() {
-      return this.method;
+    return documentIndexingStatus;
+  }
+
+  /**
+   * Shuts down the transport and its connections. The client can not be used afterwards.
+   *
+   * @throws IOException if the transport fails to shut down
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    if (searchBatcher != null) {
+      searchBatcher.close();
+    }
+    if (searchCache != null) {
+      searchCache.close();
+    }
+    workerExecutor.shutdownNow();
+    scheduler.shutdownNow();
+    transport.close();
+  }
+
+  String baseUrl() {
+    return this.baseUrl;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  boolean isInterruptCheckScheduled() {
+    synchronized (interruptCheckLock) {
+      return interruptCheck != null;
     }
   }
 }
@@ -0,0 +1,10 @@
+package com.swiftype.appsearch;
+
+/**
+ * A deferred api call, such as a lambda calling {@link Client} methods. Also used to layer caching and other behavior
+ * around {@link Client#makeJsonRequest}.
+ */
+@FunctionalInterface
+public interface ClientCallable<T> {
+  T call() throws ClientException;
+}
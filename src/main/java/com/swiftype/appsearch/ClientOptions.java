@@ -0,0 +1,558 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+
+/**
+ * Tuning options for a {@link Client}. All setters return this instance so options can be chained:
+ *
+ * <pre>
+ * ClientOptions options = new ClientOptions()
+ *   .maxConnectionsTotal(50)
+ *   .maxConnectionsPerRoute(50);
+ * </pre>
+ */
+public class ClientOptions {
+  private int maxConnectionsTotal = 20;
+  private int maxConnectionsPerRoute = 20;
+  private long connectionTimeToLiveMillis = -1;
+  private long keepAliveMillis = TimeUnit.SECONDS.toMillis(30);
+  private long idleConnectionTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+  private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+  private long socketTimeoutMillis = TimeUnit.SECONDS.toMillis(60);
+  private long connectionRequestTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+  private int ioThreadCount = Runtime.getRuntime().availableProcessors();
+  private Executor responseExecutor = null;
+  private long searchCacheTtlMillis = 0;
+  private long searchCacheStaleMillis = 0;
+  private long searchCacheMaxEntries = 10_000;
+  private long searchCacheMaxBytes = 64 * 1024 * 1024;
+  private boolean coalesceSearches = false;
+  private long searchBatchWindowMicros = 0;
+  private int searchBatchMaxSize = 10;
+  private RetryPolicy retryPolicy = null;
+  private int circuitBreakerFailureThreshold = 0;
+  private long circuitBreakerOpenMillis = 0;
+  private ConcurrencyLimitOptions readConcurrencyLimit = null;
+  private ConcurrencyLimitOptions writeConcurrencyLimit = null;
+  private final List<RequestListener> requestListeners = new ArrayList<>();
+  private long requestCompressionThresholdBytes = -1;
+  private int requestCompressionLevel = -1;
+  private boolean responseCompression = true;
+  private int pagePrefetch = 1;
+  private HedgingPolicy hedgingPolicy = null;
+  private TypeaheadOptions typeaheadOptions = null;
+  private Transport transport = null;
+  private boolean http2 = false;
+
+  /**
+   * @param maxConnectionsTotal maximum number of pooled connections across all routes
+   * @return these options
+   */
+  public ClientOptions maxConnectionsTotal(int maxConnectionsTotal) {
+    if (maxConnectionsTotal < 1) {
+      throw new IllegalArgumentException("maxConnectionsTotal must be positive");
+    }
+    this.maxConnectionsTotal = maxConnectionsTotal;
+    return this;
+  }
+
+  /**
+   * @param maxConnectionsPerRoute maximum number of pooled connections to a single host
+   * @return these options
+   */
+  public ClientOptions maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+    if (maxConnectionsPerRoute < 1) {
+      throw new IllegalArgumentException("maxConnectionsPerRoute must be positive");
+    }
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    return this;
+  }
+
+  /**
+   * @param timeToLive maximum lifetime of a pooled connection, or a negative value for no limit
+   * @param unit unit of timeToLive
+   * @return these options
+   */
+  public ClientOptions connectionTimeToLive(long timeToLive, TimeUnit unit) {
+    this.connectionTimeToLiveMillis = timeToLive < 0 ? -1 : unit.toMillis(timeToLive);
+    return this;
+  }
+
+  /**
+   * @param keepAlive how long an idle connection is kept open when the server does not send a Keep-Alive timeout
+   * @param unit unit of keepAlive
+   * @return these options
+   */
+  public ClientOptions keepAlive(long keepAlive, TimeUnit unit) {
+    this.keepAliveMillis = unit.toMillis(keepAlive);
+    return this;
+  }
+
+  /**
+   * @param idleTimeout idle time after which pooled connections are evicted in the background, 0 or less to only evict
+   *   connections past their time to live
+   * @param unit unit of idleTimeout
+   * @return these options
+   */
+  public ClientOptions idleConnectionTimeout(long idleTimeout, TimeUnit unit) {
+    this.idleConnectionTimeoutMillis = unit.toMillis(idleTimeout);
+    return this;
+  }
+
+  /**
+   * @param connectTimeout how long establishing a connection may take, including the TLS handshake, 0 to wait
+   *   indefinitely; 10 seconds by default
+   * @param unit unit of connectTimeout
+   * @return these options
+   */
+  public ClientOptions connectTimeout(long connectTimeout, TimeUnit unit) {
+    this.connectTimeoutMillis = timeoutMillis("connectTimeout", connectTimeout, unit);
+    return this;
+  }
+
+  /**
+   * @param socketTimeout how long to wait for the next bytes of a response, 0 to wait indefinitely; 60 seconds by
+   *   default. Use a {@link Deadline} to bound a whole call.
+   * @param unit unit of socketTimeout
+   * @return these options
+   */
+  public ClientOptions socketTimeout(long socketTimeout, TimeUnit unit) {
+    this.socketTimeoutMillis = timeoutMillis("socketTimeout", socketTimeout, unit);
+    return this;
+  }
+
+  /**
+   * @param connectionRequestTimeout how long to wait for a pooled connection while all are in use, 0 to wait
+   *   indefinitely; 30 seconds by default
+   * @param unit unit of connectionRequestTimeout
+   * @return these options
+   */
+  public ClientOptions connectionRequestTimeout(long connectionRequestTimeout, TimeUnit unit) {
+    this.connectionRequestTimeoutMillis = timeoutMillis("connectionRequestTimeout", connectionRequestTimeout, unit);
+    return this;
+  }
+
+  /**
+   * Sends requests of {@link Client} over HTTP/2 where the server supports it, with the java.net.http client. Many
+   * concurrent requests then share a few connections instead of taking one each. Only takes effect on Java 11 or
+   * later, on Java 8 the default HTTP/1.1 transport is used. On Java 11 or later, creating the {@link Client} throws
+   * {@link IllegalStateException} if the transport is missing from the classpath. Disabled by default. The connection
+   * pool options do not apply to it.
+   *
+   * <p>Before Java 16, java.net.http can not abort an exchange still waiting for its response headers: a request
+   * aborted at its deadline returns right away, but its exchange is only reset once the headers arrive, or once the
+   * wait for them times out at the deadline it had when sent or at the socket timeout.
+   *
+   * @param http2 whether to use the java.net.http client when it is available
+   * @return these options
+   */
+  public ClientOptions http2(boolean http2) {
+    this.http2 = http2;
+    return this;
+  }
+
+  /**
+   * Sends requests of {@link Client} through a custom transport, such as an in-process fake in tests. The transport
+   * is closed with the client, and the connection pool options do not apply to it.
+   *
+   * @param transport transport to use, or null for the default one
+   * @return these options
+   */
+  public ClientOptions transport(Transport transport) {
+    this.transport = transport;
+    return this;
+  }
+
+  /**
+   * Only used by {@link AsyncClient}.
+   *
+   * @param ioThreadCount number of non-blocking I/O dispatch threads
+   * @return these options
+   */
+  public ClientOptions ioThreadCount(int ioThreadCount) {
+    if (ioThreadCount < 1) {
+      throw new IllegalArgumentException("ioThreadCount must be positive");
+    }
+    this.ioThreadCount = ioThreadCount;
+    return this;
+  }
+
+  /**
+   * Only used by {@link AsyncClient}, which parses responses off its I/O threads so that a large response does not
+   * hold up the other requests they drive. The futures it returns complete on the same executor. By default the
+   * client parses on its own pool of one thread per processor.
+   *
+   * @param responseExecutor executor that parses responses, which the client does not shut down, or null for the
+   *   default one
+   * @return these options
+   */
+  public ClientOptions responseExecutor(Executor responseExecutor) {
+    this.responseExecutor = responseExecutor;
+    return this;
+  }
+
+  /**
+   * Enables the client side cache for {@link Client#search}, {@link Client#multiSearch} and
+   * {@link Client#querySuggestion}. Disabled by default.
+   *
+   * @param ttl how long a cached response is served as fresh
+   * @param staleWhileRevalidate how long after expiring a response is still served while it is refreshed in the background
+   * @param unit unit of ttl and staleWhileRevalidate
+   * @return these options
+   */
+  public ClientOptions searchCache(long ttl, long staleWhileRevalidate, TimeUnit unit) {
+    this.searchCacheTtlMillis = unit.toMillis(ttl);
+    this.searchCacheStaleMillis = unit.toMillis(staleWhileRevalidate);
+    return this;
+  }
+
+  /**
+   * @param maxEntries maximum number of cached responses
+   * @param maxBytes maximum estimated size of cached responses, in serialized JSON bytes
+   * @return these options
+   */
+  public ClientOptions searchCacheSize(long maxEntries, long maxBytes) {
+    if (maxEntries < 1 || maxBytes < 1) {
+      throw new IllegalArgumentException("search cache bounds must be positive");
+    }
+    this.searchCacheMaxEntries = maxEntries;
+    this.searchCacheMaxBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * Lets concurrent identical calls to {@link Client#search}, {@link Client#multiSearch} and
+   * {@link Client#querySuggestion} share one in-flight request. Disabled by default.
+   *
+   * @param coalesceSearches whether to coalesce identical concurrent searches
+   * @return these options
+   */
+  public ClientOptions coalesceSearches(boolean coalesceSearches) {
+    this.coalesceSearches = coalesceSearches;
+    return this;
+  }
+
+  /**
+   * Collects concurrent {@link Client#search} calls against the same engine for up to window, and sends them as a
+   * single multi_search request. Disabled by default. Every batched call waits up to window before it is sent, so
+   * keep it in the order of a few milliseconds.
+   *
+   * @param window how long to wait for more searches after the first one of a batch
+   * @param unit unit of window
+   * @param maxBatchSize number of searches that sends a batch right away, App Search accepts at most 10
+   * @return these options
+   */
+  public ClientOptions searchBatching(long window, TimeUnit unit, int maxBatchSize) {
+    if (maxBatchSize < 1 || maxBatchSize > 10) {
+      throw new IllegalArgumentException("maxBatchSize must be between 1 and 10");
+    }
+    this.searchBatchWindowMicros = unit.toMicros(window);
+    this.searchBatchMaxSize = maxBatchSize;
+    return this;
+  }
+
+  /**
+   * Retries failed idempotent requests. Disabled by default.
+   *
+   * @param retryPolicy when and how often to retry, or null to disable retries
+   * @return these options
+   */
+  public ClientOptions retryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  /**
+   * Fails calls to an endpoint right away with a {@link CircuitOpenException} after it failed a number of times in a
+   * row, instead of waiting for more requests to fail. Disabled by default. Endpoints are told apart by http method
+   * and path, so each engine has its own circuits.
+   *
+   * @param failureThreshold consecutive connection errors, throttled or server error responses that open a circuit
+   * @param openDuration how long a circuit stays open before a single trial request is let through
+   * @param unit unit of openDuration
+   * @return these options
+   */
+  public ClientOptions circuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+    if (failureThreshold < 1) {
+      throw new IllegalArgumentException("failureThreshold must be positive");
+    }
+    this.circuitBreakerFailureThreshold = failureThreshold;
+    this.circuitBreakerOpenMillis = unit.toMillis(openDuration);
+    return this;
+  }
+
+  /**
+   * Adapts the number of concurrent {@link Client#search}, {@link Client#multiSearch} and
+   * {@link Client#querySuggestion} requests to how the service copes with them. Calls over the limit are queued or
+   * rejected. Disabled by default.
+   *
+   * @param readConcurrencyLimit tuning of the limit, or null to disable it
+   * @return these options
+   */
+  public ClientOptions readConcurrencyLimit(ConcurrencyLimitOptions readConcurrencyLimit) {
+    this.readConcurrencyLimit = readConcurrencyLimit;
+    return this;
+  }
+
+  /**
+   * Adapts the number of concurrent {@link Client#indexDocuments} and {@link Client#destroyDocuments} requests to how
+   * the service copes with them, independently of the read limit. Calls over the limit are queued or rejected.
+   * Disabled by default.
+   *
+   * @param writeConcurrencyLimit tuning of the limit, or null to disable it
+   * @return these options
+   */
+  public ClientOptions writeConcurrencyLimit(ConcurrencyLimitOptions writeConcurrencyLimit) {
+    this.writeConcurrencyLimit = writeConcurrencyLimit;
+    return this;
+  }
+
+  /**
+   * Reports the timings, status and sizes of every request to a listener, such as a {@link LatencyRecorder}.
+   *
+   * @param requestListener listener to add
+   * @return these options
+   */
+  public ClientOptions addRequestListener(RequestListener requestListener) {
+    this.requestListeners.add(requestListener);
+    return this;
+  }
+
+  /**
+   * Sends a duplicate of a slow {@link Client#search}, {@link Client#multiSearch} or {@link Client#querySuggestion}
+   * request and uses whichever response arrives first. Disabled by default. The duplicates are sent from a worker
+   * thread. Only used by {@link Client}.
+   *
+   * @param hedgingPolicy when to hedge and how many extra requests to allow, or null to disable hedging
+   * @return these options
+   */
+  public ClientOptions hedging(HedgingPolicy hedgingPolicy) {
+    this.hedgingPolicy = hedgingPolicy;
+    return this;
+  }
+
+  /**
+   * Caches {@link Client#querySuggestion} responses per engine and prefix, to answer typeahead keystrokes without a
+   * request. Disabled by default. Only used by {@link Client}.
+   *
+   * @param typeaheadOptions time to live, size and prefix filtering of the cache, or null to disable it
+   * @return these options
+   */
+  public ClientOptions typeahead(TypeaheadOptions typeaheadOptions) {
+    this.typeaheadOptions = typeaheadOptions;
+    return this;
+  }
+
+  /**
+   * Gzips request bodies of at least thresholdBytes of serialized JSON. Disabled by default. Mostly pays off for
+   * {@link Client#indexDocuments} batches, search requests are rarely large enough to be worth the CPU time.
+   *
+   * @param thresholdBytes smallest body that is compressed
+   * @param level gzip level, from 1 for fastest to 9 for smallest
+   * @return these options
+   */
+  public ClientOptions requestCompression(long thresholdBytes, int level) {
+    if (thresholdBytes < 0) {
+      throw new IllegalArgumentException("thresholdBytes must not be negative");
+    }
+    if (level < 1 || level > 9) {
+      throw new IllegalArgumentException("level must be between 1 and 9");
+    }
+    this.requestCompressionThresholdBytes = thresholdBytes;
+    this.requestCompressionLevel = level;
+    return this;
+  }
+
+  /**
+   * Asks for gzipped responses and decompresses them while they are parsed. Enabled by default.
+   *
+   * @param responseCompression whether to accept gzipped responses
+   * @return these options
+   */
+  public ClientOptions responseCompression(boolean responseCompression) {
+    this.responseCompression = responseCompression;
+    return this;
+  }
+
+  /**
+   * Sets how many pages {@link Client#searchAll} and {@link Client#allEngines} fetch ahead of the page being
+   * consumed. Defaults to 1, which overlaps fetching the next page with processing the current one.
+   *
+   * @param pages number of pages to fetch ahead, or 0 to fetch each page only once it is needed
+   * @return these options
+   */
+  public ClientOptions pagePrefetch(int pages) {
+    if (pages < 0) {
+      throw new IllegalArgumentException("pages must not be negative");
+    }
+    this.pagePrefetch = pages;
+    return this;
+  }
+
+  int maxConnectionsTotal() {
+    return maxConnectionsTotal;
+  }
+
+  int maxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  long connectionTimeToLiveMillis() {
+    return connectionTimeToLiveMillis;
+  }
+
+  long keepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  long idleConnectionTimeoutMillis() {
+    return idleConnectionTimeoutMillis;
+  }
+
+  long connectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  long socketTimeoutMillis() {
+    return socketTimeoutMillis;
+  }
+
+  long connectionRequestTimeoutMillis() {
+    return connectionRequestTimeoutMillis;
+  }
+
+  /**
+   * @return the timeouts as Apache HttpClient request defaults
+   */
+  RequestConfig requestConfig() {
+    return RequestConfig.custom()
+      .setConnectTimeout((int) connectTimeoutMillis)
+      .setSocketTimeout((int) socketTimeoutMillis)
+      .setConnectionRequestTimeout((int) connectionRequestTimeoutMillis)
+      .build();
+  }
+
+  private static long timeoutMillis(String name, long timeout, TimeUnit unit) {
+    long millis = unit.toMillis(timeout);
+    if (millis < 0 || millis > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(name + " must be between 0 and " + Integer.MAX_VALUE + " milliseconds");
+    }
+    return millis;
+  }
+
+  int ioThreadCount() {
+    return ioThreadCount;
+  }
+
+  Executor responseExecutor() {
+    return responseExecutor;
+  }
+
+  int pagePrefetch() {
+    return pagePrefetch;
+  }
+
+  List<RequestListener> requestListeners() {
+    return Collections.unmodifiableList(new ArrayList<>(requestListeners));
+  }
+
+  boolean responseCompression() {
+    return responseCompression;
+  }
+
+  Compression createCompression() {
+    return new Compression(requestCompressionThresholdBytes, requestCompressionLevel, responseCompression);
+  }
+
+  RetryPolicy retryPolicy() {
+    return retryPolicy;
+  }
+
+  CircuitBreaker createCircuitBreaker() {
+    if (circuitBreakerFailureThreshold <= 0) {
+      return null;
+    }
+    return new CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenMillis, TimeUnit.MILLISECONDS);
+  }
+
+  Hedger createHedger(ExecutorService executor, ScheduledExecutorService scheduler) {
+    return hedgingPolicy != null ? new Hedger(executor, scheduler, hedgingPolicy) : null;
+  }
+
+  ConcurrencyLimiter createReadLimiter() {
+    return readConcurrencyLimit != null ? readConcurrencyLimit.createLimiter("read") : null;
+  }
+
+  ConcurrencyLimiter createWriteLimiter() {
+    return writeConcurrencyLimit != null ? writeConcurrencyLimit.createLimiter("write") : null;
+  }
+
+  SearchCache createSearchCache() {
+    if (searchCacheTtlMillis <= 0) {
+      return null;
+    }
+    return new SearchCache(searchCacheMaxEntries, searchCacheMaxBytes, searchCacheTtlMillis, searchCacheStaleMillis, TimeUnit.MILLISECONDS);
+  }
+
+  Transport createTransport() {
+    if (transport != null) {
+      return transport;
+    }
+    if (http2) {
+      try {
+        // compiled separately for Java 11, and only loaded by name so the client keeps running on Java 8
+        return (Transport) Class.forName("com.swiftype.appsearch.JdkHttpTransport")
+          .getDeclaredConstructor(ClientOptions.class)
+          .newInstance(this);
+      } catch (ReflectiveOperationException | LinkageError e) {
+        if (isJavaHttpClientAvailable()) {
+          throw new IllegalStateException("HTTP/2 was requested, but its Java 11 transport is not on the classpath", e);
+        }
+        // not running on Java 11 or later
+      }
+    }
+    return new ApacheTransport(this);
+  }
+
+  private static boolean isJavaHttpClientAvailable() {
+    try {
+      Class.forName("java.net.http.HttpClient");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  TypeaheadCache createTypeaheadCache() {
+    return typeaheadOptions != null ? new TypeaheadCache(typeaheadOptions) : null;
+  }
+
+  RequestCoalescer createRequestCoalescer() {
+    return coalesceSearches ? new RequestCoalescer() : null;
+  }
+
+  SearchBatcher createSearchBatcher(Client client) {
+    if (searchBatchWindowMicros <= 0) {
+      return null;
+    }
+    return new SearchBatcher(client, searchBatchWindowMicros, TimeUnit.MICROSECONDS, searchBatchMaxSize);
+  }
+
+  ConnectionKeepAliveStrategy keepAliveStrategy() {
+    long defaultKeepAliveMillis = keepAliveMillis;
+    return (response, context) -> {
+      long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return keepAlive > 0 ? keepAlive : defaultKeepAliveMillis;
+    };
+  }
+}
@@ -0,0 +1,35 @@
+package com.swiftype.appsearch;
+
+/**
+ * Point in time counters of search request coalescing.
+ *
+ * @see Client#coalescingStats()
+ */
+public class CoalescingStats {
+  private final long executed;
+  private final long coalesced;
+
+  CoalescingStats(long executed, long coalesced) {
+    this.executed = executed;
+    this.coalesced = coalesced;
+  }
+
+  /**
+   * @return number of calls that sent their own request
+   */
+  public long executed() {
+    return executed;
+  }
+
+  /**
+   * @return number of calls that shared the result of an identical request already in flight
+   */
+  public long coalesced() {
+    return coalesced;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("CoalescingStats{executed=%d, coalesced=%d}", executed, coalesced);
+  }
+}
@@ -0,0 +1,63 @@
+package com.swiftype.appsearch;
+
+import java.util.Locale;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+
+/**
+ * Request and response compression settings of a client.
+ */
+class Compression {
+  private final long requestThresholdBytes;
+  private final int requestLevel;
+  private final boolean acceptGzip;
+
+  /**
+   * @param requestThresholdBytes serialized body size from which request bodies are gzipped
+   * @param requestLevel deflate level for request bodies, or -1 to never compress them
+   * @param acceptGzip whether to ask for gzipped responses
+   */
+  Compression(long requestThresholdBytes, int requestLevel, boolean acceptGzip) {
+    this.requestThresholdBytes = requestThresholdBytes;
+    this.requestLevel = requestLevel;
+    this.acceptGzip = acceptGzip;
+  }
+
+  boolean acceptGzip() {
+    return acceptGzip;
+  }
+
+  /**
+   * @return an entity for the request body, gzipped if it is at least as large as the threshold
+   */
+  JsonEntity entity(Object body) {
+    if (requestLevel < 0) {
+      return new JsonEntity(body);
+    }
+    // sizing takes an extra pass over the body, but allocates next to nothing, unlike buffering it
+    long size = JsonTypes.serializedSize(body);
+    return size >= requestThresholdBytes ? new JsonEntity(body, requestLevel, size) : new JsonEntity(body, -1, size);
+  }
+
+  /**
+   * Decompresses a gzipped response body while it is read, for transports that do not handle content encoding
+   * themselves.
+   *
+   * @return whether the response was gzipped
+   */
+  static boolean decompress(HttpResponse response) {
+    HttpEntity entity = response.getEntity();
+    Header contentEncoding = entity != null ? entity.getContentEncoding() : null;
+    if (contentEncoding == null || !"gzip".equals(contentEncoding.getValue().trim().toLowerCase(Locale.ROOT))) {
+      return false;
+    }
+    response.setEntity(new GzipDecompressingEntity(entity));
+    response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+    response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+    return true;
+  }
+}
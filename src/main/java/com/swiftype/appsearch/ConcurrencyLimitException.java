@@ -0,0 +1,15 @@
+package com.swiftype.appsearch;
+
+/**
+ * Thrown without sending a request when the concurrency limit is reached and the call can not be queued, or has
+ * waited in the queue for too long.
+ *
+ * @see ConcurrencyLimitOptions
+ */
+public class ConcurrencyLimitException extends ClientException {
+  private static final long serialVersionUID = 2953815617920349081L;
+
+  ConcurrencyLimitException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,101 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options for an adaptive concurrency limit. All setters return this instance so options can be chained.
+ *
+ * <p>The limit grows by about one for every limit's worth of calls that complete in time while the limit is in use,
+ * and shrinks by {@link #backoffRatio(double)} when the service throttles, fails or slows down.
+ *
+ * @see ClientOptions#readConcurrencyLimit(ConcurrencyLimitOptions)
+ * @see ClientOptions#writeConcurrencyLimit(ConcurrencyLimitOptions)
+ */
+public class ConcurrencyLimitOptions {
+  private int initialLimit = 10;
+  private int minLimit = 1;
+  private int maxLimit = 200;
+  private int maxQueued = 100;
+  private long queueTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+  private double backoffRatio = 0.9;
+  private double latencyTolerance = 2.0;
+
+  /**
+   * @param initialLimit number of concurrent requests allowed before any have been observed
+   * @return these options
+   */
+  public ConcurrencyLimitOptions initialLimit(int initialLimit) {
+    if (initialLimit < 1) {
+      throw new IllegalArgumentException("initialLimit must be positive");
+    }
+    this.initialLimit = initialLimit;
+    return this;
+  }
+
+  /**
+   * @param minLimit lowest the limit shrinks to
+   * @param maxLimit highest the limit grows to
+   * @return these options
+   */
+  public ConcurrencyLimitOptions limitBounds(int minLimit, int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("minLimit must be positive and at most maxLimit");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    return this;
+  }
+
+  /**
+   * @param maxQueued calls that may wait for a permit once the limit is reached, further calls are rejected with a
+   *   {@link ConcurrencyLimitException}, 0 to reject right away
+   * @return these options
+   */
+  public ConcurrencyLimitOptions maxQueued(int maxQueued) {
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("maxQueued must not be negative");
+    }
+    this.maxQueued = maxQueued;
+    return this;
+  }
+
+  /**
+   * @param queueTimeout how long a queued call waits for a permit before it is rejected
+   * @param unit unit of queueTimeout
+   * @return these options
+   */
+  public ConcurrencyLimitOptions queueTimeout(long queueTimeout, TimeUnit unit) {
+    this.queueTimeoutMillis = unit.toMillis(queueTimeout);
+    return this;
+  }
+
+  /**
+   * @param backoffRatio factor the limit is multiplied with on overload, between 0 and 1
+   * @return these options
+   */
+  public ConcurrencyLimitOptions backoffRatio(double backoffRatio) {
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+    }
+    this.backoffRatio = backoffRatio;
+    return this;
+  }
+
+  /**
+   * @param latencyTolerance how many times the lowest recently observed latency the average latency may reach before
+   *   the limit shrinks, or 0 to only react to throttling and errors
+   * @return these options
+   */
+  public ConcurrencyLimitOptions latencyTolerance(double latencyTolerance) {
+    if (latencyTolerance != 0 && latencyTolerance <= 1) {
+      throw new IllegalArgumentException("latencyTolerance must be 0 or greater than 1");
+    }
+    this.latencyTolerance = latencyTolerance;
+    return this;
+  }
+
+  ConcurrencyLimiter createLimiter(String name) {
+    return new ConcurrencyLimiter(name, Math.max(minLimit, Math.min(maxLimit, initialLimit)), minLimit, maxLimit,
+      maxQueued, queueTimeoutMillis, TimeUnit.MILLISECONDS, backoffRatio, latencyTolerance);
+  }
+}
@@ -0,0 +1,54 @@
+package com.swiftype.appsearch;
+
+/**
+ * Point in time state of an adaptive concurrency limit.
+ *
+ * @see Client#readConcurrencyStats()
+ * @see Client#writeConcurrencyStats()
+ */
+public class ConcurrencyLimitStats {
+  private final int limit;
+  private final int inFlight;
+  private final int queued;
+  private final long rejected;
+
+  ConcurrencyLimitStats(int limit, int inFlight, int queued, long rejected) {
+    this.limit = limit;
+    this.inFlight = inFlight;
+    this.queued = queued;
+    this.rejected = rejected;
+  }
+
+  /**
+   * @return current number of concurrent requests allowed
+   */
+  public int limit() {
+    return limit;
+  }
+
+  /**
+   * @return number of requests being sent
+   */
+  public int inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return number of calls waiting for a permit
+   */
+  public int queued() {
+    return queued;
+  }
+
+  /**
+   * @return number of calls rejected because the queue was full or they waited too long
+   */
+  public long rejected() {
+    return rejected;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ConcurrencyLimitStats{limit=%d, inFlight=%d, queued=%d, rejected=%d}", limit, inFlight, queued, rejected);
+  }
+}
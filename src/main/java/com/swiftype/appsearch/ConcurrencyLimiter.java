@@ -0,0 +1,230 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Adaptive concurrency limit using additive increase, multiplicative decrease.
+ *
+ * <p>Every completed call is a sample. Throttled, failed and connection error responses shrink the limit by the
+ * backoff ratio, as does an average latency that drifts above the tolerated multiple of the lowest latency seen in
+ * the recent past, which indicates requests are queueing up on the server. The limit shrinks at most once per
+ * average round trip, so a burst of failures from one overload counts once. Calls that complete in time grow the
+ * limit by 1/limit, about one per round trip, but only while at least half of the limit is in use.
+ *
+ * <p>Calls over the limit wait in a bounded FIFO queue and are handed a permit as soon as one is released.
+ */
+class ConcurrencyLimiter {
+  private static final int BASELINE_WINDOW = 500;
+  private static final double SMOOTHING = 0.1;
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueued;
+  private final long queueTimeoutNanos;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+  private final ArrayDeque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+
+  private double limit;
+  private int inFlight;
+  private long rejected;
+  private long baselineNanos = Long.MAX_VALUE;
+  private long windowMinNanos = Long.MAX_VALUE;
+  private int windowSamples;
+  private double smoothedNanos;
+  private long lastDecreaseNanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+
+  ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueued, long queueTimeout,
+                     TimeUnit unit, double backoffRatio, double latencyTolerance) {
+    this.name = name;
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueued = maxQueued;
+    this.queueTimeoutNanos = unit.toNanos(queueTimeout);
+    this.backoffRatio = backoffRatio;
+    this.latencyTolerance = latencyTolerance;
+  }
+
+  /**
+   * @param deadline deadline of the call, which also bounds the wait for a permit, or null if it has none
+   */
+  <T> T call(ClientCallable<T> call, Deadline deadline) throws ClientException {
+    Permit permit = acquire(deadline);
+    T result;
+    try {
+      result = call.call();
+    } catch (ClientException | RuntimeException e) {
+      permit.release(e);
+      throw e;
+    }
+    permit.release(null);
+    return result;
+  }
+
+  /**
+   * Waits for a permit, which must be {@link Permit#release(Throwable) released} once the call completes.
+   *
+   * @param deadline deadline of the call, or null if it has none
+   * @throws ConcurrencyLimitException if the queue is full or the permit does not become available in time
+   * @throws DeadlineExceededException if the deadline passes before the permit becomes available
+   */
+  Permit acquire(Deadline deadline) throws ClientException {
+    CompletableFuture<Permit> waiter = enqueue();
+    boolean deadlineFirst = deadline != null && deadline.remainingNanos() < queueTimeoutNanos;
+    try {
+      return waiter.get(deadlineFirst ? deadline.remainingNanos() : queueTimeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      if (abandon(waiter)) {
+        if (deadlineFirst) {
+          throw new DeadlineExceededException("Deadline exceeded while waiting for a concurrency permit");
+        }
+        throw queueTimeout();
+      }
+      return waiter.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (!abandon(waiter)) {
+        waiter.join().release(e);
+      }
+      throw new ClientException("Interrupted while waiting for a concurrency permit", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Asynchronous variant of {@link #acquire(Deadline)} without a deadline, using scheduler to time out queued calls.
+   */
+  CompletableFuture<Permit> acquireAsync(ScheduledExecutorService scheduler) {
+    CompletableFuture<Permit> waiter;
+    try {
+      waiter = enqueue();
+    } catch (ConcurrencyLimitException e) {
+      waiter = new CompletableFuture<>();
+      waiter.completeExceptionally(e);
+      return waiter;
+    }
+    if (!waiter.isDone()) {
+      CompletableFuture<Permit> queued = waiter;
+      try {
+        scheduler.schedule(() -> {
+          if (abandon(queued)) {
+            queued.completeExceptionally(queueTimeout());
+          }
+        }, queueTimeoutNanos, TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // shutting down, the permit is still handed over once one is released
+      }
+    }
+    return waiter;
+  }
+
+  synchronized ConcurrencyLimitStats stats() {
+    return new ConcurrencyLimitStats(currentLimit(), inFlight, queue.size(), rejected);
+  }
+
+  private CompletableFuture<Permit> enqueue() throws ConcurrencyLimitException {
+    CompletableFuture<Permit> waiter = new CompletableFuture<>();
+    synchronized (this) {
+      if (queue.isEmpty() && inFlight < currentLimit()) {
+        inFlight++;
+      } else if (queue.size() < maxQueued) {
+        queue.add(waiter);
+        return waiter;
+      } else {
+        rejected++;
+        throw new ConcurrencyLimitException(String.format("Concurrency limit of %d %s requests reached", currentLimit(), name));
+      }
+    }
+    waiter.complete(new Permit());
+    return waiter;
+  }
+
+  /**
+   * @return true if the waiter was still queued and will not be handed a permit, false if it already was
+   */
+  private synchronized boolean abandon(CompletableFuture<Permit> waiter) {
+    return queue.remove(waiter);
+  }
+
+  private synchronized ConcurrencyLimitException queueTimeout() {
+    rejected++;
+    return new ConcurrencyLimitException(String.format("Timed out waiting for one of %d %s request permits", currentLimit(), name));
+  }
+
+  private void release(long latencyNanos, Throwable failure) {
+    List<CompletableFuture<Permit>> granted = new ArrayList<>();
+    synchronized (this) {
+      adjust(latencyNanos, failure, System.nanoTime());
+      inFlight--;
+      while (!queue.isEmpty() && inFlight < currentLimit()) {
+        granted.add(queue.poll());
+        inFlight++;
+      }
+    }
+    for (CompletableFuture<Permit> waiter : granted) {
+      waiter.complete(new Permit());
+    }
+  }
+
+  private void adjust(long latencyNanos, Throwable failure, long now) {
+    boolean overloaded = ApiException.signalsOverload(failure);
+    if (!overloaded) {
+      if (failure != null && !(failure instanceof ApiException)) {
+        // the request may not have been sent at all, so this tells nothing about the service
+        return;
+      }
+      sample(latencyNanos);
+      overloaded = latencyTolerance > 0 && smoothedNanos > latencyTolerance * baselineNanos;
+    }
+
+    if (overloaded) {
+      if (now - lastDecreaseNanos >= smoothedNanos) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = now;
+      }
+    } else if (inFlight * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  private void sample(long latencyNanos) {
+    smoothedNanos = smoothedNanos == 0 ? latencyNanos : smoothedNanos + SMOOTHING * (latencyNanos - smoothedNanos);
+    baselineNanos = Math.min(baselineNanos, latencyNanos);
+    windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+    if (++windowSamples == BASELINE_WINDOW) {
+      // forget lows older than the last window, so the baseline follows a lasting change in request cost
+      baselineNanos = windowMinNanos;
+      windowMinNanos = Long.MAX_VALUE;
+      windowSamples = 0;
+    }
+  }
+
+  private int currentLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * Permission to send one request.
+   */
+  class Permit {
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param failure why the call failed, or null if it succeeded
+     */
+    void release(Throwable failure) {
+      ConcurrencyLimiter.this.release(System.nanoTime() - startNanos, failure);
+    }
+  }
+}
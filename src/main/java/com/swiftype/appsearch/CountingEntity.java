@@ -0,0 +1,75 @@
+package com.swiftype.appsearch;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Entity wrapper that reports the number of bytes written or read through it.
+ */
+class CountingEntity extends HttpEntityWrapper {
+  private final LongConsumer bytes;
+
+  CountingEntity(HttpEntity wrappedEntity, LongConsumer bytes) {
+    super(wrappedEntity);
+    this.bytes = bytes;
+  }
+
+  @Override
+  public InputStream getContent() throws IOException {
+    return count(super.getContent(), bytes);
+  }
+
+  /**
+   * @return a stream reporting the number of bytes read from content
+   */
+  static InputStream count(InputStream content, LongConsumer bytes) {
+    return new FilterInputStream(content) {
+      @Override
+      public int read() throws IOException {
+        int read = super.read();
+        if (read != -1) {
+          bytes.accept(1);
+        }
+        return read;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+          bytes.accept(read);
+        }
+        return read;
+      }
+    };
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    super.writeTo(new FilterOutputStream(outStream) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        bytes.accept(1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytes.accept(len);
+      }
+
+      @Override
+      public void close() {
+        // the output stream belongs to the connection
+      }
+    });
+  }
+}
@@ -0,0 +1,107 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which the calls of a {@link Client} have to complete, covering every attempt of a request from
+ * leasing a connection until the response has been read:
+ *
+ * <pre>
+ * Map&lt;String, Object&gt; results = Deadline.after(200, TimeUnit.MILLISECONDS)
+ *   .call(() -&gt; client.search("favorite-videos", "cat"));
+ * </pre>
+ *
+ * <p>The deadline applies to calls made on the calling thread within {@link #call(ClientCallable)}, including the
+ * hedged duplicates and retries of those calls, and to the time they wait for a concurrency permit or for a coalesced
+ * or batched search to complete. Retries are only made if their backoff ends before the deadline. A request still in
+ * flight when the deadline passes is aborted, and the call throws a {@link DeadlineExceededException}. Nested deadlines
+ * can only shorten the time left, never extend it.
+ */
+public final class Deadline {
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @param timeout time from now until the deadline
+   * @param unit unit of timeout
+   * @return a deadline that long from now
+   */
+  public static Deadline after(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout must not be negative");
+    }
+    return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+  }
+
+  /**
+   * @param unit unit of the result
+   * @return time left until the deadline, or 0 if it has passed
+   */
+  public long remaining(TimeUnit unit) {
+    return unit.convert(Math.max(0, remainingNanos()), TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isExpired() {
+    return remainingNanos() <= 0;
+  }
+
+  /**
+   * Makes api calls under this deadline, or under the deadline of an enclosing call if that one is sooner.
+   *
+   * @param call one or more client calls
+   * @param <T> type of the result of call
+   * @return the result of call
+   * @throws ClientException if call fails, including a {@link DeadlineExceededException} once the deadline passed
+   */
+  public <T> T call(ClientCallable<T> call) throws ClientException {
+    Deadline enclosing = CURRENT.get();
+    CURRENT.set(enclosing != null && enclosing.deadlineNanos - deadlineNanos < 0 ? enclosing : this);
+    try {
+      return call.call();
+    } finally {
+      if (enclosing != null) {
+        CURRENT.set(enclosing);
+      } else {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  /**
+   * @return the deadline calls on this thread are currently made under, or null if there is none
+   */
+  static Deadline current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * @return the later of two deadlines, or null if either is null, since then one of the calls has no deadline
+   */
+  static Deadline latest(Deadline first, Deadline second) {
+    if (first == null || second == null) {
+      return null;
+    }
+    return first.deadlineNanos - second.deadlineNanos < 0 ? second : first;
+  }
+
+  /**
+   * Makes a call under a deadline that may be null, used to hand a deadline over to another thread.
+   */
+  static <T> T call(Deadline deadline, ClientCallable<T> call) throws ClientException {
+    return deadline != null ? deadline.call(call) : call.call();
+  }
+
+  long remainingNanos() {
+    return deadlineNanos - System.nanoTime();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Deadline{remainingMillis=%d}", remaining(TimeUnit.MILLISECONDS));
+  }
+}
@@ -0,0 +1,13 @@
+package com.swiftype.appsearch;
+
+/**
+ * Thrown when the {@link Deadline} of a call passed before a response was received. Neither a failure nor a success
+ * for circuit breaking and concurrency limits, since the deadline is the caller's choice.
+ */
+public class DeadlineExceededException extends ClientException {
+  private static final long serialVersionUID = 7781549328917052340L;
+
+  DeadlineExceededException(String message) {
+    super(message);
+  }
+}
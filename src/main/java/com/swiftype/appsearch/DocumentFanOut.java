@@ -0,0 +1,145 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Splits a collection of document ids into chunks, sends a request per chunk with bounded parallelism, and hands
+ * the per-id results to a consumer on the calling thread, either in id order or as chunks complete.
+ */
+class DocumentFanOut {
+  private final ExecutorService executor;
+  private final BulkDocumentsOptions options;
+  private final Function<List<String>, ClientCallable<List<Map<String, Object>>>> request;
+  private final Predicate<Map<String, Object>> missing;
+
+  /**
+   * @param request builds the api call for a chunk of ids, returning one result per id in the same order
+   * @param missing tells whether a result means the document does not exist
+   */
+  DocumentFanOut(ExecutorService executor, BulkDocumentsOptions options,
+                 Function<List<String>, ClientCallable<List<Map<String, Object>>>> request,
+                 Predicate<Map<String, Object>> missing) {
+    this.executor = executor;
+    this.options = options;
+    this.request = request;
+    this.missing = missing;
+  }
+
+  BulkDocumentsResult run(Iterable<String> ids, BiConsumer<String, Map<String, Object>> consumer) throws InterruptedException {
+    Iterator<String> remaining = ids.iterator();
+    ArrayDeque<Chunk> inFlight = new ArrayDeque<>();
+    // only needed to hand over chunks as they complete, in order the head of inFlight is awaited instead
+    BlockingQueue<Chunk> completed = options.ordered() ? null : new LinkedBlockingQueue<>();
+    long requests = 0;
+    long succeeded = 0;
+    List<String> missingIds = new ArrayList<>();
+    Map<String, ClientException> failedIds = new LinkedHashMap<>();
+
+    try {
+      while (true) {
+        while (inFlight.size() < options.parallelism() && remaining.hasNext()) {
+          inFlight.add(submit(nextChunk(remaining), completed));
+          requests++;
+        }
+        if (inFlight.isEmpty()) {
+          break;
+        }
+
+        Chunk chunk;
+        if (options.ordered()) {
+          chunk = inFlight.peek();
+          chunk.await();
+          inFlight.poll();
+        } else {
+          chunk = completed.take();
+          inFlight.remove(chunk);
+        }
+
+        if (chunk.failure != null) {
+          for (String id : chunk.ids) {
+            failedIds.put(id, chunk.failure);
+          }
+          continue;
+        }
+        for (int i = 0; i < chunk.ids.size(); i++) {
+          String id = chunk.ids.get(i);
+          Map<String, Object> result = i < chunk.results.size() ? chunk.results.get(i) : null;
+          if (result == null || missing.test(result)) {
+            missingIds.add(id);
+          } else {
+            succeeded++;
+          }
+          if (consumer != null) {
+            consumer.accept(id, result);
+          }
+        }
+      }
+    } finally {
+      // only left in flight when interrupted or the consumer threw
+      for (Chunk chunk : inFlight) {
+        chunk.future.cancel(true);
+      }
+    }
+    return new BulkDocumentsResult(requests, succeeded, missingIds, failedIds);
+  }
+
+  private List<String> nextChunk(Iterator<String> remaining) {
+    List<String> chunk = new ArrayList<>(options.chunkSize());
+    while (chunk.size() < options.chunkSize() && remaining.hasNext()) {
+      chunk.add(remaining.next());
+    }
+    return chunk;
+  }
+
+  private Chunk submit(List<String> ids, BlockingQueue<Chunk> completed) {
+    Chunk chunk = new Chunk(ids);
+    ClientCallable<List<Map<String, Object>>> call = request.apply(ids);
+    chunk.future = executor.submit(() -> {
+      try {
+        chunk.results = call.call();
+      } catch (ClientException e) {
+        chunk.failure = e;
+      } catch (RuntimeException e) {
+        chunk.failure = new ClientException("Error making http request", e);
+      } finally {
+        if (completed != null) {
+          completed.add(chunk);
+        }
+      }
+    });
+    return chunk;
+  }
+
+  private static class Chunk {
+    final List<String> ids;
+    Future<?> future;
+    volatile List<Map<String, Object>> results;
+    volatile ClientException failure;
+
+    Chunk(List<String> ids) {
+      this.ids = ids;
+    }
+
+    void await() throws InterruptedException {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        // the task catches everything it throws
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,372 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent map from document id to content hash, kept off heap in a memory mapped open addressing table, so it
+ * holds tens of millions of ids without a large heap. Each 24 byte slot holds a 64 bit hash of the id, the content
+ * hash, the offset of the id in a companion file and the sync generation that last saw the id. The ids themselves
+ * are only read back when looking for documents that vanished, or when the table is rebuilt.
+ *
+ * <p>The header names the id file the offsets point into, by a number that every rebuild increments. A rebuild writes
+ * the new id file next to the old one and then replaces the table with a single atomic move, so the table on disk
+ * always refers to a complete id file, even after a crash in between.
+ *
+ * <p>Ids are told apart by their 64 bit hash alone, a collision between two of 50 million ids has a probability in
+ * the order of 1 in 10 000. The table is limited to 2^26 slots, about 50 million ids.
+ */
+class DocumentHashStore implements Closeable {
+  private static final int MAGIC = 0x41534853;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 64;
+  private static final int SLOT_BYTES = 24;
+  private static final int MIN_CAPACITY = 1 << 10;
+  private static final int MAX_CAPACITY = 1 << 26;
+
+  private static final int CAPACITY = 8;
+  private static final int SIZE = 12;
+  private static final int GENERATION = 16;
+  private static final int IDS_LENGTH = 20;
+  private static final int DEAD_ID_BYTES = 28;
+  private static final int ID_FILE = 36;
+
+  private final Path path;
+  private Path idsPath;
+  private FileChannel tableChannel;
+  private FileChannel idsChannel;
+  private MappedByteBuffer table;
+  private int capacity;
+  private int size;
+
+  private DocumentHashStore(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Opens the store at path, creating it if it does not exist yet.
+   */
+  static DocumentHashStore open(Path path) throws IOException {
+    DocumentHashStore store = new DocumentHashStore(path);
+    if (!Files.exists(path)) {
+      create(path, store.idsPath(0), MIN_CAPACITY, 0);
+    }
+    store.map(path);
+    store.deleteStaleFiles();
+    return store;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Starts a sync run, ids not seen during it are reported by {@link #idsNotSeenSince}.
+   *
+   * @return generation of the new run
+   */
+  synchronized int beginGeneration() {
+    int generation = table.getInt(GENERATION) + 1;
+    table.putInt(GENERATION, generation);
+    return generation;
+  }
+
+  /**
+   * Marks an id as seen in generation.
+   *
+   * @return true if the id is stored with the given content hash, so the document is unchanged
+   */
+  synchronized boolean markSeen(long idHash, long contentHash, int generation) {
+    int slot = find(idHash);
+    if (slot < 0) {
+      return false;
+    }
+    table.putInt(offset(slot) + 20, generation);
+    return table.getLong(offset(slot) + 8) == contentHash;
+  }
+
+  /**
+   * Stores the content hash of an id, as seen in generation.
+   */
+  synchronized void put(String id, long idHash, long contentHash, int generation) throws IOException {
+    int slot = find(idHash);
+    if (slot < 0) {
+      if (size + 1 > capacity / 4 * 3) {
+        rebuild(capacity * 2);
+        slot = find(idHash);
+      }
+      slot = -slot - 1;
+      int position = offset(slot);
+      table.putLong(position, idHash);
+      table.putInt(position + 16, (int) appendId(id));
+      table.putInt(SIZE, ++size);
+    }
+    table.putLong(offset(slot) + 8, contentHash);
+    table.putInt(offset(slot) + 20, generation);
+  }
+
+  /**
+   * Removes an id, moving back the entries that probed past it so lookups stay correct without tombstones.
+   */
+  synchronized void remove(long idHash) throws IOException {
+    int slot = find(idHash);
+    if (slot < 0) {
+      return;
+    }
+    long idOffset = Integer.toUnsignedLong(table.getInt(offset(slot) + 16));
+    table.putLong(DEAD_ID_BYTES, table.getLong(DEAD_ID_BYTES) + 2 + readId(idOffset).getBytes(UTF_8).length);
+
+    int mask = capacity - 1;
+    int hole = slot;
+    for (int next = (hole + 1) & mask; table.getLong(offset(next)) != 0; next = (next + 1) & mask) {
+      int home = home(table.getLong(offset(next)));
+      // move next into the hole unless its home lies cyclically after the hole, up to next
+      boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+      if (!stays) {
+        copySlot(next, hole);
+        hole = next;
+      }
+    }
+    clearSlot(hole);
+    table.putInt(SIZE, --size);
+  }
+
+  /**
+   * @return ids whose last sighting was before generation
+   */
+  synchronized List<String> idsNotSeenSince(int generation) throws IOException {
+    List<String> ids = new ArrayList<>();
+    for (int slot = 0; slot < capacity; slot++) {
+      int position = offset(slot);
+      if (table.getLong(position) != 0 && table.getInt(position + 20) - generation < 0) {
+        ids.add(readId(Integer.toUnsignedLong(table.getInt(position + 16))));
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Rewrites the id file once most of it belongs to removed ids.
+   */
+  synchronized void compactIfNeeded() throws IOException {
+    if (table.getLong(DEAD_ID_BYTES) > table.getLong(IDS_LENGTH) / 2) {
+      rebuild(capacity);
+    }
+  }
+
+  /**
+   * Writes outstanding changes to disk.
+   */
+  synchronized void force() throws IOException {
+    table.force();
+    idsChannel.force(false);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (table == null) {
+      return;
+    }
+    force();
+    table = null;
+    tableChannel.close();
+    idsChannel.close();
+  }
+
+  static long hash(String value) {
+    return hash(value.getBytes(UTF_8));
+  }
+
+  /**
+   * @return a 64 bit FNV-1a hash, finalized with the MurmurHash3 mixer for uniform bits, never 0 since that marks an
+   *   empty slot
+   */
+  static long hash(byte[] bytes) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : bytes) {
+      hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash != 0 ? hash : 1;
+  }
+
+  /**
+   * @return the slot holding idHash, or -(slot + 1) for the empty slot where it would be inserted
+   */
+  private int find(long idHash) {
+    int mask = capacity - 1;
+    for (int slot = home(idHash); ; slot = (slot + 1) & mask) {
+      long stored = table.getLong(offset(slot));
+      if (stored == idHash) {
+        return slot;
+      }
+      if (stored == 0) {
+        return -slot - 1;
+      }
+    }
+  }
+
+  private int home(long idHash) {
+    return (int) (idHash ^ (idHash >>> 32)) & (capacity - 1);
+  }
+
+  private static int offset(int slot) {
+    return HEADER_BYTES + slot * SLOT_BYTES;
+  }
+
+  private void copySlot(int from, int to) {
+    for (int i = 0; i < SLOT_BYTES; i += 8) {
+      table.putLong(offset(to) + i, table.getLong(offset(from) + i));
+    }
+  }
+
+  private void clearSlot(int slot) {
+    for (int i = 0; i < SLOT_BYTES; i += 8) {
+      table.putLong(offset(slot) + i, 0);
+    }
+  }
+
+  private long appendId(String id) throws IOException {
+    long idsLength = table.getLong(IDS_LENGTH);
+    if (idsLength > 0xffffffffL) {
+      throw new IOException("Document id file of " + path + " is full");
+    }
+    byte[] bytes = id.getBytes(UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(2 + bytes.length);
+    record.putShort((short) bytes.length).put(bytes).flip();
+    writeFully(idsChannel, record, idsLength);
+    table.putLong(IDS_LENGTH, idsLength + record.limit());
+    return idsLength;
+  }
+
+  private String readId(long idOffset) throws IOException {
+    ByteBuffer length = ByteBuffer.allocate(2);
+    readFully(idsChannel, length, idOffset);
+    ByteBuffer bytes = ByteBuffer.allocate(Short.toUnsignedInt(length.getShort(0)));
+    readFully(idsChannel, bytes, idOffset + 2);
+    return new String(bytes.array(), UTF_8);
+  }
+
+  /**
+   * Copies every entry into a table of the given capacity with a fresh id file, then moves the table into place.
+   */
+  private void rebuild(int newCapacity) throws IOException {
+    if (newCapacity > MAX_CAPACITY) {
+      throw new IOException("Document hash store " + path + " is full");
+    }
+    int newIdFile = table.getInt(ID_FILE) + 1;
+    Path tablePath = path.resolveSibling(path.getFileName() + ".tmp");
+    create(tablePath, idsPath(newIdFile), newCapacity, newIdFile);
+
+    DocumentHashStore rebuilt = new DocumentHashStore(path);
+    rebuilt.map(tablePath);
+    rebuilt.table.putInt(GENERATION, table.getInt(GENERATION));
+    for (int slot = 0; slot < capacity; slot++) {
+      int position = offset(slot);
+      long idHash = table.getLong(position);
+      if (idHash != 0) {
+        String id = readId(Integer.toUnsignedLong(table.getInt(position + 16)));
+        rebuilt.put(id, idHash, table.getLong(position + 8), table.getInt(position + 20));
+      }
+    }
+    rebuilt.close();
+    close();
+
+    // the only step that switches to the new files, the old table keeps pointing at the old id file until then
+    Files.move(tablePath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    map(path);
+    deleteStaleFiles();
+  }
+
+  private void map(Path tablePath) throws IOException {
+    tableChannel = FileChannel.open(tablePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    table = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, tableChannel.size());
+    if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION) {
+      tableChannel.close();
+      table = null;
+      throw new IOException(tablePath + " is not a document hash store");
+    }
+    idsPath = idsPath(table.getInt(ID_FILE));
+    try {
+      idsChannel = FileChannel.open(idsPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      if (idsChannel.size() < table.getLong(IDS_LENGTH)) {
+        idsChannel.close();
+        throw new IOException(idsPath + " is shorter than " + tablePath + " expects");
+      }
+    } catch (IOException e) {
+      tableChannel.close();
+      table = null;
+      throw e;
+    }
+    capacity = table.getInt(CAPACITY);
+    size = table.getInt(SIZE);
+  }
+
+  /**
+   * @return the id file numbered idFile, the first one has no number
+   */
+  private Path idsPath(int idFile) {
+    return path.resolveSibling(path.getFileName() + (idFile == 0 ? ".ids" : ".ids." + idFile));
+  }
+
+  /**
+   * Deletes id files of earlier or interrupted rebuilds, and a table left behind by an interrupted rebuild.
+   */
+  private void deleteStaleFiles() throws IOException {
+    String idsPrefix = path.getFileName() + ".ids";
+    try (DirectoryStream<Path> siblings = Files.newDirectoryStream(path.toAbsolutePath().getParent(),
+      sibling -> sibling.getFileName().toString().equals(idsPrefix)
+        || sibling.getFileName().toString().startsWith(idsPrefix + "."))) {
+      for (Path sibling : siblings) {
+        if (!sibling.getFileName().equals(idsPath.getFileName())) {
+          Files.deleteIfExists(sibling);
+        }
+      }
+    }
+    Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".tmp"));
+  }
+
+  private static void create(Path tablePath, Path tableIdsPath, int capacity, int idFile) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(0, MAGIC).putInt(4, VERSION).putInt(CAPACITY, capacity).putInt(ID_FILE, idFile);
+    try (FileChannel channel = FileChannel.open(tablePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+      StandardOpenOption.WRITE)) {
+      writeFully(channel, header, 0);
+      // extends the file with zeroes, sparse where the file system allows
+      writeFully(channel, ByteBuffer.allocate(1), HEADER_BYTES + (long) capacity * SLOT_BYTES - 1);
+    }
+    Files.write(tableIdsPath, new byte[0]);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of document id file");
+      }
+      position += read;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Outcome of indexing a single document.
+ *
+ * @see Client#indexDocumentsTyped(String, List)
+ */
+public class DocumentStatus {
+  private final String id;
+  private final List<String> errors;
+
+  DocumentStatus(String id, List<String> errors) {
+    this.id = id;
+    this.errors = errors;
+  }
+
+  /**
+   * @return id of the document, generated by App Search if the document did not have one
+   */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * @return reasons the document was rejected, empty if it was indexed
+   */
+  public List<String> errors() {
+    return errors;
+  }
+
+  /**
+   * @return true if the document was rejected
+   */
+  public boolean hasErrors() {
+    return !errors.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("DocumentStatus{id=%s, errors=%s}", id, errors);
+  }
+
+  static List<DocumentStatus> parseAll(byte[] body) throws IOException {
+    List<DocumentStatus> statuses = new ArrayList<>();
+    try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), UTF_8))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        String id = null;
+        List<String> errors = Collections.emptyList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if ("id".equals(name) && reader.peek() != JsonToken.NULL) {
+            id = reader.nextString();
+          } else if ("errors".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+            errors = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+              errors.add(reader.nextString());
+            }
+            reader.endArray();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+        statuses.add(new DocumentStatus(id, Collections.unmodifiableList(errors)));
+      }
+      reader.endArray();
+    }
+    return statuses;
+  }
+}
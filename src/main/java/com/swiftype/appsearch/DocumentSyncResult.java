@@ -0,0 +1,62 @@
+package com.swiftype.appsearch;
+
+/**
+ * Counts of a {@link DocumentSyncer} run.
+ */
+public class DocumentSyncResult {
+  private final long unchanged;
+  private final long indexed;
+  private final long failed;
+  private final long destroyed;
+  private final long destroyFailed;
+
+  DocumentSyncResult(long unchanged, long indexed, long failed, long destroyed, long destroyFailed) {
+    this.unchanged = unchanged;
+    this.indexed = indexed;
+    this.failed = failed;
+    this.destroyed = destroyed;
+    this.destroyFailed = destroyFailed;
+  }
+
+  /**
+   * @return number of documents skipped because they did not change since they were last indexed
+   */
+  public long unchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return number of new or changed documents that were indexed
+   */
+  public long indexed() {
+    return indexed;
+  }
+
+  /**
+   * @return number of new or changed documents that were rejected or whose batch failed, they are sent again on the
+   *   next run
+   */
+  public long failed() {
+    return failed;
+  }
+
+  /**
+   * @return number of documents destroyed because they were not part of this run
+   */
+  public long destroyed() {
+    return destroyed;
+  }
+
+  /**
+   * @return number of vanished documents that could not be destroyed, they are tried again on the next run
+   */
+  public long destroyFailed() {
+    return destroyFailed;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("DocumentSyncResult{unchanged=%d, indexed=%d, failed=%d, destroyed=%d, destroyFailed=%d}",
+      unchanged, indexed, failed, destroyed, destroyFailed);
+  }
+}
@@ -0,0 +1,162 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps an engine in sync with a source of documents, sending only the documents that are new or changed since the
+ * previous run, and destroying the documents that are no longer part of it.
+ *
+ * <pre>
+ * try (DocumentSyncer syncer = new DocumentSyncer(client, "catalog", Paths.get("catalog.hashes"), new BulkIndexerOptions())) {
+ *   for (Map&lt;String, Object&gt; document : catalog) {
+ *     syncer.add(document);
+ *   }
+ *   DocumentSyncResult result = syncer.finish();
+ * }
+ * </pre>
+ *
+ * <p>Every document must have an id. A hash of its canonical JSON is compared with the hash stored for its id by the
+ * previous run, in a memory mapped file at the given path. Hashes are only stored once App Search has indexed the
+ * document without errors, so rejected documents are sent again on the next run. Documents are sent by a
+ * {@link BulkIndexer}, with its batching and concurrency options. The store belongs to one engine and must not be
+ * used by two syncers at the same time.
+ */
+public class DocumentSyncer implements Closeable {
+  private final Client client;
+  private final String engineName;
+  private final DocumentHashStore store;
+  private final BulkIndexer indexer;
+  private final int generation;
+  private final ConcurrentMap<String, Long> pendingHashes = new ConcurrentHashMap<>();
+  private final LongAdder unchanged = new LongAdder();
+  private final LongAdder indexed = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private volatile IOException storeFailure;
+  private boolean finished;
+
+  /**
+   * @param client client used to send documents
+   * @param engineName unique engine name
+   * @param store path of the hash store, created if it does not exist
+   * @param options batching and concurrency options of the indexing requests
+   * @throws IOException if the hash store can not be opened
+   */
+  public DocumentSyncer(Client client, String engineName, Path store, BulkIndexerOptions options) throws IOException {
+    this.client = client;
+    this.engineName = engineName;
+    this.store = DocumentHashStore.open(store);
+    this.generation = this.store.beginGeneration();
+    this.indexer = new BulkIndexer(client, engineName, options, new BulkIndexer.Listener() {
+      @Override
+      public void onBatchIndexed(List<Map<String, Object>> documents, List<Map<String, Object>> statuses) {
+        for (int i = 0; i < documents.size(); i++) {
+          String id = String.valueOf(documents.get(i).get("id"));
+          Long contentHash = pendingHashes.remove(id);
+          Object errors = i < statuses.size() ? statuses.get(i).get("errors") : null;
+          if (contentHash == null || !(errors instanceof List) || !((List<?>) errors).isEmpty()) {
+            failed.increment();
+            continue;
+          }
+          try {
+            DocumentSyncer.this.store.put(id, DocumentHashStore.hash(id), contentHash, generation);
+            indexed.increment();
+          } catch (IOException e) {
+            storeFailure = e;
+            failed.increment();
+          }
+        }
+      }
+
+      @Override
+      public void onBatchFailed(List<Map<String, Object>> documents, ClientException e) {
+        for (Map<String, Object> document : documents) {
+          pendingHashes.remove(String.valueOf(document.get("id")));
+        }
+        failed.add(documents.size());
+      }
+    });
+  }
+
+  /**
+   * Queues a document for indexing, unless it is unchanged since it was last indexed.
+   *
+   * @param document document with an id
+   * @throws InterruptedException if interrupted while waiting for a batch to complete
+   */
+  public void add(Map<String, Object> document) throws InterruptedException {
+    if (finished) {
+      throw new IllegalStateException("DocumentSyncer is finished");
+    }
+    Object id = document.get("id");
+    if (id == null) {
+      throw new IllegalArgumentException("Documents must have an id to be synced");
+    }
+    String documentId = String.valueOf(id);
+    long contentHash = DocumentHashStore.hash(JsonTypes.canonicalJson(document).getBytes(UTF_8));
+    if (store.markSeen(DocumentHashStore.hash(documentId), contentHash, generation)) {
+      unchanged.increment();
+      return;
+    }
+    pendingHashes.put(documentId, contentHash);
+    indexer.add(document);
+  }
+
+  /**
+   * Waits until every queued document has been indexed, then destroys the documents that were synced by an earlier
+   * run but not added to this one. Ends the run, the syncer can not be used afterwards.
+   *
+   * @return counts of the run
+   * @throws InterruptedException if interrupted while waiting for requests
+   * @throws IOException if the hash store could not be updated
+   */
+  public DocumentSyncResult finish() throws InterruptedException, IOException {
+    finished = true;
+    indexer.flush();
+    if (storeFailure != null) {
+      throw storeFailure;
+    }
+
+    List<String> vanished = store.idsNotSeenSince(generation);
+    BulkDocumentsResult destroyed;
+    try {
+      destroyed = client.destroyDocumentsBulk(engineName, vanished, new BulkDocumentsOptions().ordered(false), (id, status) -> {
+        try {
+          store.remove(DocumentHashStore.hash(id));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    store.compactIfNeeded();
+    store.force();
+    return new DocumentSyncResult(unchanged.sum(), indexed.sum(), failed.sum(),
+      vanished.size() - destroyed.failedIds().size(), destroyed.failedIds().size());
+  }
+
+  /**
+   * Sends outstanding documents and closes the hash store. Documents that vanished are only destroyed by
+   * {@link #finish()}.
+   *
+   * @throws IOException if the hash store can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      indexer.close();
+    } finally {
+      store.close();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class Futures {
+  /**
+   * Waits for a future completed by another thread, rethrowing its failure as thrown by the original call.
+   */
+  static <T> T await(CompletableFuture<T> future) throws ClientException {
+    return await(future, null);
+  }
+
+  /**
+   * Like {@link #await(CompletableFuture)}, but gives up once the deadline of the call passed.
+   *
+   * @param deadline deadline of the call, or null if it has none
+   * @throws DeadlineExceededException if the future did not complete before the deadline
+   */
+  static <T> T await(CompletableFuture<T> future, Deadline deadline) throws ClientException {
+    try {
+      return deadline != null ? future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS) : future.get();
+    } catch (TimeoutException e) {
+      throw new DeadlineExceededException("Deadline exceeded while waiting for the response");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ClientException("Interrupted while waiting for response", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ClientException) {
+        throw (ClientException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ClientException("Error making http request", e.getCause());
+    }
+  }
+}
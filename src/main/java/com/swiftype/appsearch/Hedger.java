@@ -0,0 +1,231 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends a call on the calling thread, and a duplicate of it on a worker thread once the first has not answered within
+ * the hedging delay, returning whichever succeeds first and aborting the other. Duplicates are paid for from a token
+ * bucket that every call tops up by the budget percentage, so hedging can not multiply the load on a slow service.
+ */
+class Hedger {
+  /**
+   * A call whose requests can be aborted through the given handle.
+   */
+  @FunctionalInterface
+  interface HedgedCall<T> {
+    T call(RequestHandle handle) throws ClientException;
+  }
+
+  private static final long HEDGE_COST = 1_000;
+  private static final long MAX_TOKENS = 10 * HEDGE_COST;
+  private static final long MIN_SAMPLES = 100;
+
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+  private final long fixedDelayNanos;
+  private final double latencyPercentile;
+  private final long windowNanos;
+  private final long tokensPerCall;
+  private final AtomicLong tokens = new AtomicLong();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder won = new LongAdder();
+  private final LongAdder budgetExhausted = new LongAdder();
+  private volatile LatencyHistogram window = new LatencyHistogram();
+  private volatile long windowStartNanos = System.nanoTime();
+  private volatile long delayNanos;
+
+  /**
+   * @param executor runs the duplicates
+   * @param scheduler starts the duplicates once the hedging delay passed
+   */
+  Hedger(ExecutorService executor, ScheduledExecutorService scheduler, HedgingPolicy policy) {
+    this.executor = executor;
+    this.scheduler = scheduler;
+    this.fixedDelayNanos = policy.delayNanos();
+    this.latencyPercentile = policy.latencyPercentile();
+    this.windowNanos = policy.latencyWindowNanos();
+    this.tokensPerCall = Math.round(policy.budgetPercent() / 100 * HEDGE_COST);
+    this.delayNanos = fixedDelayNanos;
+  }
+
+  <T> T call(HedgedCall<T> call) throws ClientException {
+    requests.increment();
+    deposit();
+
+    Race<T> race = new Race<>();
+    ScheduledFuture<?> trigger = null;
+    try {
+      trigger = scheduler.schedule(() -> startHedge(call, race), delayNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // the client is closing, the call fails on its own
+    }
+
+    long startNanos = System.nanoTime();
+    T value = null;
+    ClientException failure = null;
+    Attempt<T> hedge = null;
+    try {
+      try {
+        value = call.call(race.primary);
+      } catch (ClientException e) {
+        failure = e;
+      } finally {
+        if (trigger != null) {
+          trigger.cancel(false);
+        }
+        hedge = race.finishPrimary();
+      }
+      if (hedge != null && (failure != null || race.hedgeWon)) {
+        // the primary request was aborted for the winning hedge, or failed while the hedge may still succeed
+        hedge.done.await();
+        if (hedge.failure == null) {
+          won.increment();
+          record(hedge.elapsedNanos);
+          return hedge.value;
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      record(System.nanoTime() - startNanos);
+      return value;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ClientException("Interrupted while waiting for response", e);
+    } finally {
+      if (hedge != null) {
+        hedge.cancelUnlessDone();
+      }
+    }
+  }
+
+  HedgingStats stats() {
+    return new HedgingStats(requests.sum(), hedged.sum(), won.sum(), budgetExhausted.sum(), delayNanos);
+  }
+
+  /**
+   * Runs on the scheduler once the hedging delay passed, sending the duplicate from a worker thread.
+   */
+  private <T> void startHedge(HedgedCall<T> call, Race<T> race) {
+    Attempt<T> hedge = new Attempt<>();
+    synchronized (race) {
+      if (race.primaryDone) {
+        return;
+      }
+      if (!withdraw()) {
+        budgetExhausted.increment();
+        return;
+      }
+      race.hedge = hedge;
+    }
+    hedged.increment();
+    try {
+      executor.execute(() -> {
+        try {
+          hedge.value = call.call(hedge.handle);
+        } catch (ClientException e) {
+          hedge.failure = e;
+        } catch (RuntimeException e) {
+          hedge.failure = new ClientException("Error making http request", e);
+        } finally {
+          hedge.elapsedNanos = System.nanoTime() - hedge.startNanos;
+          if (hedge.failure == null && race.hedgeSucceeded()) {
+            race.primary.cancel();
+          }
+          hedge.done.countDown();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      hedge.failure = new ClientException("Client is closed", e);
+      hedge.done.countDown();
+    }
+  }
+
+  private void deposit() {
+    long current;
+    do {
+      current = tokens.get();
+    } while (current < MAX_TOKENS && !tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + tokensPerCall)));
+  }
+
+  private boolean withdraw() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < HEDGE_COST) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - HEDGE_COST));
+    return true;
+  }
+
+  private void record(long elapsedNanos) {
+    window.record(elapsedNanos);
+    long now = System.nanoTime();
+    if (now - windowStartNanos < windowNanos) {
+      return;
+    }
+    synchronized (this) {
+      if (now - windowStartNanos < windowNanos) {
+        return;
+      }
+      LatencyHistogram.Snapshot latencies = window.snapshot();
+      window = new LatencyHistogram();
+      windowStartNanos = now;
+      if (latencyPercentile > 0 && latencies.count() >= MIN_SAMPLES) {
+        delayNanos = latencies.percentile(latencyPercentile);
+      }
+    }
+  }
+
+  /**
+   * The primary request of a call and its duplicate, if one was sent.
+   */
+  private static class Race<T> {
+    final RequestHandle primary = new RequestHandle();
+    Attempt<T> hedge;
+    boolean primaryDone;
+    boolean hedgeWon;
+
+    /**
+     * @return the duplicate, or null if none was sent; none is sent afterwards
+     */
+    synchronized Attempt<T> finishPrimary() {
+      primaryDone = true;
+      return hedge;
+    }
+
+    /**
+     * @return whether the duplicate answered before the primary request, which then has to be aborted
+     */
+    synchronized boolean hedgeSucceeded() {
+      if (!primaryDone) {
+        hedgeWon = true;
+      }
+      return hedgeWon;
+    }
+  }
+
+  private static class Attempt<T> {
+    final RequestHandle handle = new RequestHandle();
+    final long startNanos = System.nanoTime();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile T value;
+    volatile ClientException failure;
+    volatile long elapsedNanos;
+
+    void cancelUnlessDone() {
+      if (done.getCount() > 0) {
+        handle.cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a slow search is sent a second time. All setters return this instance so options can be chained:
+ *
+ * <pre>
+ * HedgingPolicy hedging = new HedgingPolicy()
+ *   .delay(30, TimeUnit.MILLISECONDS)
+ *   .latencyPercentile(95)
+ *   .budgetPercent(5);
+ * </pre>
+ *
+ * <p>When a search, multi search or query suggestion has not completed after the hedging delay, a duplicate request
+ * is sent and the first successful response is used, the other request is aborted. The delay is fixed, or follows a
+ * percentile of the latencies seen in the previous window, so only the slowest requests are hedged. The budget caps
+ * the extra requests at a percentage of all hedgeable calls.
+ */
+public class HedgingPolicy {
+  private long delayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+  private double latencyPercentile = 0;
+  private long latencyWindowNanos = TimeUnit.SECONDS.toNanos(10);
+  private double budgetPercent = 5;
+
+  /**
+   * @param delay how long to wait for a response before hedging, also used until enough latencies have been seen
+   *   when hedging follows a percentile
+   * @param unit unit of delay
+   * @return this policy
+   */
+  public HedgingPolicy delay(long delay, TimeUnit unit) {
+    if (delay < 0) {
+      throw new IllegalArgumentException("delay must not be negative");
+    }
+    this.delayNanos = unit.toNanos(delay);
+    return this;
+  }
+
+  /**
+   * Hedges requests that take longer than a percentile of the latencies of the previous window, instead of a fixed
+   * delay. Disabled by default.
+   *
+   * @param percentile between 0 and 100, such as 95, or 0 to always use the fixed delay
+   * @return this policy
+   */
+  public HedgingPolicy latencyPercentile(double percentile) {
+    if (percentile < 0 || percentile >= 100) {
+      throw new IllegalArgumentException("percentile must be at least 0 and below 100");
+    }
+    this.latencyPercentile = percentile;
+    return this;
+  }
+
+  /**
+   * @param window how long latencies are collected before the hedging delay is updated from them
+   * @param unit unit of window
+   * @return this policy
+   */
+  public HedgingPolicy latencyWindow(long window, TimeUnit unit) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    this.latencyWindowNanos = unit.toNanos(window);
+    return this;
+  }
+
+  /**
+   * @param percent extra requests allowed, as a percentage of hedgeable calls
+   * @return this policy
+   */
+  public HedgingPolicy budgetPercent(double percent) {
+    if (percent <= 0 || percent > 100) {
+      throw new IllegalArgumentException("percent must be above 0 and at most 100");
+    }
+    this.budgetPercent = percent;
+    return this;
+  }
+
+  long delayNanos() {
+    return delayNanos;
+  }
+
+  double latencyPercentile() {
+    return latencyPercentile;
+  }
+
+  long latencyWindowNanos() {
+    return latencyWindowNanos;
+  }
+
+  double budgetPercent() {
+    return budgetPercent;
+  }
+}
@@ -0,0 +1,63 @@
+package com.swiftype.appsearch;
+
+/**
+ * Point in time counters of search request hedging.
+ *
+ * @see Client#hedgingStats()
+ */
+public class HedgingStats {
+  private final long requests;
+  private final long hedged;
+  private final long won;
+  private final long budgetExhausted;
+  private final long delayNanos;
+
+  HedgingStats(long requests, long hedged, long won, long budgetExhausted, long delayNanos) {
+    this.requests = requests;
+    this.hedged = hedged;
+    this.won = won;
+    this.budgetExhausted = budgetExhausted;
+    this.delayNanos = delayNanos;
+  }
+
+  /**
+   * @return number of hedgeable calls
+   */
+  public long requests() {
+    return requests;
+  }
+
+  /**
+   * @return number of duplicate requests sent
+   */
+  public long hedged() {
+    return hedged;
+  }
+
+  /**
+   * @return number of calls answered by the duplicate request rather than the original one
+   */
+  public long won() {
+    return won;
+  }
+
+  /**
+   * @return number of slow calls that were not hedged because the budget was used up
+   */
+  public long budgetExhausted() {
+    return budgetExhausted;
+  }
+
+  /**
+   * @return current hedging delay in nanoseconds
+   */
+  public long delayNanos() {
+    return delayNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("HedgingStats{requests=%d, hedged=%d, won=%d, budgetExhausted=%d, delay=%.3fms}",
+      requests, hedged, won, budgetExhausted, delayNanos / 1e6);
+  }
+}
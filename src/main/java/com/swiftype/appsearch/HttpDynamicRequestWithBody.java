@@ -0,0 +1,19 @@
+package com.swiftype.appsearch;
+
+import java.net.URI;
+
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+
+class HttpDynamicRequestWithBody extends HttpEntityEnclosingRequestBase {
+  private final String method;
+
+  HttpDynamicRequestWithBody(String method, String uri) {
+    this.method = method;
+    setURI(URI.create(uri));
+  }
+
+  @Override
+  public String getMethod() {
+    return this.method;
+  }
+}
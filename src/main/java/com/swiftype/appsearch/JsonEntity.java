@@ -0,0 +1,207 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Request entity that serializes its body straight to the connection output stream, so large document batches are
+ * never held in memory as an intermediate JSON string. Sent with chunked transfer encoding since the length is not
+ * known up front. The body is serialized again on every write, so the entity can be retried. Optionally gzips the
+ * body on the fly. A {@link RawJsonArray} body is copied as is, and sent with a content length when not gzipped.
+ *
+ * <p>Bodies that serialize to at most {@value #BUFFERED_BODY_BYTES} bytes and are not gzipped, such as searches, are
+ * serialized once up front and sent with a content length, since some proxies reject or buffer chunked requests,
+ * notably GET requests with a body.
+ */
+class JsonEntity extends AbstractHttpEntity {
+  static final int BUFFERED_BODY_BYTES = 16 * 1024;
+
+  private static final ThreadLocal<CappedBuffer> BUFFERS = ThreadLocal.withInitial(CappedBuffer::new);
+
+  private final Object body;
+  private final int gzipLevel;
+  private final long uncompressedLength;
+  private final byte[] buffered;
+
+  JsonEntity(Object body) {
+    this(body, -1, body instanceof RawJsonArray ? ((RawJsonArray) body).length() : -1);
+  }
+
+  /**
+   * @param gzipLevel deflate level to gzip the body with, or -1 to send it uncompressed
+   * @param uncompressedLength serialized size of the body if already known, -1 otherwise
+   */
+  JsonEntity(Object body, int gzipLevel, long uncompressedLength) {
+    this.body = body;
+    this.gzipLevel = gzipLevel;
+    this.buffered = gzipLevel < 0 && !(body instanceof RawJsonArray) && uncompressedLength <= BUFFERED_BODY_BYTES
+      ? serializeSmall(body)
+      : null;
+    this.uncompressedLength = buffered != null ? buffered.length : uncompressedLength;
+    setChunked(gzipLevel >= 0 || !(body instanceof RawJsonArray) && buffered == null);
+    if (gzipLevel >= 0) {
+      setContentEncoding("gzip");
+    }
+  }
+
+  boolean isGzipped() {
+    return gzipLevel >= 0;
+  }
+
+  /**
+   * @return serialized size of the body before compression, or -1 if unknown
+   */
+  long uncompressedLength() {
+    return uncompressedLength;
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public long getContentLength() {
+    return isChunked() ? -1 : uncompressedLength;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+  /**
+   * Buffers the serialized body. Only used by transports that pull the content rather than letting the entity
+   * write it, such as the non-blocking client.
+   */
+  @Override
+  public InputStream getContent() throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    writeTo(buffer);
+    return new ByteArrayInputStream(buffer.toByteArray());
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    if (gzipLevel < 0) {
+      writeJson(outStream);
+      return;
+    }
+    GzipStream gzip = new GzipStream(outStream, gzipLevel);
+    try {
+      writeJson(gzip);
+      // finished rather than closed, the output stream belongs to the connection
+      gzip.finish();
+    } finally {
+      gzip.release();
+    }
+  }
+
+  private void writeJson(OutputStream outStream) throws IOException {
+    if (buffered != null) {
+      outStream.write(buffered);
+    } else {
+      writeJson(body, outStream);
+    }
+  }
+
+  private static void writeJson(Object body, OutputStream outStream) throws IOException {
+    if (body instanceof RawJsonArray) {
+      ((RawJsonArray) body).writeTo(outStream);
+      return;
+    }
+    // Not closed, the output stream belongs to the connection. Buffered because OutputStreamWriter copies every
+    // string it is handed into a new array, while BufferedWriter copies into its own buffer.
+    Writer writer = new BufferedWriter(new OutputStreamWriter(outStream, UTF_8));
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    try {
+      JsonTypes.GSON.toJson(body, body.getClass(), jsonWriter);
+    } catch (JsonIOException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+    }
+    jsonWriter.flush();
+  }
+
+  /**
+   * @return the serialized body, or null if it is larger than {@link #BUFFERED_BODY_BYTES}, in which case
+   *   serializing stopped there
+   */
+  private static byte[] serializeSmall(Object body) {
+    CappedBuffer buffer = BUFFERS.get();
+    buffer.count = 0;
+    try {
+      writeJson(body, buffer);
+    } catch (BufferFullException e) {
+      return null;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize request body", e);
+    }
+    return Arrays.copyOf(buffer.bytes, buffer.count);
+  }
+
+  /**
+   * Reusable buffer of each thread for small bodies, failing once a body does not fit.
+   */
+  private static class CappedBuffer extends OutputStream {
+    final byte[] bytes = new byte[BUFFERED_BODY_BYTES];
+    int count;
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == bytes.length) {
+        throw new BufferFullException();
+      }
+      bytes[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len > bytes.length - count) {
+        throw new BufferFullException();
+      }
+      System.arraycopy(b, off, bytes, count, len);
+      count += len;
+    }
+  }
+
+  /**
+   * Stops serializing a body too large to buffer, without the cost of a stack trace.
+   */
+  private static class BufferFullException extends IOException {
+    private static final long serialVersionUID = 6407291485061728393L;
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /**
+   * Gzip stream with a configurable level, whose native deflater can be released without closing the connection.
+   */
+  private static class GzipStream extends GZIPOutputStream {
+    GzipStream(OutputStream out, int level) throws IOException {
+      super(out, 8192);
+      def.setLevel(level);
+    }
+
+    void release() {
+      def.end();
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A JSON value within a UTF-8 encoded document, known only by its byte offsets. Members and elements are found by
+ * scanning for the end of each value, without building the values skipped over; a value is only parsed
+ * when {@link #parse()} is called on it.
+ *
+ * <p>The document is expected to be valid JSON, as parsing a malformed one fails only when a value is parsed.
+ */
+class JsonSlice {
+  private final byte[] bytes;
+  private final int start;
+  private final int end;
+
+  private JsonSlice(byte[] bytes, int start, int end) {
+    this.bytes = bytes;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return the top level value of a document
+   */
+  static JsonSlice of(byte[] bytes) {
+    int start = skipWhitespace(bytes, 0);
+    return new JsonSlice(bytes, start, start < bytes.length ? valueEnd(bytes, start) : start);
+  }
+
+  boolean isObject() {
+    return start < end && bytes[start] == '{';
+  }
+
+  boolean isArray() {
+    return start < end && bytes[start] == '[';
+  }
+
+  /**
+   * @return the value of the first member with that name, or null if this is not an object or has no such member
+   */
+  JsonSlice member(String name) {
+    if (!isObject()) {
+      return null;
+    }
+    byte[] encodedName = name.getBytes(UTF_8);
+    int position = skipWhitespace(bytes, start + 1);
+    while (position < end && bytes[position] == '"') {
+      int nameEnd = stringEnd(bytes, position);
+      int valueStart = skipWhitespace(bytes, skipWhitespace(bytes, nameEnd) + 1);
+      int valueEnd = valueEnd(bytes, valueStart);
+      if (nameEquals(position, nameEnd, encodedName, name)) {
+        return new JsonSlice(bytes, valueStart, valueEnd);
+      }
+      position = next(valueEnd);
+    }
+    return null;
+  }
+
+  /**
+   * @return the members of this object by name, in document order, or an empty map if this is not an object
+   */
+  Map<String, JsonSlice> members() {
+    Map<String, JsonSlice> members = new LinkedHashMap<>();
+    if (!isObject()) {
+      return members;
+    }
+    int position = skipWhitespace(bytes, start + 1);
+    while (position < end && bytes[position] == '"') {
+      int nameEnd = stringEnd(bytes, position);
+      int valueStart = skipWhitespace(bytes, skipWhitespace(bytes, nameEnd) + 1);
+      int valueEnd = valueEnd(bytes, valueStart);
+      members.putIfAbsent(decodeString(position, nameEnd), new JsonSlice(bytes, valueStart, valueEnd));
+      position = next(valueEnd);
+    }
+    return members;
+  }
+
+  /**
+   * @return the elements of this array, or an empty list if this is not an array
+   */
+  List<JsonSlice> elements() {
+    List<JsonSlice> elements = new ArrayList<>();
+    if (!isArray()) {
+      return elements;
+    }
+    int position = skipWhitespace(bytes, start + 1);
+    while (position < end && bytes[position] != ']') {
+      int valueEnd = valueEnd(bytes, position);
+      elements.add(new JsonSlice(bytes, position, valueEnd));
+      position = next(valueEnd);
+    }
+    return elements;
+  }
+
+  /**
+   * @return the value parsed into a tree, JsonNull for an empty slice
+   */
+  JsonElement parse() {
+    if (start == end) {
+      return JsonNull.INSTANCE;
+    }
+    // strings without escapes, numbers and literals, which are most field values, are built without a reader
+    byte first = bytes[start];
+    if (first == '"' && indexOf('\\', start + 1, end - 1) < 0) {
+      return new JsonPrimitive(new String(bytes, start + 1, end - start - 2, UTF_8));
+    }
+    if (first == '-' || first >= '0' && first <= '9') {
+      // the same Number type JsonParser builds
+      return new JsonPrimitive(new LazilyParsedNumber(new String(bytes, start, end - start, UTF_8)));
+    }
+    if (first == 't' || first == 'f' || first == 'n') {
+      String literal = new String(bytes, start, end - start, UTF_8);
+      if (literal.equals("null")) {
+        return JsonNull.INSTANCE;
+      }
+      if (literal.equals("true") || literal.equals("false")) {
+        return new JsonPrimitive(Boolean.valueOf(literal));
+      }
+    }
+    try (JsonReader reader = new JsonReader(new StringReader(new String(bytes, start, end - start, UTF_8)))) {
+      return new JsonParser().parse(reader);
+    } catch (IOException | JsonParseException e) {
+      throw new IllegalStateException("Unable to read response body", e);
+    }
+  }
+
+  /**
+   * @return position of the next member or element after a value, past its separating comma
+   */
+  private int next(int valueEnd) {
+    int position = skipWhitespace(bytes, valueEnd);
+    return position < end && bytes[position] == ',' ? skipWhitespace(bytes, position + 1) : position;
+  }
+
+  private String decodeString(int quote, int stringEnd) {
+    if (indexOf('\\', quote + 1, stringEnd - 1) >= 0) {
+      return new JsonSlice(bytes, quote, stringEnd).parse().getAsString();
+    }
+    return new String(bytes, quote + 1, stringEnd - quote - 2, UTF_8);
+  }
+
+  /**
+   * Compares the name of a member with the bytes of the wanted name, decoding it only if it contains escapes.
+   */
+  private boolean nameEquals(int quote, int stringEnd, byte[] encodedName, String name) {
+    if (indexOf('\\', quote + 1, stringEnd - 1) >= 0) {
+      return name.equals(decodeString(quote, stringEnd));
+    }
+    int length = stringEnd - quote - 2;
+    if (length != encodedName.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bytes[quote + 1 + i] != encodedName[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(char c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int skipWhitespace(byte[] bytes, int position) {
+    while (position < bytes.length
+      && (bytes[position] == ' ' || bytes[position] == '\n' || bytes[position] == '\r' || bytes[position] == '\t')) {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * @return position just after the value starting at position
+   */
+  private static int valueEnd(byte[] bytes, int position) {
+    if (position >= bytes.length) {
+      return position;
+    }
+    byte first = bytes[position];
+    if (first == '"') {
+      return stringEnd(bytes, position);
+    }
+    if (first == '{' || first == '[') {
+      int depth = 0;
+      while (position < bytes.length) {
+        byte b = bytes[position];
+        if (b == '"') {
+          position = stringEnd(bytes, position);
+          continue;
+        }
+        if (b == '{' || b == '[') {
+          depth++;
+        } else if ((b == '}' || b == ']') && --depth == 0) {
+          return position + 1;
+        }
+        position++;
+      }
+      return position;
+    }
+    // numbers and literals end at the next separator
+    while (position < bytes.length && bytes[position] != ',' && bytes[position] != '}' && bytes[position] != ']'
+      && bytes[position] != ' ' && bytes[position] != '\n' && bytes[position] != '\r' && bytes[position] != '\t') {
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * @return position just after the closing quote of the string starting at quote
+   */
+  private static int stringEnd(byte[] bytes, int quote) {
+    int position = quote + 1;
+    while (position < bytes.length) {
+      byte b = bytes[position];
+      if (b == '\\') {
+        position += 2;
+      } else if (b == '"') {
+        return position + 1;
+      } else {
+        position++;
+      }
+    }
+    return position;
+  }
+}
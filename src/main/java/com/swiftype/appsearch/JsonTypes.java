@@ -1,12 +1,162 @@
 package com.swiftype.appsearch;
 
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.reflect.TypeToken;
 
 class JsonTypes {
+  /** Gson instances are thread safe, share one rather than rebuilding its type adapter cache on every call. */
+  static final Gson GSON = new Gson();
+
   static final TypeToken<Map<String, Object>> OBJECT = new TypeToken<Map<String, Object>>() { };
+  static final TypeToken<Map<String, Boolean>> OBJECT_OF_BOOLEANS = new TypeToken<Map<String, Boolean>>() { };
   static final TypeToken<List<Map<String, Object>>> ARRAY_OF_OBJECTS = new TypeToken<List<Map<String, Object>>>() { };
-}
 
+  /**
+   * @return the UTF-8 encoded size of the JSON form of value, without building the JSON string
+   */
+  static long serializedSize(Object value) {
+    if (value instanceof RawJsonArray) {
+      return ((RawJsonArray) value).length();
+    }
+    CountingWriter writer = new CountingWriter();
+    GSON.toJson(value, writer);
+    return writer.utf8Bytes;
+  }
+
+  /**
+   * @return JSON for value with object keys sorted, so that equal structures always produce equal strings
+   */
+  static String canonicalJson(Object value) {
+    return GSON.toJson(canonicalize(GSON.toJsonTree(value)));
+  }
+
+  /**
+   * Copies the maps and lists of a parsed response. Leaf values are immutable and shared.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T deepCopy(T value) {
+    if (value instanceof Map) {
+      Map<Object, Object> copy = new LinkedHashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        copy.put(entry.getKey(), deepCopy(entry.getValue()));
+      }
+      return (T) copy;
+    }
+    if (value instanceof List) {
+      List<Object> copy = new ArrayList<>(((List<?>) value).size());
+      for (Object element : (List<?>) value) {
+        copy.add(deepCopy(element));
+      }
+      return (T) copy;
+    }
+    return value;
+  }
+
+  /**
+   * Converts a parsed JSON element to the equivalent Map, List, String, Number or Boolean. Numbers are returned as
+   * parsed lazily rather than converted to Double.
+   */
+  static Object decode(JsonElement element) {
+    if (element == null || element.isJsonNull()) {
+      return null;
+    }
+    if (element.isJsonObject()) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        map.put(entry.getKey(), decode(entry.getValue()));
+      }
+      return map;
+    }
+    if (element.isJsonArray()) {
+      List<Object> list = new ArrayList<>();
+      for (JsonElement child : element.getAsJsonArray()) {
+        list.add(decode(child));
+      }
+      return list;
+    }
+    JsonPrimitive primitive = element.getAsJsonPrimitive();
+    if (primitive.isBoolean()) {
+      return primitive.getAsBoolean();
+    }
+    if (primitive.isNumber()) {
+      return primitive.getAsNumber();
+    }
+    return primitive.getAsString();
+  }
+
+  private static JsonElement canonicalize(JsonElement element) {
+    if (element.isJsonObject()) {
+      Map<String, JsonElement> sorted = new TreeMap<>();
+      for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        sorted.put(entry.getKey(), canonicalize(entry.getValue()));
+      }
+      JsonObject canonical = new JsonObject();
+      for (Map.Entry<String, JsonElement> entry : sorted.entrySet()) {
+        canonical.add(entry.getKey(), entry.getValue());
+      }
+      return canonical;
+    }
+    if (element.isJsonArray()) {
+      JsonArray canonical = new JsonArray();
+      for (JsonElement child : element.getAsJsonArray()) {
+        canonical.add(canonicalize(child));
+      }
+      return canonical;
+    }
+    return element;
+  }
+
+  /**
+   * Counts the UTF-8 encoded size of what is written without keeping it.
+   */
+  private static class CountingWriter extends Writer {
+    private long utf8Bytes;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        write(buffer[i]);
+      }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        write(str.charAt(i));
+      }
+    }
+
+    @Override
+    public void write(int c) {
+      if (c < 0x80) {
+        utf8Bytes += 1;
+      } else if (c < 0x800) {
+        utf8Bytes += 2;
+      } else if (Character.isSurrogate((char) c)) {
+        // each half of a surrogate pair accounts for half of the 4 byte encoding
+        utf8Bytes += 2;
+      } else {
+        utf8Bytes += 3;
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
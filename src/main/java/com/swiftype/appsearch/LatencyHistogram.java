@@ -0,0 +1,108 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non-negative values with bounded relative error, laid out like HdrHistogram: values are
+ * grouped by their highest set bit, and each group is split into {@value #SUB_BUCKETS} linear sub buckets, so every
+ * recorded value is within 1/{@value #SUB_BUCKETS} of the value it is reported as. Values above 2^40, about 18
+ * minutes in nanoseconds, are recorded as 2^40.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_VALUE = 1L << 40;
+
+  private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long value) {
+    long clamped = Math.max(0, Math.min(MAX_VALUE, value));
+    counts.incrementAndGet(index(clamped));
+    count.increment();
+    sum.add(clamped);
+    long currentMax;
+    while (clamped > (currentMax = max.get()) && !max.compareAndSet(currentMax, clamped)) {
+      // retry
+    }
+  }
+
+  /**
+   * @return a copy of the recorded values, which may or may not include values recorded concurrently
+   */
+  Snapshot snapshot() {
+    long[] copy = new long[counts.length()];
+    long total = 0;
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    return new Snapshot(copy, total, sum.sum(), max.get());
+  }
+
+  static int index(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * @return the highest value recorded in the same bucket as values of the given index
+   */
+  static long highestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  static class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    long count() {
+      return count;
+    }
+
+    long max() {
+      return max;
+    }
+
+    double mean() {
+      return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value below or at which the given percentage of recorded values fall, or 0 if there are none
+     */
+    long percentile(double percentile) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestEquivalentValue(i), max);
+        }
+      }
+      return max;
+    }
+  }
+}
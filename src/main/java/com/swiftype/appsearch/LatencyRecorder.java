@@ -0,0 +1,115 @@
+package com.swiftype.appsearch;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request listener that keeps latency histograms and counters per operation, without depending on a metrics library:
+ *
+ * <pre>
+ * LatencyRecorder recorder = new LatencyRecorder();
+ * Client client = new Client(hostIdentifier, apiKey, new ClientOptions().addRequestListener(recorder));
+ * ...
+ * OperationStats searches = recorder.snapshot().get(Operation.SEARCH);
+ * System.out.println(searches.p99Nanos());
+ * </pre>
+ *
+ * <p>Latencies are kept in HdrHistogram style histograms with a relative error below 1%, one per request phase, so
+ * recording is lock free and takes constant time and memory.
+ */
+public class LatencyRecorder implements RequestListener {
+  private volatile Recording recording = new Recording();
+
+  @Override
+  public void onRequest(RequestEvent event) {
+    recording.operations.computeIfAbsent(event.operation(), OperationRecording::new).record(event);
+  }
+
+  /**
+   * @return statistics of every operation that has been requested since the recorder was created or last reset
+   */
+  public Map<Operation, OperationStats> snapshot() {
+    Recording current = recording;
+    long elapsedNanos = System.nanoTime() - current.startNanos;
+    Map<Operation, OperationStats> snapshot = new EnumMap<>(Operation.class);
+    for (OperationRecording operation : current.operations.values()) {
+      snapshot.put(operation.operation, operation.snapshot(elapsedNanos));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Forgets everything recorded so far, so following snapshots only cover requests completed from now on.
+   */
+  public void reset() {
+    recording = new Recording();
+  }
+
+  private static class Recording {
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentMap<Operation, OperationRecording> operations = new ConcurrentHashMap<>();
+  }
+
+  private static class OperationRecording {
+    private final Operation operation;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder uncompressedRequestBytes = new LongAdder();
+    private final LongAdder uncompressedResponseBytes = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+    private final EnumMap<RequestPhase, LatencyHistogram> latencies = new EnumMap<>(RequestPhase.class);
+
+    OperationRecording(Operation operation) {
+      this.operation = operation;
+      for (RequestPhase phase : RequestPhase.values()) {
+        latencies.put(phase, new LatencyHistogram());
+      }
+    }
+
+    void record(RequestEvent event) {
+      requests.increment();
+      if (event.cancelled()) {
+        // cut short by the client, neither its outcome nor its latency says anything about the service
+        cancelled.increment();
+        return;
+      }
+      if (event.failure() != null) {
+        failures.increment();
+      }
+      if (event.attempt() > 1) {
+        retries.increment();
+      }
+      requestBytes.add(Math.max(0, event.requestBytes()));
+      responseBytes.add(Math.max(0, event.responseBytes()));
+      uncompressedRequestBytes.add(Math.max(0, event.uncompressedRequestBytes()));
+      uncompressedResponseBytes.add(Math.max(0, event.uncompressedResponseBytes()));
+      if (event.statusCode() > 0) {
+        statusCodes.computeIfAbsent(event.statusCode(), statusCode -> new LongAdder()).increment();
+      }
+      for (Map.Entry<RequestPhase, LatencyHistogram> latency : latencies.entrySet()) {
+        long nanos = event.nanos(latency.getKey());
+        if (nanos >= 0) {
+          latency.getValue().record(nanos);
+        }
+      }
+    }
+
+    OperationStats snapshot(long elapsedNanos) {
+      Map<Integer, Long> statusCodeCounts = new TreeMap<>();
+      statusCodes.forEach((statusCode, count) -> statusCodeCounts.put(statusCode, count.sum()));
+      EnumMap<RequestPhase, LatencyHistogram.Snapshot> latencySnapshots = new EnumMap<>(RequestPhase.class);
+      latencies.forEach((phase, histogram) -> latencySnapshots.put(phase, histogram.snapshot()));
+      return new OperationStats(operation, elapsedNanos, requests.sum(), failures.sum(), cancelled.sum(), retries.sum(),
+        requestBytes.sum(), responseBytes.sum(), uncompressedRequestBytes.sum(), uncompressedResponseBytes.sum(),
+        statusCodeCounts, latencySnapshots);
+    }
+  }
+}
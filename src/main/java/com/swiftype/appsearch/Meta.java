@@ -0,0 +1,61 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Metadata of a search response.
+ */
+public class Meta {
+  private final JsonObject meta;
+
+  Meta(JsonObject meta) {
+    this.meta = meta;
+  }
+
+  /**
+   * @return paging information
+   */
+  public Page page() {
+    JsonElement page = meta.get("page");
+    return new Page(page != null && page.isJsonObject() ? page.getAsJsonObject() : new JsonObject());
+  }
+
+  /**
+   * @return id of the request, useful when contacting support
+   */
+  public String requestId() {
+    JsonElement requestId = meta.get("request_id");
+    return requestId != null && !requestId.isJsonNull() ? requestId.getAsString() : null;
+  }
+
+  /**
+   * @return warnings about the request, such as ignored options
+   */
+  public List<String> warnings() {
+    return strings("warnings");
+  }
+
+  /**
+   * @return alerts about the engine, such as an ongoing reindex
+   */
+  public List<String> alerts() {
+    return strings("alerts");
+  }
+
+  private List<String> strings(String name) {
+    JsonElement element = meta.get(name);
+    if (element == null || !element.isJsonArray()) {
+      return Collections.emptyList();
+    }
+    List<String> strings = new ArrayList<>();
+    for (JsonElement string : element.getAsJsonArray()) {
+      strings.add(string.getAsString());
+    }
+    return strings;
+  }
+}
@@ -0,0 +1,51 @@
+package com.swiftype.appsearch;
+
+/**
+ * Counts of an {@link NdjsonImporter} run.
+ */
+public class NdjsonImportResult {
+  private final long indexed;
+  private final long rejected;
+  private final long failed;
+  private final long batches;
+
+  NdjsonImportResult(long indexed, long rejected, long failed, long batches) {
+    this.indexed = indexed;
+    this.rejected = rejected;
+    this.failed = failed;
+    this.batches = batches;
+  }
+
+  /**
+   * @return number of documents indexed without errors
+   */
+  public long indexed() {
+    return indexed;
+  }
+
+  /**
+   * @return number of lines that were not a JSON object or whose document App Search rejected
+   */
+  public long rejected() {
+    return rejected;
+  }
+
+  /**
+   * @return number of documents in batches whose request failed
+   */
+  public long failed() {
+    return failed;
+  }
+
+  /**
+   * @return number of requests sent
+   */
+  public long batches() {
+    return batches;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("NdjsonImportResult{indexed=%d, rejected=%d, failed=%d, batches=%d}", indexed, rejected, failed, batches);
+  }
+}
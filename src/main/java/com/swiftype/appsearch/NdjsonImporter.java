@@ -0,0 +1,296 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Indexes the documents of a newline delimited JSON file, one JSON object per line, without parsing them. The file
+ * is memory mapped, lines are found by scanning for newlines, which JSON only allows escaped inside strings, and
+ * batches are sent by splicing the bytes of their lines into a JSON array.
+ *
+ * <pre>
+ * NdjsonImporter importer = new NdjsonImporter(client, "favorite-videos", new BulkIndexerOptions(), null);
+ * NdjsonImportResult result = importer.importFile(Paths.get("videos.ndjson"));
+ * </pre>
+ *
+ * <p>Batches respect {@link BulkIndexerOptions#maxBatchDocuments(int)} and {@link BulkIndexerOptions#maxBatchBytes(long)}
+ * and are sent by {@link BulkIndexerOptions#workerThreads(int)} threads, with at most
+ * {@link BulkIndexerOptions#maxInFlightBatches(int)} queued or in flight. Blank lines are skipped, lines that do not
+ * look like a JSON object are reported as rejected without being sent. When App Search refuses a batch as malformed,
+ * its halves are sent again until each malformed line is sent on its own and can be reported as rejected.
+ */
+public class NdjsonImporter {
+  /**
+   * Receives documents that were not indexed, on a worker thread. Line numbers start at 1.
+   */
+  public interface Listener {
+    /**
+     * @param line line of the document in the file
+     * @param errors the reasons the document was not indexed
+     */
+    default void onDocumentRejected(long line, List<String> errors) {
+    }
+
+    /**
+     * @param firstLine line of the first document of the batch
+     * @param lastLine line of the last document of the batch
+     * @param e the reason the request failed
+     */
+    default void onBatchFailed(long firstLine, long lastLine, ClientException e) {
+    }
+  }
+
+  private static final long MAP_WINDOW_BYTES = 256 * 1024 * 1024;
+
+  private final Client client;
+  private final String engineName;
+  private final BulkIndexerOptions options;
+  private final Listener listener;
+  private final long windowBytes;
+
+  /**
+   * @param client client used to send batches
+   * @param engineName unique engine name
+   * @param options batching and concurrency options
+   * @param listener receives rejected documents and failed batches, may be null
+   */
+  public NdjsonImporter(Client client, String engineName, BulkIndexerOptions options, Listener listener) {
+    this(client, engineName, options, listener, MAP_WINDOW_BYTES);
+  }
+
+  /**
+   * @param windowBytes size of the file regions mapped at a time, which is also the maximum line length
+   */
+  NdjsonImporter(Client client, String engineName, BulkIndexerOptions options, Listener listener, long windowBytes) {
+    this.client = client;
+    this.engineName = engineName;
+    this.options = options;
+    this.listener = listener != null ? listener : new Listener() { };
+    this.windowBytes = windowBytes;
+  }
+
+  /**
+   * Indexes every line of a file and waits until all batches have completed.
+   *
+   * @param file newline delimited JSON file, UTF-8 encoded
+   * @return counts of indexed, rejected and failed documents
+   * @throws IOException if the file can not be read, or has a line longer than 256MB
+   * @throws InterruptedException if interrupted while waiting for a batch to complete
+   */
+  public NdjsonImportResult importFile(Path file) throws IOException, InterruptedException {
+    Import run = new Import();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long regionStart = 0;
+      long line = 0;
+      while (regionStart < size) {
+        // mapped in windows, a buffer can not address more than 2GB and a smaller mapping is cheaper to set up
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(windowBytes, size - regionStart));
+        int limit = region.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+          if (region.get(i) == '\n') {
+            run.add(region, lineStart, i, ++line);
+            lineStart = i + 1;
+          }
+        }
+        if (regionStart + limit == size) {
+          if (lineStart < limit) {
+            run.add(region, lineStart, limit, ++line);
+          }
+          break;
+        }
+        if (lineStart == 0) {
+          throw new IOException(String.format("Line %d of %s is longer than %d bytes", line + 1, file, windowBytes));
+        }
+        // the next window starts with the line that did not end in this one
+        regionStart += lineStart;
+      }
+      run.finish();
+    } finally {
+      run.executor.shutdown();
+    }
+    return new NdjsonImportResult(run.indexed.get(), run.rejected.get(), run.failed.get(), run.batches.get());
+  }
+
+  /**
+   * State of a single {@link #importFile(Path)} call.
+   */
+  private class Import {
+    final ExecutorService executor;
+    final Semaphore inFlightBatches = new Semaphore(options.maxInFlightBatches());
+    final AtomicLong indexed = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+
+    List<ByteBuffer> documents = new ArrayList<>();
+    long[] lines = new long[options.maxBatchDocuments()];
+    long batchBytes = 2;
+
+    Import() {
+      AtomicInteger threadCount = new AtomicInteger();
+      this.executor = Executors.newFixedThreadPool(options.workerThreads(), runnable -> {
+        Thread thread = new Thread(runnable, "app-search-ndjson-importer-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    void add(ByteBuffer region, int start, int end, long line) throws InterruptedException {
+      while (start < end && isWhitespace(region.get(start))) {
+        start++;
+      }
+      while (end > start && isWhitespace(region.get(end - 1))) {
+        end--;
+      }
+      if (start == end) {
+        return;
+      }
+      if (region.get(start) != '{' || region.get(end - 1) != '}') {
+        rejected.incrementAndGet();
+        notifyListener(() -> listener.onDocumentRejected(line, Collections.singletonList("Line is not a JSON object")));
+        return;
+      }
+
+      long documentBytes = end - start + 1;
+      if (!documents.isEmpty() && batchBytes + documentBytes > options.maxBatchBytes()) {
+        sendBatch();
+      }
+      ByteBuffer document = region.duplicate();
+      document.limit(end);
+      document.position(start);
+      lines[documents.size()] = line;
+      documents.add(document.slice());
+      batchBytes += documentBytes;
+      if (documents.size() >= options.maxBatchDocuments()) {
+        sendBatch();
+      }
+    }
+
+    void finish() throws InterruptedException {
+      if (!documents.isEmpty()) {
+        sendBatch();
+      }
+      inFlightBatches.acquire(options.maxInFlightBatches());
+      inFlightBatches.release(options.maxInFlightBatches());
+    }
+
+    private void sendBatch() throws InterruptedException {
+      List<ByteBuffer> batch = documents;
+      long[] batchLines = lines;
+      documents = new ArrayList<>();
+      lines = new long[options.maxBatchDocuments()];
+      batchBytes = 2;
+
+      inFlightBatches.acquire();
+      batches.incrementAndGet();
+      try {
+        executor.execute(() -> {
+          try {
+            send(batch, batchLines);
+          } finally {
+            inFlightBatches.release();
+          }
+        });
+      } catch (RuntimeException e) {
+        inFlightBatches.release();
+        throw e;
+      }
+    }
+
+    private void send(List<ByteBuffer> batch, long[] batchLines) {
+      send(batch, batchLines, 0, batch.size());
+    }
+
+    /**
+     * Sends the documents from index from to index to of a batch.
+     */
+    private void send(List<ByteBuffer> batch, long[] batchLines, int from, int to) {
+      List<ByteBuffer> documents = batch.subList(from, to);
+      try {
+        List<Map<String, Object>> statuses = client.indexRawDocuments(engineName, documents);
+        for (int i = 0; i < statuses.size() && i < documents.size(); i++) {
+          Object errors = statuses.get(i).get("errors");
+          if (errors instanceof List && !((List<?>) errors).isEmpty()) {
+            @SuppressWarnings("unchecked")
+            List<String> reasons = (List<String>) errors;
+            long line = batchLines[from + i];
+            rejected.incrementAndGet();
+            notifyListener(() -> listener.onDocumentRejected(line, reasons));
+          } else {
+            indexed.incrementAndGet();
+          }
+        }
+      } catch (ApiException e) {
+        if (e.statusCode() != 400) {
+          fail(batchLines, from, to, e);
+        } else if (to - from > 1) {
+          // the lines are not parsed here, so a malformed one fails the whole request, the halves are sent again
+          // until the lines at fault are on their own
+          int middle = (from + to) >>> 1;
+          send(batch, batchLines, from, middle);
+          send(batch, batchLines, middle, to);
+        } else {
+          long line = batchLines[from];
+          rejected.incrementAndGet();
+          notifyListener(() -> listener.onDocumentRejected(line, errors(e)));
+        }
+      } catch (ClientException e) {
+        fail(batchLines, from, to, e);
+      }
+    }
+
+    private void fail(long[] batchLines, int from, int to, ClientException e) {
+      failed.addAndGet(to - from);
+      notifyListener(() -> listener.onBatchFailed(batchLines[from], batchLines[to - 1], e));
+    }
+  }
+
+  /**
+   * @return the errors of an App Search error response, or its body if it has none
+   */
+  private static List<String> errors(ApiException e) {
+    try {
+      Map<String, Object> body = JsonTypes.GSON.fromJson(e.responseBody(), JsonTypes.OBJECT.getType());
+      Object errors = body != null ? body.get("errors") : null;
+      if (errors instanceof List && !((List<?>) errors).isEmpty()) {
+        List<String> reasons = new ArrayList<>();
+        for (Object error : (List<?>) errors) {
+          reasons.add(String.valueOf(error));
+        }
+        return reasons;
+      }
+    } catch (JsonParseException parseError) {
+      // not the usual error object
+    }
+    return Collections.singletonList(e.getMessage());
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+
+  private static void notifyListener(Runnable notification) {
+    try {
+      notification.run();
+    } catch (RuntimeException e) {
+      // a failing listener must not stop the import
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.swiftype.appsearch;
+
+/**
+ * Logical App Search api operations, as reported to a {@link RequestListener}.
+ */
+public enum Operation {
+  SEARCH("GET"),
+  MULTI_SEARCH("POST"),
+  QUERY_SUGGESTION("POST"),
+  LIST_ENGINES("GET"),
+  GET_ENGINE("GET"),
+  CREATE_ENGINE("POST"),
+  DESTROY_ENGINE("DELETE"),
+  INDEX_DOCUMENTS("POST"),
+  GET_DOCUMENTS("GET"),
+  DESTROY_DOCUMENTS("DELETE");
+
+  final String method;
+
+  Operation(String method) {
+    this.method = method;
+  }
+
+  /**
+   * @return whether the operation searches an engine, as opposed to reading or managing it
+   */
+  boolean isSearch() {
+    return this == SEARCH || this == MULTI_SEARCH || this == QUERY_SUGGESTION;
+  }
+
+  /**
+   * @return whether the operation indexes or destroys documents
+   */
+  boolean isDocumentWrite() {
+    return this == INDEX_DOCUMENTS || this == DESTROY_DOCUMENTS;
+  }
+}
@@ -0,0 +1,177 @@
+package com.swiftype.appsearch;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time statistics of the requests made for one operation.
+ *
+ * @see LatencyRecorder#snapshot()
+ */
+public class OperationStats {
+  private final Operation operation;
+  private final long elapsedNanos;
+  private final long requests;
+  private final long failures;
+  private final long cancelled;
+  private final long retries;
+  private final long requestBytes;
+  private final long responseBytes;
+  private final long uncompressedRequestBytes;
+  private final long uncompressedResponseBytes;
+  private final Map<Integer, Long> statusCodes;
+  private final EnumMap<RequestPhase, LatencyHistogram.Snapshot> latencies;
+
+  OperationStats(Operation operation, long elapsedNanos, long requests, long failures, long cancelled, long retries,
+                 long requestBytes, long responseBytes, long uncompressedRequestBytes, long uncompressedResponseBytes,
+                 Map<Integer, Long> statusCodes,
+                 EnumMap<RequestPhase, LatencyHistogram.Snapshot> latencies) {
+    this.operation = operation;
+    this.elapsedNanos = elapsedNanos;
+    this.requests = requests;
+    this.failures = failures;
+    this.cancelled = cancelled;
+    this.retries = retries;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.uncompressedRequestBytes = uncompressedRequestBytes;
+    this.uncompressedResponseBytes = uncompressedResponseBytes;
+    this.statusCodes = Collections.unmodifiableMap(statusCodes);
+    this.latencies = latencies;
+  }
+
+  /**
+   * @return the api operation
+   */
+  public Operation operation() {
+    return operation;
+  }
+
+  /**
+   * @return number of requests sent, including retries
+   */
+  public long requests() {
+    return requests;
+  }
+
+  /**
+   * @return number of requests that failed
+   */
+  public long failures() {
+    return failures;
+  }
+
+  /**
+   * @return number of requests aborted because a hedged duplicate answered first, not counted as failures and left
+   *   out of the latencies
+   */
+  public long cancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @return number of requests that were retries of an earlier one
+   */
+  public long retries() {
+    return retries;
+  }
+
+  /**
+   * @return requests per second since the recorder was created or last reset
+   */
+  public double throughput() {
+    return elapsedNanos > 0 ? requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+  }
+
+  /**
+   * @return total size of request bodies in bytes as sent
+   */
+  public long requestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * @return total size of response bodies in bytes as received
+   */
+  public long responseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * @return total size of request bodies in bytes before compression
+   */
+  public long uncompressedRequestBytes() {
+    return uncompressedRequestBytes;
+  }
+
+  /**
+   * @return total size of response bodies in bytes after decompression
+   */
+  public long uncompressedResponseBytes() {
+    return uncompressedResponseBytes;
+  }
+
+  /**
+   * @return number of bytes compression kept off the wire, for requests and responses together
+   */
+  public long compressionSavedBytes() {
+    return uncompressedRequestBytes - requestBytes + uncompressedResponseBytes - responseBytes;
+  }
+
+  /**
+   * @return number of responses by http status code
+   */
+  public Map<Integer, Long> statusCodes() {
+    return statusCodes;
+  }
+
+  /**
+   * @param phase request phase
+   * @param percentile between 0 and 100
+   * @return duration in nanoseconds that the given percentage of requests spent at most in the phase, within 1%
+   */
+  public long percentileNanos(RequestPhase phase, double percentile) {
+    LatencyHistogram.Snapshot latency = latencies.get(phase);
+    return latency != null ? latency.percentile(percentile) : 0;
+  }
+
+  /**
+   * @return median total request duration in nanoseconds
+   */
+  public long p50Nanos() {
+    return percentileNanos(RequestPhase.TOTAL, 50);
+  }
+
+  /**
+   * @return 99th percentile of total request duration in nanoseconds
+   */
+  public long p99Nanos() {
+    return percentileNanos(RequestPhase.TOTAL, 99);
+  }
+
+  /**
+   * @return 99.9th percentile of total request duration in nanoseconds
+   */
+  public long p999Nanos() {
+    return percentileNanos(RequestPhase.TOTAL, 99.9);
+  }
+
+  /**
+   * @return longest total request duration in nanoseconds
+   */
+  public long maxNanos() {
+    LatencyHistogram.Snapshot latency = latencies.get(RequestPhase.TOTAL);
+    return latency != null ? latency.max() : 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("OperationStats{operation=%s, requests=%d, failures=%d, cancelled=%d, retries=%d, throughput=%.1f/s, "
+        + "p50=%.3fms, p99=%.3fms, p999=%.3fms, max=%.3fms, requestBytes=%d, responseBytes=%d, compressionSavedBytes=%d, "
+        + "statusCodes=%s}",
+      operation, requests, failures, cancelled, retries, throughput(), p50Nanos() / 1e6, p99Nanos() / 1e6, p999Nanos() / 1e6,
+      maxNanos() / 1e6, requestBytes, responseBytes, compressionSavedBytes(), statusCodes);
+  }
+}
@@ -0,0 +1,48 @@
+package com.swiftype.appsearch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Paging information of a search response.
+ */
+public class Page {
+  private final JsonObject page;
+
+  Page(JsonObject page) {
+    this.page = page;
+  }
+
+  /**
+   * @return current page number, starting at 1
+   */
+  public int current() {
+    return intValue("current");
+  }
+
+  /**
+   * @return number of results per page
+   */
+  public int size() {
+    return intValue("size");
+  }
+
+  /**
+   * @return total number of pages
+   */
+  public int totalPages() {
+    return intValue("total_pages");
+  }
+
+  /**
+   * @return total number of matching results
+   */
+  public int totalResults() {
+    return intValue("total_results");
+  }
+
+  private int intValue(String name) {
+    JsonElement value = page.get(name);
+    return value != null && !value.isJsonNull() ? value.getAsInt() : 0;
+  }
+}
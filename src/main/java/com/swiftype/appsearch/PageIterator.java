@@ -0,0 +1,155 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks the results of a paginated endpoint page by page, following {@code meta.page.total_pages}. While the caller
+ * consumes one page, up to prefetchDepth following pages are already being fetched. Closing the iterator, or reaching
+ * its end, cancels the pages still in flight.
+ */
+class PageIterator implements Iterator<Map<String, Object>>, Closeable {
+  /**
+   * App Search refuses to page beyond 100 pages of search results.
+   */
+  static final int MAX_SEARCH_PAGES = 100;
+
+  private final IntFunction<Future<Map<String, Object>>> fetchPage;
+  private final int prefetchDepth;
+  private final int maxPages;
+  private final ArrayDeque<Future<Map<String, Object>>> pending = new ArrayDeque<>();
+  private Iterator<Map<String, Object>> results = Collections.emptyIterator();
+  private int totalPages = 1;
+  private int nextPage = 1;
+  private int requestedPages = 0;
+  private boolean closed;
+
+  /**
+   * @param fetchPage starts fetching a page, numbered from 1
+   * @param prefetchDepth number of pages to fetch ahead of the one being consumed
+   * @param maxPages highest page number to fetch, whatever total_pages says
+   */
+  PageIterator(IntFunction<Future<Map<String, Object>>> fetchPage, int prefetchDepth, int maxPages) {
+    this.fetchPage = fetchPage;
+    this.prefetchDepth = prefetchDepth;
+    this.maxPages = maxPages;
+  }
+
+  /**
+   * @return a sequential stream over the results, which cancels prefetched pages when closed
+   */
+  Stream<Map<String, Object>> stream() {
+    Spliterator<Map<String, Object>> spliterator =
+      Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(this::close);
+  }
+
+  /**
+   * Copies search options with the page number set, keeping any page size.
+   */
+  static Map<String, Object> withPage(Map<String, Object> options, int current) {
+    Map<String, Object> pageOptions = new HashMap<>();
+    Object page = options.get("page");
+    if (page instanceof Map) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> existing = (Map<String, Object>) page;
+      pageOptions.putAll(existing);
+    }
+    pageOptions.put("current", current);
+
+    Map<String, Object> pagedOptions = new HashMap<>(options);
+    pagedOptions.put("page", pageOptions);
+    return pagedOptions;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!results.hasNext()) {
+      if (closed || nextPage > Math.min(totalPages, maxPages)) {
+        // total_pages may have shrunk below pages already prefetched
+        close();
+        return false;
+      }
+      Map<String, Object> response = await(pending.isEmpty() ? request() : pending.poll());
+      nextPage++;
+      totalPages = totalPages(response);
+      // keep the window of prefetched pages full now that total_pages is known
+      while (pending.size() < prefetchDepth && requestedPages < Math.min(totalPages, maxPages)) {
+        pending.add(request());
+      }
+
+      @SuppressWarnings("unchecked")
+      List<Map<String, Object>> pageResults = (List<Map<String, Object>>) response.get("results");
+      if (pageResults == null || pageResults.isEmpty()) {
+        // the collection shrank since total_pages was counted
+        close();
+        return false;
+      }
+      results = pageResults.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public Map<String, Object> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return results.next();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    results = Collections.emptyIterator();
+    Future<Map<String, Object>> future;
+    while ((future = pending.poll()) != null) {
+      future.cancel(true);
+    }
+  }
+
+  private Future<Map<String, Object>> request() {
+    return fetchPage.apply(++requestedPages);
+  }
+
+  private Map<String, Object> await(Future<Map<String, Object>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      close();
+      Thread.currentThread().interrupt();
+      throw new UncheckedClientException(new ClientException("Interrupted while waiting for response", e));
+    } catch (ExecutionException | CancellationException e) {
+      close();
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      if (cause instanceof ClientException) {
+        throw new UncheckedClientException((ClientException) cause);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new UncheckedClientException(new ClientException("Error making http request", cause));
+    }
+  }
+
+  private static int totalPages(Map<String, Object> response) {
+    Object meta = response.get("meta");
+    Object page = meta instanceof Map ? ((Map<?, ?>) meta).get("page") : null;
+    Object totalPages = page instanceof Map ? ((Map<?, ?>) page).get("total_pages") : null;
+    return totalPages instanceof Number ? ((Number) totalPages).intValue() : 1;
+  }
+}
@@ -0,0 +1,59 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Request body made of elements that are already UTF-8 encoded JSON. It is written by splicing the encoded bytes into
+ * a JSON array, so the elements are never parsed or serialized again, and its length is known up front.
+ */
+final class RawJsonArray {
+  private final List<ByteBuffer> elements;
+  private final long length;
+
+  /**
+   * @param elements encoded JSON values, read from their position to their limit, which are left untouched
+   */
+  RawJsonArray(List<ByteBuffer> elements) {
+    this.elements = elements;
+    long length = elements.isEmpty() ? 2 : elements.size() + 1;
+    for (ByteBuffer element : elements) {
+      length += element.remaining();
+    }
+    this.length = length;
+  }
+
+  /**
+   * @return number of bytes written by {@link #writeTo(OutputStream)}
+   */
+  long length() {
+    return length;
+  }
+
+  void writeTo(OutputStream out) throws IOException {
+    out.write('[');
+    byte[] chunk = null;
+    for (int i = 0; i < elements.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      // duplicated so concurrent or repeated writes of the same body do not move each other's position
+      ByteBuffer element = elements.get(i).duplicate();
+      if (element.hasArray()) {
+        out.write(element.array(), element.arrayOffset() + element.position(), element.remaining());
+        continue;
+      }
+      if (chunk == null) {
+        chunk = new byte[8192];
+      }
+      while (element.hasRemaining()) {
+        int count = Math.min(chunk.length, element.remaining());
+        element.get(chunk, 0, count);
+        out.write(chunk, 0, count);
+      }
+    }
+    out.write(']');
+  }
+}
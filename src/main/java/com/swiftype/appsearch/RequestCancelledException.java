@@ -0,0 +1,13 @@
+package com.swiftype.appsearch;
+
+/**
+ * Thrown by a request that was aborted because another request already answered the call, such as the losing
+ * request of a hedged search. Neither a failure nor a success for circuit breaking and concurrency limits.
+ */
+class RequestCancelledException extends ClientException {
+  private static final long serialVersionUID = 2316785074306853208L;
+
+  RequestCancelledException() {
+    super("Request cancelled");
+  }
+}
@@ -0,0 +1,62 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical calls share a single in-flight request. Every caller receives its own copy of the result
+ * so callers can not observe each other's modifications.
+ */
+class RequestCoalescer {
+  private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+  private final AtomicLong executed = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  <T> T execute(String key, ClientCallable<T> call) throws ClientException {
+    Flight flight = new Flight();
+    Flight current = flights.compute(key, (k, existing) -> {
+      if (existing == null) {
+        return flight;
+      }
+      // counted while still registered, so the leader sees every waiter once it removes the flight
+      existing.waiters.incrementAndGet();
+      return existing;
+    });
+    if (current != flight) {
+      coalesced.incrementAndGet();
+      return await(current);
+    }
+
+    executed.incrementAndGet();
+    T value;
+    try {
+      value = call.call();
+    } catch (ClientException | RuntimeException e) {
+      flights.remove(key, flight);
+      flight.result.completeExceptionally(e);
+      throw e;
+    }
+
+    // No caller can join once the flight is removed, so the original can be handed out when nobody else waits on it
+    flights.remove(key, flight);
+    flight.result.complete(value);
+    return flight.waiters.get() > 0 ? JsonTypes.deepCopy(value) : value;
+  }
+
+  CoalescingStats stats() {
+    return new CoalescingStats(executed.get(), coalesced.get());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T await(Flight flight) throws ClientException {
+    // the flight is bounded by the deadline of its leader, a waiter stops waiting at its own
+    return JsonTypes.deepCopy((T) Futures.await(flight.result, Deadline.current()));
+  }
+
+  private static class Flight {
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+    final AtomicInteger waiters = new AtomicInteger();
+  }
+}
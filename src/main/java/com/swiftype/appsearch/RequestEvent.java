@@ -0,0 +1,125 @@
+package com.swiftype.appsearch;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timings, status and sizes of a single http request.
+ *
+ * @see RequestListener
+ */
+public class RequestEvent {
+  private final Operation operation;
+  private final String path;
+  private final int attempt;
+  private final int statusCode;
+  private final ClientException failure;
+  private final long requestBytes;
+  private final long responseBytes;
+  private final long uncompressedRequestBytes;
+  private final long uncompressedResponseBytes;
+  private final Map<RequestPhase, Long> phaseNanos;
+
+  RequestEvent(Operation operation, String path, int attempt, int statusCode, ClientException failure,
+               long requestBytes, long responseBytes, long uncompressedRequestBytes, long uncompressedResponseBytes,
+               EnumMap<RequestPhase, Long> phaseNanos) {
+    this.operation = operation;
+    this.path = path;
+    this.attempt = attempt;
+    this.statusCode = statusCode;
+    this.failure = failure;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.uncompressedRequestBytes = uncompressedRequestBytes;
+    this.uncompressedResponseBytes = uncompressedResponseBytes;
+    this.phaseNanos = phaseNanos;
+  }
+
+  /**
+   * @return the api operation
+   */
+  public Operation operation() {
+    return operation;
+  }
+
+  /**
+   * @return request path relative to the base url, such as "engines/my-engine/search"
+   */
+  public String path() {
+    return path;
+  }
+
+  /**
+   * @return 1 for the first request of a call, 2 for its first retry, and so on
+   */
+  public int attempt() {
+    return attempt;
+  }
+
+  /**
+   * @return http status code of the response, or 0 if no response was received
+   */
+  public int statusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return why the request failed, or null if it succeeded
+   */
+  public ClientException failure() {
+    return failure;
+  }
+
+  /**
+   * @return true if the request was aborted because a hedged duplicate answered first, which is not a failure
+   */
+  public boolean cancelled() {
+    return failure instanceof RequestCancelledException;
+  }
+
+  /**
+   * @return size of the request body in bytes as sent, after compression, or -1 if unknown
+   */
+  public long requestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * @return size of the response body in bytes as received, before decompression, or -1 if unknown
+   */
+  public long responseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * @return size of the request body in bytes before it was compressed, the same as {@link #requestBytes()} if it
+   *   was sent uncompressed
+   */
+  public long uncompressedRequestBytes() {
+    return uncompressedRequestBytes;
+  }
+
+  /**
+   * @return size of the response body in bytes after it was decompressed, as far as it was read, the same as
+   *   {@link #responseBytes()} if it was received uncompressed
+   */
+  public long uncompressedResponseBytes() {
+    return uncompressedResponseBytes;
+  }
+
+  /**
+   * @param phase request phase
+   * @return nanoseconds spent in the phase, or -1 if the phase was not reached or is not measured by the client
+   */
+  public long nanos(RequestPhase phase) {
+    Long nanos = phaseNanos.get(phase);
+    return nanos != null ? nanos : -1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RequestEvent{operation=%s, path=%s, attempt=%d, statusCode=%d, requestBytes=%d, responseBytes=%d, "
+        + "uncompressedRequestBytes=%d, uncompressedResponseBytes=%d, phaseNanos=%s}",
+      operation, path, attempt, statusCode, requestBytes, responseBytes, uncompressedRequestBytes, uncompressedResponseBytes, phaseNanos);
+  }
+}
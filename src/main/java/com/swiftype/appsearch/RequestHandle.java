@@ -0,0 +1,35 @@
+package com.swiftype.appsearch;
+
+/**
+ * Lets another thread abort the request a call is currently sending, including any later attempts of it.
+ */
+class RequestHandle {
+  private TransportRequest request;
+  private boolean cancelled;
+
+  void attach(TransportRequest request) {
+    boolean cancelNow;
+    synchronized (this) {
+      this.request = request;
+      cancelNow = cancelled;
+    }
+    if (cancelNow) {
+      request.cancel();
+    }
+  }
+
+  void cancel() {
+    TransportRequest current;
+    synchronized (this) {
+      cancelled = true;
+      current = request;
+    }
+    if (current != null) {
+      current.cancel();
+    }
+  }
+
+  synchronized boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -0,0 +1,20 @@
+package com.swiftype.appsearch;
+
+/**
+ * Receives timings, status and sizes of every http request sent by a {@link Client} or {@link AsyncClient}.
+ *
+ * <p>Listeners are called on the thread that completed the request, so they should return quickly. Exceptions
+ * thrown by a listener are ignored.
+ *
+ * @see ClientOptions#addRequestListener(RequestListener)
+ * @see LatencyRecorder
+ */
+@FunctionalInterface
+public interface RequestListener {
+  /**
+   * Called once for every request sent, including each retry, after its response has been parsed or it failed.
+   *
+   * @param event what happened
+   */
+  void onRequest(RequestEvent event);
+}
@@ -0,0 +1,27 @@
+package com.swiftype.appsearch;
+
+/**
+ * Phases of a single http request, as timed in a {@link RequestEvent}.
+ */
+public enum RequestPhase {
+  /**
+   * Leasing a connection from the pool, including connecting and the TLS handshake if a new one was needed.
+   */
+  CONNECTION,
+  /**
+   * Serializing the request body and writing the request to the connection.
+   */
+  REQUEST_WRITE,
+  /**
+   * Waiting for the response status line and headers after the request has been written.
+   */
+  SERVER,
+  /**
+   * Reading and parsing the response body.
+   */
+  RESPONSE_READ,
+  /**
+   * The whole request, from leasing a connection until the response has been parsed.
+   */
+  TOTAL
+}
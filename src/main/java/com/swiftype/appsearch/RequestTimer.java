@@ -0,0 +1,145 @@
+package com.swiftype.appsearch;
+
+import java.util.EnumMap;
+import java.util.List;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Collects the phase timings and sizes of a single request, and reports them to the request listeners once the
+ * request completes. Phases are timed by whoever drives the request: {@link Client} with
+ * {@link TimingRequestExecutor}, or {@link AsyncClient}. Not thread safe, a request is driven by one thread at a time.
+ */
+class RequestTimer {
+  static final String CONTEXT_ATTRIBUTE = "com.swiftype.appsearch.request-timer";
+
+  private final List<RequestListener> listeners;
+  private final ApiRequest<?> apiRequest;
+  private final int attempt;
+  private final long startNanos = System.nanoTime();
+  private final EnumMap<RequestPhase, Long> phaseNanos = new EnumMap<>(RequestPhase.class);
+  private long phaseStartNanos = startNanos;
+  private boolean responseReceived;
+  private int statusCode;
+  private long requestBytes;
+  private long responseBytes;
+  private long uncompressedRequestBytes = -1;
+  private long uncompressedResponseBytes = -1;
+
+  RequestTimer(List<RequestListener> listeners, ApiRequest<?> apiRequest, int attempt) {
+    this.listeners = listeners;
+    this.apiRequest = apiRequest;
+    this.attempt = attempt;
+  }
+
+  static RequestTimer from(HttpContext context) {
+    return context != null ? (RequestTimer) context.getAttribute(CONTEXT_ATTRIBUTE) : null;
+  }
+
+  /**
+   * A connection has been leased and the request is about to be written.
+   */
+  void requestSending() {
+    endPhase(RequestPhase.CONNECTION);
+  }
+
+  void requestSent() {
+    endPhase(RequestPhase.REQUEST_WRITE);
+  }
+
+  /**
+   * The status line and headers have been received, the body is about to be read.
+   */
+  void responseHeadersReceived(int statusCode) {
+    endPhase(RequestPhase.SERVER);
+    this.statusCode = statusCode;
+    this.responseReceived = true;
+  }
+
+  /**
+   * The complete response has been received by a transport that does not time the preceding phases separately.
+   */
+  void responseReceived(int statusCode, long responseBytes) {
+    this.phaseStartNanos = System.nanoTime();
+    this.statusCode = statusCode;
+    this.responseBytes = responseBytes;
+    this.responseReceived = true;
+  }
+
+  /**
+   * @return whether the transport reported the response status, after timing the phases before it
+   */
+  boolean isResponseReceived() {
+    return responseReceived;
+  }
+
+  /**
+   * The request body is compressed, and was the given size before.
+   */
+  void requestCompressed(long uncompressedBytes) {
+    this.uncompressedRequestBytes = uncompressedBytes;
+  }
+
+  /**
+   * The response body is compressed, its uncompressed size is counted separately as it is decompressed.
+   */
+  void responseCompressed() {
+    this.uncompressedResponseBytes = 0;
+  }
+
+  boolean isResponseCompressed() {
+    return uncompressedResponseBytes >= 0;
+  }
+
+  void addUncompressedResponseBytes(long bytes) {
+    uncompressedResponseBytes += bytes;
+  }
+
+  void addRequestBytes(long bytes) {
+    requestBytes += bytes;
+  }
+
+  void addResponseBytes(long bytes) {
+    responseBytes += bytes;
+  }
+
+  /**
+   * @param failure why the request failed, or null if it succeeded
+   */
+  void finish(ClientException failure) {
+    long endNanos = System.nanoTime();
+    if (responseReceived) {
+      phaseNanos.put(RequestPhase.RESPONSE_READ, endNanos - phaseStartNanos);
+    }
+    phaseNanos.put(RequestPhase.TOTAL, endNanos - startNanos);
+
+    RequestEvent event = new RequestEvent(apiRequest.operation, apiRequest.path, attempt, statusCode, failure,
+      requestBytes, responseBytes,
+      uncompressedRequestBytes >= 0 ? uncompressedRequestBytes : requestBytes,
+      uncompressedResponseBytes >= 0 ? uncompressedResponseBytes : responseBytes,
+      phaseNanos);
+    for (RequestListener listener : listeners) {
+      try {
+        listener.onRequest(event);
+      } catch (RuntimeException e) {
+        // a broken listener must not fail the request
+      }
+    }
+  }
+
+  /**
+   * Reports a failed request, for use in a throw statement.
+   */
+  static ClientException finish(RequestTimer timer, ClientException failure) {
+    if (timer != null) {
+      timer.finish(failure);
+    }
+    return failure;
+  }
+
+  private void endPhase(RequestPhase phase) {
+    long now = System.nanoTime();
+    phaseNanos.put(phase, now - phaseStartNanos);
+    phaseStartNanos = now;
+  }
+}
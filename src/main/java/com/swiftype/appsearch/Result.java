@@ -0,0 +1,99 @@
+package com.swiftype.appsearch;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonElement;
+
+/**
+ * A single search result, kept as the location of its bytes in the response. A field value is only parsed and
+ * converted to a Java type when it is read, and again each time it is read, as nothing parsed is kept.
+ */
+public class Result {
+  private final JsonSlice result;
+
+  Result(JsonSlice result) {
+    this.result = result;
+  }
+
+  /**
+   * @return document id
+   */
+  public String id() {
+    return rawString("id");
+  }
+
+  /**
+   * @return relevance score of the result, or 0 if the response did not include one
+   */
+  public double score() {
+    JsonElement score = value("_meta", "score");
+    return score != null && score.isJsonPrimitive() ? score.getAsDouble() : 0;
+  }
+
+  /**
+   * @return names of the fields included in the result
+   */
+  public Set<String> fieldNames() {
+    Set<String> names = new LinkedHashSet<>();
+    for (String name : result.members().keySet()) {
+      if (!"_meta".equals(name)) {
+        names.add(name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * @param field field name
+   * @return the raw value as a String, Double, Boolean or List, like in the maps of
+   *   {@link Client#search(String, String, Map)}, or null if the field has no raw value
+   */
+  public Object raw(String field) {
+    JsonElement value = value(field, "raw");
+    return value != null ? JsonTypes.GSON.fromJson(value, Object.class) : null;
+  }
+
+  /**
+   * @param field field name
+   * @return the raw value as a String, or null if the field has no raw value
+   */
+  public String rawString(String field) {
+    JsonElement value = value(field, "raw");
+    return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+  }
+
+  /**
+   * @param field field name
+   * @return the raw value as a Number exactly as written in the response, unlike the Double of {@link #raw(String)},
+   *   or null if the field has no raw value
+   */
+  public Number rawNumber(String field) {
+    JsonElement value = value(field, "raw");
+    return value != null && value.isJsonPrimitive() ? value.getAsNumber() : null;
+  }
+
+  /**
+   * @param field field name
+   * @return the highlighted snippet, or null if the field has no snippet
+   */
+  public String snippet(String field) {
+    JsonElement value = value(field, "snippet");
+    return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+  }
+
+  /**
+   * @return the result decoded into the same structure returned by {@link Client#search(String, String, Map)}
+   */
+  public Map<String, Object> asMap() {
+    return JsonTypes.GSON.fromJson(result.parse(), JsonTypes.OBJECT.getType());
+  }
+
+  private JsonElement value(String field, String type) {
+    JsonSlice values = result.member(field);
+    JsonSlice value = values != null ? values.member(type) : null;
+    JsonElement parsed = value != null ? value.parse() : null;
+    return parsed != null && !parsed.isJsonNull() ? parsed : null;
+  }
+}
@@ -0,0 +1,133 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Decides whether and when a failed request is sent again. All setters return this instance so options can be chained:
+ *
+ * <pre>
+ * RetryPolicy retryPolicy = new RetryPolicy()
+ *   .maxAttempts(5)
+ *   .backoff(200, 5_000, TimeUnit.MILLISECONDS);
+ * </pre>
+ *
+ * <p>Only idempotent requests are retried: searches, multi searches, query suggestions, reads, document deletions
+ * and indexing requests in which every document has an id. A request is retried when sending it fails, or when the
+ * response status is one of {@link #retryOnStatus(int...)}. The delay between attempts grows exponentially and is
+ * randomized by {@link #jitter(double)}, unless the response has a Retry-After header, which is honored as is.
+ */
+public class RetryPolicy {
+  private int maxAttempts = 3;
+  private long initialBackoffMillis = 100;
+  private long maxBackoffMillis = TimeUnit.SECONDS.toMillis(10);
+  private double jitter = 1.0;
+  private Set<Integer> retryableStatusCodes = statusCodes(429, 502, 503, 504);
+
+  /**
+   * @param maxAttempts total number of attempts, including the first one
+   * @return this policy
+   */
+  public RetryPolicy maxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be positive");
+    }
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  /**
+   * @param initialBackoff delay before the first retry, doubled for every following one
+   * @param maxBackoff upper bound of the delay, also the longest Retry-After that is waited for
+   * @param unit unit of initialBackoff and maxBackoff
+   * @return this policy
+   */
+  public RetryPolicy backoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+      throw new IllegalArgumentException("backoff must be non-negative and initialBackoff at most maxBackoff");
+    }
+    this.initialBackoffMillis = unit.toMillis(initialBackoff);
+    this.maxBackoffMillis = unit.toMillis(maxBackoff);
+    return this;
+  }
+
+  /**
+   * @param jitter fraction of each delay that is randomized, from 0 for fixed delays to 1 for full jitter
+   * @return this policy
+   */
+  public RetryPolicy jitter(double jitter) {
+    if (jitter < 0 || jitter > 1) {
+      throw new IllegalArgumentException("jitter must be between 0 and 1");
+    }
+    this.jitter = jitter;
+    return this;
+  }
+
+  /**
+   * @param statusCodes response status codes that are retried, 429, 502, 503 and 504 by default
+   * @return this policy
+   */
+  public RetryPolicy retryOnStatus(int... statusCodes) {
+    this.retryableStatusCodes = statusCodes(statusCodes);
+    return this;
+  }
+
+  /**
+   * @param apiRequest request that failed
+   * @param failure why it failed
+   * @param attempt number of attempts made so far, starting at 1
+   * @return milliseconds to wait before the next attempt, or -1 if the failure should be thrown
+   */
+  long delayMillis(ApiRequest<?> apiRequest, ClientException failure, int attempt) {
+    if (attempt >= maxAttempts || !apiRequest.idempotent) {
+      return -1;
+    }
+
+    if (failure instanceof ApiException) {
+      ApiException apiException = (ApiException) failure;
+      if (!retryableStatusCodes.contains(apiException.statusCode())) {
+        return -1;
+      }
+      long retryAfterMillis = retryAfterMillis(apiException.header("Retry-After"), System.currentTimeMillis());
+      if (retryAfterMillis >= 0) {
+        return retryAfterMillis <= maxBackoffMillis ? retryAfterMillis : -1;
+      }
+    } else if (!(failure.getCause() instanceof IOException)) {
+      return -1;
+    }
+
+    long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+    long jittered = (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+    return backoff - jittered;
+  }
+
+  /**
+   * @return the delay requested by a Retry-After header in either delta seconds or http date form, or -1 if absent
+   *   or malformed
+   */
+  static long retryAfterMillis(String retryAfter, long now) {
+    if (retryAfter == null) {
+      return -1;
+    }
+    try {
+      return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(retryAfter);
+      return date != null ? Math.max(0, date.getTime() - now) : -1;
+    }
+  }
+
+  private static Set<Integer> statusCodes(int... statusCodes) {
+    Set<Integer> set = new HashSet<>();
+    for (int statusCode : statusCodes) {
+      set.add(statusCode);
+    }
+    return set;
+  }
+}
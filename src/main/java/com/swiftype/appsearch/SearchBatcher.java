@@ -0,0 +1,211 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects concurrent searches against the same engine for a short window and sends them as one multi_search
+ * request, handing each caller its own result.
+ */
+class SearchBatcher {
+  private final Client client;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService timer;
+  private final ExecutorService sender;
+  private final Map<String, List<PendingSearch>> pendingByEngine = new HashMap<>();
+
+  SearchBatcher(Client client, long window, TimeUnit unit, int maxBatchSize) {
+    this.client = client;
+    this.windowNanos = unit.toNanos(window);
+    this.maxBatchSize = maxBatchSize;
+    this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-search-batcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.sender = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-search-batch-sender");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  Map<String, Object> search(String engineName, String query, Map<String, Object> options) throws ClientException {
+    PendingSearch pending = new PendingSearch(query, options);
+
+    List<PendingSearch> full = null;
+    synchronized (this) {
+      List<PendingSearch> batch = pendingByEngine.get(engineName);
+      boolean opened = batch == null;
+      if (opened) {
+        batch = new ArrayList<>();
+        pendingByEngine.put(engineName, batch);
+      }
+      batch.add(pending);
+      if (batch.size() >= maxBatchSize) {
+        pendingByEngine.remove(engineName);
+        full = batch;
+      } else if (opened) {
+        List<PendingSearch> scheduled = batch;
+        try {
+          timer.schedule(() -> flush(engineName, scheduled), windowNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+          pendingByEngine.remove(engineName);
+          throw new ClientException("Client is closed", e);
+        }
+      }
+    }
+
+    if (full != null) {
+      List<PendingSearch> batch = full;
+      execute(batch, () -> send(engineName, batch));
+    }
+    return Futures.await(pending.result, pending.deadline);
+  }
+
+  void close() {
+    timer.shutdownNow();
+    sender.shutdownNow();
+    synchronized (this) {
+      for (List<PendingSearch> batch : pendingByEngine.values()) {
+        for (PendingSearch pending : batch) {
+          pending.result.completeExceptionally(new ClientException("Client closed"));
+        }
+      }
+      pendingByEngine.clear();
+    }
+  }
+
+  /**
+   * Runs a task on a sender thread, failing the batch it would have completed if the batcher is closing.
+   */
+  private void execute(List<PendingSearch> batch, Runnable task) {
+    try {
+      sender.execute(task);
+    } catch (RejectedExecutionException e) {
+      for (PendingSearch pending : batch) {
+        pending.result.completeExceptionally(new ClientException("Client is closed", e));
+      }
+    }
+  }
+
+  private void flush(String engineName, List<PendingSearch> batch) {
+    synchronized (this) {
+      // Already sent when it filled up before the window elapsed
+      if (!pendingByEngine.remove(engineName, batch)) {
+        return;
+      }
+    }
+    execute(batch, () -> send(engineName, batch));
+  }
+
+  @SuppressWarnings("rawtypes")
+  private void send(String engineName, List<PendingSearch> batch) {
+    try {
+      if (batch.size() == 1) {
+        sendOne(engineName, batch.get(0));
+        return;
+      }
+
+      List<Map> queries = new ArrayList<>(batch.size());
+      for (PendingSearch pending : batch) {
+        Map<String, Object> search = new HashMap<>(pending.options);
+        search.put("query", pending.query);
+        queries.add(search);
+      }
+      // sent on this thread, the multi_search has to be handed a deadline, the latest of its callers so none is cut
+      // short
+      Deadline deadline = batch.get(0).deadline;
+      for (PendingSearch pending : batch) {
+        deadline = Deadline.latest(deadline, pending.deadline);
+      }
+      List<Map<String, Object>> results = Deadline.call(deadline,
+        () -> client.makeJsonRequest(ApiRequest.multiSearch(engineName, queries)));
+      if (results.size() != batch.size()) {
+        throw new ClientException(String.format("Expected %d multi_search results, got %d", batch.size(), results.size()));
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).result.complete(results.get(i));
+      }
+    } catch (ApiException e) {
+      if (e.statusCode() == 400) {
+        // one invalid query rejects the whole multi_search, sent on their own only the invalid ones fail, while other
+        // errors, such as a bad api key or an unknown engine, would fail each query alike
+        for (PendingSearch pending : batch) {
+          execute(Collections.singletonList(pending), () -> sendOne(engineName, pending));
+        }
+      } else {
+        fail(batch, e);
+      }
+    } catch (ClientException | RuntimeException e) {
+      fail(batch, e);
+    }
+  }
+
+  private void sendOne(String engineName, PendingSearch pending) {
+    try {
+      pending.result.complete(Deadline.call(pending.deadline,
+        () -> client.makeJsonRequest(ApiRequest.search(engineName, pending.query, pending.options))));
+    } catch (ClientException | RuntimeException e) {
+      pending.result.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Fails every caller of a batch, each with an exception of its own, since callers may add to the exception they
+   * receive.
+   */
+  private static void fail(List<PendingSearch> batch, Exception failure) {
+    batch.get(0).result.completeExceptionally(failure);
+    for (int i = 1; i < batch.size(); i++) {
+      batch.get(i).result.completeExceptionally(copy(failure));
+    }
+  }
+
+  /**
+   * @return an exception of the same type and content as failure, caused by it
+   */
+  private static ClientException copy(Exception failure) {
+    ClientException copy;
+    if (failure instanceof ApiException) {
+      ApiException apiException = (ApiException) failure;
+      copy = new ApiException(apiException.statusCode(), apiException.headers(), apiException.responseBody());
+    } else if (failure instanceof CircuitOpenException) {
+      copy = new CircuitOpenException(((CircuitOpenException) failure).endpoint());
+    } else if (failure instanceof ConcurrencyLimitException) {
+      copy = new ConcurrencyLimitException(failure.getMessage());
+    } else if (failure instanceof DeadlineExceededException) {
+      copy = new DeadlineExceededException(failure.getMessage());
+    } else if (failure.getClass() == ClientException.class) {
+      // keeps the cause, which tells connection errors apart
+      return new ClientException(failure.getMessage(), failure.getCause());
+    } else {
+      return new ClientException(failure.getMessage(), failure);
+    }
+    copy.initCause(failure);
+    return copy;
+  }
+
+  private static class PendingSearch {
+    final String query;
+    final Map<String, Object> options;
+    // created on the calling thread
+    final Deadline deadline = Deadline.current();
+    final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+
+    PendingSearch(String query, Map<String, Object> options) {
+      this.query = query;
+      this.options = options;
+    }
+  }
+}
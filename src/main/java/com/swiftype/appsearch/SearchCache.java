@@ -0,0 +1,167 @@
+package com.swiftype.appsearch;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded, least recently used cache of read-only responses.
+ *
+ * <p>Entries are fresh for the configured time to live. For a further stale-while-revalidate window an expired entry
+ * is still returned, while a single background refresh replaces it. Writes through the same client invalidate all
+ * entries of the engine; responses to requests that started before an invalidation are not cached.
+ */
+class SearchCache {
+  private final long maxEntries;
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final long staleNanos;
+  private final ExecutorService refreshExecutor;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, AtomicLong> engineGenerations = new ConcurrentHashMap<>();
+  private long estimatedBytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  SearchCache(long maxEntries, long maxBytes, long ttl, long staleWhileRevalidate, TimeUnit unit) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.staleNanos = unit.toNanos(staleWhileRevalidate);
+    this.refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-cache-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Returns a copy of the cached response for key, loading it on a miss.
+   */
+  <T> T get(String engineName, String key, ClientCallable<T> loader) throws ClientException {
+    long now = System.nanoTime();
+    Entry entry;
+    boolean refresh = false;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry != null && now - entry.expiresAt >= staleNanos) {
+        remove(key);
+        entry = null;
+      } else if (entry != null && now - entry.expiresAt >= 0 && !entry.refreshing) {
+        entry.refreshing = true;
+        refresh = true;
+      }
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return load(engineName, key, loader);
+    }
+
+    if (now - entry.expiresAt < 0) {
+      hits.incrementAndGet();
+    } else {
+      staleHits.incrementAndGet();
+    }
+    if (refresh) {
+      Entry stale = entry;
+      refreshExecutor.execute(() -> {
+        try {
+          load(engineName, key, loader);
+        } catch (ClientException | RuntimeException e) {
+          stale.refreshing = false;
+        }
+      });
+    }
+
+    @SuppressWarnings("unchecked")
+    T value = (T) entry.value;
+    return JsonTypes.deepCopy(value);
+  }
+
+  /**
+   * Drops every cached response for an engine.
+   */
+  void invalidate(String engineName) {
+    generation(engineName).incrementAndGet();
+    synchronized (this) {
+      Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next().getValue();
+        if (entry.engineName.equals(engineName)) {
+          estimatedBytes -= entry.bytes;
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  synchronized CacheStats stats() {
+    return new CacheStats(hits.get(), staleHits.get(), misses.get(), evictions.get(), entries.size(), estimatedBytes);
+  }
+
+  void close() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private <T> T load(String engineName, String key, ClientCallable<T> loader) throws ClientException {
+    long generation = generation(engineName).get();
+    T value = loader.call();
+    Entry entry = new Entry(engineName, JsonTypes.deepCopy(value), JsonTypes.serializedSize(value), System.nanoTime() + ttlNanos);
+
+    synchronized (this) {
+      if (generation(engineName).get() == generation) {
+        remove(key);
+        entries.put(key, entry);
+        estimatedBytes += entry.bytes;
+        evict();
+      }
+    }
+    return value;
+  }
+
+  private AtomicLong generation(String engineName) {
+    return engineGenerations.computeIfAbsent(engineName, name -> new AtomicLong());
+  }
+
+  private void remove(String key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      estimatedBytes -= removed.bytes;
+    }
+  }
+
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while ((entries.size() > maxEntries || estimatedBytes > maxBytes) && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      estimatedBytes -= eldest.bytes;
+      iterator.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  private static class Entry {
+    final String engineName;
+    final Object value;
+    final long bytes;
+    final long expiresAt;
+    volatile boolean refreshing;
+
+    Entry(String engineName, Object value, long bytes, long expiresAt) {
+      this.engineName = engineName;
+      this.value = value;
+      this.bytes = bytes;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Mints signed search keys for a single api key. Produces the same tokens as
+ * {@link Client#createSignedSearchKey(String, String, Map)}, but is meant to be created once and shared: the HMAC is
+ * initialized once and reused per thread, the header segment is precomputed, and encoding reuses per thread buffers.
+ *
+ * <p>Optionally keeps a bounded cache of tokens, keyed by the canonical form of the payload, so that repeated
+ * requests for the same options return the previously minted token.
+ */
+public class SearchKeySigner {
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final byte[] HEADER_SEGMENT = Base64.getUrlEncoder().withoutPadding()
+    .encode("{\"typ\":\"JWT\",\"alg\":\"HS256\"}".getBytes(UTF_8));
+  private static final int SIGNATURE_SEGMENT_LENGTH = 43;
+  private static final byte[] BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(ISO_8859_1);
+
+  private final Mac prototype;
+  private final ThreadLocal<SigningState> signingState;
+  private final Map<String, String> tokenCache;
+
+  /**
+   * @param apiKey api key used to sign tokens
+   * @throws InvalidKeyException if the api key is invalid
+   */
+  public SearchKeySigner(String apiKey) throws InvalidKeyException {
+    this(apiKey, 0);
+  }
+
+  /**
+   * @param apiKey api key used to sign tokens
+   * @param tokenCacheSize maximum number of tokens to cache, or 0 to disable the cache
+   * @throws InvalidKeyException if the api key is invalid
+   */
+  public SearchKeySigner(String apiKey, int tokenCacheSize) throws InvalidKeyException {
+    try {
+      this.prototype = Mac.getInstance(HMAC_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("HmacSHA256 is unsupported by your Java platform. This should never happen.", e);
+    }
+    this.prototype.init(new SecretKeySpec(apiKey.getBytes(UTF_8), HMAC_ALGORITHM));
+    this.signingState = ThreadLocal.withInitial(() -> new SigningState(newMac()));
+    this.tokenCache = tokenCacheSize > 0 ? new LinkedHashMap<String, String>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > tokenCacheSize;
+      }
+    } : null;
+  }
+
+  /**
+   * Creates a jwt search key that can be used for authentication to enforce a set of required search options.
+   *
+   * @param apiKeyName the unique name for the API Key
+   * @param options see the <a href="https://swiftype.com/documentation/app-search/">App Search API</a> for supported search options
+   * @return jwt search key
+   */
+  public String sign(String apiKeyName, Map<String, Object> options) {
+    Map<String, Object> payload = new HashMap<>(options);
+    payload.put("api_key_name", apiKeyName);
+
+    if (tokenCache == null) {
+      return signingState.get().sign(JsonTypes.GSON.toJson(payload));
+    }
+
+    // the canonical form only identifies the payload, the token signs the same JSON as createSignedSearchKey
+    String canonicalPayload = JsonTypes.canonicalJson(payload);
+    synchronized (tokenCache) {
+      String token = tokenCache.get(canonicalPayload);
+      if (token != null) {
+        return token;
+      }
+    }
+    String token = signingState.get().sign(JsonTypes.GSON.toJson(payload));
+    synchronized (tokenCache) {
+      tokenCache.put(canonicalPayload, token);
+    }
+    return token;
+  }
+
+  /**
+   * Creates one jwt search key per set of options.
+   *
+   * @param apiKeyName the unique name for the API Key
+   * @param optionsList search options to enforce, one entry per key
+   * @return jwt search keys, in the order of optionsList
+   */
+  public List<String> signAll(String apiKeyName, List<Map<String, Object>> optionsList) {
+    List<String> tokens = new ArrayList<>(optionsList.size());
+    for (Map<String, Object> options : optionsList) {
+      tokens.add(sign(apiKeyName, options));
+    }
+    return tokens;
+  }
+
+  private Mac newMac() {
+    try {
+      return (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("HmacSHA256 implementation can not be cloned", e);
+    }
+  }
+
+  /**
+   * Per thread HMAC and encoding buffers, grown as needed and reused between tokens.
+   */
+  private static class SigningState {
+    private final Mac mac;
+    private final byte[] signature;
+    private byte[] token = new byte[512];
+
+    SigningState(Mac mac) {
+      this.mac = mac;
+      this.signature = new byte[mac.getMacLength()];
+    }
+
+    String sign(String payloadJson) {
+      byte[] payload = payloadJson.getBytes(UTF_8);
+      int payloadSegmentLength = (payload.length * 4 + 2) / 3;
+      int length = HEADER_SEGMENT.length + 1 + payloadSegmentLength + 1 + SIGNATURE_SEGMENT_LENGTH;
+      if (token.length < length) {
+        token = new byte[Math.max(length, token.length * 2)];
+      }
+
+      int position = 0;
+      System.arraycopy(HEADER_SEGMENT, 0, token, position, HEADER_SEGMENT.length);
+      position += HEADER_SEGMENT.length;
+      token[position++] = '.';
+      position += encode(payload, position);
+
+      mac.update(token, 0, position);
+      try {
+        mac.doFinal(signature, 0);
+      } catch (ShortBufferException e) {
+        throw new IllegalStateException(e);
+      }
+
+      token[position++] = '.';
+      position += encode(signature, position);
+      return new String(token, 0, position, ISO_8859_1);
+    }
+
+    /**
+     * Base64url encodes without padding straight into the token buffer, {@link Base64.Encoder} can only write to the
+     * start of an array.
+     */
+    private int encode(byte[] source, int offset) {
+      int position = offset;
+      int i = 0;
+      for (; i + 2 < source.length; i += 3) {
+        int bits = (source[i] & 0xff) << 16 | (source[i + 1] & 0xff) << 8 | (source[i + 2] & 0xff);
+        token[position++] = BASE64_URL[bits >>> 18];
+        token[position++] = BASE64_URL[(bits >>> 12) & 0x3f];
+        token[position++] = BASE64_URL[(bits >>> 6) & 0x3f];
+        token[position++] = BASE64_URL[bits & 0x3f];
+      }
+      int remaining = source.length - i;
+      if (remaining > 0) {
+        int bits = (source[i] & 0xff) << 16 | (remaining == 2 ? (source[i + 1] & 0xff) << 8 : 0);
+        token[position++] = BASE64_URL[bits >>> 18];
+        token[position++] = BASE64_URL[(bits >>> 12) & 0x3f];
+        if (remaining == 2) {
+          token[position++] = BASE64_URL[(bits >>> 6) & 0x3f];
+        }
+      }
+      return position - offset;
+    }
+  }
+}
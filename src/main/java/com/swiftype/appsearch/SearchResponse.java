@@ -0,0 +1,90 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+/**
+ * Typed view of a search response.
+ *
+ * <p>The response is kept as the bytes received. Reading {@code meta} parses only that member, while {@code results}
+ * only locates each result and each of its fields by offset. A field value is parsed each time it is read, and the
+ * fields of a result that are never read are never decoded.
+ *
+ * @see Client#searchTyped(String, String, Map)
+ */
+public class SearchResponse {
+  private final byte[] body;
+  private JsonSlice root;
+  private Meta meta;
+  private List<Result> results;
+
+  SearchResponse(byte[] body) {
+    this.body = body;
+  }
+
+  /**
+   * @return response metadata, including paging information
+   */
+  public synchronized Meta meta() {
+    if (meta == null) {
+      JsonElement element = member("meta");
+      meta = new Meta(element.isJsonObject() ? element.getAsJsonObject() : new JsonObject());
+    }
+    return meta;
+  }
+
+  /**
+   * @return search results in ranked order
+   */
+  public synchronized List<Result> results() {
+    if (results == null) {
+      JsonSlice member = root().member("results");
+      List<Result> decoded = new ArrayList<>();
+      if (member != null) {
+        for (JsonSlice result : member.elements()) {
+          if (result.isObject()) {
+            decoded.add(new Result(result));
+          }
+        }
+      }
+      results = Collections.unmodifiableList(decoded);
+    }
+    return results;
+  }
+
+  /**
+   * @return the full response decoded into the same structure returned by {@link Client#search(String, String, Map)}
+   */
+  public Map<String, Object> asMap() {
+    return JsonTypes.GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(body), UTF_8), JsonTypes.OBJECT.getType());
+  }
+
+  /**
+   * @return size of the response body in bytes
+   */
+  public int sizeInBytes() {
+    return body.length;
+  }
+
+  private JsonElement member(String name) {
+    JsonSlice member = root().member(name);
+    return member != null ? member.parse() : JsonNull.INSTANCE;
+  }
+
+  private JsonSlice root() {
+    if (root == null) {
+      root = JsonSlice.of(body);
+    }
+    return root;
+  }
+}
@@ -0,0 +1,26 @@
+package com.swiftype.appsearch;
+
+import java.util.Map;
+
+/**
+ * Receives search results one at a time while the response is still being read.
+ *
+ * @see Client#search(String, String, Map, SearchResultHandler)
+ */
+@FunctionalInterface
+public interface SearchResultHandler {
+  /**
+   * Called once with the response metadata, which may arrive before or after the results.
+   *
+   * @param meta response metadata, including paging information
+   */
+  default void onMeta(Map<String, Object> meta) {
+  }
+
+  /**
+   * Called for every result, in order, as soon as it has been decoded.
+   *
+   * @param result a single search result
+   */
+  void onResult(Map<String, Object> result);
+}
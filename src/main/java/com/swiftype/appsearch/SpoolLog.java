@@ -0,0 +1,325 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of records in memory mapped segment files of fixed size. Each record is its payload length, a
+ * CRC32 of the payload, a type byte and the payload; a zero length marks the end of a segment's records, so a torn
+ * write at the end of the last segment is detected on restart and overwritten.
+ *
+ * <p>A single reader reads records in order and commits what it has processed. The committed position is kept in a
+ * checkpoint file, segments before it are deleted, and reading resumes from it after a restart.
+ */
+class SpoolLog implements Closeable {
+  static final int RECORD_HEADER_BYTES = 9;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".spool";
+
+  /**
+   * A record read from the log.
+   */
+  static class Record {
+    final byte type;
+    final byte[] payload;
+
+    Record(byte type, byte[] payload) {
+      this.type = type;
+      this.payload = payload;
+    }
+  }
+
+  private final Path directory;
+  private final int segmentBytes;
+  private final long maxPendingBytes;
+  private final boolean syncEveryWrite;
+  private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+  private final FileChannel checkpoint;
+
+  private long writeSegment;
+  private int writeOffset;
+  private long readSegment;
+  private int readOffset;
+  private long readBytes;
+  private long pendingBytes;
+  private boolean closed;
+  private IOException failure;
+
+  SpoolLog(Path directory, int segmentBytes, long maxPendingBytes, boolean syncEveryWrite) throws IOException {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxPendingBytes = maxPendingBytes;
+    this.syncEveryWrite = syncEveryWrite;
+    Files.createDirectories(directory);
+    this.checkpoint = FileChannel.open(directory.resolve("checkpoint"),
+      StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    recover();
+  }
+
+  /**
+   * Appends a record, blocking while the records not yet committed take up the maximum size.
+   */
+  synchronized void append(byte type, byte[] payload) throws IOException, InterruptedException {
+    int recordBytes = RECORD_HEADER_BYTES + payload.length;
+    if (recordBytes + 4 > segmentBytes) {
+      throw new IllegalArgumentException("Record of " + recordBytes + " bytes does not fit in a spool segment");
+    }
+    while (pendingBytes > 0 && pendingBytes + recordBytes > maxPendingBytes) {
+      ensureOpen();
+      if (failure != null) {
+        throw new IOException("Spool can no longer be drained", failure);
+      }
+      wait();
+    }
+    ensureOpen();
+    // keeps room for the zero length that ends the segment
+    if (writeOffset + recordBytes + 4 > segmentBytes) {
+      MappedByteBuffer full = segments.get(writeSegment);
+      full.putInt(writeOffset, 0);
+      full.force();
+      writeSegment++;
+      writeOffset = 0;
+      segments.put(writeSegment, map(writeSegment));
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    MappedByteBuffer segment = segments.get(writeSegment);
+    // the payload goes first, and the length that makes the record visible last
+    ByteBuffer target = segment.duplicate();
+    target.position(writeOffset + 4);
+    target.putInt((int) crc.getValue()).put(type).put(payload);
+    segment.putInt(writeOffset, payload.length);
+    if (syncEveryWrite) {
+      segment.force();
+    }
+    writeOffset += recordBytes;
+    pendingBytes += recordBytes;
+    notifyAll();
+  }
+
+  /**
+   * Reads the following records of one type, without committing them.
+   *
+   * @param maxRecords maximum number of records to return
+   * @param maxBytes maximum total payload size, at least one record is returned
+   * @param waitMillis how long to wait for a record if there is none
+   * @return records, empty if none arrived in time or the log is closed
+   * @throws IOException if a record was corrupted since it was written
+   */
+  synchronized List<Record> read(int maxRecords, long maxBytes, long waitMillis) throws IOException, InterruptedException {
+    List<Record> records = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + waitMillis;
+    long payloadBytes = 0;
+    while (records.size() < maxRecords && !closed) {
+      if (readSegment == writeSegment && readOffset == writeOffset) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (!records.isEmpty() || remaining <= 0) {
+          break;
+        }
+        wait(remaining);
+        continue;
+      }
+      MappedByteBuffer segment = segments.get(readSegment);
+      int length = readOffset + 4 <= segmentBytes ? segment.getInt(readOffset) : 0;
+      if (length == 0) {
+        // the rest of this segment is unused, the writer moved on
+        readSegment = segments.higherKey(readSegment);
+        readOffset = 0;
+        continue;
+      }
+      byte type = segment.get(readOffset + 8);
+      if (!records.isEmpty() && (records.get(0).type != type || payloadBytes + length > maxBytes)) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      ByteBuffer source = segment.duplicate();
+      source.position(readOffset + RECORD_HEADER_BYTES);
+      source.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != segment.getInt(readOffset + 4)) {
+        throw new IOException("Corrupt spool record at offset " + readOffset + " of " + segmentPath(readSegment));
+      }
+      records.add(new Record(type, payload));
+      payloadBytes += length;
+      readOffset += RECORD_HEADER_BYTES + length;
+      readBytes += RECORD_HEADER_BYTES + length;
+    }
+    return records;
+  }
+
+  /**
+   * Marks everything read so far as processed, deleting segments that are no longer needed. Does nothing once the log
+   * is closed, so records read before are read again on the next run.
+   */
+  synchronized void commit() throws IOException {
+    if (closed) {
+      return;
+    }
+    ByteBuffer position = ByteBuffer.allocate(16);
+    position.putLong(0, readSegment).putLong(8, readOffset);
+    while (position.hasRemaining()) {
+      checkpoint.write(position, position.position());
+    }
+    if (syncEveryWrite) {
+      checkpoint.force(false);
+    }
+
+    pendingBytes -= readBytes;
+    readBytes = 0;
+    while (segments.firstKey() < readSegment) {
+      Files.deleteIfExists(segmentPath(segments.pollFirstEntry().getKey()));
+    }
+    notifyAll();
+  }
+
+  /**
+   * @return size of records written but not committed, including their headers
+   */
+  synchronized long pendingBytes() {
+    return pendingBytes;
+  }
+
+  /**
+   * Waits until every record written has been committed.
+   *
+   * @return true if the log is drained, false if the timeout elapsed first
+   */
+  synchronized boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining;
+    while (pendingBytes > 0 && (remaining = deadline - System.currentTimeMillis()) > 0 && !closed) {
+      wait(remaining);
+    }
+    return pendingBytes == 0;
+  }
+
+  /**
+   * Forces written records and the checkpoint to disk.
+   */
+  synchronized void sync() throws IOException {
+    if (!closed) {
+      segments.get(writeSegment).force();
+      checkpoint.force(false);
+    }
+  }
+
+  /**
+   * Wakes appends waiting for room that the records will never make, since they can no longer be drained.
+   */
+  synchronized void fail(IOException failure) {
+    this.failure = failure;
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    sync();
+    closed = true;
+    segments.clear();
+    checkpoint.close();
+    notifyAll();
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Spool is closed");
+    }
+  }
+
+  /**
+   * Maps the existing segments, and finds where reading resumes and where writing continues.
+   */
+  private void recover() throws IOException {
+    List<Long> existing = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        existing.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+
+    ByteBuffer position = ByteBuffer.allocate(16);
+    checkpoint.read(position, 0);
+    if (position.position() == 16) {
+      readSegment = position.getLong(0);
+      readOffset = (int) position.getLong(8);
+    }
+    for (long segment : existing) {
+      if (segment < readSegment) {
+        Files.deleteIfExists(segmentPath(segment));
+      } else {
+        segments.put(segment, map(segment));
+      }
+    }
+    if (segments.isEmpty() || segments.firstKey() > readSegment) {
+      // nothing left to replay at the checkpoint
+      readSegment = segments.isEmpty() ? readSegment : segments.firstKey();
+      readOffset = 0;
+      segments.putIfAbsent(readSegment, map(readSegment));
+    }
+
+    for (Map.Entry<Long, MappedByteBuffer> segment : segments.entrySet()) {
+      int offset = segment.getKey() == readSegment ? readOffset : 0;
+      int end = validEnd(segment.getValue(), offset);
+      pendingBytes += end - offset;
+      writeSegment = segment.getKey();
+      writeOffset = end;
+    }
+  }
+
+  /**
+   * @return offset after the last intact record, clearing the length of a torn one so it is never read
+   */
+  private int validEnd(MappedByteBuffer segment, int offset) {
+    while (offset + 4 <= segmentBytes) {
+      int length = segment.getInt(offset);
+      if (length <= 0 || offset + RECORD_HEADER_BYTES + length > segmentBytes) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      ByteBuffer source = segment.duplicate();
+      source.position(offset + RECORD_HEADER_BYTES);
+      source.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+        break;
+      }
+      offset += RECORD_HEADER_BYTES + length;
+    }
+    if (offset + 4 <= segmentBytes) {
+      segment.putInt(offset, 0);
+    }
+    return offset;
+  }
+
+  private MappedByteBuffer map(long segment) throws IOException {
+    try (FileChannel channel = FileChannel.open(segmentPath(segment),
+      StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+  }
+
+  private Path segmentPath(long segment) {
+    return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+  }
+}
@@ -0,0 +1,152 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options for a {@link WriteSpool}. All setters return this instance so options can be chained.
+ */
+public class SpoolOptions {
+  /**
+   * When spooled writes are forced to disk.
+   */
+  public enum Sync {
+    /**
+     * After every write, so an acknowledged write survives a power loss. The slowest option.
+     */
+    ALWAYS,
+    /**
+     * Every {@link #syncInterval(long, TimeUnit)}, a power loss can lose the writes of the last interval.
+     */
+    INTERVAL,
+    /**
+     * Left to the operating system, writes survive a crash of the process but not of the machine.
+     */
+    OS
+  }
+
+  private long maxSpoolBytes = 1024L * 1024 * 1024;
+  private int segmentBytes = 64 * 1024 * 1024;
+  private Sync sync = Sync.INTERVAL;
+  private long syncIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+  private int maxBatchDocuments = 100;
+  private long maxBatchBytes = 10 * 1024 * 1024;
+  private long initialBackoffMillis = 100;
+  private long maxBackoffMillis = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * @param maxSpoolBytes maximum size of writes not yet drained, producers block beyond this
+   * @return these options
+   */
+  public SpoolOptions maxSpoolBytes(long maxSpoolBytes) {
+    if (maxSpoolBytes < 1) {
+      throw new IllegalArgumentException("maxSpoolBytes must be positive");
+    }
+    this.maxSpoolBytes = maxSpoolBytes;
+    return this;
+  }
+
+  /**
+   * @param segmentBytes size of a segment file, a new one is started once it is full and drained ones are deleted
+   * @return these options
+   */
+  public SpoolOptions segmentBytes(int segmentBytes) {
+    if (segmentBytes < 4096) {
+      throw new IllegalArgumentException("segmentBytes must be at least 4096");
+    }
+    this.segmentBytes = segmentBytes;
+    return this;
+  }
+
+  /**
+   * @param sync when writes are forced to disk
+   * @return these options
+   */
+  public SpoolOptions sync(Sync sync) {
+    this.sync = sync;
+    return this;
+  }
+
+  /**
+   * @param interval how often writes are forced to disk with {@link Sync#INTERVAL}
+   * @param unit unit of interval
+   * @return these options
+   */
+  public SpoolOptions syncInterval(long interval, TimeUnit unit) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval must be positive");
+    }
+    this.syncIntervalMillis = unit.toMillis(interval);
+    return this;
+  }
+
+  /**
+   * @param maxBatchDocuments maximum number of documents or ids per request, App Search accepts at most 100
+   * @return these options
+   */
+  public SpoolOptions maxBatchDocuments(int maxBatchDocuments) {
+    if (maxBatchDocuments < 1 || maxBatchDocuments > 100) {
+      throw new IllegalArgumentException("maxBatchDocuments must be between 1 and 100");
+    }
+    this.maxBatchDocuments = maxBatchDocuments;
+    return this;
+  }
+
+  /**
+   * @param maxBatchBytes maximum serialized size of a request body in bytes
+   * @return these options
+   */
+  public SpoolOptions maxBatchBytes(long maxBatchBytes) {
+    if (maxBatchBytes < 1) {
+      throw new IllegalArgumentException("maxBatchBytes must be positive");
+    }
+    this.maxBatchBytes = maxBatchBytes;
+    return this;
+  }
+
+  /**
+   * @param initialBackoff delay before sending a batch again after the service was unavailable, doubled every time
+   * @param maxBackoff upper bound of the delay
+   * @param unit unit of initialBackoff and maxBackoff
+   * @return these options
+   */
+  public SpoolOptions backoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    if (initialBackoff < 1 || maxBackoff < initialBackoff) {
+      throw new IllegalArgumentException("backoff must be positive and initialBackoff at most maxBackoff");
+    }
+    this.initialBackoffMillis = unit.toMillis(initialBackoff);
+    this.maxBackoffMillis = unit.toMillis(maxBackoff);
+    return this;
+  }
+
+  long maxSpoolBytes() {
+    return maxSpoolBytes;
+  }
+
+  int segmentBytes() {
+    return segmentBytes;
+  }
+
+  Sync sync() {
+    return sync;
+  }
+
+  long syncIntervalMillis() {
+    return syncIntervalMillis;
+  }
+
+  int maxBatchDocuments() {
+    return maxBatchDocuments;
+  }
+
+  long maxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  long initialBackoffMillis() {
+    return initialBackoffMillis;
+  }
+
+  long maxBackoffMillis() {
+    return maxBackoffMillis;
+  }
+}
@@ -0,0 +1,47 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Request executor of the blocking client that times the request phases of requests carrying a
+ * {@link RequestTimer}, and counts response body bytes as they come off the connection, before any decompression.
+ */
+class TimingRequestExecutor extends HttpRequestExecutor {
+  @Override
+  protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+    RequestTimer timer = RequestTimer.from(context);
+    if (timer == null) {
+      return super.doSendRequest(request, conn, context);
+    }
+    timer.requestSending();
+    HttpResponse response = super.doSendRequest(request, conn, context);
+    timer.requestSent();
+    return response;
+  }
+
+  @Override
+  protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+    HttpResponse response = super.doReceiveResponse(request, conn, context);
+    RequestTimer timer = RequestTimer.from(context);
+    if (timer != null) {
+      timer.responseHeadersReceived(response.getStatusLine().getStatusCode());
+      HttpEntity entity = response.getEntity();
+      if (entity != null) {
+        if (entity.getContentEncoding() != null) {
+          // decompressed by the client once this returns, the uncompressed size is counted by the caller
+          timer.responseCompressed();
+        }
+        response.setEntity(new CountingEntity(entity, timer::addResponseBytes));
+      }
+    }
+    return response;
+  }
+}
@@ -0,0 +1,36 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sends the http requests of a {@link Client}. Set with {@link ClientOptions#transport(Transport)}, by default requests
+ * go through Apache HttpClient over pooled HTTP/1.1 connections, or through the java.net.http client with
+ * {@link ClientOptions#http2(boolean)}.
+ *
+ * <p>A transport is called concurrently by every thread using the client, and is closed with it. Retries, circuit
+ * breaking, concurrency limits, response decompression and parsing are all handled by the client, a transport only
+ * moves bytes:
+ *
+ * <pre>
+ * Transport fake = request -&gt; new TransportResponse(200, headers, new ByteArrayInputStream(body));
+ * Client client = new Client("host-2376rb", "private-key", new ClientOptions().transport(fake));
+ * </pre>
+ */
+@FunctionalInterface
+public interface Transport extends Closeable {
+  /**
+   * Sends a request and returns once the response status and headers have been received. The body of the response
+   * is read and closed by the caller.
+   *
+   * @param request method, url, headers and body of the request
+   * @return the response, whose body the client gunzips if the Content-Encoding header says it is gzipped
+   * @throws IOException if the request could not be sent or the response not be received, including when the request
+   *   was aborted through {@link TransportRequest#onCancel(Runnable)}
+   */
+  TransportResponse execute(TransportRequest request) throws IOException;
+
+  @Override
+  default void close() throws IOException {
+  }
+}
@@ -0,0 +1,134 @@
+package com.swiftype.appsearch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An http request handed to a {@link Transport}. The body is written on demand, and can be written more than once.
+ */
+public final class TransportRequest {
+  private final String method;
+  private final String url;
+  private final Map<String, String> headers;
+  private final JsonEntity body;
+  private final RequestTimer timer;
+  private final Deadline deadline;
+  private Runnable abort;
+  private boolean cancelled;
+
+  /**
+   * @param body request body, or null if there is none
+   * @param timer times the request and counts its bytes, or null if there are no request listeners
+   * @param deadline deadline of the call, or null if it has none
+   */
+  TransportRequest(String method, String url, Map<String, String> headers, JsonEntity body, RequestTimer timer, Deadline deadline) {
+    this.method = method;
+    this.url = url;
+    this.headers = Collections.unmodifiableMap(headers);
+    this.body = body;
+    this.timer = timer;
+    this.deadline = deadline;
+  }
+
+  /**
+   * @return http method, such as GET or POST, which may have a body even if it is a GET
+   */
+  public String method() {
+    return method;
+  }
+
+  /**
+   * @return absolute url, including the query string
+   */
+  public String url() {
+    return url;
+  }
+
+  /**
+   * @return request headers, including Content-Type and Content-Encoding of the body, but no hop by hop headers such
+   *   as Content-Length
+   */
+  public Map<String, String> headers() {
+    return headers;
+  }
+
+  public boolean hasBody() {
+    return body != null;
+  }
+
+  /**
+   * @return length of the body in bytes, or -1 if it is only known once the body has been written
+   */
+  public long contentLength() {
+    return body != null ? body.getContentLength() : 0;
+  }
+
+  /**
+   * The client aborts the request once the deadline of the call passes, transports can also use it to bound their
+   * own waits more precisely.
+   *
+   * @return milliseconds left until the deadline of the call, at least 1, or -1 if the call has no deadline
+   */
+  public long timeoutMillis() {
+    return deadline != null ? Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS)) : -1;
+  }
+
+  /**
+   * Writes the body, or nothing if the request has none. The output stream is neither flushed nor closed.
+   *
+   * @param out stream to write to
+   * @throws IOException if writing fails
+   */
+  public void writeBody(OutputStream out) throws IOException {
+    if (body == null) {
+      return;
+    }
+    if (timer != null) {
+      new CountingEntity(body, timer::addRequestBytes).writeTo(out);
+    } else {
+      body.writeTo(out);
+    }
+  }
+
+  /**
+   * Registers how to abort the request while it is in flight, used when the deadline of the call passed, the calling
+   * thread was interrupted, or a hedged duplicate of a search answered first. The action runs on the cancelling
+   * thread, or right away if the request was already cancelled. Transports that do not register an action let the
+   * request complete, and its response is discarded.
+   *
+   * @param abort aborts the request, making {@link Transport#execute} throw an {@link IOException}
+   */
+  public void onCancel(Runnable abort) {
+    boolean abortNow;
+    synchronized (this) {
+      this.abort = abort;
+      abortNow = cancelled;
+    }
+    if (abortNow) {
+      abort.run();
+    }
+  }
+
+  void cancel() {
+    Runnable action;
+    synchronized (this) {
+      cancelled = true;
+      action = abort;
+    }
+    if (action != null) {
+      action.run();
+    }
+  }
+
+  RequestTimer timer() {
+    return timer;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + url;
+  }
+}
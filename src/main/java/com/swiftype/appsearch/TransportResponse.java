@@ -0,0 +1,62 @@
+package com.swiftype.appsearch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The response a {@link Transport} received: status, headers and a body that is read as it arrives. Transports that
+ * hold on to a connection override {@link #close()} to release it.
+ */
+public class TransportResponse implements Closeable {
+  private final int statusCode;
+  private final Map<String, String> headers;
+  private final InputStream body;
+
+  /**
+   * @param statusCode http status code
+   * @param headers response headers with the first value of each, names are matched case insensitively
+   * @param body response body, which may still be gzipped as the Content-Encoding header tells
+   */
+  public TransportResponse(int statusCode, Map<String, String> headers, InputStream body) {
+    Map<String, String> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    caseInsensitive.putAll(headers);
+    this.statusCode = statusCode;
+    this.headers = Collections.unmodifiableMap(caseInsensitive);
+    this.body = body;
+  }
+
+  public int statusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return response headers, keyed case insensitively
+   */
+  public Map<String, String> headers() {
+    return headers;
+  }
+
+  /**
+   * @param name header name, case insensitive
+   * @return first value of the header, or null if it is absent
+   */
+  public String header(String name) {
+    return headers.get(name);
+  }
+
+  public InputStream body() {
+    return body;
+  }
+
+  /**
+   * Closes the body. Called once the client has read what it needs of it.
+   */
+  @Override
+  public void close() throws IOException {
+    body.close();
+  }
+}
@@ -0,0 +1,254 @@
+package com.swiftype.appsearch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Query suggestion responses of recent queries, kept in a prefix trie per engine and set of options.
+ *
+ * <p>Each engine holds at most a fixed number of responses, the least recently used are dropped first. Expired
+ * responses are not used, and are dropped once they are the least recently used. Writes through the same client drop
+ * all responses of the engine; responses to requests that started before that are not cached.
+ */
+class TypeaheadCache {
+  /**
+   * Number of suggestions App Search returns per type when the size option is not given.
+   */
+  private static final int DEFAULT_SIZE = 5;
+
+  private final long maxEntriesPerEngine;
+  private final long ttlNanos;
+  private final boolean filterCachedPrefixes;
+
+  private final Map<String, EngineTrie> engines = new HashMap<>();
+  private final Map<String, AtomicLong> engineGenerations = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong filteredHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong superseded = new AtomicLong();
+
+  TypeaheadCache(TypeaheadOptions options) {
+    this.maxEntriesPerEngine = options.maxEntriesPerEngine();
+    this.ttlNanos = options.ttlNanos();
+    this.filterCachedPrefixes = options.filterCachedPrefixes();
+  }
+
+  /**
+   * Returns a copy of the cached or filtered response for query, loading it on a miss.
+   */
+  Map<String, Object> get(String engineName, String query, Map<String, Object> options, ClientCallable<Map<String, Object>> loader) throws ClientException {
+    Map<String, Object> cached = peek(engineName, query, options);
+    if (cached != null) {
+      return cached;
+    }
+
+    misses.incrementAndGet();
+    long generation = generation(engineName).get();
+    Map<String, Object> value = loader.call();
+    Entry entry = new Entry(JsonTypes.deepCopy(value), System.nanoTime() + ttlNanos, isTruncated(value, options));
+    synchronized (this) {
+      if (generation(engineName).get() == generation) {
+        engines.computeIfAbsent(engineName, name -> new EngineTrie()).put(namespace(options), query, entry);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @return a copy of the cached or filtered response for query, or null if there is none; misses are not counted
+   */
+  Map<String, Object> peek(String engineName, String query, Map<String, Object> options) {
+    long now = System.nanoTime();
+    Entry prefixEntry = null;
+    synchronized (this) {
+      EngineTrie trie = engines.get(engineName);
+      Node node = trie != null ? trie.roots.get(namespace(options)) : null;
+      for (int depth = 0; node != null; depth++) {
+        boolean fresh = node.entry != null && now - node.entry.expiresAt < 0;
+        if (depth == query.length()) {
+          if (fresh) {
+            trie.touch(node);
+            hits.incrementAndGet();
+            return JsonTypes.deepCopy(node.entry.value);
+          }
+          break;
+        }
+        // the deepest complete prefix holds the fewest suggestions to filter
+        if (filterCachedPrefixes && fresh && !node.entry.truncated) {
+          trie.touch(node);
+          prefixEntry = node.entry;
+        }
+        node = node.children != null ? node.children.get(query.charAt(depth)) : null;
+      }
+    }
+
+    if (prefixEntry == null) {
+      return null;
+    }
+    filteredHits.incrementAndGet();
+    return filter(prefixEntry.value, query);
+  }
+
+  /**
+   * Counts a session query that was replaced before it was sent.
+   */
+  void superseded() {
+    superseded.incrementAndGet();
+  }
+
+  /**
+   * Drops every cached response for an engine.
+   */
+  void invalidate(String engineName) {
+    generation(engineName).incrementAndGet();
+    synchronized (this) {
+      engines.remove(engineName);
+    }
+  }
+
+  synchronized TypeaheadStats stats() {
+    long entries = 0;
+    for (EngineTrie trie : engines.values()) {
+      entries += trie.lru.size();
+    }
+    return new TypeaheadStats(hits.get(), filteredHits.get(), misses.get(), superseded.get(), entries);
+  }
+
+  /**
+   * @return a key for the options, separating responses to the same query with different options
+   */
+  private static String namespace(Map<String, Object> options) {
+    // most keystrokes come without options, which need no serializing
+    return options.isEmpty() ? "{}" : JsonTypes.canonicalJson(options);
+  }
+
+  private AtomicLong generation(String engineName) {
+    return engineGenerations.computeIfAbsent(engineName, name -> new AtomicLong());
+  }
+
+  /**
+   * A response is complete if no suggestion type reached the requested size, otherwise App Search may have left
+   * suggestions out.
+   */
+  private static boolean isTruncated(Map<String, Object> response, Map<String, Object> options) {
+    Object size = options.get("size");
+    int maxSuggestions = size instanceof Number ? ((Number) size).intValue() : DEFAULT_SIZE;
+    Object results = response.get("results");
+    if (!(results instanceof Map)) {
+      return true;
+    }
+    for (Object suggestions : ((Map<?, ?>) results).values()) {
+      if (!(suggestions instanceof List) || ((List<?>) suggestions).size() >= maxSuggestions) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return a copy of response, keeping only the suggestions that start with query
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> filter(Map<String, Object> response, String query) {
+    Map<String, Object> filtered = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> field : response.entrySet()) {
+      if (!"results".equals(field.getKey())) {
+        filtered.put(field.getKey(), JsonTypes.deepCopy(field.getValue()));
+        continue;
+      }
+      Map<String, Object> results = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> type : ((Map<String, Object>) field.getValue()).entrySet()) {
+        List<Object> suggestions = new ArrayList<>();
+        for (Object suggestion : (List<Object>) type.getValue()) {
+          Object text = suggestion instanceof Map ? ((Map<?, ?>) suggestion).get("suggestion") : null;
+          if (text instanceof String && ((String) text).regionMatches(true, 0, query, 0, query.length())) {
+            suggestions.add(JsonTypes.deepCopy(suggestion));
+          }
+        }
+        results.put(type.getKey(), suggestions);
+      }
+      filtered.put("results", results);
+    }
+    return filtered;
+  }
+
+  /**
+   * Tries of one engine, one per set of options, with the nodes that hold a response in least recently used order.
+   */
+  private class EngineTrie {
+    final Map<String, Node> roots = new HashMap<>();
+    final LinkedHashMap<Node, Node> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    void put(String namespace, String query, Entry entry) {
+      Node node = roots.computeIfAbsent(namespace, key -> new Node(null, namespace, '\0'));
+      for (int i = 0; i < query.length(); i++) {
+        Node parent = node;
+        if (parent.children == null) {
+          parent.children = new HashMap<>(4);
+        }
+        node = parent.children.computeIfAbsent(query.charAt(i), c -> new Node(parent, null, c));
+      }
+      node.entry = entry;
+      lru.put(node, node);
+
+      Iterator<Node> eldest = lru.keySet().iterator();
+      while (lru.size() > maxEntriesPerEngine) {
+        Node evicted = eldest.next();
+        eldest.remove();
+        evicted.entry = null;
+        prune(evicted);
+      }
+    }
+
+    void touch(Node node) {
+      lru.get(node);
+    }
+
+    /**
+     * Removes a node that no longer holds a response, and any ancestors left without a purpose.
+     */
+    private void prune(Node node) {
+      while (node.entry == null && (node.children == null || node.children.isEmpty())) {
+        if (node.parent == null) {
+          roots.remove(node.namespace);
+          return;
+        }
+        node.parent.children.remove(node.key);
+        node = node.parent;
+      }
+    }
+  }
+
+  private static class Node {
+    final Node parent;
+    final String namespace;
+    final char key;
+    Map<Character, Node> children;
+    Entry entry;
+
+    Node(Node parent, String namespace, char key) {
+      this.parent = parent;
+      this.namespace = namespace;
+      this.key = key;
+    }
+  }
+
+  private static class Entry {
+    final Map<String, Object> value;
+    final long expiresAt;
+    final boolean truncated;
+
+    Entry(Map<String, Object> value, long expiresAt, boolean truncated) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+      this.truncated = truncated;
+    }
+  }
+}
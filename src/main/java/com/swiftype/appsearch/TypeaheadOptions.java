@@ -0,0 +1,74 @@
+package com.swiftype.appsearch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the client side query suggestion cache. All setters return this instance so options can be chained:
+ *
+ * <pre>
+ * TypeaheadOptions typeahead = new TypeaheadOptions()
+ *   .ttl(1, TimeUnit.MINUTES)
+ *   .filterCachedPrefixes(true);
+ * </pre>
+ *
+ * <p>Responses of {@link Client#querySuggestion} are kept in a prefix trie per engine, so a repeated prefix is
+ * answered without a request. With prefix filtering enabled, a query is also answered from the response to one of its
+ * prefixes, if that response held fewer suggestions than requested and so lists every suggestion starting with that
+ * prefix.
+ */
+public class TypeaheadOptions {
+  private long ttlNanos = TimeUnit.SECONDS.toNanos(30);
+  private long maxEntriesPerEngine = 10_000;
+  private boolean filterCachedPrefixes = false;
+
+  /**
+   * @param ttl how long a response is used after it was received
+   * @param unit unit of ttl
+   * @return these options
+   */
+  public TypeaheadOptions ttl(long ttl, TimeUnit unit) {
+    if (ttl < 1) {
+      throw new IllegalArgumentException("ttl must be positive");
+    }
+    this.ttlNanos = unit.toNanos(ttl);
+    return this;
+  }
+
+  /**
+   * @param maxEntriesPerEngine maximum number of cached responses of a single engine, the least recently used are
+   *   dropped beyond this
+   * @return these options
+   */
+  public TypeaheadOptions maxEntriesPerEngine(long maxEntriesPerEngine) {
+    if (maxEntriesPerEngine < 1) {
+      throw new IllegalArgumentException("maxEntriesPerEngine must be positive");
+    }
+    this.maxEntriesPerEngine = maxEntriesPerEngine;
+    return this;
+  }
+
+  /**
+   * Answers a query from a cached, complete response to a shorter prefix, keeping only the suggestions that start
+   * with the query. Disabled by default, since it relies on every suggestion starting with its query, and the result
+   * may be ordered differently than App Search would order it.
+   *
+   * @param filterCachedPrefixes whether to filter responses to shorter prefixes
+   * @return these options
+   */
+  public TypeaheadOptions filterCachedPrefixes(boolean filterCachedPrefixes) {
+    this.filterCachedPrefixes = filterCachedPrefixes;
+    return this;
+  }
+
+  long ttlNanos() {
+    return ttlNanos;
+  }
+
+  long maxEntriesPerEngine() {
+    return maxEntriesPerEngine;
+  }
+
+  boolean filterCachedPrefixes() {
+    return filterCachedPrefixes;
+  }
+}
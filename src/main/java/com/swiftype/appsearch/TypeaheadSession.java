@@ -0,0 +1,99 @@
+package com.swiftype.appsearch;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends the query suggestions of a single search box, one keystroke at a time. Created by
+ * {@link Client#typeaheadSession(String, Map)}.
+ *
+ * <p>At most one request of a session is in flight. A query made while one is in flight waits for it, and is
+ * superseded if another query is made in the meantime, even one answered from the cache: its future is cancelled and
+ * it is never sent. Queries are answered from the typeahead cache when it is enabled in
+ * {@link ClientOptions#typeahead(TypeaheadOptions)}, including a waiting query once the response it waited for was
+ * cached.
+ */
+public class TypeaheadSession {
+  private final Client client;
+  private final String engineName;
+  private final Map<String, Object> options;
+  private final TypeaheadCache cache;
+  private final Executor executor;
+
+  private boolean inFlight;
+  private String waitingQuery;
+  private CompletableFuture<Map<String, Object>> waitingResult;
+
+  TypeaheadSession(Client client, String engineName, Map<String, Object> options, TypeaheadCache cache, Executor executor) {
+    this.client = client;
+    this.engineName = engineName;
+    this.options = options;
+    this.cache = cache;
+    this.executor = executor;
+  }
+
+  /**
+   * @param query the text typed so far
+   * @return future suggestions, completed exceptionally with a {@link ClientException} if the request failed, or
+   *   cancelled if a newer query superseded this one before it was sent
+   */
+  public synchronized CompletableFuture<Map<String, Object>> suggest(String query) {
+    CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+    if (waitingResult != null) {
+      // even a query answered from the cache is newer, the waiting one must not be sent after it
+      waitingResult.cancel(false);
+      if (cache != null) {
+        cache.superseded();
+      }
+      waitingQuery = null;
+      waitingResult = null;
+    }
+    Map<String, Object> cached = cache != null ? cache.peek(engineName, query, options) : null;
+    if (cached != null) {
+      result.complete(cached);
+    } else if (inFlight) {
+      waitingQuery = query;
+      waitingResult = result;
+    } else {
+      send(query, result);
+    }
+    return result;
+  }
+
+  private void send(String query, CompletableFuture<Map<String, Object>> result) {
+    inFlight = true;
+    try {
+      executor.execute(() -> {
+        try {
+          result.complete(client.querySuggestion(engineName, query, options));
+        } catch (ClientException | RuntimeException e) {
+          result.completeExceptionally(e);
+        } finally {
+          sendWaiting();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight = false;
+      result.completeExceptionally(new ClientException("Client is closed", e));
+    }
+  }
+
+  private synchronized void sendWaiting() {
+    inFlight = false;
+    String query = waitingQuery;
+    CompletableFuture<Map<String, Object>> result = waitingResult;
+    waitingQuery = null;
+    waitingResult = null;
+    if (result == null) {
+      return;
+    }
+    Map<String, Object> cached = cache != null ? cache.peek(engineName, query, options) : null;
+    if (cached != null) {
+      result.complete(cached);
+    } else {
+      send(query, result);
+    }
+  }
+}
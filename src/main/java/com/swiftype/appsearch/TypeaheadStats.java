@@ -0,0 +1,79 @@
+package com.swiftype.appsearch;
+
+/**
+ * Point in time counters of the client side query suggestion cache.
+ *
+ * @see Client#typeaheadStats()
+ */
+public class TypeaheadStats {
+  private final long hits;
+  private final long filteredHits;
+  private final long misses;
+  private final long superseded;
+  private final long entries;
+
+  TypeaheadStats(long hits, long filteredHits, long misses, long superseded, long entries) {
+    this.hits = hits;
+    this.filteredHits = filteredHits;
+    this.misses = misses;
+    this.superseded = superseded;
+    this.entries = entries;
+  }
+
+  /**
+   * @return number of queries answered with the cached response to the same query
+   */
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * @return number of queries answered by filtering the cached response to a shorter prefix
+   */
+  public long filteredHits() {
+    return filteredHits;
+  }
+
+  /**
+   * @return number of queries that had to go to the api
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * @return number of queries of a {@link TypeaheadSession} that were never sent, because a newer one replaced them
+   *   while they waited
+   */
+  public long superseded() {
+    return superseded;
+  }
+
+  /**
+   * @return number of responses currently cached, across all engines
+   */
+  public long entries() {
+    return entries;
+  }
+
+  /**
+   * @return share of cache lookups answered locally, between 0 and 1
+   */
+  public double hitRatio() {
+    long lookups = hits + filteredHits + misses;
+    return lookups > 0 ? (double) (hits + filteredHits) / lookups : 0;
+  }
+
+  /**
+   * @return number of requests that did not have to be sent, from cache hits and superseded queries
+   */
+  public long savedRoundTrips() {
+    return hits + filteredHits + superseded;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("TypeaheadStats{hits=%d, filteredHits=%d, misses=%d, superseded=%d, entries=%d, hitRatio=%.3f}",
+      hits, filteredHits, misses, superseded, entries, hitRatio());
+  }
+}
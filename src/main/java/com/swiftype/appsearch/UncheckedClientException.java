@@ -0,0 +1,18 @@
+package com.swiftype.appsearch;
+
+/**
+ * Wraps a {@link ClientException} where a checked exception can not be thrown, such as from the iterators behind
+ * {@link Client#searchAll} and {@link Client#allEngines}.
+ */
+public class UncheckedClientException extends RuntimeException {
+  private static final long serialVersionUID = 4652371962285843195L;
+
+  UncheckedClientException(ClientException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public synchronized ClientException getCause() {
+    return (ClientException) super.getCause();
+  }
+}
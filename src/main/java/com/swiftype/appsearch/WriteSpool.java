@@ -0,0 +1,312 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Durable local queue of document writes for one engine. Writes are appended to memory mapped segment files at disk
+ * speed and acknowledged right away, while a background thread drains them in order, in batches, through
+ * {@link Client#indexRawDocuments} and {@link Client#destroyDocuments}. Documents are sent as they were spooled, so
+ * numbers are neither converted nor rounded.
+ *
+ * <pre>
+ * try (WriteSpool spool = new WriteSpool(client, "catalog", Paths.get("/var/spool/catalog"), new SpoolOptions(), listener)) {
+ *   spool.indexDocument(document);
+ *   spool.destroyDocument("expired-id");
+ * }
+ * </pre>
+ *
+ * <p>While App Search throttles requests or is unreachable, or a response is cut off, the drainer backs off and sends
+ * the same batch again, writes keep being spooled until {@link SpoolOptions#maxSpoolBytes(long)} is reached, then
+ * producers block. Batches that fail for any other reason, such as an invalid request, are handed to the listener and
+ * skipped. Once the spool can no longer be drained, for instance because the client was closed, draining stops and
+ * writes fail with an IOException, including those blocked on a full spool. Writes not yet drained when the spool is
+ * closed are replayed when it is opened again. Delivery is at least once: a batch that was
+ * sent but not yet recorded as drained when the process stopped is sent again.
+ */
+public class WriteSpool implements Closeable {
+  /**
+   * Receives writes that could not be applied, on the drainer thread.
+   */
+  public interface Listener {
+    /**
+     * @param document a document App Search rejected
+     * @param errors the reasons it was rejected
+     */
+    default void onDocumentRejected(Map<String, Object> document, List<String> errors) {
+    }
+
+    /**
+     * @param documents documents of a batch that failed permanently and was skipped
+     * @param e the reason the request failed
+     */
+    default void onIndexBatchDropped(List<Map<String, Object>> documents, ClientException e) {
+    }
+
+    /**
+     * @param ids document ids of a batch that failed permanently and was skipped
+     * @param e the reason the request failed
+     */
+    default void onDestroyBatchDropped(List<String> ids, ClientException e) {
+    }
+  }
+
+  private static final byte INDEX = 1;
+  private static final byte DESTROY = 2;
+
+  private final Client client;
+  private final String engineName;
+  private final SpoolOptions options;
+  private final Listener listener;
+  private final SpoolLog log;
+  private final Thread drainer;
+  private final ScheduledExecutorService syncer;
+  private final CountDownLatch closing = new CountDownLatch(1);
+  private volatile boolean closed;
+  private volatile IOException drainFailure;
+
+  /**
+   * Opens the spool in directory, replaying writes left over from an earlier run.
+   *
+   * @param client client used to drain the spool
+   * @param engineName unique engine name
+   * @param directory directory of the segment files, created if it does not exist
+   * @param options size, sync and batching options
+   * @param listener receives writes that could not be applied, may be null
+   * @throws IOException if the spool can not be opened
+   */
+  public WriteSpool(Client client, String engineName, Path directory, SpoolOptions options, Listener listener) throws IOException {
+    this.client = client;
+    this.engineName = engineName;
+    this.options = options;
+    this.listener = listener != null ? listener : new Listener() {};
+    this.log = new SpoolLog(directory, options.segmentBytes(), options.maxSpoolBytes(), options.sync() == SpoolOptions.Sync.ALWAYS);
+
+    if (options.sync() == SpoolOptions.Sync.INTERVAL) {
+      this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "app-search-spool-sync");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.syncer.scheduleWithFixedDelay(this::sync, options.syncIntervalMillis(), options.syncIntervalMillis(),
+        TimeUnit.MILLISECONDS);
+    } else {
+      this.syncer = null;
+    }
+    this.drainer = new Thread(this::drain, "app-search-spool-drainer");
+    this.drainer.setDaemon(true);
+    this.drainer.start();
+  }
+
+  /**
+   * Spools a document to be indexed.
+   *
+   * @param document document to index
+   * @throws IOException if the spool can not be written
+   * @throws InterruptedException if interrupted while waiting for room in a full spool
+   */
+  public void indexDocument(Map<String, Object> document) throws IOException, InterruptedException {
+    append(INDEX, JsonTypes.GSON.toJson(document).getBytes(UTF_8));
+  }
+
+  /**
+   * Spools a document to be destroyed, after every write spooled before it.
+   *
+   * @param id id of the document to destroy
+   * @throws IOException if the spool can not be written
+   * @throws InterruptedException if interrupted while waiting for room in a full spool
+   */
+  public void destroyDocument(String id) throws IOException, InterruptedException {
+    append(DESTROY, id.getBytes(UTF_8));
+  }
+
+  /**
+   * @return size in bytes of the writes not drained yet
+   */
+  public long pendingBytes() {
+    return log.pendingBytes();
+  }
+
+  /**
+   * Waits until every write spooled so far has been drained.
+   *
+   * @param timeout maximum time to wait
+   * @param unit unit of timeout
+   * @return true if the spool is drained, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+    return log.awaitDrained(unit.toMillis(timeout));
+  }
+
+  /**
+   * Stops draining and closes the segment files, waiting for a batch being sent to complete. Writes not drained yet
+   * stay on disk for the next run.
+   *
+   * @throws IOException if the spool can not be written
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    closing.countDown();
+    if (syncer != null) {
+      syncer.shutdownNow();
+    }
+    // the drainer is not interrupted: an interrupt would abort the batch in flight, and closes the channels it touches
+    try {
+      log.close();
+    } finally {
+      try {
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void append(byte type, byte[] payload) throws IOException, InterruptedException {
+    if (drainFailure != null) {
+      throw new IOException("Spool can no longer be drained", drainFailure);
+    }
+    log.append(type, payload);
+  }
+
+  private void sync() {
+    try {
+      log.sync();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void fail(IOException e) {
+    drainFailure = e;
+    log.fail(e);
+  }
+
+  private void drain() {
+    long backoffMillis = options.initialBackoffMillis();
+    try {
+      while (!closed) {
+        List<SpoolLog.Record> records = log.read(options.maxBatchDocuments(), options.maxBatchBytes(), TimeUnit.SECONDS.toMillis(1));
+        if (records.isEmpty()) {
+          continue;
+        }
+        while (!send(records)) {
+          // the service is unavailable, the batch is sent again once it recovers
+          if (closing.await(backoffMillis, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+          backoffMillis = Math.min(options.maxBackoffMillis(), backoffMillis * 2);
+        }
+        backoffMillis = options.initialBackoffMillis();
+        if (closed) {
+          // the batch is replayed on the next run
+          return;
+        }
+        log.commit();
+      }
+    } catch (InterruptedException e) {
+      // nothing interrupts the drainer, whatever was not committed is replayed on the next run
+    } catch (IOException e) {
+      fail(e);
+    } catch (RuntimeException e) {
+      // such as a client closed before the spool, the batch stays on disk for the next run
+      fail(new IOException("Spool drainer failed", e));
+    }
+  }
+
+  /**
+   * @return false if the batch should be sent again later
+   */
+  private boolean send(List<SpoolLog.Record> records) {
+    // documents are sent as spooled, parsing them would turn every number into a Double
+    List<ByteBuffer> documents = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    for (SpoolLog.Record record : records) {
+      if (record.type == INDEX) {
+        documents.add(ByteBuffer.wrap(record.payload));
+      } else {
+        ids.add(new String(record.payload, UTF_8));
+      }
+    }
+
+    try {
+      if (!documents.isEmpty()) {
+        List<Map<String, Object>> statuses = client.indexRawDocuments(engineName, documents);
+        for (int i = 0; i < statuses.size() && i < documents.size(); i++) {
+          Object errors = statuses.get(i).get("errors");
+          if (errors instanceof List && !((List<?>) errors).isEmpty()) {
+            @SuppressWarnings("unchecked")
+            List<String> reasons = (List<String>) errors;
+            ByteBuffer document = documents.get(i);
+            notifyListener(() -> listener.onDocumentRejected(decode(document), reasons));
+          }
+        }
+      } else {
+        client.destroyDocuments(engineName, ids);
+      }
+      return true;
+    } catch (ClientException e) {
+      if (client.isClosed()) {
+        throw new IllegalStateException("Client is closed", e);
+      }
+      if (closed || isTransient(e)) {
+        return false;
+      }
+      notifyListener(documents.isEmpty()
+        ? () -> listener.onDestroyBatchDropped(ids, e)
+        : () -> listener.onIndexBatchDropped(documents.stream().map(WriteSpool::decode).collect(Collectors.toList()), e));
+      return true;
+    }
+  }
+
+  /**
+   * @return a spooled document as a map, with numbers kept as written rather than converted to Double
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> decode(ByteBuffer document) {
+    return (Map<String, Object>) JsonTypes.decode(new JsonParser().parse(new String(document.array(), UTF_8)));
+  }
+
+  /**
+   * @return true if the batch may well succeed when sent again, because the service was overloaded or the exchange
+   * was aborted before its response was read
+   */
+  private static boolean isTransient(ClientException e) {
+    if (ApiException.signalsOverload(e) || e instanceof CircuitOpenException || e instanceof ConcurrencyLimitException
+      || e instanceof RequestCancelledException || e instanceof DeadlineExceededException) {
+      return true;
+    }
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedException
+        || cause instanceof IOException && !(cause instanceof MalformedJsonException)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void notifyListener(Runnable notification) {
+    try {
+      notification.run();
+    } catch (RuntimeException e) {
+      // a failing listener must not stop the drainer
+    }
+  }
+}
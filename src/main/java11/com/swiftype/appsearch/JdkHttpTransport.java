@@ -0,0 +1,189 @@
+package com.swiftype.appsearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Transport} over the java.net.http client of Java 11 and later. Requests to a host that supports HTTP/2 are
+ * multiplexed over a few connections, others fall back to HTTP/1.1. Gzipped responses are left to the client to
+ * decode. Loaded by {@link ClientOptions#http2(boolean)} only when it runs on Java 11 or later.
+ */
+class JdkHttpTransport implements Transport {
+  /**
+   * Headers the java.net.http client sets itself and refuses to take from the caller.
+   */
+  private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList("connection", "content-length", "expect", "host", "upgrade"));
+
+  private final ExecutorService executor;
+  private final HttpClient httpClient;
+  private final long socketTimeoutMillis;
+
+  JdkHttpTransport(ClientOptions options) {
+    this.socketTimeoutMillis = options.socketTimeoutMillis();
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "app-search-http2-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    HttpClient.Builder builder = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_2)
+      .followRedirects(HttpClient.Redirect.NEVER)
+      .executor(executor);
+    if (options.connectTimeoutMillis() > 0) {
+      builder.connectTimeout(Duration.ofMillis(options.connectTimeoutMillis()));
+    }
+    this.httpClient = builder.build();
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request) throws IOException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.url()));
+    for (Map.Entry<String, String> header : request.headers().entrySet()) {
+      if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+        builder.header(header.getKey(), header.getValue());
+      }
+    }
+    // buffered, a publisher pulls the body while the request writes it, and bodies are at most a few megabytes
+    HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+    if (request.hasBody()) {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      request.writeBody(buffer);
+      body = HttpRequest.BodyPublishers.ofByteArray(buffer.toByteArray());
+    }
+    builder.method(request.method(), body);
+    // bounds the wait for the response headers, the closest this client has to a socket timeout
+    long timeoutMillis = request.timeoutMillis() > 0 ? request.timeoutMillis() : socketTimeoutMillis;
+    if (timeoutMillis > 0) {
+      builder.timeout(Duration.ofMillis(timeoutMillis));
+    }
+
+    AbortableBody responseBody = new AbortableBody();
+    CompletableFuture<HttpResponse<InputStream>> exchange = httpClient.sendAsync(builder.build(), responseBody);
+    Runnable abort = () -> {
+      responseBody.abort();
+      exchange.cancel(true);
+    };
+    request.onCancel(abort);
+    HttpResponse<InputStream> response;
+    try {
+      response = exchange.get();
+    } catch (InterruptedException e) {
+      abort.run();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response");
+    } catch (CancellationException e) {
+      throw new IOException("Request aborted", e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+    }
+
+    Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+      if (!header.getValue().isEmpty()) {
+        headers.putIfAbsent(header.getKey(), header.getValue().get(0));
+      }
+    }
+    return new TransportResponse(response.statusCode(), headers, responseBody.checked(response.body()));
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Reads the response body as a stream, which can be closed to abort the exchange. Before Java 16, cancelling the
+   * future of sendAsync only stops waiting for it and leaves the exchange running, while closing the body stream
+   * cancels its subscription, which resets the HTTP/2 stream or closes the HTTP/1.1 connection. A stream aborted
+   * before the response headers arrive is closed as soon as they do.
+   */
+  private static class AbortableBody implements HttpResponse.BodyHandler<InputStream> {
+    private InputStream stream;
+    private boolean aborted;
+
+    @Override
+    public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+      HttpResponse.BodySubscriber<InputStream> subscriber = HttpResponse.BodySubscribers.ofInputStream();
+      // the stream is available right away, before the body is received
+      subscriber.getBody().thenAccept(this::attach);
+      return subscriber;
+    }
+
+    private void attach(InputStream stream) {
+      boolean closeNow;
+      synchronized (this) {
+        this.stream = stream;
+        closeNow = aborted;
+      }
+      if (closeNow) {
+        closeQuietly(stream);
+      }
+    }
+
+    void abort() {
+      InputStream current;
+      synchronized (this) {
+        aborted = true;
+        current = stream;
+      }
+      if (current != null) {
+        // a read blocked on the body returns, and fails as the stream is checked
+        closeQuietly(current);
+      }
+    }
+
+    /**
+     * @return the body stream, failing reads once aborted rather than ending it early
+     */
+    InputStream checked(InputStream body) {
+      return new FilterInputStream(body) {
+        @Override
+        public int read() throws IOException {
+          return ensureNotAborted(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          return ensureNotAborted(super.read(b, off, len));
+        }
+      };
+    }
+
+    private synchronized int ensureNotAborted(int read) throws IOException {
+      if (aborted) {
+        throw new IOException("Request aborted");
+      }
+      return read;
+    }
+
+    private static void closeQuietly(InputStream stream) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        // aborting anyway
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncClientTest {
+  private StubServer server;
+  private AsyncClient client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> request.path.endsWith("/missing/search")
+      ? StubServer.Response.json(404, "{\"errors\":[\"Could not find engine.\"]}").delay(20)
+      : StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}").delay(20));
+    client = new AsyncClient(null, "private-key", server.baseUrlFormat(), new ClientOptions().ioThreadCount(1));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void completesManyConcurrentRequestsWithOneIoThread() throws Exception {
+    List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(client.search("engine", "cat"));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+    for (CompletableFuture<Map<String, Object>> future : futures) {
+      assertTrue(future.get().containsKey("results"));
+    }
+    assertEquals(100, server.requestCount());
+  }
+
+  @Test
+  void completesExceptionallyOnErrorResponse() {
+    ExecutionException e = assertThrows(ExecutionException.class, () -> client.search("missing", "cat").get());
+    assertTrue(e.getCause() instanceof ClientException);
+    assertTrue(e.getCause().getMessage().startsWith("Error: 404"));
+  }
+
+  @Test
+  void parsesResponsesOnTheResponseExecutor() throws Exception {
+    ExecutorService responseExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-response"));
+    try (AsyncClient responseClient = new AsyncClient(null, "private-key", server.baseUrlFormat(),
+      new ClientOptions().ioThreadCount(1).responseExecutor(responseExecutor))) {
+      // registered before the delayed response arrives, so it runs on the thread that completes the future
+      CompletableFuture<String> thread = responseClient.search("engine", "cat").thenApply(result -> Thread.currentThread().getName());
+      assertEquals("test-response", thread.get());
+      CompletableFuture<String> failureThread = responseClient.search("missing", "cat")
+        .handle((result, failure) -> Thread.currentThread().getName());
+      assertEquals("test-response", failureThread.get());
+    } finally {
+      responseExecutor.shutdown();
+    }
+  }
+
+  @Test
+  void completesExceptionallyOnceClosed() throws Exception {
+    client.close();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> client.search("engine", "cat").get());
+    assertTrue(e.getCause() instanceof ClientException);
+    assertEquals("Client is closed", e.getCause().getMessage());
+  }
+
+  @Test
+  void acceptsIdleConnectionTimeoutOfZero() throws Exception {
+    try (AsyncClient noIdleTimeout = new AsyncClient(null, "private-key", server.baseUrlFormat(),
+      new ClientOptions().idleConnectionTimeout(0, TimeUnit.SECONDS))) {
+      assertTrue(noIdleTimeout.search("engine", "cat").get().containsKey("results"));
+    }
+  }
+}
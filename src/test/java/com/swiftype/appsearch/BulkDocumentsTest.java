@@ -0,0 +1,114 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+class BulkDocumentsTest {
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private StubServer server;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        List<String> ids = JsonTypes.GSON.fromJson(request.bodyAsString(), new TypeToken<List<String>>() {}.getType());
+        if (ids.contains("fail")) {
+          return StubServer.Response.json(400, "{\"errors\":[\"Bad request\"]}");
+        }
+        StringBuilder response = new StringBuilder("[");
+        for (String id : ids) {
+          response.append(response.length() > 1 ? "," : "");
+          boolean exists = !id.startsWith("missing");
+          if (request.method.equals("DELETE")) {
+            response.append("{\"id\":\"").append(id).append("\",\"deleted\":").append(exists).append("}");
+          } else {
+            response.append(exists ? "{\"id\":\"" + id + "\"}" : "null");
+          }
+        }
+        // the first chunk is the slowest, so completion order differs from id order
+        long delay = ids.contains("0") ? 100 : 20;
+        return StubServer.Response.json(200, response.append("]").toString()).delay(delay);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    });
+    client = new Client(null, "private-key", server.baseUrlFormat());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void getsDocumentsInIdOrderWithBoundedParallelism() throws Exception {
+    List<String> ids = ids(250);
+    ids.set(42, "missing-42");
+    List<String> seen = new ArrayList<>();
+
+    BulkDocumentsResult result = client.getDocumentsBulk("engine", ids, new BulkDocumentsOptions().parallelism(2),
+      (id, document) -> seen.add(document != null ? (String) document.get("id") : id));
+
+    assertEquals(ids, seen);
+    assertEquals(3, result.requests());
+    assertEquals(249, result.succeeded());
+    assertEquals(Arrays.asList("missing-42"), result.missingIds());
+    assertFalse(result.hasFailures());
+    assertTrue(maxInFlight.get() <= 2);
+  }
+
+  @Test
+  void handsOverChunksAsTheyComplete() throws Exception {
+    List<String> seen = new ArrayList<>();
+
+    client.getDocumentsBulk("engine", ids(30), new BulkDocumentsOptions().chunkSize(10).parallelism(3).ordered(false),
+      (id, document) -> seen.add(id));
+
+    assertEquals(30, seen.size());
+    assertEquals("0", seen.get(20), "the slow first chunk is handed over last");
+    assertEquals(ids(30), seen.stream().sorted(Comparator.comparingInt(Integer::parseInt)).collect(Collectors.toList()));
+  }
+
+  @Test
+  void destroysDocumentsAndAggregatesFailures() throws Exception {
+    List<String> ids = ids(20);
+    ids.set(3, "missing-3");
+    ids.set(15, "fail");
+
+    BulkDocumentsResult result = client.destroyDocumentsBulk("engine", ids, new BulkDocumentsOptions().chunkSize(10),
+      (id, status) -> assertEquals(id, status.get("id")));
+
+    assertEquals(2, result.requests());
+    assertEquals(9, result.succeeded());
+    assertEquals(Arrays.asList("missing-3"), result.missingIds());
+    assertEquals(10, result.failedIds().size());
+    assertTrue(result.failedIds().get("fail") instanceof ApiException);
+  }
+
+  private static List<String> ids(int count) {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ids.add(String.valueOf(i));
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,150 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class BulkIndexerTest {
+  @Test
+  void packsDocumentsIntoBatchesByCountAndSize() throws Exception {
+    List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    Map<String, Object> indexedIds = new ConcurrentHashMap<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    try (StubServer server = new StubServer(request -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      List<Map<String, Object>> documents = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.ARRAY_OF_OBJECTS.getType());
+      batchSizes.add(documents.size());
+      StringBuilder statuses = new StringBuilder("[");
+      for (Map<String, Object> document : documents) {
+        statuses.append(statuses.length() > 1 ? "," : "").append("{\"id\":\"").append(document.get("id")).append("\",\"errors\":[]}");
+      }
+      inFlight.decrementAndGet();
+      return StubServer.Response.json(200, statuses.append("]").toString()).delay(5);
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      BulkIndexerOptions options = new BulkIndexerOptions()
+        .maxBatchBytes(20 * 1024)
+        .workerThreads(3)
+        .maxInFlightBatches(3);
+
+      BulkIndexer.Listener listener = new BulkIndexer.Listener() {
+        @Override
+        public void onBatchIndexed(List<Map<String, Object>> documents, List<Map<String, Object>> statuses) {
+          for (Map<String, Object> status : statuses) {
+            indexedIds.put((String) status.get("id"), status);
+          }
+        }
+
+        @Override
+        public void onBatchFailed(List<Map<String, Object>> documents, ClientException e) {
+        }
+      };
+
+      try (BulkIndexer indexer = new BulkIndexer(client, "engine", options, listener)) {
+        indexer.addAll(IntStream.range(0, 1000).mapToObj(i -> {
+          Map<String, Object> document = new HashMap<>();
+          document.put("id", String.valueOf(i));
+          // every 10th document is large enough to force an early batch cut
+          document.put("body", i % 10 == 0 ? String.join("", Collections.nCopies(2000, "cat ")) : "cat");
+          return document;
+        }));
+      }
+    }
+
+    assertEquals(1000, indexedIds.size());
+    assertEquals(1000, batchSizes.stream().mapToInt(Integer::intValue).sum());
+    assertTrue(batchSizes.stream().allMatch(size -> size <= 100));
+    assertTrue(batchSizes.size() > 10, "batches should be cut by size, got " + batchSizes);
+    assertTrue(maxInFlight.get() <= 3);
+  }
+
+  @Test
+  void keepsTheBatchWhenInterruptedWaitingForAPermit() throws Exception {
+    List<Object> indexedIds = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer(request -> indexResponse(request).delay(300));
+         Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      // a single document fills a batch
+      BulkIndexerOptions options = new BulkIndexerOptions().maxBatchBytes(20).maxInFlightBatches(1);
+      try (BulkIndexer indexer = new BulkIndexer(client, "engine", options, listener(indexedIds, new CopyOnWriteArrayList<>()))) {
+        indexer.add(document("0"));
+        indexer.add(document("1"));
+        // the batch of 0 is in flight, sending the batch of 1 has to wait for it
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> indexer.add(document("2")));
+        indexer.add(document("2"));
+      }
+    }
+
+    assertEquals(Arrays.asList("0", "1", "2"), indexedIds);
+  }
+
+  @Test
+  void reportsWhatTheListenerThrowsAsAFailedBatch() throws Exception {
+    List<ClientException> failures = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer(BulkIndexerTest::indexResponse);
+         Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      BulkIndexer.Listener listener = listener(new CopyOnWriteArrayList<>(), failures);
+      BulkIndexer.Listener throwing = new BulkIndexer.Listener() {
+        @Override
+        public void onBatchIndexed(List<Map<String, Object>> documents, List<Map<String, Object>> statuses) {
+          throw new IllegalStateException("listener failed");
+        }
+
+        @Override
+        public void onBatchFailed(List<Map<String, Object>> documents, ClientException e) {
+          listener.onBatchFailed(documents, e);
+        }
+      };
+      try (BulkIndexer indexer = new BulkIndexer(client, "engine", new BulkIndexerOptions(), throwing)) {
+        indexer.add(document("0"));
+      }
+    }
+
+    assertEquals(1, failures.size());
+    assertTrue(failures.get(0).getCause() instanceof IllegalStateException);
+  }
+
+  private static StubServer.Response indexResponse(StubServer.Request request) {
+    List<Map<String, Object>> documents = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.ARRAY_OF_OBJECTS.getType());
+    StringBuilder statuses = new StringBuilder("[");
+    for (Map<String, Object> document : documents) {
+      statuses.append(statuses.length() > 1 ? "," : "").append("{\"id\":\"").append(document.get("id")).append("\",\"errors\":[]}");
+    }
+    return StubServer.Response.json(200, statuses.append("]").toString());
+  }
+
+  private static BulkIndexer.Listener listener(List<Object> indexedIds, List<ClientException> failures) {
+    return new BulkIndexer.Listener() {
+      @Override
+      public void onBatchIndexed(List<Map<String, Object>> documents, List<Map<String, Object>> statuses) {
+        for (Map<String, Object> status : statuses) {
+          indexedIds.add(status.get("id"));
+        }
+      }
+
+      @Override
+      public void onBatchFailed(List<Map<String, Object>> documents, ClientException e) {
+        failures.add(e);
+      }
+    };
+  }
+
+  private static Map<String, Object> document(String id) {
+    Map<String, Object> document = new HashMap<>();
+    document.put("id", id);
+    return document;
+  }
+}
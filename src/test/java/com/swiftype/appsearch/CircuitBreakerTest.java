@@ -0,0 +1,102 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+  private final AtomicBoolean healthy = new AtomicBoolean();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      if (request.path.contains("/bad/")) {
+        return StubServer.Response.json(400, "{\"errors\":[\"Bad request\"]}");
+      }
+      return healthy.get()
+        ? StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}")
+        : StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}");
+    });
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void failsFastWhileOpenAndClosesAfterSuccessfulTrial() throws Exception {
+    ClientOptions options = new ClientOptions().circuitBreaker(3, 200, TimeUnit.MILLISECONDS);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      for (int i = 0; i < 3; i++) {
+        assertThrows(ApiException.class, () -> client.search("engine", "cat"));
+      }
+      CircuitOpenException e = assertThrows(CircuitOpenException.class, () -> client.search("engine", "cat"));
+      assertEquals("GET engines/engine/search", e.endpoint());
+      assertEquals(3, server.requestCount());
+
+      // other endpoints are unaffected
+      assertThrows(ApiException.class, () -> client.search("other", "cat"));
+      assertEquals(4, server.requestCount());
+
+      Thread.sleep(250);
+      assertThrows(ApiException.class, () -> client.search("engine", "cat"));
+      assertThrows(CircuitOpenException.class, () -> client.search("engine", "cat"));
+      assertEquals(5, server.requestCount());
+
+      healthy.set(true);
+      Thread.sleep(250);
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+      assertEquals(7, server.requestCount());
+    }
+  }
+
+  @Test
+  void clientErrorsDoNotOpenCircuit() throws Exception {
+    ClientOptions options = new ClientOptions().circuitBreaker(2, 1, TimeUnit.MINUTES);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      for (int i = 0; i < 5; i++) {
+        assertEquals(400, assertThrows(ApiException.class, () -> client.search("bad", "cat")).statusCode());
+      }
+    }
+    assertEquals(5, server.requestCount());
+  }
+
+  @Test
+  void stopsRetryingOnceOpen() throws Exception {
+    ClientOptions options = new ClientOptions()
+      .retryPolicy(new RetryPolicy().maxAttempts(10).backoff(1, 10, TimeUnit.MILLISECONDS))
+      .circuitBreaker(2, 1, TimeUnit.MINUTES);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      assertThrows(CircuitOpenException.class, () -> client.search("engine", "cat"));
+    }
+    assertEquals(2, server.requestCount());
+  }
+
+  @Test
+  void asyncClientFailsFastWhileOpen() throws Exception {
+    ClientOptions options = new ClientOptions().ioThreadCount(1).circuitBreaker(1, 1, TimeUnit.MINUTES);
+
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), options)) {
+      ExecutionException first = assertThrows(ExecutionException.class, () -> client.search("engine", "cat").get());
+      assertTrue(first.getCause() instanceof ApiException);
+      ExecutionException second = assertThrows(ExecutionException.class, () -> client.search("engine", "cat").get());
+      assertTrue(second.getCause() instanceof CircuitOpenException);
+    }
+    assertEquals(1, server.requestCount());
+  }
+}
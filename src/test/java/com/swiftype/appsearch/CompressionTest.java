@@ -0,0 +1,131 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompressionTest {
+  private final List<StubServer.Request> requests = new CopyOnWriteArrayList<>();
+  private final List<RequestEvent> events = new CopyOnWriteArrayList<>();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      requests.add(request);
+      return request.path.endsWith("/documents")
+        ? StubServer.Response.json(200, indexResponse(request.decodedBody()))
+        : StubServer.Response.gzipJson(200, searchResponse());
+    });
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void gzipsRequestBodiesFromThreshold() throws Exception {
+    ClientOptions options = new ClientOptions().requestCompression(1024, 6).addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      client.indexDocuments("engine", documents(100));
+      client.indexDocuments("engine", documents(1));
+    }
+
+    StubServer.Request large = requests.get(0);
+    assertEquals("gzip", large.header("Content-Encoding"));
+    assertTrue(large.decodedBody().startsWith("[{\"id\":\"0\""));
+    assertNull(requests.get(1).header("Content-Encoding"));
+
+    RequestEvent event = events.get(0);
+    assertEquals(large.body.length, event.requestBytes());
+    assertEquals(large.decodedBody().length(), event.uncompressedRequestBytes());
+    assertTrue(event.requestBytes() < event.uncompressedRequestBytes() / 4);
+    assertEquals(events.get(1).requestBytes(), events.get(1).uncompressedRequestBytes());
+  }
+
+  @Test
+  void decodesGzippedResponses() throws Exception {
+    LatencyRecorder recorder = new LatencyRecorder();
+    ClientOptions options = new ClientOptions().addRequestListener(recorder).addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      assertEquals(50, ((List<?>) client.search("engine", "cat").get("results")).size());
+    }
+
+    assertEquals("gzip", requests.get(0).header("Accept-Encoding"));
+    RequestEvent event = events.get(0);
+    assertEquals(searchResponse().length(), event.uncompressedResponseBytes());
+    assertTrue(event.responseBytes() < event.uncompressedResponseBytes() / 4);
+    OperationStats stats = recorder.snapshot().get(Operation.SEARCH);
+    assertEquals(event.uncompressedResponseBytes() - event.responseBytes(), stats.compressionSavedBytes());
+  }
+
+  @Test
+  void asyncClientDecodesGzippedResponses() throws Exception {
+    ClientOptions options = new ClientOptions().requestCompression(0, 1).addRequestListener(events::add);
+
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), options)) {
+      assertEquals(50, ((List<?>) client.search("engine", "cat").get().get("results")).size());
+    }
+
+    StubServer.Request request = requests.get(0);
+    assertEquals("gzip", request.header("Accept-Encoding"));
+    assertEquals("gzip", request.header("Content-Encoding"));
+    assertEquals("{\"query\":\"cat\"}", request.decodedBody());
+    assertEquals(searchResponse().length(), events.get(0).uncompressedResponseBytes());
+  }
+
+  @Test
+  void responseCompressionCanBeDisabled() throws Exception {
+    ClientOptions options = new ClientOptions().responseCompression(false);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      client.indexDocuments("engine", documents(1));
+    }
+
+    assertNull(requests.get(0).header("Accept-Encoding"));
+  }
+
+  private static List<Map<String, Object>> documents(int count) {
+    List<Map<String, Object>> documents = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Map<String, Object> document = new HashMap<>();
+      document.put("id", String.valueOf(i));
+      document.put("title", "Document number " + i);
+      document.put("body", "The quick brown fox jumps over the lazy dog, again and again.");
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  private static String indexResponse(String body) {
+    int count = body.split("\"id\"").length - 1;
+    StringBuilder response = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      response.append(i > 0 ? "," : "").append("{\"id\":\"").append(i).append("\",\"errors\":[]}");
+    }
+    return response.append("]").toString();
+  }
+
+  private static String searchResponse() {
+    StringBuilder response = new StringBuilder("{\"meta\":{},\"results\":[");
+    for (int i = 0; i < 50; i++) {
+      response.append(i > 0 ? "," : "").append("{\"id\":{\"raw\":\"").append(i)
+        .append("\"},\"title\":{\"raw\":\"The quick brown fox\"}}");
+    }
+    return response.append("]}").toString();
+  }
+}
@@ -0,0 +1,179 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConcurrencyLimiterTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[]}";
+  private static final String DOCUMENTS_RESPONSE = "[{\"id\":\"1\",\"deleted\":true}]";
+
+  private volatile StubServer.Response searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE);
+  private StubServer server;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> request.path.endsWith("/documents")
+      ? StubServer.Response.json(200, DOCUMENTS_RESPONSE)
+      : searchResponse);
+    executor = Executors.newFixedThreadPool(16);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    executor.shutdownNow();
+    server.close();
+  }
+
+  @Test
+  void growsLimitWhileRequestsSucceed() throws Exception {
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().initialLimit(2).latencyTolerance(0);
+
+    try (Client client = client(new ClientOptions().maxConnectionsPerRoute(16).readConcurrencyLimit(limit))) {
+      searchConcurrently(client, 1000);
+      ConcurrencyLimitStats stats = client.readConcurrencyStats();
+      assertTrue(stats.limit() > 2, stats.toString());
+      assertEquals(0, stats.inFlight());
+      assertEquals(0, stats.rejected());
+    }
+  }
+
+  @Test
+  void shrinksLimitWhenThrottled() throws Exception {
+    searchResponse = StubServer.Response.json(429, "{\"errors\":[\"Throttled\"]}");
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().initialLimit(50).backoffRatio(0.5);
+
+    try (Client client = client(new ClientOptions().readConcurrencyLimit(limit))) {
+      for (int i = 0; i < 5; i++) {
+        assertThrows(ApiException.class, () -> client.search("engine", "cat"));
+      }
+      assertTrue(client.readConcurrencyStats().limit() <= 6, client.readConcurrencyStats().toString());
+    }
+  }
+
+  @Test
+  void shrinksLimitWhenLatencyRises() throws Exception {
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().initialLimit(20).latencyTolerance(2);
+
+    try (Client client = client(new ClientOptions().readConcurrencyLimit(limit))) {
+      for (int i = 0; i < 20; i++) {
+        client.search("engine", "cat");
+      }
+      searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE).delay(20);
+      for (int i = 0; i < 20; i++) {
+        client.search("engine", "cat");
+      }
+      assertTrue(client.readConcurrencyStats().limit() < 20, client.readConcurrencyStats().toString());
+    }
+  }
+
+  @Test
+  void queuesAndRejectsCallsOverLimit() throws Exception {
+    searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE).delay(300);
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().initialLimit(1).limitBounds(1, 1).maxQueued(2);
+
+    try (Client client = client(new ClientOptions().readConcurrencyLimit(limit))) {
+      List<Future<?>> calls = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        calls.add(executor.submit(() -> client.search("engine", "cat")));
+        Thread.sleep(50);
+      }
+      ConcurrencyLimitStats stats = client.readConcurrencyStats();
+      assertEquals(1, stats.inFlight());
+      assertEquals(2, stats.queued());
+
+      assertThrows(ConcurrencyLimitException.class, () -> client.search("engine", "cat"));
+      assertEquals(1, client.readConcurrencyStats().rejected());
+
+      for (Future<?> call : calls) {
+        call.get();
+      }
+      assertEquals(0, client.readConcurrencyStats().queued());
+    }
+  }
+
+  @Test
+  void rejectsCallsThatWaitTooLong() throws Exception {
+    searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE).delay(500);
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().limitBounds(1, 1).queueTimeout(50, TimeUnit.MILLISECONDS);
+
+    try (Client client = client(new ClientOptions().readConcurrencyLimit(limit))) {
+      Future<?> first = executor.submit(() -> client.search("engine", "cat"));
+      Thread.sleep(50);
+      assertThrows(ConcurrencyLimitException.class, () -> client.search("engine", "cat"));
+      first.get();
+      assertEquals(0, client.readConcurrencyStats().queued());
+    }
+  }
+
+  @Test
+  void keepsSeparateReadAndWriteLimits() throws Exception {
+    searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE).delay(300);
+    ConcurrencyLimitOptions single = new ConcurrencyLimitOptions().limitBounds(1, 1).maxQueued(0);
+    ClientOptions options = new ClientOptions().readConcurrencyLimit(single).writeConcurrencyLimit(single);
+
+    try (Client client = client(options)) {
+      Future<?> search = executor.submit(() -> client.search("engine", "cat"));
+      Thread.sleep(50);
+      assertThrows(ConcurrencyLimitException.class, () -> client.search("engine", "cat"));
+      assertEquals(1, client.destroyDocuments("engine", Arrays.asList("1")).size());
+      search.get();
+
+      assertEquals(1, client.readConcurrencyStats().rejected());
+      assertEquals(0, client.writeConcurrencyStats().rejected());
+    }
+  }
+
+  @Test
+  void asyncClientQueuesCallsOverLimit() throws Exception {
+    searchResponse = StubServer.Response.json(200, SEARCH_RESPONSE).delay(50);
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().limitBounds(2, 2).maxQueued(10);
+    ClientOptions options = new ClientOptions().ioThreadCount(1).readConcurrencyLimit(limit);
+
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), options)) {
+      List<CompletableFuture<?>> searches = new ArrayList<>();
+      for (int i = 0; i < 13; i++) {
+        searches.add(client.search("engine", "cat"));
+      }
+      ExecutionException e = assertThrows(ExecutionException.class, () -> searches.get(12).get());
+      assertTrue(e.getCause() instanceof ConcurrencyLimitException);
+      assertEquals(2, client.readConcurrencyStats().inFlight());
+      assertEquals(10, client.readConcurrencyStats().queued());
+
+      for (CompletableFuture<?> search : searches.subList(0, 12)) {
+        search.get();
+      }
+      assertEquals(12, server.requestCount());
+    }
+  }
+
+  private Client client(ClientOptions options) {
+    return new Client(null, "private-key", server.baseUrlFormat(), options);
+  }
+
+  private void searchConcurrently(Client client, int searches) throws Exception {
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < searches; i++) {
+      futures.add(executor.submit(() -> client.search("engine", "cat")));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+  }
+}
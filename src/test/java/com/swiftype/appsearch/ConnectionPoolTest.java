@@ -0,0 +1,68 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+  private static final String SEARCH_RESPONSE =
+    "{\"meta\":{\"page\":{\"current\":1,\"total_pages\":1,\"total_results\":1,\"size\":10}},"
+      + "\"results\":[{\"id\":{\"raw\":\"1\"},\"title\":{\"raw\":\"cat\"}}]}";
+
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void reusesConnectionAcrossSequentialSearches() throws Exception {
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      for (int i = 0; i < 2000; i++) {
+        Map<String, Object> response = client.search("engine", "cat");
+        assertTrue(response.containsKey("results"));
+      }
+    }
+
+    assertEquals(2000, server.requestCount());
+    assertEquals(1, server.connectionCount());
+  }
+
+  @Test
+  void boundsConnectionsByMaxPerRoute() throws Exception {
+    ClientOptions options = new ClientOptions().maxConnectionsPerRoute(4);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      List<Future<Map<String, Object>>> futures = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        futures.add(executor.submit(() -> client.search("engine", "cat")));
+      }
+      for (Future<Map<String, Object>> future : futures) {
+        assertTrue(future.get().containsKey("results"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(2000, server.requestCount());
+    assertTrue(server.connectionCount() <= 4, "opened " + server.connectionCount() + " connections");
+  }
+}
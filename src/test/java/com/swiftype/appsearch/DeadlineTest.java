@@ -0,0 +1,176 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[]}";
+
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE).delay(3_000));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void abortsRequestWhenDeadlinePasses() throws Exception {
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      long start = System.nanoTime();
+      // the enclosing deadline is sooner, so the nested one can not extend it
+      assertThrows(DeadlineExceededException.class, () -> Deadline.after(200, TimeUnit.MILLISECONDS)
+        .call(() -> Deadline.after(10, TimeUnit.SECONDS).call(() -> client.search("engine", "cat"))));
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue(elapsedMillis < 1_500, "took " + elapsedMillis + "ms");
+
+      server.handler(request -> StubServer.Response.json(200, SEARCH_RESPONSE));
+      assertTrue(Deadline.after(5, TimeUnit.SECONDS).call(() -> client.search("engine", "cat")).containsKey("results"));
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+    }
+  }
+
+  @Test
+  void doesNotRetryPastDeadline() throws Exception {
+    server.handler(request -> StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}"));
+    RetryPolicy retryPolicy = new RetryPolicy().maxAttempts(10).backoff(100, 100, TimeUnit.MILLISECONDS).jitter(0);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().retryPolicy(retryPolicy))) {
+      ApiException e = assertThrows(ApiException.class,
+        () -> Deadline.after(250, TimeUnit.MILLISECONDS).call(() -> client.search("engine", "cat")));
+      assertEquals(503, e.statusCode());
+    }
+    // attempts at about 0, 100 and 200ms, the next one would start after the deadline
+    assertTrue(server.requestCount() <= 3, server.requestCount() + " requests");
+  }
+
+  @Test
+  void abortsRequestOfInterruptedThread() throws Exception {
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      AtomicReference<ClientException> failure = new AtomicReference<>();
+      AtomicReference<Boolean> stillInterrupted = new AtomicReference<>();
+      Thread caller = new Thread(() -> {
+        try {
+          client.search("engine", "cat");
+        } catch (ClientException e) {
+          failure.set(e);
+        }
+        stillInterrupted.set(Thread.currentThread().isInterrupted());
+      });
+      caller.start();
+      Thread.sleep(100);
+      long start = System.nanoTime();
+      caller.interrupt();
+      caller.join(2_000);
+
+      assertFalse(caller.isAlive());
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+      assertTrue(failure.get().getCause() instanceof InterruptedException);
+      assertTrue(stillInterrupted.get());
+    }
+  }
+
+  @Test
+  void stopsWaitingForCoalescedSearchWhenDeadlinePasses() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().coalesceSearches(true))) {
+      executor.submit(() -> client.search("engine", "cat"));
+      Thread.sleep(100);
+
+      assertFailsWithinDeadline(() -> client.search("engine", "cat"));
+      assertEquals(1, server.requestCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void bindsBatchedSearchesToTheDeadlinesOfTheirCallers() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    ClientOptions options = new ClientOptions().searchBatching(50, TimeUnit.MILLISECONDS, 10);
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      Future<?> other = executor.submit(() -> assertFailsWithinDeadline(() -> client.search("engine", "dog")));
+      assertFailsWithinDeadline(() -> client.search("engine", "cat"));
+      other.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void stopsWaitingForConcurrencyPermitWhenDeadlinePasses() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    ConcurrencyLimitOptions limit = new ConcurrencyLimitOptions().initialLimit(1).limitBounds(1, 1)
+      .queueTimeout(10, TimeUnit.SECONDS);
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().readConcurrencyLimit(limit))) {
+      executor.submit(() -> client.search("engine", "cat"));
+      Thread.sleep(100);
+
+      assertFailsWithinDeadline(() -> client.search("engine", "dog"));
+      assertEquals(1, server.requestCount());
+      assertEquals(0, client.readConcurrencyStats().rejected());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void checksForInterruptsOnlyWhileRequestsAreInFlight() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      assertFalse(client.isInterruptCheckScheduled());
+      Future<?> search = executor.submit(() -> client.search("engine", "cat"));
+      Thread.sleep(100);
+      assertTrue(client.isInterruptCheckScheduled());
+
+      search.get();
+      Thread.sleep(100);
+      assertFalse(client.isInterruptCheckScheduled());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void failsHungResponseAfterSocketTimeout() throws Exception {
+    ClientOptions options = new ClientOptions().socketTimeout(200, TimeUnit.MILLISECONDS);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      ClientException e = assertThrows(ClientException.class, () -> client.search("engine", "cat"));
+      assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+  }
+
+  @Test
+  void rejectsOutOfRangeTimeouts() {
+    assertThrows(IllegalArgumentException.class, () -> new ClientOptions().socketTimeout(-1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> new ClientOptions().connectTimeout(30, TimeUnit.DAYS));
+    assertThrows(IllegalArgumentException.class, () -> Deadline.after(-1, TimeUnit.SECONDS));
+  }
+
+  private static Void assertFailsWithinDeadline(ClientCallable<?> call) {
+    long start = System.nanoTime();
+    assertThrows(DeadlineExceededException.class, () -> Deadline.after(200, TimeUnit.MILLISECONDS).call(call));
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertTrue(elapsedMillis < 1_500, "took " + elapsedMillis + "ms");
+    return null;
+  }
+}
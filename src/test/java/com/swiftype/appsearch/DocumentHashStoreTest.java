@@ -0,0 +1,124 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DocumentHashStoreTest {
+  private Path directory;
+  private Path path;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("document-hash-store");
+    path = directory.resolve("engine.hashes");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  void growsAndPersistsAcrossReopening() throws IOException {
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      int generation = store.beginGeneration();
+      for (int i = 0; i < 5_000; i++) {
+        String id = "doc-" + i;
+        store.put(id, DocumentHashStore.hash(id), i, generation);
+      }
+      assertEquals(5_000, store.size());
+    }
+
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      int generation = store.beginGeneration();
+      assertEquals(5_000, store.size());
+      for (int i = 0; i < 5_000; i++) {
+        String id = "doc-" + i;
+        assertTrue(store.markSeen(DocumentHashStore.hash(id), i, generation), id);
+      }
+      assertFalse(store.markSeen(DocumentHashStore.hash("doc-1"), 2, generation));
+      assertFalse(store.markSeen(DocumentHashStore.hash("doc-5000"), 0, generation));
+    }
+  }
+
+  @Test
+  void reportsIdsNotSeenInTheCurrentGeneration() throws IOException {
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      int first = store.beginGeneration();
+      for (String id : Arrays.asList("a", "b", "c")) {
+        store.put(id, DocumentHashStore.hash(id), 1, first);
+      }
+
+      int second = store.beginGeneration();
+      store.markSeen(DocumentHashStore.hash("a"), 1, second);
+      store.markSeen(DocumentHashStore.hash("c"), 2, second);
+      assertEquals(Collections.singletonList("b"), store.idsNotSeenSince(second));
+    }
+  }
+
+  @Test
+  void removesWithoutBreakingProbeChains() throws IOException {
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      int generation = store.beginGeneration();
+      for (int i = 0; i < 700; i++) {
+        String id = "doc-" + i;
+        store.put(id, DocumentHashStore.hash(id), i, generation);
+      }
+      for (int i = 0; i < 700; i++) {
+        if (i % 3 != 0) {
+          store.remove(DocumentHashStore.hash("doc-" + i));
+        }
+      }
+
+      assertEquals(234, store.size());
+      for (int i = 0; i < 700; i++) {
+        assertEquals(i % 3 == 0, store.markSeen(DocumentHashStore.hash("doc-" + i), i, generation), "doc-" + i);
+      }
+
+      // most of the id file is garbage now, so it is rewritten
+      long idFileBytes = Files.size(directory.resolve("engine.hashes.ids"));
+      store.compactIfNeeded();
+      assertFalse(Files.exists(directory.resolve("engine.hashes.ids")));
+      assertTrue(Files.size(directory.resolve("engine.hashes.ids.1")) < idFileBytes / 2);
+      List<String> remaining = store.idsNotSeenSince(generation + 1);
+      assertEquals(234, remaining.size());
+      assertTrue(remaining.contains("doc-699"));
+    }
+  }
+
+  @Test
+  void ignoresFilesOfInterruptedRebuild() throws IOException {
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      int generation = store.beginGeneration();
+      store.put("a", DocumentHashStore.hash("a"), 1, generation);
+      store.put("b", DocumentHashStore.hash("b"), 2, generation);
+    }
+    // a rebuild that wrote its id file and table, but crashed before moving the table into place
+    Files.write(directory.resolve("engine.hashes.ids.1"), new byte[] {0, 1, 'z'});
+    Files.write(directory.resolve("engine.hashes.tmp"), new byte[64]);
+
+    try (DocumentHashStore store = DocumentHashStore.open(path)) {
+      List<String> ids = store.idsNotSeenSince(store.beginGeneration());
+      Collections.sort(ids);
+      assertEquals(Arrays.asList("a", "b"), ids);
+    }
+    assertFalse(Files.exists(directory.resolve("engine.hashes.ids.1")));
+    assertFalse(Files.exists(directory.resolve("engine.hashes.tmp")));
+  }
+}
@@ -0,0 +1,124 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+class DocumentSyncerTest {
+  private final List<String> indexedIds = new CopyOnWriteArrayList<>();
+  private final List<String> destroyedIds = new CopyOnWriteArrayList<>();
+  private Path directory;
+  private StubServer server;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("document-syncer");
+    server = new StubServer(request -> {
+      if (request.method.equals("DELETE")) {
+        List<String> ids = JsonTypes.GSON.fromJson(request.bodyAsString(), new TypeToken<List<String>>() {}.getType());
+        destroyedIds.addAll(ids);
+        StringBuilder response = new StringBuilder("[");
+        for (String id : ids) {
+          response.append(response.length() > 1 ? "," : "").append("{\"id\":\"").append(id).append("\",\"deleted\":true}");
+        }
+        return StubServer.Response.json(200, response.append("]").toString());
+      }
+      List<Map<String, Object>> documents = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.ARRAY_OF_OBJECTS.getType());
+      StringBuilder response = new StringBuilder("[");
+      for (Map<String, Object> document : documents) {
+        indexedIds.add((String) document.get("id"));
+        String errors = document.containsKey("invalid") ? "[\"Invalid field\"]" : "[]";
+        response.append(response.length() > 1 ? "," : "").append("{\"id\":\"").append(document.get("id"))
+          .append("\",\"errors\":").append(errors).append("}");
+      }
+      return StubServer.Response.json(200, response.append("]").toString());
+    });
+    client = new Client(null, "private-key", server.baseUrlFormat());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  void sendsOnlyNewAndChangedDocumentsAndDestroysVanishedOnes() throws Exception {
+    List<Map<String, Object>> catalog = catalog(250);
+    DocumentSyncResult first = sync(catalog);
+    assertEquals(250, first.indexed());
+    assertEquals(250, indexedIds.size());
+
+    indexedIds.clear();
+    catalog.get(7).put("title", "Changed");
+    catalog.remove(100);
+    catalog.add(document("new"));
+    DocumentSyncResult second = sync(catalog);
+
+    assertEquals(248, second.unchanged());
+    assertEquals(2, second.indexed());
+    assertEquals(1, second.destroyed());
+    assertEquals(2, indexedIds.size());
+    assertEquals(Collections.singletonList("100"), destroyedIds);
+  }
+
+  @Test
+  void resendsDocumentsThatWereRejected() throws Exception {
+    List<Map<String, Object>> catalog = catalog(3);
+    catalog.get(1).put("invalid", true);
+
+    DocumentSyncResult first = sync(catalog);
+    assertEquals(2, first.indexed());
+    assertEquals(1, first.failed());
+
+    indexedIds.clear();
+    DocumentSyncResult second = sync(catalog);
+    assertEquals(2, second.unchanged());
+    assertEquals(Collections.singletonList("1"), indexedIds);
+    assertEquals(0, second.destroyed());
+  }
+
+  private DocumentSyncResult sync(List<Map<String, Object>> catalog) throws Exception {
+    try (DocumentSyncer syncer = new DocumentSyncer(client, "engine", directory.resolve("engine.hashes"), new BulkIndexerOptions())) {
+      for (Map<String, Object> document : catalog) {
+        syncer.add(document);
+      }
+      return syncer.finish();
+    }
+  }
+
+  private static List<Map<String, Object>> catalog(int size) {
+    List<Map<String, Object>> catalog = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      catalog.add(document(String.valueOf(i)));
+    }
+    return catalog;
+  }
+
+  private static Map<String, Object> document(String id) {
+    Map<String, Object> document = new HashMap<>();
+    document.put("id", id);
+    document.put("title", "Document " + id);
+    return document;
+  }
+}
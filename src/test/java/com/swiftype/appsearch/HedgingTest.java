@@ -0,0 +1,137 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HedgingTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[]}";
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    // every odd request is slow
+    server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE)
+      .delay(requests.incrementAndGet() % 2 == 1 ? 1_000 : 0));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void firstResponseWinsOverSlowRequest() throws Exception {
+    HedgingPolicy hedging = new HedgingPolicy().delay(20, TimeUnit.MILLISECONDS).budgetPercent(100);
+    LatencyRecorder recorder = new LatencyRecorder();
+    ClientOptions options = new ClientOptions().hedging(hedging).addRequestListener(recorder);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      long start = System.nanoTime();
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+      assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+
+      HedgingStats stats = client.hedgingStats();
+      assertEquals(1, stats.requests());
+      assertEquals(1, stats.hedged());
+      assertEquals(1, stats.won());
+      assertEquals(2, server.requestCount());
+
+      // the aborted loser reports once its connection is closed
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (recorder.snapshot().get(Operation.SEARCH).requests() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      OperationStats searches = recorder.snapshot().get(Operation.SEARCH);
+      assertEquals(1, searches.cancelled());
+      assertEquals(0, searches.failures());
+    }
+  }
+
+  @Test
+  void doesNotHedgeBeyondTheBudget() throws Exception {
+    HedgingPolicy hedging = new HedgingPolicy().delay(20, TimeUnit.MILLISECONDS).budgetPercent(10);
+    server.handler(request -> StubServer.Response.json(200, SEARCH_RESPONSE).delay(50));
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().hedging(hedging))) {
+      for (int i = 0; i < 15; i++) {
+        client.search("engine", "cat");
+      }
+
+      HedgingStats stats = client.hedgingStats();
+      assertEquals(15, stats.requests());
+      // a hedge costs as much as ten calls earn
+      assertEquals(1, stats.hedged());
+      assertEquals(14, stats.budgetExhausted());
+    }
+  }
+
+  @Test
+  void neverHedgesStreamedSearches() throws Exception {
+    HedgingPolicy hedging = new HedgingPolicy().delay(20, TimeUnit.MILLISECONDS).budgetPercent(100);
+    AtomicInteger metas = new AtomicInteger();
+    server.handler(request -> StubServer.Response.json(200, SEARCH_RESPONSE).delay(100));
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().hedging(hedging))) {
+      client.search("engine", "cat", new HashMap<>(), new SearchResultHandler() {
+        @Override
+        public void onMeta(Map<String, Object> meta) {
+          metas.incrementAndGet();
+        }
+
+        @Override
+        public void onResult(Map<String, Object> result) {
+        }
+      });
+
+      assertEquals(1, metas.get());
+      assertEquals(0, client.hedgingStats().requests());
+      assertEquals(1, server.requestCount());
+    }
+  }
+
+  @Test
+  void sendsPrimaryRequestFromCallingThread() throws Exception {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    try {
+      Hedger hedger = new Hedger(executor, executor, new HedgingPolicy().delay(1, TimeUnit.SECONDS).budgetPercent(100));
+      assertSame(Thread.currentThread(), hedger.call(handle -> Thread.currentThread()));
+      assertEquals(0, hedger.stats().hedged());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void delayFollowsLatencyPercentileOfPreviousWindow() throws Exception {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    try {
+      HedgingPolicy policy = new HedgingPolicy().delay(1, TimeUnit.SECONDS).latencyPercentile(90)
+        .latencyWindow(50, TimeUnit.MILLISECONDS);
+      Hedger hedger = new Hedger(executor, executor, policy);
+      for (int i = 0; i < 200; i++) {
+        hedger.call(handle -> "fast");
+      }
+      Thread.sleep(60);
+      hedger.call(handle -> "fast");
+
+      assertTrue(hedger.stats().delayNanos() < TimeUnit.MILLISECONDS.toNanos(100), hedger.stats().toString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
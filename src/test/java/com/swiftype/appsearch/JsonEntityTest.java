@@ -0,0 +1,76 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class JsonEntityTest {
+  @Test
+  void writesBodyAsUtf8Json() throws IOException {
+    Map<String, Object> document = new HashMap<>();
+    document.put("title", "Grumpy \u00e7at \ud83d\udc31");
+    JsonEntity entity = new JsonEntity(Collections.singletonList(document));
+
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    entity.writeTo(first);
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    entity.writeTo(second);
+
+    assertEquals("[{\"title\":\"Grumpy \u00e7at \ud83d\udc31\"}]", new String(first.toByteArray(), UTF_8));
+    assertEquals(new String(first.toByteArray(), UTF_8), new String(second.toByteArray(), UTF_8));
+    assertTrue(entity.isRepeatable());
+    assertFalse(entity.isChunked());
+    assertEquals(first.size(), entity.getContentLength());
+  }
+
+  @Test
+  void sendsSmallBodyWithContentLength() throws Exception {
+    AtomicReference<StubServer.Request> received = new AtomicReference<>();
+    try (StubServer server = new StubServer(request -> {
+      received.set(request);
+      return StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}");
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      client.search("engine", "cat");
+
+      assertNull(received.get().header("Transfer-Encoding"));
+      assertEquals(String.valueOf(received.get().body.length), received.get().header("Content-Length"));
+      Map<String, Object> body = JsonTypes.GSON.fromJson(received.get().bodyAsString(), JsonTypes.OBJECT.getType());
+      assertEquals("cat", body.get("query"));
+    }
+  }
+
+  @Test
+  void streamsDocumentBatchToServer() throws Exception {
+    AtomicReference<StubServer.Request> received = new AtomicReference<>();
+    try (StubServer server = new StubServer(request -> {
+      received.set(request);
+      return StubServer.Response.json(200, "[]");
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      List<Map<String, Object>> documents = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", String.valueOf(i));
+        document.put("body", String.join("", Collections.nCopies(1000, "cat ")));
+        documents.add(document);
+      }
+
+      client.indexDocuments("engine", documents);
+
+      assertEquals("chunked", received.get().header("Transfer-Encoding"));
+      assertEquals(JsonTypes.GSON.toJson(documents), received.get().bodyAsString());
+    }
+  }
+}
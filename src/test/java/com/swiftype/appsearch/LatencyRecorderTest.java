@@ -0,0 +1,108 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyRecorderTest {
+  @Test
+  void histogramPercentilesAreWithinOnePercent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] values = new long[100_000];
+    Random random = new Random(42);
+    for (int i = 0; i < values.length; i++) {
+      // log-uniform between 1 microsecond and 10 seconds
+      values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 7);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(values.length, snapshot.count());
+    assertEquals(values[values.length - 1], snapshot.max());
+    for (double percentile : new double[] {50, 90, 99, 99.9}) {
+      long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      long actual = snapshot.percentile(percentile);
+      assertTrue(Math.abs(actual - expected) <= expected / 100, percentile + ": expected " + expected + " got " + actual);
+    }
+  }
+
+  @Test
+  void bucketsCoverEveryValueOnce() {
+    int previous = -1;
+    for (long value = 0; value < 100_000; value++) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(index == previous || index == previous + 1, "gap at " + value);
+      assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+      previous = index;
+    }
+  }
+
+  @Test
+  void aggregatesEventsPerOperation() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (int i = 1; i <= 1000; i++) {
+      recorder.onRequest(event(Operation.SEARCH, 1, 200, null, i * 1_000_000L));
+    }
+    recorder.onRequest(event(Operation.INDEX_DOCUMENTS, 1, 429, new ApiException(429, new HashMap<>(), "{}"), 5_000_000));
+    recorder.onRequest(event(Operation.INDEX_DOCUMENTS, 2, 200, null, 7_000_000));
+
+    Map<Operation, OperationStats> snapshot = recorder.snapshot();
+    assertEquals(2, snapshot.size());
+
+    OperationStats searches = snapshot.get(Operation.SEARCH);
+    assertEquals(1000, searches.requests());
+    assertEquals(0, searches.failures());
+    assertEquals(1000 * 100L, searches.requestBytes());
+    assertEquals(Long.valueOf(1000), searches.statusCodes().get(200));
+    assertWithinOnePercent(500_000_000, searches.p50Nanos());
+    assertWithinOnePercent(990_000_000, searches.p99Nanos());
+    assertWithinOnePercent(999_000_000, searches.p999Nanos());
+    assertEquals(1_000_000_000, searches.maxNanos());
+    assertWithinOnePercent(250_000_000, searches.percentileNanos(RequestPhase.SERVER, 50));
+    assertTrue(searches.throughput() > 0);
+
+    OperationStats indexing = snapshot.get(Operation.INDEX_DOCUMENTS);
+    assertEquals(2, indexing.requests());
+    assertEquals(1, indexing.failures());
+    assertEquals(1, indexing.retries());
+    assertEquals(Long.valueOf(1), indexing.statusCodes().get(429));
+
+    recorder.reset();
+    assertTrue(recorder.snapshot().isEmpty());
+  }
+
+  @Test
+  void recordsRequestsMadeByClient() throws Exception {
+    LatencyRecorder recorder = new LatencyRecorder();
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}"));
+         Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().addRequestListener(recorder))) {
+      for (int i = 0; i < 50; i++) {
+        client.search("engine", "cat");
+      }
+    }
+
+    OperationStats searches = recorder.snapshot().get(Operation.SEARCH);
+    assertEquals(50, searches.requests());
+    assertTrue(searches.p50Nanos() > 0 && searches.p50Nanos() <= searches.p99Nanos());
+    assertTrue(searches.percentileNanos(RequestPhase.CONNECTION, 50) <= searches.p50Nanos());
+  }
+
+  private static RequestEvent event(Operation operation, int attempt, int statusCode, ClientException failure, long totalNanos) {
+    EnumMap<RequestPhase, Long> phases = new EnumMap<>(RequestPhase.class);
+    phases.put(RequestPhase.SERVER, totalNanos / 2);
+    phases.put(RequestPhase.TOTAL, totalNanos);
+    return new RequestEvent(operation, "engines/engine", attempt, statusCode, failure, 100, 1_000, 100, 1_000, phases);
+  }
+
+  private static void assertWithinOnePercent(long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= expected / 100, "expected " + expected + " got " + actual);
+  }
+}
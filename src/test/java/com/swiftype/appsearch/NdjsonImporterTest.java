@@ -0,0 +1,159 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParseException;
+
+class NdjsonImporterTest {
+  private final List<StubServer.Request> requests = new CopyOnWriteArrayList<>();
+  private Path file;
+  private StubServer server;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createTempFile("documents", ".ndjson");
+    server = new StubServer(request -> {
+      requests.add(request);
+      List<Map<String, Object>> documents;
+      try {
+        documents = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.ARRAY_OF_OBJECTS.getType());
+      } catch (JsonParseException e) {
+        return StubServer.Response.json(400, "{\"errors\":[\"Unable to parse request body\"]}");
+      }
+      StringBuilder response = new StringBuilder("[");
+      for (Map<String, Object> document : documents) {
+        String errors = document.containsKey("invalid") ? "[\"Invalid field\"]" : "[]";
+        response.append(response.length() > 1 ? "," : "").append("{\"id\":\"").append(document.get("id"))
+          .append("\",\"errors\":").append(errors).append("}");
+      }
+      return StubServer.Response.json(200, response.append("]").toString());
+    });
+    client = new Client(null, "private-key", server.baseUrlFormat());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  void sendsRawDocumentsByteForByteWithContentLength() throws Exception {
+    List<ByteBuffer> documents = Arrays.asList(
+      ByteBuffer.wrap("{\"id\":\"1\", \"title\" : \"caf\u00e9\"}".getBytes(UTF_8)),
+      ByteBuffer.allocateDirect(16).put("{\"id\":\"2\"}".getBytes(UTF_8)));
+    documents.get(1).flip();
+
+    List<Map<String, Object>> statuses = client.indexRawDocuments("engine", documents);
+
+    assertEquals(2, statuses.size());
+    StubServer.Request request = requests.get(0);
+    assertEquals("[{\"id\":\"1\", \"title\" : \"caf\u00e9\"},{\"id\":\"2\"}]", request.bodyAsString());
+    assertEquals(String.valueOf(request.body.length), request.header("Content-Length"));
+    assertNull(request.header("Transfer-Encoding"));
+    assertEquals(0, documents.get(1).position(), "documents are left untouched");
+  }
+
+  @Test
+  void importsLinesAcrossMappedWindows() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= 9; i++) {
+      lines.add("{\"id\":\"" + i + "\",\"title\":\"Document " + i + "\"}");
+    }
+    lines.set(2, "");
+    lines.set(4, "  {\"id\":\"5\",\"invalid\":true}\r");
+    lines.set(6, "not json");
+    Files.write(file, (String.join("\n", lines)).getBytes(UTF_8));
+
+    Map<Long, List<String>> rejected = new ConcurrentSkipListMap<>();
+    NdjsonImporter.Listener listener = new NdjsonImporter.Listener() {
+      @Override
+      public void onDocumentRejected(long line, List<String> errors) {
+        rejected.put(line, errors);
+      }
+    };
+    BulkIndexerOptions options = new BulkIndexerOptions().maxBatchDocuments(2).workerThreads(1).maxInFlightBatches(1);
+    NdjsonImportResult result = new NdjsonImporter(client, "engine", options, listener, 64).importFile(file);
+
+    assertEquals(6, result.indexed());
+    assertEquals(2, result.rejected());
+    assertEquals(0, result.failed());
+    assertEquals(4, result.batches());
+    assertEquals(Arrays.asList(5L, 7L), new ArrayList<>(rejected.keySet()));
+    assertEquals(Collections.singletonList("Invalid field"), rejected.get(5L));
+
+    StringBuilder sent = new StringBuilder();
+    for (StubServer.Request request : requests) {
+      sent.append(request.bodyAsString());
+    }
+    assertEquals("[" + lines.get(0) + "," + lines.get(1) + "]"
+      + "[" + lines.get(3) + ",{\"id\":\"5\",\"invalid\":true}]"
+      + "[" + lines.get(5) + "," + lines.get(7) + "]"
+      + "[" + lines.get(8) + "]", sent.toString());
+  }
+
+  @Test
+  void singlesOutMalformedLinesOfARefusedBatch() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      lines.add("{\"id\":\"" + i + "\"}");
+    }
+    lines.set(3, "{\"id\":\"4\",}");
+    lines.set(8, "{\"id\": 9 9}");
+    Files.write(file, (String.join("\n", lines)).getBytes(UTF_8));
+
+    Map<Long, List<String>> rejected = new ConcurrentSkipListMap<>();
+    List<Long> failedLines = new CopyOnWriteArrayList<>();
+    NdjsonImporter.Listener listener = new NdjsonImporter.Listener() {
+      @Override
+      public void onDocumentRejected(long line, List<String> errors) {
+        rejected.put(line, errors);
+      }
+
+      @Override
+      public void onBatchFailed(long firstLine, long lastLine, ClientException e) {
+        failedLines.add(firstLine);
+      }
+    };
+    NdjsonImportResult result = new NdjsonImporter(client, "engine", new BulkIndexerOptions().workerThreads(1), listener)
+      .importFile(file);
+
+    assertEquals(8, result.indexed());
+    assertEquals(2, result.rejected());
+    assertEquals(0, result.failed());
+    assertEquals(1, result.batches());
+    assertEquals(Arrays.asList(4L, 9L), new ArrayList<>(rejected.keySet()));
+    assertEquals(Collections.singletonList("Unable to parse request body"), rejected.get(4L));
+    assertEquals(Collections.emptyList(), failedLines);
+  }
+
+  @Test
+  void failsOnLineLongerThanWindow() throws Exception {
+    Files.write(file, ("{\"id\":\"1\"}\n{\"id\":\"2\",\"body\":\"" + String.join("", Collections.nCopies(100, "x")) + "\"}\n").getBytes(UTF_8));
+
+    IOException e = assertThrows(IOException.class,
+      () -> new NdjsonImporter(client, "engine", new BulkIndexerOptions(), null, 64).importFile(file));
+    assertEquals("Line 2 of " + file + " is longer than 64 bytes", e.getMessage());
+  }
+}
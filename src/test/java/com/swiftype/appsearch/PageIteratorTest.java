@@ -0,0 +1,149 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PageIteratorTest {
+  private static final Pattern CURRENT = Pattern.compile("\"current\":(\\d+)");
+
+  private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      requestBodies.add(request.bodyAsString());
+      Matcher current = CURRENT.matcher(request.bodyAsString());
+      int page = current.find() ? Integer.parseInt(current.group(1)) : 1;
+      return page > 5
+        ? StubServer.Response.json(400, "{\"errors\":[\"Page out of range\"]}")
+        : StubServer.Response.json(200, pageResponse(page, request.bodyAsString().contains("too many") ? 10 : 3, 2));
+    });
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void searchAllWalksEveryPageInOrder() throws Exception {
+    Map<String, Object> pageOptions = new HashMap<>();
+    pageOptions.put("size", 2);
+    Map<String, Object> options = new HashMap<>();
+    options.put("page", pageOptions);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat());
+         Stream<Map<String, Object>> results = client.searchAll("engine", "cat", options)) {
+      List<Object> ids = results.map(result -> result.get("id")).collect(Collectors.toList());
+      assertEquals(Arrays.asList("1-0", "1-1", "2-0", "2-1", "3-0", "3-1"), ids);
+    }
+
+    assertEquals(3, requestBodies.size());
+    assertTrue(requestBodies.stream().allMatch(body -> body.contains("\"size\":2")));
+    assertFalse(pageOptions.containsKey("current"), "caller options are left alone");
+  }
+
+  @Test
+  void allEnginesPrefetchesTheNextPage() throws Exception {
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), new ClientOptions());
+         Stream<Map<String, Object>> engines = client.allEngines(2)) {
+      engines.findFirst();
+      // page 2 was requested while page 1 was being consumed
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (requestBodies.size() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, requestBodies.size());
+    }
+  }
+
+  @Test
+  void keepsAtMostPrefetchDepthPagesInFlightAndCancelsThemOnClose() {
+    List<CompletableFuture<Map<String, Object>>> requested = new ArrayList<>();
+    PageIterator iterator = new PageIterator(page -> {
+      CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+      if (page == 1) {
+        future.complete(JsonTypes.GSON.fromJson(pageResponse(1, 10, 1), JsonTypes.OBJECT.getType()));
+      }
+      requested.add(future);
+      return future;
+    }, 3, PageIterator.MAX_SEARCH_PAGES);
+
+    assertTrue(iterator.hasNext());
+    iterator.next();
+    assertEquals(4, requested.size());
+
+    iterator.close();
+    assertFalse(iterator.hasNext());
+    assertTrue(requested.subList(1, 4).stream().allMatch(CompletableFuture::isCancelled));
+  }
+
+  @Test
+  void cancelsPrefetchedPagesPastATotalThatShrank() {
+    List<CompletableFuture<Map<String, Object>>> requested = new ArrayList<>();
+    PageIterator iterator = new PageIterator(page -> {
+      CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+      // page 1 counts 4 pages, by page 2 there are only 2 left
+      if (page <= 2) {
+        future.complete(JsonTypes.GSON.fromJson(pageResponse(page, page == 1 ? 4 : 2, 1), JsonTypes.OBJECT.getType()));
+      }
+      requested.add(future);
+      return future;
+    }, 3, PageIterator.MAX_SEARCH_PAGES);
+
+    assertEquals(2, iterator.stream().count());
+    assertEquals(4, requested.size());
+    assertTrue(requested.subList(2, 4).stream().allMatch(CompletableFuture::isCancelled));
+  }
+
+  @Test
+  void stopsAtTheLastPageAndOnEmptyPages() {
+    List<Integer> requested = new ArrayList<>();
+    PageIterator iterator = new PageIterator(page -> {
+      requested.add(page);
+      String response = page == 1 ? pageResponse(1, 4, 1) : "{\"meta\":{\"page\":{\"total_pages\":4}},\"results\":[]}";
+      return CompletableFuture.completedFuture(JsonTypes.GSON.fromJson(response, JsonTypes.OBJECT.getType()));
+    }, 0, PageIterator.MAX_SEARCH_PAGES);
+
+    assertEquals(1, iterator.stream().count());
+    assertEquals(Arrays.asList(1, 2), requested);
+  }
+
+  @Test
+  void throwsRequestFailuresUnchecked() throws Exception {
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat());
+         Stream<Map<String, Object>> results = client.searchAll("engine", "too many pages", new HashMap<>())) {
+      UncheckedClientException e = assertThrows(UncheckedClientException.class, results::count);
+      assertTrue(e.getCause().getMessage().startsWith("Error: 400"));
+    }
+  }
+
+  private static String pageResponse(int page, int totalPages, int size) {
+    StringBuilder response = new StringBuilder("{\"meta\":{\"page\":{\"current\":").append(page)
+      .append(",\"total_pages\":").append(totalPages).append(",\"size\":").append(size).append("}},\"results\":[");
+    for (int i = 0; i < size; i++) {
+      response.append(i > 0 ? "," : "").append("{\"id\":\"").append(page).append("-").append(i).append("\"}");
+    }
+    return response.append("]}").toString();
+  }
+}
@@ -0,0 +1,56 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+  @Test
+  void sharesOneRequestBetweenConcurrentIdenticalSearches() throws Exception {
+    int callers = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}").delay(300));
+         Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().coalesceSearches(true))) {
+      List<Future<Map<String, Object>>> futures = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return client.search("engine", "trending");
+        }));
+      }
+      start.countDown();
+
+      Set<Map<String, Object>> identities = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Future<Map<String, Object>> future : futures) {
+        identities.add(future.get());
+      }
+
+      CoalescingStats stats = client.coalescingStats();
+      assertEquals(callers, stats.executed() + stats.coalesced());
+      assertEquals(stats.executed(), server.requestCount());
+      assertTrue(stats.coalesced() > 0);
+      assertEquals(callers, identities.size(), "every caller gets its own copy");
+
+      Map<String, Object> later = client.search("engine", "trending");
+      assertNotSame(futures.get(0).get(), later);
+      assertEquals(stats.executed() + 1, server.requestCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestListenerTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[]}";
+
+  private final List<RequestEvent> events = new CopyOnWriteArrayList<>();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE).delay(20));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void reportsPhaseTimingsStatusAndSizes() throws Exception {
+    ClientOptions options = new ClientOptions().addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      client.search("engine", "cat");
+    }
+
+    assertEquals(1, events.size());
+    RequestEvent event = events.get(0);
+    assertEquals(Operation.SEARCH, event.operation());
+    assertEquals("engines/engine/search", event.path());
+    assertEquals(1, event.attempt());
+    assertEquals(200, event.statusCode());
+    assertNull(event.failure());
+    assertEquals("{\"query\":\"cat\"}".length(), event.requestBytes());
+    assertEquals(SEARCH_RESPONSE.length(), event.responseBytes());
+
+    long phases = 0;
+    for (RequestPhase phase : Arrays.asList(RequestPhase.CONNECTION, RequestPhase.REQUEST_WRITE, RequestPhase.SERVER, RequestPhase.RESPONSE_READ)) {
+      assertTrue(event.nanos(phase) >= 0, phase + " was not timed");
+      phases += event.nanos(phase);
+    }
+    assertTrue(event.nanos(RequestPhase.SERVER) >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(phases <= event.nanos(RequestPhase.TOTAL));
+  }
+
+  @Test
+  void reportsEveryAttemptOfRetriedRequests() throws Exception {
+    AtomicInteger failures = new AtomicInteger(2);
+    server.handler(request -> failures.getAndDecrement() > 0
+      ? StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}")
+      : StubServer.Response.json(200, SEARCH_RESPONSE));
+    ClientOptions options = new ClientOptions()
+      .retryPolicy(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS))
+      .addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      client.search("engine", "cat");
+    }
+
+    assertEquals(3, events.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i + 1, events.get(i).attempt());
+    }
+    assertEquals(503, events.get(0).statusCode());
+    assertTrue(events.get(0).failure() instanceof ApiException);
+    assertEquals(200, events.get(2).statusCode());
+  }
+
+  @Test
+  void reportsConnectionFailures() throws Exception {
+    server.handler(request -> StubServer.Response.dropConnection());
+    ClientOptions options = new ClientOptions().addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      assertThrows(ClientException.class, () -> client.getEngine("engine"));
+    }
+
+    assertEquals(1, events.size());
+    assertEquals(Operation.GET_ENGINE, events.get(0).operation());
+    assertEquals(0, events.get(0).statusCode());
+    assertTrue(events.get(0).failure().getCause() instanceof IOException);
+    assertEquals(-1, events.get(0).nanos(RequestPhase.RESPONSE_READ));
+  }
+
+  @Test
+  void ignoresFailingListeners() throws Exception {
+    ClientOptions options = new ClientOptions()
+      .addRequestListener(event -> {
+        throw new IllegalStateException("broken listener");
+      })
+      .addRequestListener(events::add);
+
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+    }
+    assertEquals(1, events.size());
+  }
+
+  @Test
+  void asyncClientReportsRequests() throws Exception {
+    ClientOptions options = new ClientOptions().ioThreadCount(1).addRequestListener(events::add);
+
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), options)) {
+      client.search("engine", "cat").get();
+    }
+
+    assertEquals(1, events.size());
+    RequestEvent event = events.get(0);
+    assertEquals(Operation.SEARCH, event.operation());
+    assertEquals(200, event.statusCode());
+    assertEquals("{\"query\":\"cat\"}".length(), event.requestBytes());
+    assertEquals(SEARCH_RESPONSE.length(), event.responseBytes());
+    assertTrue(event.nanos(RequestPhase.TOTAL) >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(event.nanos(RequestPhase.RESPONSE_READ) >= 0);
+    assertEquals(-1, event.nanos(RequestPhase.SERVER));
+  }
+}
@@ -0,0 +1,191 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.http.client.utils.DateUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[]}";
+  private static final String INDEX_RESPONSE = "[{\"id\":\"1\",\"errors\":[]}]";
+
+  private final AtomicInteger failuresLeft = new AtomicInteger();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void retriesServerErrorsUntilSuccess() throws Exception {
+    failWith(2, () -> StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}"));
+
+    try (Client client = client(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS))) {
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+    }
+    assertEquals(3, server.requestCount());
+  }
+
+  @Test
+  void retriesDroppedConnections() throws Exception {
+    failWith(1, StubServer.Response::dropConnection);
+
+    try (Client client = client(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS))) {
+      assertTrue(client.search("engine", "cat").containsKey("results"));
+    }
+    assertEquals(2, server.requestCount());
+  }
+
+  @Test
+  void throwsTypedExceptionOnceAttemptsAreExhausted() throws Exception {
+    failWith(10, () -> StubServer.Response.json(429, "{\"errors\":[\"Throttled\"]}").header("X-Request-Id", "abc"));
+
+    try (Client client = client(new RetryPolicy().maxAttempts(3).backoff(1, 10, TimeUnit.MILLISECONDS))) {
+      ApiException e = assertThrows(ApiException.class, () -> client.search("engine", "cat"));
+      assertEquals(429, e.statusCode());
+      assertEquals("abc", e.header("x-request-id"));
+      assertTrue(e.getMessage().startsWith("Error: 429"));
+    }
+    assertEquals(3, server.requestCount());
+  }
+
+  @Test
+  void doesNotRetryClientErrors() throws Exception {
+    failWith(10, () -> StubServer.Response.json(400, "{\"errors\":[\"Bad request\"]}"));
+
+    try (Client client = client(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS))) {
+      assertEquals(400, assertThrows(ApiException.class, () -> client.search("engine", "cat")).statusCode());
+    }
+    assertEquals(1, server.requestCount());
+  }
+
+  @Test
+  void retriesOnlyIdempotentRequests() throws Exception {
+    failWith(10, () -> StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}"));
+
+    try (Client client = client(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS))) {
+      assertThrows(ApiException.class, () -> client.createEngine("engine"));
+      assertEquals(1, server.requestCount());
+
+      assertThrows(ApiException.class, () -> client.indexDocuments("engine", Arrays.asList(document(null))));
+      assertEquals(2, server.requestCount());
+
+      assertThrows(ApiException.class, () -> client.indexDocuments("engine", Arrays.asList(document("1"))));
+      assertEquals(5, server.requestCount());
+    }
+  }
+
+  @Test
+  void honorsRetryAfter() throws Exception {
+    failWith(1, () -> StubServer.Response.json(429, "{\"errors\":[\"Throttled\"]}").header("Retry-After", "1"));
+
+    try (Client client = client(new RetryPolicy().backoff(1, 5_000, TimeUnit.MILLISECONDS))) {
+      long start = System.nanoTime();
+      client.indexDocuments("engine", Arrays.asList(document("1")));
+      assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+    }
+    assertEquals(2, server.requestCount());
+  }
+
+  @Test
+  void givesUpWhenRetryAfterExceedsMaxBackoff() throws Exception {
+    failWith(1, () -> StubServer.Response.json(503, "{\"errors\":[\"Maintenance\"]}").header("Retry-After", "3600"));
+
+    try (Client client = client(new RetryPolicy().backoff(1, 1_000, TimeUnit.MILLISECONDS))) {
+      assertEquals("3600", assertThrows(ApiException.class, () -> client.search("engine", "cat")).header("Retry-After"));
+    }
+    assertEquals(1, server.requestCount());
+  }
+
+  @Test
+  void parsesRetryAfterInSecondsAndHttpDates() {
+    long now = System.currentTimeMillis();
+    assertEquals(120_000, RetryPolicy.retryAfterMillis("120", now));
+    assertEquals(-1, RetryPolicy.retryAfterMillis(null, now));
+    assertEquals(-1, RetryPolicy.retryAfterMillis("soon", now));
+
+    long delay = RetryPolicy.retryAfterMillis(DateUtils.formatDate(new Date(now + 30_000)), now);
+    assertTrue(delay > 28_000 && delay <= 30_000, "delay was " + delay);
+  }
+
+  @Test
+  void backsOffExponentiallyWithinJitter() {
+    ApiRequest<?> search = ApiRequest.search("engine", "cat", new HashMap<>());
+    ClientException failure = new ClientException("Error making http request", new IOException("reset"));
+
+    RetryPolicy fixed = new RetryPolicy().maxAttempts(10).backoff(100, 1_000, TimeUnit.MILLISECONDS).jitter(0);
+    List<Long> delays = new ArrayList<>();
+    for (int attempt = 1; attempt <= 5; attempt++) {
+      delays.add(fixed.delayMillis(search, failure, attempt));
+    }
+    assertEquals(Arrays.asList(100L, 200L, 400L, 800L, 1_000L), delays);
+
+    RetryPolicy jittered = new RetryPolicy().maxAttempts(10).backoff(100, 1_000, TimeUnit.MILLISECONDS).jitter(0.5);
+    for (int i = 0; i < 100; i++) {
+      long delay = jittered.delayMillis(search, failure, 3);
+      assertTrue(delay > 200 && delay <= 400, "delay was " + delay);
+    }
+    assertEquals(-1, jittered.delayMillis(search, failure, 10));
+  }
+
+  @Test
+  void asyncClientRetries() throws Exception {
+    failWith(2, () -> StubServer.Response.json(502, "{\"errors\":[\"Bad gateway\"]}"));
+    ClientOptions options = new ClientOptions().ioThreadCount(1).retryPolicy(new RetryPolicy().backoff(1, 10, TimeUnit.MILLISECONDS));
+
+    try (AsyncClient client = new AsyncClient(null, "private-key", server.baseUrlFormat(), options)) {
+      assertTrue(client.search("engine", "cat").get().containsKey("results"));
+      assertEquals(3, server.requestCount());
+
+      failWith(10, () -> StubServer.Response.json(502, "{\"errors\":[\"Bad gateway\"]}"));
+      ExecutionException e = assertThrows(ExecutionException.class, () -> client.createEngine("engine").get());
+      assertEquals(502, ((ApiException) e.getCause()).statusCode());
+      assertEquals(4, server.requestCount());
+    }
+  }
+
+  private Client client(RetryPolicy retryPolicy) {
+    return new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().retryPolicy(retryPolicy));
+  }
+
+  private void failWith(int failures, Supplier<StubServer.Response> failure) {
+    failuresLeft.set(failures);
+    server.handler(request -> {
+      if (failuresLeft.getAndDecrement() > 0) {
+        return failure.get();
+      }
+      return StubServer.Response.json(200, request.path.endsWith("/documents") ? INDEX_RESPONSE : SEARCH_RESPONSE);
+    });
+  }
+
+  private static Map<String, Object> document(String id) {
+    Map<String, Object> document = new HashMap<>();
+    if (id != null) {
+      document.put("id", id);
+    }
+    document.put("title", "cat");
+    return document;
+  }
+}
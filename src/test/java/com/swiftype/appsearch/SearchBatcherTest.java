@@ -0,0 +1,161 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SearchBatcherTest {
+  @Test
+  void fansMultiSearchResultsBackToEachCaller() throws Exception {
+    AtomicInteger multiSearches = new AtomicInteger();
+    int callers = 20;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+    try (StubServer server = new StubServer(request -> {
+      if (request.path.endsWith("/multi_search")) {
+        multiSearches.incrementAndGet();
+        Map<String, Object> body = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.OBJECT.getType());
+        StringBuilder response = new StringBuilder("[");
+        for (Object query : (List<?>) body.get("queries")) {
+          response.append(response.length() > 1 ? "," : "")
+            .append("{\"meta\":{},\"results\":[{\"query\":{\"raw\":\"").append(((Map<?, ?>) query).get("query")).append("\"}}]}");
+        }
+        return StubServer.Response.json(200, response.append("]").toString());
+      }
+      Map<String, Object> body = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.OBJECT.getType());
+      return StubServer.Response.json(200, "{\"meta\":{},\"results\":[{\"query\":{\"raw\":\"" + body.get("query") + "\"}}]}");
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat(),
+      new ClientOptions().searchBatching(50, TimeUnit.MILLISECONDS, 10))) {
+      List<Future<Map<String, Object>>> futures = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        String query = "query-" + i;
+        futures.add(executor.submit(() -> {
+          start.await();
+          return client.search("engine", query);
+        }));
+      }
+      start.countDown();
+
+      for (int i = 0; i < callers; i++) {
+        List<?> results = (List<?>) futures.get(i).get().get("results");
+        assertEquals("query-" + i, ((Map<?, ?>) ((Map<?, ?>) results.get(0)).get("query")).get("raw"));
+      }
+      assertTrue(server.requestCount() < callers, "sent " + server.requestCount() + " requests");
+      assertTrue(multiSearches.get() >= 2);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void resendsQueriesOnTheirOwnWhenOneOfThemIsInvalid() throws Exception {
+    List<String> queries = new ArrayList<>();
+    Collections.addAll(queries, "cat", "bad", "dog", "bad");
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(queries.size());
+
+    try (StubServer server = new StubServer(request -> {
+      Map<String, Object> body = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.OBJECT.getType());
+      if (request.path.endsWith("/multi_search")) {
+        for (Object query : (List<?>) body.get("queries")) {
+          if ("bad".equals(((Map<?, ?>) query).get("query"))) {
+            return StubServer.Response.json(400, "{\"errors\":[\"Invalid query\"]}");
+          }
+        }
+        return StubServer.Response.json(500, "{}");
+      }
+      if ("bad".equals(body.get("query"))) {
+        return StubServer.Response.json(400, "{\"errors\":[\"Invalid query\"]}");
+      }
+      return StubServer.Response.json(200, "{\"meta\":{},\"results\":[{\"query\":{\"raw\":\"" + body.get("query") + "\"}}]}");
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat(),
+      new ClientOptions().searchBatching(10, TimeUnit.SECONDS, queries.size()))) {
+      List<Future<Map<String, Object>>> futures = new ArrayList<>();
+      for (String query : queries) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          return client.search("engine", query);
+        }));
+      }
+      start.countDown();
+
+      for (int i : new int[] {0, 2}) {
+        List<?> results = (List<?>) futures.get(i).get().get("results");
+        assertEquals(queries.get(i), ((Map<?, ?>) ((Map<?, ?>) results.get(0)).get("query")).get("raw"));
+      }
+      ExecutionException first = assertThrows(ExecutionException.class, () -> futures.get(1).get());
+      ExecutionException second = assertThrows(ExecutionException.class, () -> futures.get(3).get());
+      assertEquals(400, ((ApiException) first.getCause()).statusCode());
+      assertEquals(400, ((ApiException) second.getCause()).statusCode());
+      assertNotSame(first.getCause(), second.getCause());
+      // the multi_search, then each query on its own
+      assertEquals(1 + queries.size(), server.requestCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void failsEveryQueryOfABatchRefusedAsAWhole() throws Exception {
+    int callers = 4;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(401, "{\"error\":\"Invalid credentials\"}"));
+         Client client = new Client(null, "private-key", server.baseUrlFormat(),
+           new ClientOptions().searchBatching(10, TimeUnit.SECONDS, callers))) {
+      List<Future<Map<String, Object>>> futures = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        String query = "query-" + i;
+        futures.add(executor.submit(() -> {
+          start.await();
+          return client.search("engine", query);
+        }));
+      }
+      start.countDown();
+
+      for (Future<Map<String, Object>> future : futures) {
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertEquals(401, ((ApiException) e.getCause()).statusCode());
+      }
+      // only the multi_search, its queries are not sent again on their own
+      assertEquals(1, server.requestCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void failsSearchesMadeAfterTheClientIsClosed() throws Exception {
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(200, "{\"meta\":{},\"results\":[]}"))) {
+      for (int maxBatchSize : new int[] {1, 10}) {
+        Client client = new Client(null, "private-key", server.baseUrlFormat(),
+          new ClientOptions().searchBatching(50, TimeUnit.MILLISECONDS, maxBatchSize));
+        client.close();
+
+        ClientException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+          () -> assertThrows(ClientException.class, () -> client.search("engine", "cat")));
+        assertEquals("Client is closed", e.getMessage());
+      }
+      assertEquals(0, server.requestCount());
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchCacheTest {
+  private final AtomicInteger searches = new AtomicInteger();
+  private StubServer server;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      if (request.path.endsWith("/documents")) {
+        return StubServer.Response.json(200, "[]");
+      }
+      return StubServer.Response.json(200, "{\"meta\":{},\"results\":[],\"n\":" + searches.incrementAndGet() + "}");
+    });
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    server.close();
+  }
+
+  @Test
+  void servesRepeatedSearchesFromCacheUntilEngineIsWritten() throws Exception {
+    ClientOptions options = new ClientOptions().searchCache(1, 0, TimeUnit.MINUTES);
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      Map<String, Object> searchOptions = new HashMap<>();
+      searchOptions.put("page", Collections.singletonMap("size", 10));
+
+      Map<String, Object> first = client.search("engine", "cat", searchOptions);
+      Map<String, Object> second = client.search("engine", "cat", new HashMap<>(searchOptions));
+      first.put("mutated", true);
+      Map<String, Object> third = client.search("engine", "cat", searchOptions);
+
+      assertEquals(1, searches.get());
+      assertEquals(first.get("n"), second.get("n"));
+      assertNotSame(second, third);
+      assertEquals(null, third.get("mutated"));
+
+      client.search("other-engine", "cat");
+      client.indexDocuments("engine", new ArrayList<>());
+      client.search("engine", "cat", searchOptions);
+      client.search("other-engine", "cat");
+
+      assertEquals(3, searches.get());
+      CacheStats stats = client.searchCacheStats();
+      assertEquals(3, stats.hits());
+      assertEquals(3, stats.misses());
+    }
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedEntries() throws Exception {
+    ClientOptions options = new ClientOptions()
+      .searchCache(1, 0, TimeUnit.MINUTES)
+      .searchCacheSize(2, 1024 * 1024);
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      client.search("engine", "a");
+      client.search("engine", "b");
+      client.search("engine", "a");
+      client.search("engine", "c");
+      client.search("engine", "a");
+      client.search("engine", "b");
+
+      assertEquals(4, searches.get());
+      assertEquals(2, client.searchCacheStats().evictions());
+    }
+  }
+
+  @Test
+  void servesStaleEntryWhileRefreshing() throws Exception {
+    ClientOptions options = new ClientOptions().searchCache(50, 60_000, TimeUnit.MILLISECONDS);
+    try (Client client = new Client(null, "private-key", server.baseUrlFormat(), options)) {
+      assertEquals(1.0, client.search("engine", "cat").get("n"));
+      Thread.sleep(100);
+      assertEquals(1.0, client.search("engine", "cat").get("n"));
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (searches.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(20);
+      assertEquals(2.0, client.search("engine", "cat").get("n"));
+      assertEquals(1, client.searchCacheStats().staleHits());
+    }
+  }
+}
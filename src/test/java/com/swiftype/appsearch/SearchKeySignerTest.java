@@ -0,0 +1,81 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.security.InvalidKeyException;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class SearchKeySignerTest {
+  private static final String API_KEY = "api-mu75psc5egt9ppzuycnc2mc3";
+
+  @Test
+  void producesSameTokensAsJwtSign() throws InvalidKeyException {
+    SearchKeySigner signer = new SearchKeySigner(API_KEY);
+
+    for (int length = 0; length < 20; length++) {
+      Map<String, Object> options = new HashMap<>();
+      options.put("query", String.join("", Collections.nCopies(length, "c")));
+      Map<String, Object> payload = new HashMap<>(options);
+      payload.put("api_key_name", "my-token-name");
+
+      String expected = Jwt.sign(API_KEY, "{\"typ\":\"JWT\",\"alg\":\"HS256\"}", JsonTypes.GSON.toJson(payload));
+      assertEquals(expected, signer.sign("my-token-name", options));
+    }
+  }
+
+  @Test
+  void cachedTokensVerify() throws InvalidKeyException, SignatureException {
+    SearchKeySigner signer = new SearchKeySigner(API_KEY, 100);
+
+    Map<String, Object> options = new HashMap<>();
+    options.put("query", "cat");
+    options.put("search_fields", Collections.singletonMap("title", new HashMap<>()));
+
+    String token = signer.sign("my-token-name", options);
+    assertSame(token, signer.sign("my-token-name", new HashMap<>(options)));
+
+    Map<String, Object> decodedPayload = Jwt.verify(API_KEY, token);
+    assertEquals("my-token-name", decodedPayload.get("api_key_name"));
+    assertEquals("cat", decodedPayload.get("query"));
+  }
+
+  @Test
+  void cachedTokensMatchUncachedTokens() throws InvalidKeyException {
+    SearchKeySigner cached = new SearchKeySigner(API_KEY, 100);
+    SearchKeySigner uncached = new SearchKeySigner(API_KEY);
+
+    Map<String, Object> options = new HashMap<>();
+    options.put("query", "cat");
+    options.put("search_fields", Collections.singletonMap("title", new HashMap<>()));
+    options.put("filters", Collections.singletonMap("owner", "alice"));
+    options.put("result_fields", Collections.singletonMap("title", Collections.singletonMap("raw", new HashMap<>())));
+
+    String expected = uncached.sign("my-token-name", options);
+    assertEquals(Client.createSignedSearchKey(API_KEY, "my-token-name", options), expected);
+    assertEquals(expected, cached.sign("my-token-name", options));
+    assertEquals(expected, cached.sign("my-token-name", options));
+  }
+
+  @Test
+  void signsBatches() throws InvalidKeyException, SignatureException {
+    SearchKeySigner signer = new SearchKeySigner(API_KEY);
+    List<Map<String, Object>> optionsList = new ArrayList<>();
+    for (String user : Arrays.asList("alice", "bob", "carol")) {
+      optionsList.add(Collections.singletonMap("filters", Collections.singletonMap("owner", user)));
+    }
+
+    List<String> tokens = signer.signAll("my-token-name", optionsList);
+
+    assertEquals(3, tokens.size());
+    assertEquals("bob", ((Map<?, ?>) Jwt.verify(API_KEY, tokens.get(1)).get("filters")).get("owner"));
+  }
+}
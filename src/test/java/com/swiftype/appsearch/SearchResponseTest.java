@@ -0,0 +1,112 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class SearchResponseTest {
+  private static final String BODY = "{\"results\":["
+    + "{\"id\":{\"raw\":\"1\"},\"title\":{\"raw\":\"Grumpy Cat\",\"snippet\":\"Grumpy <em>Cat</em>\"},"
+    + "\"views\":{\"raw\":1234567890123},\"tags\":{\"raw\":[\"cat\",\"meme\"]},\"_meta\":{\"score\":1.5}},"
+    + "{\"id\":{\"raw\":\"2\"},\"title\":{\"raw\":\"Another Cat\"}}"
+    + "],\"meta\":{\"request_id\":\"abc\",\"warnings\":[],\"page\":{\"current\":2,\"size\":10,\"total_pages\":7,\"total_results\":64}}}";
+
+  @Test
+  void decodesTypedAccessors() {
+    SearchResponse response = new SearchResponse(BODY.getBytes(UTF_8));
+
+    assertEquals("abc", response.meta().requestId());
+    assertEquals(2, response.meta().page().current());
+    assertEquals(7, response.meta().page().totalPages());
+    assertEquals(64, response.meta().page().totalResults());
+    assertTrue(response.meta().warnings().isEmpty());
+
+    List<Result> results = response.results();
+    assertEquals(2, results.size());
+    Result first = results.get(0);
+    assertEquals("1", first.id());
+    assertEquals("Grumpy Cat", first.rawString("title"));
+    assertEquals("Grumpy <em>Cat</em>", first.snippet("title"));
+    assertEquals(1234567890123L, first.rawNumber("views").longValue());
+    assertEquals(Arrays.asList("cat", "meme"), first.raw("tags"));
+    assertEquals(1.5, first.score());
+    assertNull(results.get(1).snippet("title"));
+    assertNull(results.get(1).raw("missing"));
+    assertEquals(0.0, results.get(1).score());
+  }
+
+  @Test
+  void decodesOnlyTheFieldsThatAreRead() {
+    // the unread fields are not even valid JSON, so decoding any of them would fail
+    String body = "{\"results\":[{\"id\":{\"raw\":\"1\"},\"body\":{\"raw\":nope},\"title\":{\"raw\":\"a \\\"quoted\\\" [cat]\"}}],"
+      + "\"meta\":{\"request_id\":\"abc\"}}";
+    Result result = new SearchResponse(body.getBytes(UTF_8)).results().get(0);
+
+    assertEquals("1", result.id());
+    assertEquals("a \"quoted\" [cat]", result.rawString("title"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("id", "body", "title")), result.fieldNames());
+  }
+
+  @Test
+  void adaptsToMap() {
+    Map<String, Object> map = new SearchResponse(BODY.getBytes(UTF_8)).asMap();
+
+    assertEquals(2, ((List<?>) map.get("results")).size());
+    assertEquals(7.0, ((Map<?, ?>) ((Map<?, ?>) map.get("meta")).get("page")).get("total_pages"));
+  }
+
+  @Test
+  void decodesResultsLikeTheSearchMaps() {
+    Result result = new SearchResponse(BODY.getBytes(UTF_8)).results().get(0);
+    Map<?, ?> searched = (Map<?, ?>) ((List<?>) new SearchResponse(BODY.getBytes(UTF_8)).asMap().get("results")).get(0);
+
+    assertEquals(searched, result.asMap());
+    assertEquals(1.234567890123E12, result.raw("views"));
+  }
+
+  @Test
+  void projectsRawFields() throws Exception {
+    AtomicReference<String> requestBody = new AtomicReference<>();
+    try (StubServer server = new StubServer(request -> {
+      requestBody.set(request.bodyAsString());
+      return StubServer.Response.json(200, BODY);
+    }); Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      SearchResponse response = client.searchTyped("engine", "cat",
+        Collections.singletonMap("page", Collections.singletonMap("size", 10)), Arrays.asList("title", "views"));
+
+      assertEquals("Grumpy Cat", response.results().get(0).rawString("title"));
+    }
+    Map<String, Object> body = JsonTypes.GSON.fromJson(requestBody.get(), JsonTypes.OBJECT.getType());
+    assertEquals("cat", body.get("query"));
+    assertEquals(Collections.singletonMap("size", 10.0), body.get("page"));
+    Map<String, Object> rawProjection = Collections.singletonMap("raw", Collections.emptyMap());
+    Map<String, Object> resultFields = new HashMap<>();
+    resultFields.put("title", rawProjection);
+    resultFields.put("views", rawProjection);
+    assertEquals(resultFields, body.get("result_fields"));
+  }
+
+  @Test
+  void parsesDocumentStatuses() throws IOException {
+    List<DocumentStatus> statuses = DocumentStatus.parseAll(
+      "[{\"id\":\"1\",\"errors\":[]},{\"id\":null,\"errors\":[\"Invalid field\"]}]".getBytes(UTF_8));
+
+    assertEquals("1", statuses.get(0).id());
+    assertFalse(statuses.get(0).hasErrors());
+    assertNull(statuses.get(1).id());
+    assertEquals(Arrays.asList("Invalid field"), statuses.get(1).errors());
+  }
+}
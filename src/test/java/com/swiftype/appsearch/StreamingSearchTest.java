@@ -0,0 +1,46 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class StreamingSearchTest {
+  @Test
+  void deliversMetaAndEachResultToHandler() throws Exception {
+    String response = "{\"results\":[{\"id\":{\"raw\":\"1\"}},{\"id\":{\"raw\":\"2\"}},{\"id\":{\"raw\":\"3\"}}],"
+      + "\"facets\":{},\"meta\":{\"page\":{\"current\":1,\"total_pages\":1}}}";
+
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(200, response));
+         Client client = new Client(null, "private-key", server.baseUrlFormat())) {
+      AtomicReference<Map<String, Object>> meta = new AtomicReference<>();
+      List<Object> ids = new ArrayList<>();
+
+      for (int i = 0; i < 3; i++) {
+        ids.clear();
+        client.search("engine", "cat", Collections.emptyMap(), new SearchResultHandler() {
+          @Override
+          public void onMeta(Map<String, Object> m) {
+            meta.set(m);
+          }
+
+          @SuppressWarnings("unchecked")
+          @Override
+          public void onResult(Map<String, Object> result) {
+            ids.add(((Map<String, Object>) result.get("id")).get("raw"));
+          }
+        });
+      }
+
+      assertEquals(Arrays.asList("1", "2", "3"), ids);
+      assertEquals(1.0, ((Map<?, ?>) meta.get().get("page")).get("current"));
+      assertEquals(1, server.connectionCount());
+    }
+  }
+}
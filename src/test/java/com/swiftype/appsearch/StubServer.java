@@ -0,0 +1,272 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal HTTP/1.1 server with keep-alive support, used to exercise the client without a live App Search account.
+ */
+class StubServer implements Closeable {
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger connectionCount = new AtomicInteger();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private volatile Function<Request, Response> handler;
+
+  StubServer(Function<Request, Response> handler) throws IOException {
+    this.handler = handler;
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    executor.execute(this::acceptLoop);
+  }
+
+  /**
+   * @return a base url format string suitable for {@link Client#Client(String, String, String)}
+   */
+  String baseUrlFormat() {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/api/as/v1/";
+  }
+
+  void handler(Function<Request, Response> handler) {
+    this.handler = handler;
+  }
+
+  int connectionCount() {
+    return connectionCount.get();
+  }
+
+  int requestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        connectionCount.incrementAndGet();
+        executor.execute(() -> serve(socket));
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket s = socket) {
+      s.setTcpNoDelay(true);
+      InputStream in = new BufferedInputStream(s.getInputStream());
+      OutputStream out = s.getOutputStream();
+      while (true) {
+        Request request = readRequest(in);
+        if (request == null) {
+          return;
+        }
+        requestCount.incrementAndGet();
+        Response response = handler.apply(request);
+        if (response.delayMillis > 0) {
+          Thread.sleep(response.delayMillis);
+        }
+        if (response.dropConnection) {
+          return;
+        }
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.status).append(" Stub\r\n");
+        head.append("Content-Length: ").append(response.body.length).append("\r\n");
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+          head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("\r\n");
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        message.write(head.toString().getBytes(ISO_8859_1));
+        if (response.bodyDelayMillis > 0) {
+          message.write(response.body, 0, response.body.length / 2);
+          message.writeTo(out);
+          out.flush();
+          Thread.sleep(response.bodyDelayMillis);
+          message.reset();
+          message.write(response.body, response.body.length / 2, response.body.length - response.body.length / 2);
+        } else {
+          message.write(response.body);
+        }
+        message.writeTo(out);
+        out.flush();
+      }
+    } catch (IOException | InterruptedException e) {
+      // connection closed
+    }
+  }
+
+  private static Request readRequest(InputStream in) throws IOException {
+    String requestLine = readLine(in);
+    if (requestLine == null || requestLine.isEmpty()) {
+      return null;
+    }
+    String[] parts = requestLine.split(" ");
+    Map<String, String> headers = new LinkedHashMap<>();
+    String line;
+    while ((line = readLine(in)) != null && !line.isEmpty()) {
+      int colon = line.indexOf(':');
+      headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+    }
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+      int size;
+      while ((size = Integer.parseInt(readLine(in).trim(), 16)) > 0) {
+        copy(in, body, size);
+        readLine(in);
+      }
+      readLine(in);
+    } else if (headers.containsKey("content-length")) {
+      copy(in, body, Integer.parseInt(headers.get("content-length")));
+    }
+    return new Request(parts[0], parts[1], headers, body.toByteArray());
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != -1) {
+      if (c == '\n') {
+        int length = line.length();
+        return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+      }
+      line.append((char) c);
+    }
+    return line.length() > 0 ? line.toString() : null;
+  }
+
+  private static void copy(InputStream in, OutputStream out, int length) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (length > 0) {
+      int read = in.read(buffer, 0, Math.min(buffer.length, length));
+      if (read == -1) {
+        throw new IOException("Unexpected end of stream");
+      }
+      out.write(buffer, 0, read);
+      length -= read;
+    }
+  }
+
+  static class Request {
+    final String method;
+    final String path;
+    final Map<String, String> headers;
+    final byte[] body;
+
+    Request(String method, String path, Map<String, String> headers, byte[] body) {
+      this.method = method;
+      this.path = path;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    String header(String name) {
+      return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    String bodyAsString() {
+      return new String(body, UTF_8);
+    }
+
+    /**
+     * @return the body, gunzipped if it was sent with gzip content encoding
+     */
+    String decodedBody() {
+      if (!"gzip".equals(header("Content-Encoding"))) {
+        return bodyAsString();
+      }
+      try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = gzip.read(buffer)) != -1) {
+          decoded.write(buffer, 0, read);
+        }
+        return new String(decoded.toByteArray(), UTF_8);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  static class Response {
+    final int status;
+    final byte[] body;
+    final Map<String, String> headers = new LinkedHashMap<>();
+    long delayMillis;
+    long bodyDelayMillis;
+    boolean dropConnection;
+
+    Response(int status, byte[] body) {
+      this.status = status;
+      this.body = body;
+    }
+
+    static Response json(int status, String body) {
+      return new Response(status, body.getBytes(UTF_8)).header("Content-Type", "application/json");
+    }
+
+    static Response gzipJson(int status, String body) {
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+        gzip.write(body.getBytes(UTF_8));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return new Response(status, gzipped.toByteArray())
+        .header("Content-Type", "application/json")
+        .header("Content-Encoding", "gzip");
+    }
+
+    static Response dropConnection() {
+      Response response = new Response(0, new byte[0]);
+      response.dropConnection = true;
+      return response;
+    }
+
+    Response header(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    Response delay(long millis) {
+      this.delayMillis = millis;
+      return this;
+    }
+
+    /**
+     * Sends the headers and the first half of the body right away, and the rest after a delay.
+     */
+    Response bodyDelay(long millis) {
+      this.bodyDelayMillis = millis;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.swiftype.appsearch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+class TransportTest {
+  private static final String SEARCH_RESPONSE = "{\"meta\":{},\"results\":[{\"id\":{\"raw\":\"1\"}}]}";
+
+  @Test
+  void fakeTransportServesTheClientWithoutSockets() throws Exception {
+    List<TransportRequest> requests = new CopyOnWriteArrayList<>();
+    List<String> bodies = new CopyOnWriteArrayList<>();
+    AtomicInteger closed = new AtomicInteger();
+    Transport fake = new Transport() {
+      @Override
+      public TransportResponse execute(TransportRequest request) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        request.writeBody(body);
+        requests.add(request);
+        bodies.add(new String(body.toByteArray(), UTF_8));
+        return new TransportResponse(200, Collections.singletonMap("content-type", "application/json"),
+          new ByteArrayInputStream(SEARCH_RESPONSE.getBytes(UTF_8))) {
+          @Override
+          public void close() throws IOException {
+            super.close();
+            closed.incrementAndGet();
+          }
+        };
+      }
+
+      @Override
+      public void close() {
+        closed.addAndGet(100);
+      }
+    };
+
+    try (Client client = new Client(null, "private-key", "http://fake/api/as/v1/", new ClientOptions().transport(fake))) {
+      assertEquals(1, ((List<?>) client.search("engine", "cat").get("results")).size());
+    }
+
+    TransportRequest request = requests.get(0);
+    assertEquals("GET", request.method());
+    assertEquals("http://fake/api/as/v1/engines/engine/search", request.url());
+    assertEquals("Bearer private-key", request.headers().get("Authorization"));
+    assertEquals("{\"query\":\"cat\"}", bodies.get(0));
+    assertEquals(101, closed.get(), "the response is closed once read, and the transport with the client");
+  }
+
+  @Test
+  void decodesGzippedResponsesOfAnyTransport() throws Exception {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+      gzip.write(SEARCH_RESPONSE.getBytes(UTF_8));
+    }
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Content-Type", "application/json; charset=utf-8");
+    headers.put("Content-Encoding", "gzip");
+    Transport fake = request -> {
+      request.writeBody(new ByteArrayOutputStream());
+      return new TransportResponse(200, headers, new ByteArrayInputStream(gzipped.toByteArray()));
+    };
+    List<RequestEvent> events = new CopyOnWriteArrayList<>();
+
+    try (Client client = new Client(null, "private-key", "http://fake/api/as/v1/",
+      new ClientOptions().transport(fake).addRequestListener(events::add))) {
+      assertEquals(1, ((List<?>) client.search("engine", "cat").get("results")).size());
+    }
+
+    RequestEvent event = events.get(0);
+    assertEquals(200, event.statusCode());
+    assertEquals("{\"query\":\"cat\"}".length(), event.requestBytes());
+    assertEquals(gzipped.size(), event.responseBytes());
+    assertEquals(SEARCH_RESPONSE.length(), event.uncompressedResponseBytes());
+  }
+
+  @Test
+  void turnsErrorStatusIntoApiException() throws Exception {
+    Transport fake = request -> new TransportResponse(429, Collections.singletonMap("Retry-After", "3"),
+      new ByteArrayInputStream("{\"errors\":[\"Too many requests\"]}".getBytes(UTF_8)));
+
+    try (Client client = new Client(null, "private-key", "http://fake/api/as/v1/", new ClientOptions().transport(fake))) {
+      ApiException e = assertThrows(ApiException.class, () -> client.search("engine", "cat"));
+      assertEquals(429, e.statusCode());
+      assertEquals("3", e.header("retry-after"));
+      assertEquals("{\"errors\":[\"Too many requests\"]}", e.responseBody());
+    }
+  }
+
+  @Test
+  void http2TransportFallsBackToHttp11Servers() throws Exception {
+    assumeTrue(!System.getProperty("java.specification.version").startsWith("1."), "needs Java 11 or later");
+    List<StubServer.Request> requests = new CopyOnWriteArrayList<>();
+    try (StubServer server = new StubServer(request -> {
+      requests.add(request);
+      return request.method.equals("POST")
+        ? StubServer.Response.json(200, "[{\"id\":\"1\",\"errors\":[]}]")
+        : StubServer.Response.gzipJson(200, SEARCH_RESPONSE);
+    });
+         Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().http2(true))) {
+      assertEquals(1, ((List<?>) client.search("engine", "cat").get("results")).size());
+      client.indexDocuments("engine", Collections.singletonList(Collections.singletonMap("id", "1")));
+    }
+
+    assertTrue(requests.get(0).header("User-Agent").startsWith("Java-http-client"));
+    assertEquals("{\"query\":\"cat\"}", requests.get(0).bodyAsString());
+    assertEquals("[{\"id\":\"1\"}]", requests.get(1).bodyAsString());
+  }
+
+  @Test
+  void http2TransportAbortsResponseBodyAtDeadline() throws Exception {
+    assumeTrue(!System.getProperty("java.specification.version").startsWith("1."), "needs Java 11 or later");
+    try (StubServer server = new StubServer(request -> StubServer.Response.json(200, SEARCH_RESPONSE).bodyDelay(3_000));
+         Client client = new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().http2(true))) {
+      // the first request also tries to upgrade to HTTP/2, java.net.http then reads its whole response before the
+      // headers are handed over, the following requests stall in the body
+      for (int i = 0; i < 2; i++) {
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class,
+          () -> Deadline.after(300, TimeUnit.MILLISECONDS).call(() -> client.search("engine", "cat")));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 1_500, "took " + elapsedMillis + "ms");
+      }
+    }
+  }
+}
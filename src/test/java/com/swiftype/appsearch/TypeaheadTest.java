@@ -0,0 +1,159 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TypeaheadTest {
+  private static final List<String> WORDS = Arrays.asList("car", "card", "care", "cat", "cats", "catalog", "dog");
+
+  private final List<String> queries = new CopyOnWriteArrayList<>();
+  private volatile long delayMillis;
+  private StubServer server;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = new StubServer(request -> {
+      if (!request.path.endsWith("/query_suggestion")) {
+        return StubServer.Response.json(200, "[{\"id\":\"1\",\"errors\":[]}]");
+      }
+      Map<String, Object> body = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.OBJECT.getType());
+      String query = (String) body.get("query");
+      int size = body.containsKey("size") ? ((Number) body.get("size")).intValue() : 5;
+      queries.add(query);
+      List<String> suggestions = new ArrayList<>();
+      for (String word : WORDS) {
+        if (word.startsWith(query) && suggestions.size() < size) {
+          suggestions.add("{\"suggestion\":\"" + word + "\"}");
+        }
+      }
+      return StubServer.Response.json(200, "{\"meta\":{\"request_id\":\"1\"},\"results\":{\"documents\":["
+        + String.join(",", suggestions) + "]}}").delay(delayMillis);
+    });
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void answersRepeatedQueriesLocally() throws Exception {
+    client = client(new TypeaheadOptions());
+
+    assertEquals(Arrays.asList("car", "card", "care", "cat", "cats"), suggestions(client.querySuggestion("engine", "ca")));
+    assertEquals(Arrays.asList("car", "card", "care", "cat", "cats"), suggestions(client.querySuggestion("engine", "ca")));
+    client.querySuggestion("engine", "ca", Collections.singletonMap("size", 2));
+    client.querySuggestion("other", "ca");
+
+    assertEquals(Arrays.asList("ca", "ca", "ca"), queries);
+    TypeaheadStats stats = client.typeaheadStats();
+    assertEquals(1, stats.hits());
+    assertEquals(3, stats.misses());
+    assertEquals(3, stats.entries());
+    assertEquals(0.25, stats.hitRatio());
+  }
+
+  @Test
+  void filtersCompleteResponsesOfShorterPrefixes() throws Exception {
+    client = client(new TypeaheadOptions().filterCachedPrefixes(true));
+
+    client.querySuggestion("engine", "cat");
+    assertEquals(Collections.singletonList("cats"), suggestions(client.querySuggestion("engine", "cats")));
+    assertEquals(Collections.singletonList("catalog"), suggestions(client.querySuggestion("engine", "cata")));
+    // the response to "ca" was cut off at five suggestions, so it can not answer "car"
+    client.querySuggestion("engine", "ca");
+    client.querySuggestion("engine", "car");
+
+    assertEquals(Arrays.asList("cat", "ca", "car"), queries);
+    assertEquals(2, client.typeaheadStats().filteredHits());
+  }
+
+  @Test
+  void dropsEngineResponsesOnWritesAndBeyondSize() throws Exception {
+    client = client(new TypeaheadOptions().maxEntriesPerEngine(2));
+
+    client.querySuggestion("engine", "c");
+    client.querySuggestion("engine", "ca");
+    client.querySuggestion("engine", "cat");
+    assertEquals(2, client.typeaheadStats().entries());
+    client.querySuggestion("engine", "c");
+
+    client.indexDocuments("engine", Collections.singletonList(Collections.singletonMap("id", "1")));
+    assertEquals(0, client.typeaheadStats().entries());
+    client.querySuggestion("engine", "cat");
+
+    assertEquals(Arrays.asList("c", "ca", "cat", "c", "cat"), queries);
+  }
+
+  @Test
+  void sessionSendsOnlyTheLatestKeystrokeWhileARequestIsInFlight() throws Exception {
+    client = client(new TypeaheadOptions());
+    delayMillis = 200;
+    TypeaheadSession session = client.typeaheadSession("engine", new HashMap<>());
+
+    CompletableFuture<Map<String, Object>> c = session.suggest("c");
+    CompletableFuture<Map<String, Object>> ca = session.suggest("ca");
+    CompletableFuture<Map<String, Object>> cat = session.suggest("cat");
+
+    assertEquals(Arrays.asList("cat", "cats", "catalog"), suggestions(cat.get(5, TimeUnit.SECONDS)));
+    assertTrue(c.isDone() && !c.isCompletedExceptionally());
+    assertThrows(CancellationException.class, ca::join);
+    assertEquals(Arrays.asList("c", "cat"), queries);
+
+    delayMillis = 0;
+    assertEquals(Arrays.asList("cat", "cats", "catalog"), suggestions(session.suggest("cat").get(5, TimeUnit.SECONDS)));
+    assertEquals(2, queries.size());
+    assertEquals(2, client.typeaheadStats().savedRoundTrips());
+  }
+
+  @Test
+  void sessionDropsWaitingKeystrokeWhenANewerOneIsCached() throws Exception {
+    client = client(new TypeaheadOptions());
+    client.querySuggestion("engine", "ca");
+    delayMillis = 200;
+    TypeaheadSession session = client.typeaheadSession("engine", new HashMap<>());
+
+    CompletableFuture<Map<String, Object>> c = session.suggest("c");
+    CompletableFuture<Map<String, Object>> car = session.suggest("car");
+    CompletableFuture<Map<String, Object>> ca = session.suggest("ca");
+
+    assertTrue(ca.isDone());
+    assertThrows(CancellationException.class, car::join);
+    c.get(5, TimeUnit.SECONDS);
+    // the cancelled keystroke is never sent once the request in flight completes
+    Thread.sleep(100);
+    assertEquals(Arrays.asList("ca", "c"), queries);
+  }
+
+  private Client client(TypeaheadOptions typeahead) {
+    return new Client(null, "private-key", server.baseUrlFormat(), new ClientOptions().typeahead(typeahead));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> suggestions(Map<String, Object> response) {
+    List<String> suggestions = new ArrayList<>();
+    for (Map<String, Object> suggestion : (List<Map<String, Object>>) ((Map<String, Object>) response.get("results")).get("documents")) {
+      suggestions.add((String) suggestion.get("suggestion"));
+    }
+    return suggestions;
+  }
+}
@@ -0,0 +1,263 @@
+package com.swiftype.appsearch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+class WriteSpoolTest {
+  private final List<String> applied = new CopyOnWriteArrayList<>();
+  private final List<String> indexBodies = new CopyOnWriteArrayList<>();
+  private final AtomicInteger unavailableRequests = new AtomicInteger();
+  private final AtomicLong responseDelayMillis = new AtomicLong();
+  private Path directory;
+  private StubServer server;
+  private Client client;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("write-spool");
+    server = new StubServer(request -> {
+      if (unavailableRequests.getAndDecrement() > 0) {
+        return StubServer.Response.json(503, "{\"errors\":[\"Unavailable\"]}");
+      }
+      StringBuilder response = new StringBuilder("[");
+      if (request.method.equals("DELETE")) {
+        List<String> ids = JsonTypes.GSON.fromJson(request.bodyAsString(), new TypeToken<List<String>>() {}.getType());
+        for (String id : ids) {
+          applied.add("destroy " + id);
+          response.append(response.length() > 1 ? "," : "").append("{\"id\":\"").append(id).append("\",\"deleted\":true}");
+        }
+      } else {
+        indexBodies.add(request.bodyAsString());
+        List<Map<String, Object>> documents = JsonTypes.GSON.fromJson(request.bodyAsString(), JsonTypes.ARRAY_OF_OBJECTS.getType());
+        for (Map<String, Object> document : documents) {
+          applied.add("index " + document.get("id"));
+          String errors = document.containsKey("invalid") ? "[\"Invalid field\"]" : "[]";
+          response.append(response.length() > 1 ? "," : "").append("{\"id\":\"").append(document.get("id"))
+            .append("\",\"errors\":").append(errors).append("}");
+        }
+      }
+      return StubServer.Response.json(200, response.append("]").toString()).delay(responseDelayMillis.get());
+    });
+    client = new Client(null, "private-key", server.baseUrlFormat());
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    client.close();
+    server.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+
+  @Test
+  void drainsWritesInOrderAcrossSegments() throws Exception {
+    List<String> expected = new ArrayList<>();
+    SpoolOptions options = new SpoolOptions().segmentBytes(4096);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, options, null)) {
+      for (int i = 0; i < 150; i++) {
+        spool.indexDocument(document(String.valueOf(i)));
+        expected.add("index " + i);
+        if (i % 50 == 49) {
+          spool.destroyDocument(String.valueOf(i - 10));
+          expected.add("destroy " + (i - 10));
+        }
+      }
+      assertTrue(spool.awaitDrained(10, TimeUnit.SECONDS));
+      assertEquals(0, spool.pendingBytes());
+    }
+
+    assertEquals(expected, applied);
+    try (Stream<Path> segments = Files.list(directory).filter(file -> file.toString().endsWith(".spool"))) {
+      assertEquals(1, segments.count(), "drained segments are deleted");
+    }
+  }
+
+  @Test
+  void keepsSendingTheSameBatchThroughAnOutage() throws Exception {
+    unavailableRequests.set(3);
+    SpoolOptions options = new SpoolOptions().backoff(10, 50, TimeUnit.MILLISECONDS);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, options, null)) {
+      for (int i = 0; i < 5; i++) {
+        spool.indexDocument(document(String.valueOf(i)));
+      }
+      assertTrue(spool.awaitDrained(10, TimeUnit.SECONDS));
+    }
+
+    assertEquals(5, applied.size());
+    assertEquals("index 0", applied.get(0));
+  }
+
+  @Test
+  void replaysUndrainedWritesAfterRestart() throws Exception {
+    unavailableRequests.set(Integer.MAX_VALUE);
+    SpoolOptions options = new SpoolOptions().sync(SpoolOptions.Sync.ALWAYS).backoff(10, 50, TimeUnit.MILLISECONDS);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, options, null)) {
+      for (int i = 0; i < 20; i++) {
+        spool.indexDocument(document(String.valueOf(i)));
+      }
+      assertTrue(spool.pendingBytes() > 0);
+    }
+
+    unavailableRequests.set(0);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, options, null)) {
+      assertTrue(spool.awaitDrained(10, TimeUnit.SECONDS));
+    }
+    assertEquals(20, applied.size());
+  }
+
+  @Test
+  void keepsBatchInFlightWhenClosed() throws Exception {
+    List<ClientException> dropped = new CopyOnWriteArrayList<>();
+    WriteSpool.Listener listener = new WriteSpool.Listener() {
+      @Override
+      public void onIndexBatchDropped(List<Map<String, Object>> documents, ClientException e) {
+        dropped.add(e);
+      }
+    };
+
+    responseDelayMillis.set(1_000);
+    WriteSpool spool = new WriteSpool(client, "engine", directory, new SpoolOptions(), listener);
+    spool.indexDocument(document("1"));
+    while (server.requestCount() == 0) {
+      Thread.sleep(10);
+    }
+    spool.close();
+    assertEquals(Collections.emptyList(), dropped);
+
+    // the batch was not committed, so it is sent again
+    responseDelayMillis.set(0);
+    try (WriteSpool reopened = new WriteSpool(client, "engine", directory, new SpoolOptions(), listener)) {
+      assertTrue(reopened.awaitDrained(10, TimeUnit.SECONDS));
+    }
+    assertEquals(Collections.emptyList(), dropped);
+    assertEquals(Arrays.asList("index 1", "index 1"), applied);
+  }
+
+  @Test
+  void failsWritesOnceTheClientIsClosed() throws Exception {
+    List<ClientException> dropped = new CopyOnWriteArrayList<>();
+    WriteSpool.Listener listener = new WriteSpool.Listener() {
+      @Override
+      public void onIndexBatchDropped(List<Map<String, Object>> documents, ClientException e) {
+        dropped.add(e);
+      }
+    };
+    client.close();
+
+    SpoolOptions options = new SpoolOptions().maxSpoolBytes(1024);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, options, listener)) {
+      // fills the spool, then fails instead of blocking the producer for good
+      IOException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> {
+        for (int i = 0; ; i++) {
+          spool.indexDocument(document(Integer.toString(i)));
+        }
+      }));
+      assertEquals("Spool can no longer be drained", e.getMessage());
+      assertTrue(spool.pendingBytes() > 0);
+    }
+    assertEquals(Collections.emptyList(), dropped);
+    assertEquals(0, server.requestCount());
+  }
+
+  @Test
+  void reportsRejectedDocumentsAndMovesOn() throws Exception {
+    List<Object> rejected = new CopyOnWriteArrayList<>();
+    WriteSpool.Listener listener = new WriteSpool.Listener() {
+      @Override
+      public void onDocumentRejected(Map<String, Object> document, List<String> errors) {
+        rejected.add(document.get("id"));
+      }
+    };
+
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, new SpoolOptions(), listener)) {
+      Map<String, Object> invalid = document("bad");
+      invalid.put("invalid", true);
+      spool.indexDocument(invalid);
+      spool.indexDocument(document("good"));
+      assertTrue(spool.awaitDrained(10, TimeUnit.SECONDS));
+    }
+
+    assertEquals(Collections.singletonList("bad"), rejected);
+  }
+
+  @Test
+  void sendsNumbersAsSpooled() throws Exception {
+    Map<String, Object> document = new HashMap<>();
+    document.put("id", 42);
+    document.put("big", 9007199254740993L);
+    try (WriteSpool spool = new WriteSpool(client, "engine", directory, new SpoolOptions(), null)) {
+      spool.indexDocument(document);
+      assertTrue(spool.awaitDrained(10, TimeUnit.SECONDS));
+    }
+
+    assertEquals(1, indexBodies.size());
+    assertTrue(indexBodies.get(0).contains("\"id\":42"), indexBodies.get(0));
+    assertTrue(indexBodies.get(0).contains("\"big\":9007199254740993"), indexBodies.get(0));
+  }
+
+  @Test
+  void ignoresTornRecordOnRecovery() throws Exception {
+    try (SpoolLog log = new SpoolLog(directory, 4096, Long.MAX_VALUE, false)) {
+      log.append((byte) 1, "first".getBytes());
+      log.append((byte) 1, "second".getBytes());
+    }
+    // corrupt the checksum of the second record, as if the machine died while writing it
+    try (FileChannel segment = FileChannel.open(directory.resolve(String.format("segment-%020d.spool", 0)), StandardOpenOption.WRITE)) {
+      segment.write(ByteBuffer.allocate(4), SpoolLog.RECORD_HEADER_BYTES + 5 + 4);
+    }
+
+    try (SpoolLog log = new SpoolLog(directory, 4096, Long.MAX_VALUE, false)) {
+      assertEquals(SpoolLog.RECORD_HEADER_BYTES + 5, log.pendingBytes());
+      List<SpoolLog.Record> records = log.read(10, Long.MAX_VALUE, 0);
+      assertEquals(1, records.size());
+      assertEquals("first", new String(records.get(0).payload));
+    }
+  }
+
+  @Test
+  void refusesToReadRecordCorruptedAfterItWasWritten() throws Exception {
+    try (SpoolLog log = new SpoolLog(directory, 4096, Long.MAX_VALUE, false)) {
+      log.append((byte) 1, "first".getBytes());
+      try (FileChannel segment = FileChannel.open(directory.resolve(String.format("segment-%020d.spool", 0)), StandardOpenOption.WRITE)) {
+        segment.write(ByteBuffer.wrap("F".getBytes()), SpoolLog.RECORD_HEADER_BYTES);
+      }
+      assertThrows(IOException.class, () -> log.read(10, Long.MAX_VALUE, 0));
+    }
+  }
+
+  private static Map<String, Object> document(String id) {
+    Map<String, Object> document = new HashMap<>();
+    document.put("id", id);
+    document.put("title", "Document " + id);
+    return document;
+  }
+}